@@ -0,0 +1,9 @@
+/**
+ * Stand-in for android.annotation.SuppressLint - only read by lint.
+ */
+
+package android.annotation;
+
+public @interface SuppressLint {
+	String[] value();
+}
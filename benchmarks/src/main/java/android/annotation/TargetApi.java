@@ -0,0 +1,9 @@
+/**
+ * Stand-in for android.annotation.TargetApi - only read by lint.
+ */
+
+package android.annotation;
+
+public @interface TargetApi {
+	int value();
+}
@@ -0,0 +1,13 @@
+/**
+ * Stand-in for android.content.Context - just enough for the mesh loader
+ * to compile on a desktop JVM. The benchmarks load from streams and never
+ * call it.
+ */
+
+package android.content;
+
+import android.content.res.Resources;
+
+public abstract class Context {
+	public abstract Resources getResources();
+}
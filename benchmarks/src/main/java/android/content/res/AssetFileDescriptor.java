@@ -0,0 +1,32 @@
+/**
+ * Stand-in for android.content.res.AssetFileDescriptor - a whole file.
+ */
+
+package android.content.res;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+public class AssetFileDescriptor {
+	private File _file;
+
+	public AssetFileDescriptor(File file) {
+		_file = file;
+	}
+
+	public FileInputStream createInputStream() throws IOException {
+		return new FileInputStream(_file);
+	}
+
+	public long getStartOffset() {
+		return 0;
+	}
+
+	public long getLength() {
+		return _file.length();
+	}
+
+	public void close() throws IOException {
+	}
+}
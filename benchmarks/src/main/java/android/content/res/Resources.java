@@ -0,0 +1,26 @@
+/**
+ * Stand-in for android.content.res.Resources - there are no resources on
+ * the desktop, every lookup fails.
+ */
+
+package android.content.res;
+
+import java.io.InputStream;
+
+public class Resources {
+	public static class NotFoundException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public NotFoundException(String name) {
+			super(name);
+		}
+	}
+
+	public InputStream openRawResource(int id) {
+		throw new NotFoundException("Resource ID #0x" + Integer.toHexString(id));
+	}
+
+	public AssetFileDescriptor openRawResourceFd(int id) {
+		throw new NotFoundException("Resource ID #0x" + Integer.toHexString(id));
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * Stand-in for android.graphics.Bitmap - just the size of a decoded image.
+ */
+
+package android.graphics;
+
+public class Bitmap {
+	private int _width, _height;
+
+	Bitmap(int width, int height) {
+		_width = width;
+		_height = height;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	public void recycle() {
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * Stand-in for android.graphics.BitmapFactory - decodes with ImageIO, the
+ * pixels are dropped since there is no GL to upload them to.
+ */
+
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+public class BitmapFactory {
+	/**
+	 * @return null if the stream isn't an image - like Android's
+	 */
+	public static Bitmap decodeStream(InputStream is) {
+		try {
+			BufferedImage image = ImageIO.read(is);
+			return image != null ? new Bitmap(image.getWidth(), image.getHeight()) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
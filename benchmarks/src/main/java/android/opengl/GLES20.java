@@ -0,0 +1,408 @@
+/**
+ * Stand-in for android.opengl.GLES20 - the constants and calls the mesh
+ * code and the Renderer use, with the values of the real GL headers.
+ *
+ * There is no GL on the desktop. Objects get ids from a counter, shaders
+ * always compile and programs always link. Linking lists the attributes
+ * and uniforms declared in the sources (in #ifdef blocks that are on), so
+ * Shader finds them like on a device. Everything a frame calls does
+ * nothing and allocates nothing.
+ */
+
+package android.opengl;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class GLES20 {
+	public static final int GL_DEPTH_BUFFER_BIT = 0x0100;
+	public static final int GL_COLOR_BUFFER_BIT = 0x4000;
+	public static final int GL_NO_ERROR = 0;
+	public static final int GL_TRUE = 1;
+	public static final int GL_FALSE = 0;
+	public static final int GL_TRIANGLES = 0x0004;
+	public static final int GL_TRIANGLE_STRIP = 0x0005;
+	public static final int GL_LEQUAL = 0x0203;
+	public static final int GL_BACK = 0x0405;
+	public static final int GL_CULL_FACE = 0x0B44;
+	public static final int GL_DEPTH_TEST = 0x0B71;
+	public static final int GL_BLEND = 0x0BE2;
+	public static final int GL_TEXTURE_2D = 0x0DE1;
+	public static final int GL_BYTE = 0x1400;
+	public static final int GL_UNSIGNED_BYTE = 0x1401;
+	public static final int GL_SHORT = 0x1402;
+	public static final int GL_UNSIGNED_SHORT = 0x1403;
+	public static final int GL_INT = 0x1404;
+	public static final int GL_UNSIGNED_INT = 0x1405;
+	public static final int GL_FLOAT = 0x1406;
+	public static final int GL_EXTENSIONS = 0x1F03;
+	public static final int GL_RGBA = 0x1908;
+	public static final int GL_NEAREST = 0x2600;
+	public static final int GL_LINEAR = 0x2601;
+	public static final int GL_TEXTURE_MAG_FILTER = 0x2800;
+	public static final int GL_TEXTURE_MIN_FILTER = 0x2801;
+	public static final int GL_TEXTURE_WRAP_S = 0x2802;
+	public static final int GL_TEXTURE_WRAP_T = 0x2803;
+	public static final int GL_REPEAT = 0x2901;
+	public static final int GL_CLAMP_TO_EDGE = 0x812F;
+	public static final int GL_DEPTH_COMPONENT16 = 0x81A5;
+	public static final int GL_TEXTURE0 = 0x84C0;
+	public static final int GL_ARRAY_BUFFER = 0x8892;
+	public static final int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+	public static final int GL_STATIC_DRAW = 0x88E4;
+	public static final int GL_FRAGMENT_SHADER = 0x8B30;
+	public static final int GL_VERTEX_SHADER = 0x8B31;
+	public static final int GL_COMPILE_STATUS = 0x8B81;
+	public static final int GL_LINK_STATUS = 0x8B82;
+	public static final int GL_ACTIVE_UNIFORMS = 0x8B86;
+	public static final int GL_ACTIVE_UNIFORM_MAX_LENGTH = 0x8B87;
+	public static final int GL_ACTIVE_ATTRIBUTES = 0x8B89;
+	public static final int GL_ACTIVE_ATTRIBUTE_MAX_LENGTH = 0x8B8A;
+	public static final int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+	public static final int GL_COLOR_ATTACHMENT0 = 0x8CE0;
+	public static final int GL_DEPTH_ATTACHMENT = 0x8D00;
+	public static final int GL_FRAMEBUFFER = 0x8D40;
+	public static final int GL_RENDERBUFFER = 0x8D41;
+	public static final int GL_MAX_VERTEX_UNIFORM_VECTORS = 0x8DFB;
+
+	// what a device without extras reports
+	private static final int MAX_VERTEX_UNIFORM_VECTORS = 256;
+
+	// "attribute vec4 aPosition;", "uniform vec4 uInstanceOffset[64];"
+	private static final Pattern DECLARATION = Pattern.compile(
+			"^\\s*(attribute|uniform)\\s+\\w+\\s+(\\w+)\\s*(\\[[^\\]]*\\])?");
+	private static final Pattern DIRECTIVE = Pattern.compile("^\\s*#\\s*(\\w+)\\s*(\\w*)");
+
+	private static int sNextId = 1;
+	private static Map<Integer, String> sShaderSources = new HashMap<Integer, String>();
+	private static Map<Integer, List<Integer>> sAttached = new HashMap<Integer, List<Integer>>();
+	// active names of each linked program - the index is the location
+	private static Map<Integer, List<String>> sUniforms = new HashMap<Integer, List<String>>();
+	private static Map<Integer, List<String>> sAttributes = new HashMap<Integer, List<String>>();
+
+	/*
+	 * Objects
+	 */
+
+	private static synchronized void gen(int n, int[] ids, int offset) {
+		for (int i = 0; i < n; i++)
+			ids[offset + i] = sNextId++;
+	}
+
+	public static void glGenBuffers(int n, int[] buffers, int offset) {
+		gen(n, buffers, offset);
+	}
+
+	public static void glDeleteBuffers(int n, int[] buffers, int offset) {
+	}
+
+	public static void glBindBuffer(int target, int buffer) {
+	}
+
+	public static void glBufferData(int target, int size, Buffer data, int usage) {
+	}
+
+	public static void glGenTextures(int n, int[] textures, int offset) {
+		gen(n, textures, offset);
+	}
+
+	public static void glDeleteTextures(int n, int[] textures, int offset) {
+	}
+
+	public static void glActiveTexture(int texture) {
+	}
+
+	public static void glBindTexture(int target, int texture) {
+	}
+
+	public static void glTexParameteri(int target, int pname, int param) {
+	}
+
+	public static void glTexParameterf(int target, int pname, float param) {
+	}
+
+	public static void glTexImage2D(int target, int level, int internalformat, int width, int height,
+			int border, int format, int type, Buffer pixels) {
+	}
+
+	public static void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+		gen(n, framebuffers, offset);
+	}
+
+	public static void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+	}
+
+	public static void glBindFramebuffer(int target, int framebuffer) {
+	}
+
+	public static void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+	}
+
+	public static void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget,
+			int renderbuffer) {
+	}
+
+	public static int glCheckFramebufferStatus(int target) {
+		return GL_FRAMEBUFFER_COMPLETE;
+	}
+
+	public static void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+		gen(n, renderbuffers, offset);
+	}
+
+	public static void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+	}
+
+	public static void glBindRenderbuffer(int target, int renderbuffer) {
+	}
+
+	public static void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+	}
+
+	/*
+	 * Shaders and programs
+	 */
+
+	public static synchronized int glCreateShader(int type) {
+		int shader = sNextId++;
+		sShaderSources.put(shader, "");
+		return shader;
+	}
+
+	public static synchronized void glShaderSource(int shader, String string) {
+		sShaderSources.put(shader, string);
+	}
+
+	public static void glCompileShader(int shader) {
+	}
+
+	public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+		params[offset] = pname == GL_COMPILE_STATUS ? GL_TRUE : 0;
+	}
+
+	public static String glGetShaderInfoLog(int shader) {
+		return "";
+	}
+
+	public static synchronized void glDeleteShader(int shader) {
+		sShaderSources.remove(shader);
+	}
+
+	public static synchronized int glCreateProgram() {
+		int program = sNextId++;
+		sAttached.put(program, new ArrayList<Integer>());
+		return program;
+	}
+
+	public static synchronized void glAttachShader(int program, int shader) {
+		sAttached.get(program).add(shader);
+	}
+
+	public static synchronized void glLinkProgram(int program) {
+		List<String> uniforms = new ArrayList<String>();
+		List<String> attributes = new ArrayList<String>();
+		for (int shader : sAttached.get(program))
+			declarations(sShaderSources.get(shader), uniforms, attributes);
+		sUniforms.put(program, uniforms);
+		sAttributes.put(program, attributes);
+	}
+
+	/*
+	 * Active uniforms/attributes of a shader - arrays as "name[0]", like the drivers do
+	 */
+	private static void declarations(String source, List<String> uniforms, List<String> attributes) {
+		Set<String> defines = new HashSet<String>();
+		// one entry per open #if - false while its block is off
+		List<Boolean> on = new ArrayList<Boolean>();
+		boolean active = true;
+		for (String line : source.split("\n")) {
+			Matcher d = DIRECTIVE.matcher(line);
+			if (d.find()) {
+				String directive = d.group(1);
+				if (directive.equals("define") && active)
+					defines.add(d.group(2));
+				else if (directive.equals("ifdef") || directive.equals("ifndef")) {
+					on.add(active);
+					active = active && (defines.contains(d.group(2)) == directive.equals("ifdef"));
+				} else if (directive.equals("else") && !on.isEmpty())
+					active = on.get(on.size() - 1) && !active;
+				else if (directive.equals("endif") && !on.isEmpty())
+					active = on.remove(on.size() - 1);
+				continue;
+			}
+			Matcher m = DECLARATION.matcher(line);
+			if (!active || !m.find())
+				continue;
+			String name = m.group(3) != null ? m.group(2) + "[0]" : m.group(2);
+			List<String> names = m.group(1).equals("uniform") ? uniforms : attributes;
+			if (!names.contains(name))
+				names.add(name);
+		}
+	}
+
+	public static synchronized void glGetProgramiv(int program, int pname, int[] params, int offset) {
+		switch (pname) {
+		case GL_LINK_STATUS:
+			params[offset] = GL_TRUE;
+			break;
+		case GL_ACTIVE_UNIFORMS:
+			params[offset] = sUniforms.get(program).size();
+			break;
+		case GL_ACTIVE_ATTRIBUTES:
+			params[offset] = sAttributes.get(program).size();
+			break;
+		case GL_ACTIVE_UNIFORM_MAX_LENGTH:
+			params[offset] = maxLength(sUniforms.get(program));
+			break;
+		case GL_ACTIVE_ATTRIBUTE_MAX_LENGTH:
+			params[offset] = maxLength(sAttributes.get(program));
+			break;
+		default:
+			params[offset] = 0;
+		}
+	}
+
+	private static int maxLength(List<String> names) {
+		int max = 0;
+		for (String name : names)
+			max = Math.max(max, name.length() + 1);
+		return max;
+	}
+
+	public static String glGetProgramInfoLog(int program) {
+		return "";
+	}
+
+	public static synchronized void glDeleteProgram(int program) {
+		sAttached.remove(program);
+		sUniforms.remove(program);
+		sAttributes.remove(program);
+	}
+
+	public static synchronized void glGetActiveUniform(int program, int index, int bufsize, int[] length,
+			int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+		activeName(sUniforms.get(program).get(index), bufsize, length, lengthOffset, name, nameOffset);
+		size[sizeOffset] = 1;
+	}
+
+	public static synchronized void glGetActiveAttrib(int program, int index, int bufsize, int[] length,
+			int lengthOffset, int[] size, int sizeOffset, int[] type, int typeOffset, byte[] name, int nameOffset) {
+		activeName(sAttributes.get(program).get(index), bufsize, length, lengthOffset, name, nameOffset);
+		size[sizeOffset] = 1;
+	}
+
+	private static void activeName(String active, int bufsize, int[] length, int lengthOffset,
+			byte[] name, int nameOffset) {
+		int n = Math.min(active.length(), bufsize - 1);
+		for (int i = 0; i < n; i++)
+			name[nameOffset + i] = (byte)active.charAt(i);
+		length[lengthOffset] = n;
+	}
+
+	public static synchronized int glGetUniformLocation(int program, String name) {
+		List<String> uniforms = sUniforms.get(program);
+		int location = uniforms.indexOf(name);
+		return location >= 0 ? location : uniforms.indexOf(name + "[0]");
+	}
+
+	public static synchronized int glGetAttribLocation(int program, String name) {
+		return sAttributes.get(program).indexOf(name);
+	}
+
+	public static void glUseProgram(int program) {
+	}
+
+	/*
+	 * Per frame state and draws
+	 */
+
+	public static void glUniform1i(int location, int x) {
+	}
+
+	public static void glUniform1f(int location, float x) {
+	}
+
+	public static void glUniform3fv(int location, int count, float[] v, int offset) {
+	}
+
+	public static void glUniform4fv(int location, int count, float[] v, int offset) {
+	}
+
+	public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+	}
+
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride,
+			Buffer ptr) {
+	}
+
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride,
+			int offset) {
+	}
+
+	public static void glVertexAttrib4f(int indx, float x, float y, float z, float w) {
+	}
+
+	public static void glEnableVertexAttribArray(int index) {
+	}
+
+	public static void glDisableVertexAttribArray(int index) {
+	}
+
+	public static void glEnable(int cap) {
+	}
+
+	public static void glDisable(int cap) {
+	}
+
+	public static void glCullFace(int mode) {
+	}
+
+	public static void glDepthFunc(int func) {
+	}
+
+	public static void glDepthMask(boolean flag) {
+	}
+
+	public static void glClearColor(float red, float green, float blue, float alpha) {
+	}
+
+	public static void glClearDepthf(float depth) {
+	}
+
+	public static void glClear(int mask) {
+	}
+
+	public static void glViewport(int x, int y, int width, int height) {
+	}
+
+	public static void glDrawArrays(int mode, int first, int count) {
+	}
+
+	public static void glDrawElements(int mode, int count, int type, Buffer indices) {
+	}
+
+	public static void glDrawElements(int mode, int count, int type, int offset) {
+	}
+
+	public static void glFinish() {
+	}
+
+	public static int glGetError() {
+		return GL_NO_ERROR;
+	}
+
+	public static void glGetIntegerv(int pname, int[] params, int offset) {
+		params[offset] = pname == GL_MAX_VERTEX_UNIFORM_VECTORS ? MAX_VERTEX_UNIFORM_VECTORS : 0;
+	}
+
+	public static String glGetString(int name) {
+		return "";
+	}
+}
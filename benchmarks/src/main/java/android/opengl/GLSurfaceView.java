@@ -0,0 +1,33 @@
+/**
+ * Stand-in for android.opengl.GLSurfaceView - the Renderer interface and
+ * the render mode the FramePacer switches. Tests call the renderer
+ * themselves, there is no GL thread.
+ */
+
+package android.opengl;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+public class GLSurfaceView {
+	public static final int RENDERMODE_WHEN_DIRTY = 0;
+	public static final int RENDERMODE_CONTINUOUSLY = 1;
+
+	public interface Renderer {
+		void onSurfaceCreated(GL10 gl, EGLConfig config);
+
+		void onSurfaceChanged(GL10 gl, int width, int height);
+
+		void onDrawFrame(GL10 gl);
+	}
+
+	private volatile int _renderMode = RENDERMODE_CONTINUOUSLY;
+
+	public void setRenderMode(int renderMode) {
+		_renderMode = renderMode;
+	}
+
+	public int getRenderMode() {
+		return _renderMode;
+	}
+}
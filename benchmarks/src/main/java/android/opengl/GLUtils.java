@@ -0,0 +1,15 @@
+/**
+ * Stand-in for android.opengl.GLUtils - there is no GL on the desktop.
+ */
+
+package android.opengl;
+
+import android.graphics.Bitmap;
+
+public final class GLUtils {
+	private GLUtils() {
+	}
+
+	public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Stand-in for android.opengl.Matrix - the calls the Renderer makes.
+ * Same conventions as the real class: 4x4 matrices stored column major in
+ * float arrays at an offset. The real multiplyMM is native; this one is
+ * plain Java, so compare runs against each other, not against a device.
+ */
+
+package android.opengl;
+
+public class Matrix {
+	// scratch for multiplyMM - result may be one of the inputs
+	private final static float[] sTemp = new float[16];
+
+	public static void setIdentityM(float[] sm, int smOffset) {
+		for (int i = 0; i < 16; i++)
+			sm[smOffset + i] = 0;
+		for (int i = 0; i < 16; i += 5)
+			sm[smOffset + i] = 1.0f;
+	}
+
+	public static void translateM(float[] m, int mOffset, float x, float y, float z) {
+		for (int i = 0; i < 4; i++) {
+			int mi = mOffset + i;
+			m[12 + mi] += m[mi] * x + m[4 + mi] * y + m[8 + mi] * z;
+		}
+	}
+
+	public static void multiplyMM(float[] result, int resultOffset,
+			float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		synchronized (sTemp) {
+			for (int c = 0; c < 4; c++) {
+				float r0 = rhs[rhsOffset + c * 4];
+				float r1 = rhs[rhsOffset + c * 4 + 1];
+				float r2 = rhs[rhsOffset + c * 4 + 2];
+				float r3 = rhs[rhsOffset + c * 4 + 3];
+				for (int r = 0; r < 4; r++) {
+					sTemp[c * 4 + r] = lhs[lhsOffset + r] * r0
+							+ lhs[lhsOffset + 4 + r] * r1
+							+ lhs[lhsOffset + 8 + r] * r2
+							+ lhs[lhsOffset + 12 + r] * r3;
+				}
+			}
+			System.arraycopy(sTemp, 0, result, resultOffset, 16);
+		}
+	}
+
+	public static void frustumM(float[] m, int offset, float left, float right,
+			float bottom, float top, float near, float far) {
+		float rWidth = 1.0f / (right - left);
+		float rHeight = 1.0f / (top - bottom);
+		float rDepth = 1.0f / (near - far);
+		for (int i = 0; i < 16; i++)
+			m[offset + i] = 0.0f;
+		m[offset] = 2.0f * near * rWidth;
+		m[offset + 5] = 2.0f * near * rHeight;
+		m[offset + 8] = (right + left) * rWidth;
+		m[offset + 9] = (top + bottom) * rHeight;
+		m[offset + 10] = (far + near) * rDepth;
+		m[offset + 11] = -1.0f;
+		m[offset + 14] = 2.0f * far * near * rDepth;
+	}
+
+	public static void setLookAtM(float[] rm, int rmOffset, float eyeX, float eyeY, float eyeZ,
+			float centerX, float centerY, float centerZ, float upX, float upY, float upZ) {
+		// forward
+		float fx = centerX - eyeX, fy = centerY - eyeY, fz = centerZ - eyeZ;
+		float rlf = 1.0f / (float)Math.sqrt(fx * fx + fy * fy + fz * fz);
+		fx *= rlf;
+		fy *= rlf;
+		fz *= rlf;
+
+		// side = forward x up
+		float sx = fy * upZ - fz * upY;
+		float sy = fz * upX - fx * upZ;
+		float sz = fx * upY - fy * upX;
+		float rls = 1.0f / (float)Math.sqrt(sx * sx + sy * sy + sz * sz);
+		sx *= rls;
+		sy *= rls;
+		sz *= rls;
+
+		// up = side x forward
+		float ux = sy * fz - sz * fy;
+		float uy = sz * fx - sx * fz;
+		float uz = sx * fy - sy * fx;
+
+		rm[rmOffset] = sx;
+		rm[rmOffset + 1] = ux;
+		rm[rmOffset + 2] = -fx;
+		rm[rmOffset + 3] = 0.0f;
+		rm[rmOffset + 4] = sy;
+		rm[rmOffset + 5] = uy;
+		rm[rmOffset + 6] = -fy;
+		rm[rmOffset + 7] = 0.0f;
+		rm[rmOffset + 8] = sz;
+		rm[rmOffset + 9] = uz;
+		rm[rmOffset + 10] = -fz;
+		rm[rmOffset + 11] = 0.0f;
+		rm[rmOffset + 12] = 0.0f;
+		rm[rmOffset + 13] = 0.0f;
+		rm[rmOffset + 14] = 0.0f;
+		rm[rmOffset + 15] = 1.0f;
+		translateM(rm, rmOffset, -eyeX, -eyeY, -eyeZ);
+	}
+
+	public static void transposeM(float[] mTrans, int mTransOffset, float[] m, int mOffset) {
+		// in place has to swap pairs
+		for (int i = 0; i < 4; i++) {
+			for (int j = i + 1; j < 4; j++) {
+				float a = m[mOffset + i * 4 + j];
+				float b = m[mOffset + j * 4 + i];
+				mTrans[mTransOffset + j * 4 + i] = a;
+				mTrans[mTransOffset + i * 4 + j] = b;
+			}
+			mTrans[mTransOffset + i * 5] = m[mOffset + i * 5];
+		}
+	}
+
+	/**
+	 * Inverts a 4x4 matrix with cofactors
+	 * @return false if the matrix can't be inverted (mInv is left alone)
+	 */
+	public static boolean invertM(float[] mInv, int mInvOffset, float[] m, int mOffset) {
+		float m0 = m[mOffset],      m1 = m[mOffset + 1],  m2 = m[mOffset + 2],  m3 = m[mOffset + 3];
+		float m4 = m[mOffset + 4],  m5 = m[mOffset + 5],  m6 = m[mOffset + 6],  m7 = m[mOffset + 7];
+		float m8 = m[mOffset + 8],  m9 = m[mOffset + 9],  m10 = m[mOffset + 10], m11 = m[mOffset + 11];
+		float m12 = m[mOffset + 12], m13 = m[mOffset + 13], m14 = m[mOffset + 14], m15 = m[mOffset + 15];
+
+		// 2x2 determinants of the lower and upper halves
+		float s0 = m0 * m5 - m4 * m1;
+		float s1 = m0 * m6 - m4 * m2;
+		float s2 = m0 * m7 - m4 * m3;
+		float s3 = m1 * m6 - m5 * m2;
+		float s4 = m1 * m7 - m5 * m3;
+		float s5 = m2 * m7 - m6 * m3;
+
+		float c5 = m10 * m15 - m14 * m11;
+		float c4 = m9 * m15 - m13 * m11;
+		float c3 = m9 * m14 - m13 * m10;
+		float c2 = m8 * m15 - m12 * m11;
+		float c1 = m8 * m14 - m12 * m10;
+		float c0 = m8 * m13 - m12 * m9;
+
+		float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+		if (det == 0.0f)
+			return false;
+		float inv = 1.0f / det;
+
+		mInv[mInvOffset]      = ( m5 * c5 - m6 * c4 + m7 * c3) * inv;
+		mInv[mInvOffset + 1]  = (-m1 * c5 + m2 * c4 - m3 * c3) * inv;
+		mInv[mInvOffset + 2]  = ( m13 * s5 - m14 * s4 + m15 * s3) * inv;
+		mInv[mInvOffset + 3]  = (-m9 * s5 + m10 * s4 - m11 * s3) * inv;
+
+		mInv[mInvOffset + 4]  = (-m4 * c5 + m6 * c2 - m7 * c1) * inv;
+		mInv[mInvOffset + 5]  = ( m0 * c5 - m2 * c2 + m3 * c1) * inv;
+		mInv[mInvOffset + 6]  = (-m12 * s5 + m14 * s2 - m15 * s1) * inv;
+		mInv[mInvOffset + 7]  = ( m8 * s5 - m10 * s2 + m11 * s1) * inv;
+
+		mInv[mInvOffset + 8]  = ( m4 * c4 - m5 * c2 + m7 * c0) * inv;
+		mInv[mInvOffset + 9]  = (-m0 * c4 + m1 * c2 - m3 * c0) * inv;
+		mInv[mInvOffset + 10] = ( m12 * s4 - m13 * s2 + m15 * s0) * inv;
+		mInv[mInvOffset + 11] = (-m8 * s4 + m9 * s2 - m11 * s0) * inv;
+
+		mInv[mInvOffset + 12] = (-m4 * c3 + m5 * c1 - m6 * c0) * inv;
+		mInv[mInvOffset + 13] = ( m0 * c3 - m1 * c1 + m2 * c0) * inv;
+		mInv[mInvOffset + 14] = (-m12 * s3 + m13 * s1 - m14 * s0) * inv;
+		mInv[mInvOffset + 15] = ( m8 * s3 - m9 * s1 + m10 * s0) * inv;
+		return true;
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * Stand-in for android.os.Debug - the allocation counters the Renderer
+ * reads when tracking is on. They count nothing here, tests measure with
+ * the JVM's ThreadMXBean instead.
+ */
+
+package android.os;
+
+public final class Debug {
+	private Debug() {
+	}
+
+	public static void startAllocCounting() {
+	}
+
+	public static void stopAllocCounting() {
+	}
+
+	public static void resetThreadAllocCount() {
+	}
+
+	public static void resetThreadAllocSize() {
+	}
+
+	public static int getThreadAllocCount() {
+		return 0;
+	}
+
+	public static int getThreadAllocSize() {
+		return 0;
+	}
+}
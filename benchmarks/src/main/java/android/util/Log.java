@@ -0,0 +1,27 @@
+/**
+ * Stand-in for android.util.Log - prints nothing so logging doesn't show
+ * up in the measurements.
+ */
+
+package android.util;
+
+public final class Log {
+	private Log() {
+	}
+
+	public static int d(String tag, String msg) {
+		return 0;
+	}
+
+	public static int i(String tag, String msg) {
+		return 0;
+	}
+
+	public static int w(String tag, String msg) {
+		return 0;
+	}
+
+	public static int e(String tag, String msg) {
+		return 0;
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * Stand-in for android.widget.Toast - there is no screen, show() does
+ * nothing.
+ */
+
+package android.widget;
+
+import android.content.Context;
+
+public class Toast {
+	public static final int LENGTH_SHORT = 0;
+	public static final int LENGTH_LONG = 1;
+
+	private Toast() {
+	}
+
+	public static Toast makeText(Context context, CharSequence text, int duration) {
+		return new Toast();
+	}
+
+	public void show() {
+	}
+}
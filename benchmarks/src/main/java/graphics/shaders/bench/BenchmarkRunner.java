@@ -0,0 +1,25 @@
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate
+ * (gc.alloc.rate.norm = bytes per operation) to the ops/s.
+ *
+ *   java -jar target/benchmarks.jar                  all of them, plain JMH
+ *   java -cp target/benchmarks.jar graphics.shaders.bench.BenchmarkRunner [regex]
+ */
+
+package graphics.shaders.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "graphics.shaders.bench.*")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
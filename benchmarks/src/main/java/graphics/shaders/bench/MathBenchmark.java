@@ -0,0 +1,110 @@
+/**
+ * Per draw math: the android.opengl.Matrix calls the Renderer makes for
+ * every object it draws - the old drawCar/drawRoad sequence (model matrix,
+ * model-view-projection and the normal matrix), the render queue's (model
+ * matrix times the view-projection of the frame) - and Mesh.crossProduct.
+ */
+
+package graphics.shaders.bench;
+
+import graphics.shaders.Mesh;
+import android.opengl.Matrix;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+	private float[] mMVPMatrix = new float[16];
+	private float[] mProjMatrix = new float[16];
+	private float[] mTransMatrix = new float[16];
+	private float[] mMMatrix = new float[16];
+	private float[] mVMatrix = new float[16];
+	private float[] normalMatrix = new float[16];
+	private float[] mViewProjMatrix = new float[16];
+
+	private float[] _pos = {-10.0f, 5.0f, 10.0f};
+
+	private Mesh _mesh = new Mesh();
+	private float[] _a = {0.3f, -1.2f, 2.5f};
+	private float[] _b = {-0.7f, 0.4f, 1.1f};
+
+	@Setup
+	public void setup() {
+		// something like the Renderer's camera and projection
+		Matrix.setIdentityM(mVMatrix, 0);
+		Matrix.translateM(mVMatrix, 0, 0.0f, -10.0f, -25.0f);
+
+		Matrix.setIdentityM(mProjMatrix, 0);
+		mProjMatrix[0] = 1.0f;
+		mProjMatrix[5] = 1.5f;
+		mProjMatrix[10] = -1.002f;
+		mProjMatrix[11] = -1.0f;
+		mProjMatrix[14] = -2.002f;
+		mProjMatrix[15] = 0.0f;
+
+		Matrix.multiplyMM(mViewProjMatrix, 0, mProjMatrix, 0, mVMatrix, 0);
+	}
+
+	/*
+	 * Same sequence as drawCar before the render queue
+	 */
+	@Benchmark
+	public float[] drawTransforms() {
+		Matrix.setIdentityM(mMMatrix, 0);
+		Matrix.setIdentityM(mTransMatrix, 0);
+
+		Matrix.translateM(mTransMatrix, 0, _pos[0], _pos[1], _pos[2]);
+
+		Matrix.multiplyMM(mMMatrix, 0, mMMatrix, 0, mTransMatrix, 0);    //Translate
+		Matrix.multiplyMM(mMVPMatrix, 0, mVMatrix, 0, mMMatrix, 0);      //View
+		Matrix.multiplyMM(mMVPMatrix, 0, mProjMatrix, 0, mMVPMatrix, 0); //Proj
+
+		Matrix.invertM(normalMatrix, 0, mMVPMatrix, 0);
+		Matrix.transposeM(normalMatrix, 0, normalMatrix, 0);
+		return normalMatrix;
+	}
+
+	/*
+	 * Same sequence as Renderer.queueObject + drawQueue
+	 */
+	@Benchmark
+	public float[] queueTransforms() {
+		Matrix.setIdentityM(mMMatrix, 0);
+		Matrix.translateM(mMMatrix, 0, _pos[0], _pos[1], _pos[2]);
+		Matrix.multiplyMM(mMVPMatrix, 0, mViewProjMatrix, 0, mMMatrix, 0);
+		return mMVPMatrix;
+	}
+
+	@Benchmark
+	public float[] multiplyMM() {
+		Matrix.multiplyMM(mMVPMatrix, 0, mProjMatrix, 0, mVMatrix, 0);
+		return mMVPMatrix;
+	}
+
+	@Benchmark
+	public float[] invertM() {
+		Matrix.invertM(normalMatrix, 0, mProjMatrix, 0);
+		return normalMatrix;
+	}
+
+	@Benchmark
+	public float[] crossProduct() {
+		return _mesh.crossProduct(_a, _b);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Mesh import from OBJ and OFF text - the parsers, welding (OBJ) and normal
+ * generation (OFF), and building the vertex buffers.
+ *
+ * The post processing steps that don't depend on the format (vertex cache
+ * optimisation, tangents) are off unless -p postProcess=true, so the
+ * numbers are about the loaders.
+ */
+
+package graphics.shaders.bench;
+
+import graphics.shaders.Mesh;
+import graphics.shaders.MeshOptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class MeshImportBenchmark {
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int triangles;
+
+	@Param({"obj", "off"})
+	public String format;
+
+	@Param({"false"})
+	public boolean postProcess;
+
+	private byte[] _file;
+	private MeshOptions _options;
+
+	@Setup
+	public void setup() {
+		_file = "obj".equals(format) ? SyntheticMeshes.obj(triangles) : SyntheticMeshes.off(triangles);
+
+		_options = new MeshOptions();
+		_options.setOptimizeVertexCache(postProcess);
+		_options.setGenerateTangents(postProcess);
+	}
+
+	@Benchmark
+	public Mesh load() throws IOException {
+		return new Mesh(new ByteArrayInputStream(_file), _options);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Normal generation for meshes without normals - NormalGenerator, which
+ * replaced the per face setFaceNormal loop.
+ */
+
+package graphics.shaders.bench;
+
+import graphics.shaders.NormalGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalsBenchmark {
+	private static final int STRIDE = 8;
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int triangles;
+
+	@Param({"false", "true"})
+	public boolean angleWeighted;
+
+	// 1 = serial, 0 = one thread per core
+	@Param({"1", "0"})
+	public int threads;
+
+	private float[] _vertices;
+	private int[] _indices;
+	private NormalGenerator _generator;
+
+	@Setup
+	public void setup() {
+		int n = SyntheticMeshes.gridSize(triangles);
+		float[] p = SyntheticMeshes.positions(n);
+		_vertices = new float[p.length / 3 * STRIDE];
+		for (int v = 0; v < p.length / 3; v++)
+			System.arraycopy(p, v * 3, _vertices, v * STRIDE, 3);
+		_indices = SyntheticMeshes.indices(n);
+		_generator = new NormalGenerator(angleWeighted, threads);
+	}
+
+	@Benchmark
+	public float[] generate() {
+		_generator.generate(_vertices, STRIDE, 3, _indices);
+		return _generator.getFaceNormals();
+	}
+}
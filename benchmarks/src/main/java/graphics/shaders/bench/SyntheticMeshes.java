@@ -0,0 +1,105 @@
+/**
+ * Writes synthetic meshes in the formats Mesh reads - a wavy grid of
+ * quads, two triangles each, so the size can be picked freely.
+ */
+
+package graphics.shaders.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+public class SyntheticMeshes {
+	private SyntheticMeshes() {
+	}
+
+	/**
+	 * @return quads per side of a grid with at least the given number of triangles
+	 */
+	public static int gridSize(int triangles) {
+		return (int)Math.ceil(Math.sqrt(triangles / 2.0));
+	}
+
+	/**
+	 * Grid vertices [x, y, z] - y is a gentle wave so the normals differ
+	 */
+	public static float[] positions(int n) {
+		float[] p = new float[(n + 1) * (n + 1) * 3];
+		int o = 0;
+		for (int j = 0; j <= n; j++) {
+			for (int i = 0; i <= n; i++) {
+				p[o++] = i;
+				p[o++] = (float)(Math.sin(i * 0.3) * Math.cos(j * 0.3));
+				p[o++] = j;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Grid triangles, counter clockwise seen from +y
+	 */
+	public static int[] indices(int n) {
+		int[] ix = new int[n * n * 6];
+		int o = 0;
+		for (int j = 0; j < n; j++) {
+			for (int i = 0; i < n; i++) {
+				int a = j * (n + 1) + i, b = a + 1, c = a + n + 1, d = c + 1;
+				ix[o++] = a; ix[o++] = c; ix[o++] = b;
+				ix[o++] = b; ix[o++] = c; ix[o++] = d;
+			}
+		}
+		return ix;
+	}
+
+	/**
+	 * An OBJ file (with the "OBJ" first line Mesh expects): v, vt and vn for
+	 * every grid vertex, faces as v/vt/vn
+	 */
+	public static byte[] obj(int triangles) {
+		int n = gridSize(triangles);
+		float[] p = positions(n);
+		int[] ix = indices(n);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(bytes, Charset.forName("US-ASCII")));
+		out.print("OBJ\n");
+		for (int v = 0; v < p.length; v += 3)
+			out.print("v " + p[v] + " " + p[v + 1] + " " + p[v + 2] + "\n");
+		for (int v = 0; v < p.length; v += 3)
+			out.print("vt " + p[v] / n + " " + p[v + 2] / n + "\n");
+		for (int v = 0; v < p.length; v += 3)
+			out.print("vn 0.0 -1.0 0.0\n");
+		for (int t = 0; t < ix.length; t += 3) {
+			out.print("f");
+			for (int k = 0; k < 3; k++) {
+				int v = ix[t + k] + 1;
+				out.print(" " + v + "/" + v + "/" + v);
+			}
+			out.print("\n");
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * An OFF file - positions and triangles, Mesh generates the normals
+	 */
+	public static byte[] off(int triangles) {
+		int n = gridSize(triangles);
+		float[] p = positions(n);
+		int[] ix = indices(n);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(bytes, Charset.forName("US-ASCII")));
+		out.print("OFF\n");
+		out.print(p.length / 3 + " " + ix.length / 3 + " 0\n");
+		for (int v = 0; v < p.length; v += 3)
+			out.print(p[v] + " " + p[v + 1] + " " + p[v + 2] + "\n");
+		for (int t = 0; t < ix.length; t += 3)
+			out.print("3 " + ix[t] + " " + ix[t + 1] + " " + ix[t + 2] + "\n");
+		out.flush();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,9 @@
+/**
+ * Stand-in for javax.microedition.khronos.egl.EGLConfig - handed to
+ * onSurfaceCreated() and never looked at.
+ */
+
+package javax.microedition.khronos.egl;
+
+public abstract class EGLConfig {
+}
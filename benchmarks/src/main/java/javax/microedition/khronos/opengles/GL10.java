@@ -0,0 +1,9 @@
+/**
+ * Stand-in for javax.microedition.khronos.opengles.GL10 - the renderer
+ * only uses GLES20, this is passed around unused.
+ */
+
+package javax.microedition.khronos.opengles;
+
+public interface GL10 {
+}
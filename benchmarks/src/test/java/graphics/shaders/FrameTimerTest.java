@@ -0,0 +1,62 @@
+/**
+ * FrameTimer with hand set times - a phase measured on some frames only
+ * must not have its statistics made up from the others.
+ */
+
+package graphics.shaders;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class FrameTimerTest {
+	private static final long MS = 1000000L;
+	private static final int CPU = 0;
+	private static final int GPU = 1;
+
+	// 8 frames: the CPU phase takes 1 ms every frame, the GPU phase is
+	// measured every 4th frame - 10 ms, then 20 ms
+	private static FrameTimer timer() {
+		FrameTimer timer = new FrameTimer(new String[] {"cpu", "gpu"}, 16);
+		timer.setEnabled(true);
+		for (int f = 0; f < 8; f++) {
+			timer.set(CPU, MS);
+			if (f % 4 == 3)
+				timer.set(GPU, (f + 1) / 4 * 10 * MS);
+			else
+				timer.skip(GPU);
+			timer.endFrame();
+		}
+		return timer;
+	}
+
+	@Test
+	public void skippedFramesAreNotInTheStatistics() {
+		float[] stats = new float[2 * FrameTimer.NUM_STATS];
+		assertEquals(8, timer().getStats(stats));
+
+		int cpu = CPU * FrameTimer.NUM_STATS;
+		assertEquals(1.0f, stats[cpu + FrameTimer.MIN], 1e-6f);
+		assertEquals(1.0f, stats[cpu + FrameTimer.AVG], 1e-6f);
+
+		int gpu = GPU * FrameTimer.NUM_STATS;
+		assertEquals(10.0f, stats[gpu + FrameTimer.MIN], 1e-6f);
+		assertEquals(15.0f, stats[gpu + FrameTimer.AVG], 1e-6f);
+		assertEquals(20.0f, stats[gpu + FrameTimer.P99], 1e-6f);
+	}
+
+	@Test
+	public void skippedFramesAreEmptyInTheCsv() throws IOException {
+		StringWriter out = new StringWriter();
+		timer().writeCsv(out);
+		String[] lines = out.toString().split("\n");
+		assertEquals(9, lines.length);
+		assertEquals("frame,cpu,gpu", lines[0]);
+		assertEquals("0,1.0,", lines[1]);
+		assertEquals("3,1.0,10.0", lines[4]);
+		assertEquals("7,1.0,20.0", lines[8]);
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * MeshScanner on small OBJ snippets - what the loaders see line by line.
+ */
+
+package graphics.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class MeshScannerTest {
+	private static MeshScanner scanner(String text) throws IOException {
+		return new MeshScanner(new ByteArrayInputStream(text.getBytes("ISO-8859-1")));
+	}
+
+	// v lines up to the end of the file, everything else skipped
+	private static int countVertices(MeshScanner in) throws IOException {
+		int n = 0;
+		long kw;
+		while ((kw = in.nextKeyword()) != 0) {
+			if (kw == MeshScanner.KW_V)
+				n++;
+			in.skipLine();
+		}
+		return n;
+	}
+
+	@Test
+	public void byteFFIsNotTheEndOfTheFile() throws IOException {
+		// U+00FF is 0xFF in Latin-1 - the same as -1 as a signed byte
+		assertEquals(2, countVertices(scanner("# caf\u00ff\nv 1 2 3\nv 4 5 6\n")));
+		assertEquals(2, countVertices(scanner("o \u00ff\u00ff\nv 1 2 3\nusemtl \u00ff\nv 4 5 6")));
+	}
+
+	@Test
+	public void commentEndsTheLine() throws IOException {
+		MeshScanner in = scanner("f 1 2 3 # tri\nvt 0.5 # no v\nv 1 2 3\n");
+		assertEquals(MeshScanner.KW_F, in.nextKeyword());
+		int n = 0;
+		while (in.hasNext()) {
+			in.nextInt();
+			n++;
+		}
+		assertEquals(3, n);
+		in.skipLine();
+
+		assertEquals(MeshScanner.KW_VT, in.nextKeyword());
+		assertEquals(0.5f, in.nextFloat(), 0.0f);
+		assertFalse(in.hasNext());
+		in.skipLine();
+
+		assertEquals(MeshScanner.KW_V, in.nextKeyword());
+		assertTrue(in.hasNext());
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * The Renderer on a desktop JVM against the GLES20 stand-in - once the
+ * assets are up and the road is merged, a frame must not allocate.
+ */
+
+package graphics.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+
+public class RendererAllocationTest {
+	private static final File RAW = new File("../res/raw");
+	private static final long LOAD_TIMEOUT_MS = 30000;
+	private static final int WARMUP_FRAMES = 2000;	// until the JIT has compiled the frame
+	private static final int FRAMES = 1000;
+
+	// res/raw by the R.raw field name of the id
+	private static class RawResources extends Resources {
+		public InputStream openRawResource(int id) {
+			try {
+				return new FileInputStream(file(id));
+			} catch (FileNotFoundException e) {
+				throw new NotFoundException(e.getMessage());
+			}
+		}
+
+		public AssetFileDescriptor openRawResourceFd(int id) {
+			return new AssetFileDescriptor(file(id));
+		}
+
+		private static File file(int id) {
+			try {
+				for (Field f : R.raw.class.getFields()) {
+					if (f.getInt(null) != id)
+						continue;
+					for (File file : RAW.listFiles()) {
+						if (file.getName().startsWith(f.getName() + "."))
+							return file;
+					}
+				}
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+			throw new NotFoundException("Resource ID #0x" + Integer.toHexString(id));
+		}
+	}
+
+	private static class RawContext extends Context {
+		private Resources _resources = new RawResources();
+
+		public Resources getResources() {
+			return _resources;
+		}
+	}
+
+	@Test
+	public void steadyFrameAllocatesNothing() throws InterruptedException {
+		Renderer renderer = new Renderer(new RawContext());
+		renderer.onSurfaceCreated(null, null);
+		renderer.onSurfaceChanged(null, 800, 480);
+
+		// the loader works in the background - uploads happen in the frames
+		long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MS;
+		while (!renderer.isLoaded() && System.currentTimeMillis() < deadline) {
+			renderer.onDrawFrame(null);
+			Thread.sleep(1);
+		}
+		assertTrue("assets not loaded", renderer.isLoaded());
+		assertTrue("no static cells", renderer.getStaticCells() > 0);
+
+		for (int i = 0; i < WARMUP_FRAMES; i++)
+			renderer.onDrawFrame(null);
+		assertTrue("nothing drawn", renderer.getDrawCalls() > 0);
+
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < FRAMES; i++)
+			renderer.onDrawFrame(null);
+		long bytes = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertEquals("bytes per frame", 0.0, (double)bytes / FRAMES, 0.0);
+	}
+}
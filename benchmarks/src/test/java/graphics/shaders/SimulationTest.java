@@ -0,0 +1,122 @@
+/**
+ * Simulation driven by a fake clock - the same drive has to end in the
+ * same place at any frame rate.
+ */
+
+package graphics.shaders;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SimulationTest {
+	private static final long SECOND = 1000000000L;
+	// a step is 8333333 ns - whole seconds leave a few ns in the accumulator
+	private static final float THROTTLE = -100.0f;		// drag up - drives forward
+
+	// a clock that only moves when told to
+	private static class FakeClock implements Simulation.Clock {
+		long now;
+
+		public long nanoTime() {
+			return now;
+		}
+	}
+
+	@Test
+	public void sameDistanceAtAnyFrameRate() {
+		float at60 = drive(60, 2);
+		assertEquals(at60, drive(30, 2), 0.01f);
+		assertEquals(at60, drive(144, 2), 0.01f);
+	}
+
+	@Test
+	public void allStepsOfTwoSecondsAreTaken() {
+		FakeClock clock = new FakeClock();
+		Simulation sim = new Simulation(clock, Simulation.DEFAULT_RATE);
+		sim.setInput(THROTTLE, 0.0f);
+		sim.update();
+		for (int f = 1; f <= 2 * 144; f++) {
+			clock.now = f * 2 * SECOND / (2 * 144);
+			sim.update();
+		}
+		assertEquals(2 * Simulation.DEFAULT_RATE, sim.getSteps());
+		assertEquals(0.0f, sim.getAlpha(), 0.001f);
+
+		// -2 * throttle per frame at 60 fps
+		float expected = -2.0f * THROTTLE * 60.0f * 2;
+		assertEquals(expected, sim.getDistance(1.0f), 0.01f);
+	}
+
+	@Test
+	public void longFramesAreClamped() {
+		FakeClock clock = new FakeClock();
+		Simulation sim = new Simulation(clock, Simulation.DEFAULT_RATE);
+		sim.update();
+
+		// a whole second in one frame - only 250 ms are caught up on
+		clock.now += SECOND;
+		assertEquals(Simulation.DEFAULT_RATE / 4, sim.update());
+		assertEquals(Simulation.DEFAULT_RATE / 4, sim.getSteps());
+		assertEquals(0.0f, sim.getAlpha(), 0.001f);
+
+		// below the clamp everything is caught up on
+		clock.now += SECOND / 5;
+		assertEquals(Simulation.DEFAULT_RATE / 5, sim.update());
+	}
+
+	@Test
+	public void resetClockSkipsThePause() {
+		FakeClock clock = new FakeClock();
+		Simulation sim = new Simulation(clock, Simulation.DEFAULT_RATE);
+		sim.update();
+		clock.now += SECOND / 10;
+		sim.update();
+		long steps = sim.getSteps();
+
+		sim.resetClock();
+		clock.now += 10 * SECOND;
+		assertEquals(0, sim.update());
+		assertEquals(steps, sim.getSteps());
+		assertEquals(0.0f, sim.getAlpha(), 0.001f);
+	}
+
+	@Test
+	public void alphaIsThePartOfTheNextStep() {
+		FakeClock clock = new FakeClock();
+		Simulation sim = new Simulation(clock, Simulation.DEFAULT_RATE);
+		long step = SECOND / Simulation.DEFAULT_RATE;
+		sim.setInput(THROTTLE, 0.0f);
+		sim.update();
+
+		clock.now += step / 2;
+		assertEquals(0, sim.update());
+		assertEquals(0.5f, sim.getAlpha(), 0.001f);
+
+		clock.now += step * 3 / 4;
+		assertEquals(1, sim.update());
+		assertEquals(0.25f, sim.getAlpha(), 0.001f);
+
+		// drawn a quarter of the way from the first state to the second
+		float perStep = -2.0f * THROTTLE * 60.0f / Simulation.DEFAULT_RATE;
+		assertEquals(perStep * 0.25f, sim.getDistance(sim.getAlpha()), 0.001f);
+	}
+
+	/*
+	 * Drives with a fixed throttle for the given time at a frame rate
+	 * @return the distance drawn in the last frame
+	 */
+	private static float drive(int fps, int seconds) {
+		FakeClock clock = new FakeClock();
+		Simulation sim = new Simulation(clock, Simulation.DEFAULT_RATE);
+		sim.setInput(THROTTLE, 0.0f);
+		sim.update();
+
+		int frames = fps * seconds;
+		for (int f = 1; f <= frames; f++) {
+			clock.now = f * seconds * SECOND / frames;
+			sim.update();
+		}
+		return sim.getDistance(sim.getAlpha());
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * VertexCacheOptimizer on a grid whose triangles and vertices were shuffled
+ * - about the worst order there is for the vertex cache.
+ */
+
+package graphics.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class VertexCacheOptimizerTest {
+	private static final int GRID = 16;		// quads per side
+	private static final int STRIDE = 8;
+
+	@Test
+	public void shuffledGridGetsCacheFriendly() {
+		Random random = new Random(42);
+		int numVertices = (GRID + 1) * (GRID + 1);
+		float[] vertices = gridVertices();
+		int[] indices = gridIndices();
+
+		// triangles in random order
+		int numTris = indices.length / 3;
+		for (int t = numTris - 1; t > 0; t--) {
+			int u = random.nextInt(t + 1);
+			for (int k = 0; k < 3; k++) {
+				int tmp = indices[t * 3 + k];
+				indices[t * 3 + k] = indices[u * 3 + k];
+				indices[u * 3 + k] = tmp;
+			}
+		}
+
+		// vertices in random order
+		int[] remap = new int[numVertices];
+		for (int i = 0; i < numVertices; i++)
+			remap[i] = i;
+		for (int i = numVertices - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = remap[i];
+			remap[i] = remap[j];
+			remap[j] = tmp;
+		}
+		float[] shuffled = new float[vertices.length];
+		for (int v = 0; v < numVertices; v++)
+			System.arraycopy(vertices, v * STRIDE, shuffled, remap[v] * STRIDE, STRIDE);
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = remap[indices[i]];
+
+		VertexCacheOptimizer vco = new VertexCacheOptimizer();
+		vco.optimize(shuffled, indices, STRIDE);
+		assertTrue("ACMR " + vco.getAcmrBefore() + " -> " + vco.getAcmrAfter(),
+				vco.getAcmrAfter() < vco.getAcmrBefore());
+		// 1.0 is perfect - a row of the grid doesn't quite fit the 16 entry FIFO
+		assertEquals("ATVR " + vco.getAtvrBefore() + " -> " + vco.getAtvrAfter(),
+				1.0f, vco.getAtvrAfter(), 0.25f);
+
+		// the same triangles, only in another order and with other numbers
+		assertEquals(indices.length, vco.get_indices().length);
+		assertEquals(shuffled.length, vco.get_vertices().length);
+		assertEquals(sortedTriangles(shuffled, indices), sortedTriangles(vco.get_vertices(), vco.get_indices()));
+	}
+
+	private static float[] gridVertices() {
+		float[] v = new float[(GRID + 1) * (GRID + 1) * STRIDE];
+		int o = 0;
+		for (int j = 0; j <= GRID; j++) {
+			for (int i = 0; i <= GRID; i++) {
+				v[o] = i;
+				v[o + 2] = j;
+				v[o + 4] = 1.0f;		// normal up
+				v[o + 6] = (float)i / GRID;
+				v[o + 7] = (float)j / GRID;
+				o += STRIDE;
+			}
+		}
+		return v;
+	}
+
+	private static int[] gridIndices() {
+		int[] ix = new int[GRID * GRID * 6];
+		int o = 0;
+		for (int j = 0; j < GRID; j++) {
+			for (int i = 0; i < GRID; i++) {
+				int a = j * (GRID + 1) + i, b = a + 1, c = a + GRID + 1, d = c + 1;
+				ix[o++] = a; ix[o++] = c; ix[o++] = b;
+				ix[o++] = b; ix[o++] = c; ix[o++] = d;
+			}
+		}
+		return ix;
+	}
+
+	/*
+	 * The triangles as position triples, sorted - independent of the order
+	 * of triangles and vertices
+	 */
+	private static List<String> sortedTriangles(float[] vertices, int[] indices) {
+		List<String> tris = new ArrayList<String>();
+		for (int t = 0; t < indices.length; t += 3) {
+			StringBuilder sb = new StringBuilder();
+			for (int k = 0; k < 3; k++) {
+				int v = indices[t + k] * STRIDE;
+				sb.append(vertices[v]).append(',').append(vertices[v + 2]).append(' ');
+			}
+			tris.add(sb.toString());
+		}
+		Collections.sort(tris);
+		return tris;
+	}
+}
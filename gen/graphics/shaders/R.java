@@ -15,7 +15,11 @@ public final class R {
     }
     public static final class id {
         public static final int cube=0x7f070007;
+        public static final int dynamic_resolution=0x7f07000d;
+        public static final int export_timings=0x7f07000b;
+        public static final int frame_rate=0x7f07000c;
         public static final int gouraud=0x7f070001;
+        public static final int hud=0x7f07000a;
         public static final int normal_map=0x7f070004;
         public static final int octahedron=0x7f070005;
         public static final int phong=0x7f070003;
@@ -47,14 +51,20 @@ public final class R {
         public static final int phong_ps=0x7f04000c;
         public static final int phong_vs=0x7f04000d;
         public static final int road=0x7f04000e;
-        public static final int robot=0x7f04000f;
-        public static final int tetrahedron=0x7f040010;
-        public static final int texturedcube=0x7f040011;
+        public static final int road_bin=0x7f04000f;
+        public static final int robot=0x7f040010;
+        public static final int tetrahedron=0x7f040011;
+        public static final int texturedcube=0x7f040012;
+        public static final int texturedcube_bin=0x7f040013;
     }
     public static final class string {
         public static final int app_name=0x7f050005;
         public static final int cube=0x7f050008;
+        public static final int dynamic_resolution=0x7f05000d;
+        public static final int export_timings=0x7f05000b;
+        public static final int frame_rate=0x7f05000c;
         public static final int gouraud=0x7f050001;
+        public static final int hud=0x7f05000a;
         public static final int normal=0x7f050003;
         public static final int octahedron=0x7f050006;
         public static final int phong=0x7f050002;
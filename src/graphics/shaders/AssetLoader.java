@@ -0,0 +1,370 @@
+/**
+ * Loads meshes and textures in the background.
+ *
+ * Parsing meshes and decoding images happens on a pool of worker threads.
+ * Finished CPU side data goes into a small bounded queue (workers wait when
+ * it is full) and the GL thread uploads from it in processUploads(), for at
+ * most a given time per frame, and calls back once the asset is resident.
+ * Meshes are resident once their vertices and indices are in GL buffers.
+ * Until then objects draw with a placeholder - a unit cube for meshes, a
+ * 1x1 white texture for textures.
+ *
+ * The loader loads whatever it is asked for - AssetRegistry makes sure an
+ * asset is only asked for once.
+ *
+ * Progress counts assets that are resident (or failed to load).
+ */
+
+package graphics.shaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+
+public class AssetLoader {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private static final String TAG = "AssetLoader";
+
+	// finished assets waiting for the GL thread
+	private static final int UPLOAD_QUEUE_SIZE = 4;
+
+	// Called on the GL thread whenever an asset becomes resident or fails
+	public interface Listener {
+		void onProgress(int done, int total);
+	}
+
+	// Called on the GL thread once a mesh is loaded
+	public interface MeshCallback {
+		void onMeshLoaded(Mesh[] lods);
+	}
+
+	// Called on the GL thread once a texture is uploaded
+	public interface TextureCallback {
+		void onTextureLoaded(int textureID);
+	}
+
+	// Work that has to run on the GL thread
+	private interface Upload {
+		void upload();
+	}
+
+	private Context _context;
+	private ExecutorService _workers;
+	private BlockingQueue<Upload> _uploads = new ArrayBlockingQueue<Upload>(UPLOAD_QUEUE_SIZE);
+	private Listener _listener;
+
+	// Progress
+	private AtomicInteger _total = new AtomicInteger();
+	private AtomicInteger _done = new AtomicInteger();
+	private AtomicInteger _failed = new AtomicInteger();
+
+	// GL side settings (GL thread only)
+	private boolean _uintIndices;
+	private int _placeholderTexture;
+
+	// Unit cube drawn until a mesh is resident
+	private static Mesh sPlaceholderMesh;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public AssetLoader(Context context) {
+		this(context, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	/**
+	 * @param context to read the raw resources from
+	 * @param threads number of worker threads
+	 */
+	public AssetLoader(Context context, int threads) {
+		_context = context;
+		_workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AssetLoader");
+				t.setDaemon(true);
+				t.setPriority(Thread.NORM_PRIORITY - 1);
+				return t;
+			}
+		});
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Loads a mesh (and generates its levels of detail)
+	 * @param meshID the raw resource
+	 * @param lods number of levels of detail including the full mesh
+	 * @param options import options
+	 * @param callback gets the levels on the GL thread, not called if loading fails
+	 */
+	public void loadMesh(final int meshID, final int lods, final MeshOptions options, final MeshCallback callback) {
+		_total.incrementAndGet();
+
+		_workers.execute(new Runnable() {
+			public void run() {
+				try {
+					Mesh mesh = Mesh.fromResource(meshID, _context, options);
+					final Mesh[] levels = lods > 1
+							? MeshSimplifier.buildLods(mesh, lods, 0.5f) : new Mesh[] {mesh};
+
+					queue(new Upload() {
+						public void upload() {
+							for (int i = 0; i < levels.length; i++) {
+								levels[i].setUintIndices(_uintIndices);
+								levels[i].upload();
+							}
+							callback.onMeshLoaded(levels);
+						}
+					});
+				} catch (Exception e) {
+					fail("mesh " + meshID, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Loads a texture. Textures have to be loaded again after the GL context was lost.
+	 * @param resID the image resource
+	 * @param callback gets the texture on the GL thread, not called if loading fails
+	 */
+	public void loadTexture(final int resID, final TextureCallback callback) {
+		_total.incrementAndGet();
+
+		_workers.execute(new Runnable() {
+			public void run() {
+				try {
+					final Bitmap bitmap = decode(resID);
+					queue(new Upload() {
+						public void upload() {
+							int id = uploadTexture(bitmap);
+							bitmap.recycle();
+							callback.onTextureLoaded(id);
+						}
+					});
+				} catch (Exception e) {
+					fail("texture " + resID, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Uploads finished assets - call once per frame on the GL thread.
+	 * At least one asset is uploaded per call so loading always moves on.
+	 * @param budgetNanos time to spend at most (roughly - one upload can't be split)
+	 * @return number of assets uploaded
+	 */
+	public int processUploads(long budgetNanos) {
+		long start = System.nanoTime();
+		int count = 0;
+		Upload u;
+		while ((u = _uploads.poll()) != null) {
+			u.upload();
+			count++;
+			progress();
+			if (System.nanoTime() - start >= budgetNanos)
+				break;
+		}
+		return count;
+	}
+
+	/**
+	 * Creates the GL side placeholders - call from onSurfaceCreated
+	 */
+	public void onSurfaceCreated() {
+		// the placeholder mesh keeps its arrays, so it can go up again after a lost context
+		Mesh placeholder = getPlaceholderMesh();
+		placeholder.forgetBuffers();
+		placeholder.upload();
+
+		int[] tex = new int[1];
+		GLES20.glGenTextures(1, tex, 0);
+		_placeholderTexture = tex[0];
+
+		ByteBuffer white = ByteBuffer.allocateDirect(4).order(ByteOrder.nativeOrder());
+		white.put((byte)0xFF).put((byte)0xFF).put((byte)0xFF).put((byte)0xFF);
+		white.position(0);
+
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, _placeholderTexture);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+		GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, 1, 1, 0,
+				GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, white);
+	}
+
+	/**
+	 * Stops the worker threads - assets still loading are dropped
+	 */
+	public void shutdown() {
+		_workers.shutdownNow();
+		_uploads.clear();
+	}
+
+	/*
+	 * Hands an upload to the GL thread, waiting while the queue is full
+	 */
+	private void queue(Upload upload) throws InterruptedException {
+		_uploads.put(upload);
+	}
+
+	private void fail(String what, Exception e) {
+		Log.e(TAG, "Could not load " + what + ": " + e.toString());
+		_failed.incrementAndGet();
+
+		// count it on the GL thread like everything else
+		try {
+			queue(new Upload() {
+				public void upload() {
+				}
+			});
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void progress() {
+		int done = _done.incrementAndGet();
+		if (_listener != null)
+			_listener.onProgress(done, _total.get());
+	}
+
+	/*
+	 * Decodes an image resource (worker thread)
+	 */
+	private Bitmap decode(int resID) throws IOException {
+		InputStream is = _context.getResources().openRawResource(resID);
+		Bitmap bitmap;
+		try {
+			bitmap = BitmapFactory.decodeStream(is);
+		} finally {
+			try {
+				is.close();
+			} catch(IOException e) {
+				// Ignore.
+			}
+		}
+		if (bitmap == null)
+			throw new IOException("Could not decode image");
+		return bitmap;
+	}
+
+	/*
+	 * Creates a texture from a decoded image (GL thread)
+	 */
+	private static int uploadTexture(Bitmap bitmap) {
+		int[] textures = new int[1];
+		GLES20.glGenTextures(1, textures, 0);
+
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+
+		// parameters
+		GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+				GLES20.GL_NEAREST);
+		GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
+				GLES20.GL_TEXTURE_MAG_FILTER,
+				GLES20.GL_LINEAR);
+
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
+				GLES20.GL_REPEAT);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
+				GLES20.GL_REPEAT);
+
+		// create it
+		GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+		return textures[0];
+	}
+
+	/**
+	 * A unit cube, shared by every object whose mesh isn't resident yet
+	 */
+	public static synchronized Mesh getPlaceholderMesh() {
+		if (sPlaceholderMesh == null) {
+			float[] v = new float[24 * 8];
+			int[] ix = new int[36];
+			int n = 0;
+			// one face per axis and side: normal along the axis, 4 corners
+			for (int axis = 0; axis < 3; axis++) {
+				for (int side = -1; side <= 1; side += 2) {
+					int u = (axis + 1) % 3, w = (axis + 2) % 3;
+					int first = n;
+					for (int c = 0; c < 4; c++) {
+						float cu = (c == 1 || c == 2) ? 1 : -1;
+						float cw = c >= 2 ? 1 : -1;
+						int o = n++ * 8;
+						v[o + axis] = side;
+						v[o + u] = cu * side;
+						v[o + w] = cw;
+						v[o + 3 + axis] = side;
+						v[o + 6] = (cu + 1) * 0.5f;
+						v[o + 7] = (cw + 1) * 0.5f;
+					}
+					int f = first / 4 * 6;
+					ix[f] = first; ix[f + 1] = first + 1; ix[f + 2] = first + 2;
+					ix[f + 3] = first; ix[f + 4] = first + 2; ix[f + 5] = first + 3;
+				}
+			}
+			MeshOptions options = new MeshOptions();
+			options.setOptimizeVertexCache(false);
+			options.setKeepCpuCopy(true);
+			sPlaceholderMesh = new Mesh(v, ix, true, options);
+		}
+		return sPlaceholderMesh;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return 0..1, resident (or failed) assets of all requested ones
+	 */
+	public float getProgress() {
+		int total = _total.get();
+		return total == 0 ? 1.0f : (float)_done.get() / total;
+	}
+
+	/**
+	 * @return true when every requested asset is resident (or failed)
+	 */
+	public boolean isDone() {
+		return _done.get() >= _total.get();
+	}
+
+	public int getNumFailed() {
+		return _failed.get();
+	}
+
+	public void setListener(Listener listener) {
+		_listener = listener;
+	}
+
+	/**
+	 * Tells the loader if the GPU supports 32 bit indices - GL thread only
+	 */
+	public void setUintIndices(boolean uintIndices) {
+		_uintIndices = uintIndices;
+	}
+
+	public int getPlaceholderTexture() {
+		return _placeholderTexture;
+	}
+}
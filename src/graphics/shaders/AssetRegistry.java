@@ -0,0 +1,315 @@
+/**
+ * Hands out shared meshes and textures.
+ *
+ * Meshes are keyed by raw resource id, number of levels of detail and
+ * import options, textures by raw resource id. The first object that asks
+ * for an asset starts loading it (through the AssetLoader), every other
+ * one shares the same data - ten cars cost one mesh and one set of
+ * textures. Each object counts as one reference. release() drops the
+ * references of an object and frees an asset as soon as nothing uses it.
+ *
+ * acquire/release can be called from any thread, but release() deletes
+ * textures and mesh buffers and so belongs on the GL thread.
+ *
+ * After the GL context is lost, meshes that kept their CPU copy go straight
+ * back into new buffers. The others are loaded again, like textures.
+ */
+
+package graphics.shaders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import android.opengl.GLES20;
+
+public class AssetRegistry {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private AssetLoader _loader;
+
+	// mesh key -> shared mesh
+	private HashMap<MeshKey, MeshEntry> _meshes = new HashMap<MeshKey, MeshEntry>();
+
+	// image resource -> shared texture
+	private HashMap<Integer, Texture> _textures = new HashMap<Integer, Texture>();
+
+	// bumped when the GL context is lost - uploads of older contexts are thrown away
+	private int _generation;
+	private boolean _surfaceCreated;
+
+	/*
+	 * What a mesh is loaded with
+	 */
+	private static class MeshKey {
+		final int meshID;
+		final int lods;
+		final MeshOptions options;
+
+		MeshKey(int meshID, int lods, MeshOptions options) {
+			this.meshID = meshID;
+			this.lods = lods;
+			this.options = options;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof MeshKey))
+				return false;
+			MeshKey k = (MeshKey)o;
+			return meshID == k.meshID && lods == k.lods && options.equals(k.options);
+		}
+
+		@Override
+		public int hashCode() {
+			return (meshID * 31 + lods) * 31 + options.hashCode();
+		}
+	}
+
+	/*
+	 * A shared mesh and the objects using it
+	 */
+	private static class MeshEntry {
+		Mesh[] lods;				// null while loading
+		ArrayList<Object3D> users = new ArrayList<Object3D>();
+	}
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public AssetRegistry(AssetLoader loader) {
+		_loader = loader;
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Gives an object its mesh - loaded the first time, shared after that.
+	 * The object draws the placeholder until the mesh is resident.
+	 * @param ob the object - its mesh id says what to load
+	 * @param lods number of levels of detail including the full mesh
+	 * @param options import options (don't change them afterwards)
+	 */
+	public synchronized void acquireMesh(Object3D ob, int lods, MeshOptions options) {
+		MeshKey key = new MeshKey(ob.getMeshID(), lods, options);
+		MeshEntry entry = _meshes.get(key);
+		if (entry == null) {
+			entry = new MeshEntry();
+			_meshes.put(key, entry);
+			loadMesh(key, entry);
+		}
+		entry.users.add(ob);
+
+		if (entry.lods != null) {
+			ob.setLods(entry.lods);
+			ob.setMeshResident(true);
+		}
+		else {
+			ob.setLods(new Mesh[] {AssetLoader.getPlaceholderMesh()});
+			ob.setMeshResident(false);
+		}
+	}
+
+	/**
+	 * Gives an object its textures - loaded the first time, shared after that
+	 * @param ob the object - its texture files say what to load
+	 */
+	public synchronized void acquireTextures(Object3D ob) {
+		int[] texFiles = ob.getTexFile();
+		Texture[] textures = new Texture[texFiles.length];
+		for (int i = 0; i < texFiles.length; i++) {
+			Texture t = _textures.get(texFiles[i]);
+			if (t == null) {
+				t = new Texture(texFiles[i]);
+				t.setId(_loader.getPlaceholderTexture());
+				_textures.put(texFiles[i], t);
+				loadTexture(t);
+			}
+			t.setRefs(t.getRefs() + 1);
+			textures[i] = t;
+		}
+		ob.setTextures(textures);
+	}
+
+	/**
+	 * Drops the mesh and texture references of an object. Assets nothing
+	 * uses any more are freed right away (GL thread only).
+	 */
+	public synchronized void release(Object3D ob) {
+		releaseMesh(ob);
+		releaseTextures(ob);
+	}
+
+	/**
+	 * Drops only the mesh reference of an object - e.g. once its triangles
+	 * were merged into a StaticBatch that draws with its textures (GL thread only)
+	 */
+	public synchronized void releaseMesh(Object3D ob) {
+		Iterator<MeshEntry> it = _meshes.values().iterator();
+		while (it.hasNext()) {
+			MeshEntry entry = it.next();
+			if (entry.users.remove(ob) && entry.users.isEmpty()) {
+				it.remove();
+				deleteBuffers(entry.lods);
+			}
+		}
+		ob.setLods(new Mesh[] {AssetLoader.getPlaceholderMesh()});
+		ob.setMeshResident(false);
+	}
+
+	/**
+	 * Drops only the texture references of an object (GL thread only)
+	 */
+	public synchronized void releaseTextures(Object3D ob) {
+		Texture[] textures = ob.getTextures();
+		for (int i = 0; i < textures.length; i++) {
+			Texture t = textures[i];
+			if (_textures.get(t.getResID()) != t)
+				continue;	// never acquired
+
+			t.setRefs(t.getRefs() - 1);
+			if (t.getRefs() == 0) {
+				_textures.remove(t.getResID());
+				if (t.isResident())
+					GLES20.glDeleteTextures(1, new int[] {t.getId()}, 0);
+				t.setResident(false);
+				t.setId(0);
+			}
+		}
+		// back to handles of its own
+		ob.setTexFile(ob.getTexFile());
+	}
+
+	/**
+	 * Call from onSurfaceCreated (after AssetLoader.onSurfaceCreated).
+	 * A new context has none of the old textures and buffers - they are
+	 * uploaded or loaded again.
+	 */
+	public synchronized void onSurfaceCreated() {
+		int placeholder = _loader.getPlaceholderTexture();
+		boolean contextLost = _surfaceCreated;
+		_surfaceCreated = true;
+		if (contextLost)
+			_generation++;
+
+		if (contextLost) {
+			for (Map.Entry<MeshKey, MeshEntry> e : _meshes.entrySet())
+				restoreMesh(e.getKey(), e.getValue());
+		}
+
+		for (Texture t : _textures.values()) {
+			if (contextLost) {
+				t.setResident(false);
+				t.setId(placeholder);
+				loadTexture(t);
+			}
+			else if (!t.isResident())
+				t.setId(placeholder);
+		}
+	}
+
+	/*
+	 * Puts a mesh of a lost context back - from its CPU copy if it has
+	 * one, from the file otherwise (its users draw the placeholder meanwhile)
+	 */
+	private void restoreMesh(MeshKey key, MeshEntry entry) {
+		if (entry.lods == null)
+			return;		// still loading - it goes up in the new context
+
+		boolean canUpload = true;
+		for (int i = 0; i < entry.lods.length; i++) {
+			entry.lods[i].forgetBuffers();
+			canUpload &= entry.lods[i].canUpload();
+		}
+
+		if (canUpload) {
+			for (int i = 0; i < entry.lods.length; i++)
+				entry.lods[i].upload();
+			return;
+		}
+
+		entry.lods = null;
+		Mesh[] placeholder = new Mesh[] {AssetLoader.getPlaceholderMesh()};
+		for (int i = 0; i < entry.users.size(); i++) {
+			entry.users.get(i).setLods(placeholder);
+			entry.users.get(i).setMeshResident(false);
+		}
+		loadMesh(key, entry);
+	}
+
+	private static void deleteBuffers(Mesh[] lods) {
+		if (lods == null)
+			return;
+		for (int i = 0; i < lods.length; i++)
+			lods[i].deleteBuffers();
+	}
+
+	private void loadMesh(final MeshKey key, final MeshEntry entry) {
+		_loader.loadMesh(key.meshID, key.lods, key.options, new AssetLoader.MeshCallback() {
+			public void onMeshLoaded(Mesh[] lods) {
+				synchronized (AssetRegistry.this) {
+					if (_meshes.get(key) != entry) {
+						deleteBuffers(lods);	// released while loading
+						return;
+					}
+
+					entry.lods = lods;
+					for (int i = 0; i < entry.users.size(); i++) {
+						entry.users.get(i).setLods(lods);
+						entry.users.get(i).setMeshResident(true);
+					}
+				}
+			}
+		});
+	}
+
+	private void loadTexture(final Texture t) {
+		final int generation = _generation;
+		_loader.loadTexture(t.getResID(), new AssetLoader.TextureCallback() {
+			public void onTextureLoaded(int textureID) {
+				synchronized (AssetRegistry.this) {
+					// released while loading, or from a lost context
+					if (_textures.get(t.getResID()) != t || generation != _generation) {
+						GLES20.glDeleteTextures(1, new int[] {textureID}, 0);
+						return;
+					}
+					t.setId(textureID);
+					t.setResident(true);
+				}
+			}
+		});
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return number of distinct meshes loaded or loading
+	 */
+	public synchronized int getNumMeshes() {
+		return _meshes.size();
+	}
+
+	/**
+	 * @return number of distinct textures loaded or loading
+	 */
+	public synchronized int getNumTextures() {
+		return _textures.size();
+	}
+
+	/**
+	 * @return number of objects sharing the mesh of ob
+	 */
+	public synchronized int getMeshRefs(Object3D ob) {
+		for (MeshEntry entry : _meshes.values()) {
+			if (entry.users.contains(ob))
+				return entry.users.size();
+		}
+		return 0;
+	}
+}
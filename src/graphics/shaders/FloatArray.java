@@ -0,0 +1,74 @@
+/**
+ * Growable array of primitive floats - avoids boxing every value into an
+ * ArrayList<Float> while a mesh is being built.
+ */
+
+package graphics.shaders;
+
+public class FloatArray {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private float[] _data;
+	private int _size;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public FloatArray() {
+		this(16);
+	}
+
+	public FloatArray(int capacity) {
+		_data = new float[Math.max(capacity, 1)];
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+	public void add(float value) {
+		if (_size == _data.length)
+			grow(_size + 1);
+		_data[_size++] = value;
+	}
+
+	public float get(int i) {
+		return _data[i];
+	}
+
+	public void set(int i, float value) {
+		_data[i] = value;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public void clear() {
+		_size = 0;
+	}
+
+	/**
+	 * Makes sure there is room for at least capacity elements
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > _data.length)
+			grow(capacity);
+	}
+
+	/**
+	 * @return a copy trimmed to the number of elements
+	 */
+	public float[] toArray() {
+		float[] copy = new float[_size];
+		System.arraycopy(_data, 0, copy, 0, _size);
+		return copy;
+	}
+
+	private void grow(int minCapacity) {
+		int capacity = Math.max(_data.length * 2, minCapacity);
+		float[] data = new float[capacity];
+		System.arraycopy(_data, 0, data, 0, _size);
+		_data = data;
+	}
+}
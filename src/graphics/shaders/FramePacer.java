@@ -0,0 +1,267 @@
+/**
+ * Paces the frames of the GL thread and stops drawing when nothing moves.
+ *
+ * waitForFrame() (start of a frame) sleeps until the next frame is due at
+ * the target rate, so frames come evenly instead of as fast as possible.
+ * A rate at or above the display's is left to vsync. The target is one of
+ * RATES - adaptive by default: it drops when frames keep missing it and
+ * rises again when the work of a frame would fit the faster rate easily.
+ *
+ * endFrame() (end of a frame) is told if the scene is animating. After a
+ * few frames without anything moving, the view is switched to
+ * RENDERMODE_WHEN_DIRTY - it is drawn again on requestRender() only, and
+ * goes back to continuous once a frame animates again.
+ *
+ * Jitter is the standard deviation of the frame intervals over the last
+ * WINDOW frames.
+ */
+
+package graphics.shaders;
+
+import android.opengl.GLSurfaceView;
+
+public class FramePacer {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	public static final int[] RATES = {30, 60, 90};
+
+	// frames the statistics and the adaptive rate look at
+	private static final int WINDOW = 60;
+
+	// adaptive rate: drop if frames come this much slower than the target,
+	// rise if a frame's work takes less than this part of the faster period
+	private static final float DROP_RATIO = 1.15f;
+	private static final float RISE_RATIO = 0.6f;
+
+	// frames without animation before drawing stops
+	private static final int IDLE_FRAMES = 3;
+
+	private GLSurfaceView _view;
+	private Simulation.Clock _clock;
+	private float _displayRate;
+
+	private int _fixedRate;			// 0 = adaptive
+	private volatile int _requestedRate = -1;	// from setTargetRate(), applied on the GL thread
+	private int _rate;				// current target
+	private long _period;			// ns
+	private long _next;				// when the next frame is due (0 = not pacing)
+
+	// this frame
+	private long _frameStart;
+
+	// last WINDOW frames
+	private float[] _intervals = new float[WINDOW];		// ms, start to start
+	private float[] _work = new float[WINDOW];			// ms, start to endFrame()
+	private int _count;
+	private long _lastStart;
+
+	// statistics of the last full window
+	private float _averageInterval, _jitter;
+	private int _missed;
+
+	// on-demand drawing
+	private int _idleFrames;
+	private volatile boolean _idle;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+
+	/**
+	 * @param view the view to switch between continuous and on-demand drawing, null for none
+	 * @param displayRate refresh rate of the display (Hz)
+	 */
+	public FramePacer(GLSurfaceView view, float displayRate) {
+		this(view, displayRate, Simulation.SYSTEM_CLOCK);
+	}
+
+	public FramePacer(GLSurfaceView view, float displayRate, Simulation.Clock clock) {
+		_view = view;
+		_displayRate = displayRate > 0.0f ? displayRate : 60.0f;
+		_clock = clock;
+		setRate(fastestRate());
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Waits until the next frame is due - call at the start of a frame (GL thread)
+	 * @return true if drawing was stopped before this frame - anything that
+	 * runs on the clock (the Simulation) should start again from now
+	 */
+	public boolean waitForFrame() {
+		boolean woke = _idle;
+		int requested = _requestedRate;
+		if (requested >= 0) {
+			_requestedRate = -1;
+			_fixedRate = requested;
+			setRate(requested != 0 ? requested : fastestRate());
+		}
+
+		long now = _clock.nanoTime();
+
+		// late by more than a frame (a hitch, or drawing was stopped) - start again from now
+		if (_next == 0 || now - _next > _period)
+			_next = now;
+		else if (now < _next && _rate < _displayRate * 0.95f) {
+			sleep(_next - now);
+			now = _clock.nanoTime();
+		}
+		_next += _period;
+
+		// the first frame after a break counts as on time
+		_intervals[_count % WINDOW] = _lastStart != 0 ? (now - _lastStart) / 1000000.0f : _period / 1000000.0f;
+		_lastStart = now;
+		_frameStart = now;
+		return woke;
+	}
+
+	/**
+	 * Ends a frame - call once it is drawn (GL thread)
+	 * @param animating true if anything moved, so the next frame will look different
+	 */
+	public void endFrame(boolean animating) {
+		// frames drawn on demand don't say anything about the pacing
+		if (!_idle) {
+			_work[_count % WINDOW] = (_clock.nanoTime() - _frameStart) / 1000000.0f;
+			if (++_count % WINDOW == 0)
+				evaluate();
+		}
+
+		if (animating) {
+			_idleFrames = 0;
+			if (_idle) {
+				_idle = false;
+				_next = 0;
+				_lastStart = 0;
+				if (_view != null)
+					_view.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+			}
+		}
+		else if (!_idle && ++_idleFrames >= IDLE_FRAMES) {
+			_idle = true;
+			_lastStart = 0;
+			if (_view != null)
+				_view.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+		}
+	}
+
+	/*
+	 * Statistics of the window - and a new target rate if adaptive
+	 */
+	private void evaluate() {
+		float sum = 0.0f, work = 0.0f;
+		for (int i = 0; i < WINDOW; i++) {
+			sum += _intervals[i];
+			work += _work[i];
+		}
+		float average = sum / WINDOW;
+		work /= WINDOW;
+
+		float periodMs = _period / 1000000.0f;
+		float variance = 0.0f;
+		int missed = 0;
+		for (int i = 0; i < WINDOW; i++) {
+			float d = _intervals[i] - average;
+			variance += d * d;
+			if (_intervals[i] > periodMs * 1.5f)
+				missed++;
+		}
+		_averageInterval = average;
+		_jitter = (float)Math.sqrt(variance / WINDOW);
+		_missed = missed;
+
+		if (_fixedRate != 0)
+			return;
+
+		int r = rateIndex(_rate);
+		if (average > periodMs * DROP_RATIO && r > 0)
+			setRate(RATES[r - 1]);
+		else if (r < RATES.length - 1 && RATES[r + 1] <= fastestRate()
+				&& work < 1000.0f / RATES[r + 1] * RISE_RATIO)
+			setRate(RATES[r + 1]);
+	}
+
+	private void setRate(int rate) {
+		_rate = rate;
+		_period = 1000000000L / rate;
+		_next = 0;
+	}
+
+	/*
+	 * The fastest rate the display can show
+	 */
+	private int fastestRate() {
+		int best = RATES[0];
+		for (int i = 0; i < RATES.length; i++) {
+			if (RATES[i] <= _displayRate + 1.0f)
+				best = RATES[i];
+		}
+		return best;
+	}
+
+	private static int rateIndex(int rate) {
+		for (int i = 0; i < RATES.length; i++) {
+			if (RATES[i] == rate)
+				return i;
+		}
+		return 0;
+	}
+
+	private static void sleep(long nanos) {
+		try {
+			Thread.sleep(nanos / 1000000L, (int)(nanos % 1000000L));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @param rate one of RATES, 0 to pick it adaptively (default)
+	 */
+	public void setTargetRate(int rate) {
+		_requestedRate = rate;
+	}
+
+	/**
+	 * @return the rate frames are paced to now (Hz)
+	 */
+	public int getRate() {
+		return _rate;
+	}
+
+	/**
+	 * @return true while drawing is stopped because nothing moves
+	 */
+	public boolean isIdle() {
+		return _idle;
+	}
+
+	/**
+	 * @return average frame interval over the last window (ms)
+	 */
+	public float getAverageInterval() {
+		return _averageInterval;
+	}
+
+	/**
+	 * @return standard deviation of the frame intervals over the last window (ms)
+	 */
+	public float getJitter() {
+		return _jitter;
+	}
+
+	/**
+	 * @return frames of the last window that came over 1.5 periods late
+	 */
+	public int getMissed() {
+		return _missed;
+	}
+}
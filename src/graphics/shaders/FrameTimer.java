@@ -0,0 +1,226 @@
+/**
+ * Times the phases of a frame and keeps the last frames in a ring buffer.
+ *
+ * The GL thread brackets each phase with begin()/end() (or hands in a time
+ * it measured itself with set()) and closes the frame with endFrame().
+ * A phase that is only measured on some frames is skip()ped on the others.
+ * Nothing is allocated while timing. Other threads read rolling statistics
+ * (min/avg/p95/p99 over the ring buffer) with getStats() or write the
+ * buffer out as CSV - one row per frame, one column per phase, in ms.
+ */
+
+package graphics.shaders;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+public class FrameTimer {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Statistics per phase - see getStats()
+	public static final int MIN = 0;
+	public static final int AVG = 1;
+	public static final int P95 = 2;
+	public static final int P99 = 3;
+	public static final int NUM_STATS = 4;
+
+	private String[] _names;
+	private int _numPhases;
+	private volatile boolean _enabled;
+
+	// This frame - start and accumulated time per phase (ns)
+	private long[] _starts;
+	private long[] _current;
+	private boolean[] _skipped;	// not measured this frame
+
+	// Last frames (ms) - frame f, phase p at (f % _size) * _numPhases + p,
+	// NaN where the phase was skipped
+	private float[] _history;
+	private int _size;
+	private int _frames;		// recorded so far
+
+	private float[] _sorted;	// scratch for the percentiles
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+
+	/**
+	 * @param names the phases, in column order
+	 * @param frames how many frames to keep
+	 */
+	public FrameTimer(String[] names, int frames) {
+		_names = names;
+		_numPhases = names.length;
+		_size = frames;
+		_starts = new long[_numPhases];
+		_current = new long[_numPhases];
+		_skipped = new boolean[_numPhases];
+		_history = new float[frames * _numPhases];
+		_sorted = new float[frames];
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Starts timing a phase
+	 */
+	public void begin(int phase) {
+		if (_enabled)
+			_starts[phase] = System.nanoTime();
+	}
+
+	/**
+	 * Stops timing a phase - a phase can run several times in a frame, the times add up
+	 */
+	public void end(int phase) {
+		if (_enabled)
+			_current[phase] += System.nanoTime() - _starts[phase];
+	}
+
+	/**
+	 * Sets the time of a phase measured elsewhere
+	 */
+	public void set(int phase, long nanos) {
+		if (_enabled) {
+			_current[phase] = nanos;
+			_skipped[phase] = false;
+		}
+	}
+
+	/**
+	 * Leaves a phase out of this frame - it wasn't measured. It is not in
+	 * the statistics and its CSV cell is empty.
+	 */
+	public void skip(int phase) {
+		if (_enabled)
+			_skipped[phase] = true;
+	}
+
+	/**
+	 * Moves this frame's times into the ring buffer
+	 */
+	public void endFrame() {
+		if (!_enabled)
+			return;
+
+		synchronized (this) {
+			int row = (_frames % _size) * _numPhases;
+			for (int p = 0; p < _numPhases; p++) {
+				_history[row + p] = _skipped[p] ? Float.NaN : _current[p] / 1000000.0f;
+				_current[p] = 0;
+				_skipped[p] = false;
+			}
+			_frames++;
+		}
+	}
+
+	/**
+	 * Forgets the recorded frames
+	 */
+	public synchronized void clear() {
+		_frames = 0;
+		for (int p = 0; p < _numPhases; p++) {
+			_current[p] = 0;
+			_skipped[p] = false;
+		}
+	}
+
+	/**
+	 * Statistics over the recorded frames, in ms - a phase only over the
+	 * frames it wasn't skipped in
+	 * @param stats NUM_STATS values per phase: stats[phase * NUM_STATS + MIN/AVG/P95/P99]
+	 * @return number of frames they are over
+	 */
+	public synchronized int getStats(float[] stats) {
+		int n = Math.min(_frames, _size);
+		for (int p = 0; p < _numPhases; p++) {
+			int o = p * NUM_STATS;
+
+			// the measured frames
+			int m = 0;
+			float sum = 0.0f;
+			for (int f = 0; f < n; f++) {
+				float ms = _history[f * _numPhases + p];
+				if (Float.isNaN(ms))
+					continue;
+				_sorted[m++] = ms;
+				sum += ms;
+			}
+			if (m == 0) {
+				stats[o + MIN] = stats[o + AVG] = stats[o + P95] = stats[o + P99] = 0.0f;
+				continue;
+			}
+			Arrays.sort(_sorted, 0, m);
+
+			stats[o + MIN] = _sorted[0];
+			stats[o + AVG] = sum / m;
+			stats[o + P95] = _sorted[percentile(m, 95)];
+			stats[o + P99] = _sorted[percentile(m, 99)];
+		}
+		return n;
+	}
+
+	// index of the p-th percentile of n sorted values (nearest rank)
+	private static int percentile(int n, int p) {
+		return Math.max(0, (n * p + 99) / 100 - 1);
+	}
+
+	/**
+	 * Writes the recorded frames, oldest first: a header with the phase
+	 * names, then one line per frame with the times in ms (empty where
+	 * the phase was skipped)
+	 */
+	public synchronized void writeCsv(Writer out) throws IOException {
+		out.write("frame");
+		for (int p = 0; p < _numPhases; p++)
+			out.write("," + _names[p]);
+		out.write("\n");
+
+		int n = Math.min(_frames, _size);
+		int first = _frames - n;
+		for (int f = first; f < _frames; f++) {
+			int row = (f % _size) * _numPhases;
+			out.write(Integer.toString(f));
+			for (int p = 0; p < _numPhases; p++) {
+				float ms = _history[row + p];
+				out.write(Float.isNaN(ms) ? "," : "," + ms);
+			}
+			out.write("\n");
+		}
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * Timing is off by default - begin()/end() cost nothing then
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	public int getNumPhases() {
+		return _numPhases;
+	}
+
+	public String getName(int phase) {
+		return _names[phase];
+	}
+
+	/**
+	 * @return number of frames the ring buffer holds
+	 */
+	public int getSize() {
+		return _size;
+	}
+}
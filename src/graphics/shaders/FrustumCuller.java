@@ -0,0 +1,184 @@
+/**
+ * View frustum culling of bounding spheres.
+ *
+ * The six planes are pulled straight out of the view-projection matrix
+ * (Gribb & Hartmann). Spheres are kept as a structure of arrays - x[], y[],
+ * z[], radius[] - so cull() is one tight loop over flat float arrays,
+ * which stays cheap for thousands of objects.
+ */
+
+package graphics.shaders;
+
+public class FrustumCuller {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// {a, b, c, d} per plane: left, right, bottom, top, near, far
+	// a point is inside if a*x + b*y + c*z + d >= 0 for every plane
+	private float[] _planes = new float[24];
+
+	// Spheres
+	private float[] _x, _y, _z, _radius;
+	private boolean[] _visible;
+	private int _count;
+
+	// Results of the last cull()
+	private int _numVisible;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public FrustumCuller() {
+		this(16);
+	}
+
+	public FrustumCuller(int capacity) {
+		_x = new float[capacity];
+		_y = new float[capacity];
+		_z = new float[capacity];
+		_radius = new float[capacity];
+		_visible = new boolean[capacity];
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Extracts the frustum planes
+	 * @param viewProj projection * view, column major (android.opengl.Matrix)
+	 */
+	public void setPlanes(float[] viewProj) {
+		float[] m = viewProj;
+		for (int i = 0; i < 3; i++) {
+			// row 3 +/- row i
+			int lo = i * 8;			// left, bottom, near
+			int hi = i * 8 + 4;		// right, top, far
+			_planes[lo]     = m[3] + m[i];
+			_planes[lo + 1] = m[7] + m[4 + i];
+			_planes[lo + 2] = m[11] + m[8 + i];
+			_planes[lo + 3] = m[15] + m[12 + i];
+			_planes[hi]     = m[3] - m[i];
+			_planes[hi + 1] = m[7] - m[4 + i];
+			_planes[hi + 2] = m[11] - m[8 + i];
+			_planes[hi + 3] = m[15] - m[12 + i];
+		}
+
+		// normalize so the distances are real distances
+		for (int p = 0; p < 24; p += 4) {
+			float len = (float)Math.sqrt(_planes[p] * _planes[p]
+					+ _planes[p + 1] * _planes[p + 1] + _planes[p + 2] * _planes[p + 2]);
+			if (len > 0.0f) {
+				_planes[p] /= len;
+				_planes[p + 1] /= len;
+				_planes[p + 2] /= len;
+				_planes[p + 3] /= len;
+			}
+		}
+	}
+
+	/**
+	 * Adds a sphere
+	 * @return its index for set()/isVisible()
+	 */
+	public int add(float x, float y, float z, float radius) {
+		if (_count == _x.length)
+			grow(_count * 2);
+		set(_count, x, y, z, radius);
+		return _count++;
+	}
+
+	/**
+	 * Moves sphere i
+	 */
+	public void set(int i, float x, float y, float z, float radius) {
+		_x[i] = x;
+		_y[i] = y;
+		_z[i] = z;
+		_radius[i] = radius;
+	}
+
+	/**
+	 * Removes all spheres
+	 */
+	public void clear() {
+		_count = 0;
+	}
+
+	/**
+	 * Tests every sphere against the planes
+	 * @return number of visible spheres
+	 */
+	public int cull() {
+		float[] pl = _planes;
+		float l0 = pl[0],  l1 = pl[1],  l2 = pl[2],  l3 = pl[3];
+		float r0 = pl[4],  r1 = pl[5],  r2 = pl[6],  r3 = pl[7];
+		float b0 = pl[8],  b1 = pl[9],  b2 = pl[10], b3 = pl[11];
+		float t0 = pl[12], t1 = pl[13], t2 = pl[14], t3 = pl[15];
+		float n0 = pl[16], n1 = pl[17], n2 = pl[18], n3 = pl[19];
+		float f0 = pl[20], f1 = pl[21], f2 = pl[22], f3 = pl[23];
+
+		float[] xs = _x, ys = _y, zs = _z, rs = _radius;
+		int visible = 0;
+		for (int i = 0; i < _count; i++) {
+			float x = xs[i], y = ys[i], z = zs[i], nr = -rs[i];
+			boolean in = l0 * x + l1 * y + l2 * z + l3 >= nr
+					&& r0 * x + r1 * y + r2 * z + r3 >= nr
+					&& b0 * x + b1 * y + b2 * z + b3 >= nr
+					&& t0 * x + t1 * y + t2 * z + t3 >= nr
+					&& n0 * x + n1 * y + n2 * z + n3 >= nr
+					&& f0 * x + f1 * y + f2 * z + f3 >= nr;
+			_visible[i] = in;
+			if (in)
+				visible++;
+		}
+		_numVisible = visible;
+		return visible;
+	}
+
+	private void grow(int capacity) {
+		float[] x = new float[capacity], y = new float[capacity];
+		float[] z = new float[capacity], r = new float[capacity];
+		boolean[] v = new boolean[capacity];
+		System.arraycopy(_x, 0, x, 0, _count);
+		System.arraycopy(_y, 0, y, 0, _count);
+		System.arraycopy(_z, 0, z, 0, _count);
+		System.arraycopy(_radius, 0, r, 0, _count);
+		System.arraycopy(_visible, 0, v, 0, _count);
+		_x = x;
+		_y = y;
+		_z = z;
+		_radius = r;
+		_visible = v;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return true if sphere i was inside (or touching) the frustum at the last cull()
+	 */
+	public boolean isVisible(int i) {
+		return _visible[i];
+	}
+
+	public int getCount() {
+		return _count;
+	}
+
+	public int getNumVisible() {
+		return _numVisible;
+	}
+
+	public int getNumCulled() {
+		return _count - _numVisible;
+	}
+
+	/**
+	 * @return the planes {a, b, c, d} x 6: left, right, bottom, top, near, far
+	 */
+	public float[] getPlanes() {
+		return _planes;
+	}
+}
@@ -0,0 +1,408 @@
+/**
+ * Shadows the GL state the renderer changes and drops calls that would
+ * not change anything.
+ *
+ * Every state change of the renderer goes through here: the program, the
+ * textures per unit, the bound buffers, the enabled attribute arrays and
+ * attribute pointers, depth/cull state and the uniforms of each shader
+ * (the last values are kept in the Shader). A call is only passed on to
+ * GLES20 if it sets something new. getIssued()/getElided() count both.
+ *
+ * GL calls made past the cache (e.g. buffer/texture uploads) make it lie -
+ * call invalidateBindings() after them, invalidate() in a new context.
+ */
+
+package graphics.shaders;
+
+import java.nio.Buffer;
+
+import android.opengl.GLES20;
+
+public class GLState {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// attribute locations that are tracked - GLES 2.0 guarantees 8
+	private static final int MAX_ATTRIBUTES = 16;
+	private static final int MAX_TEXTURE_UNITS = 8;
+
+	// uniforms bigger than this (arrays) are always sent
+	private static final int MAX_SHADOWED_FLOATS = 16;
+
+	// unknown - the next call goes through whatever it sets
+	private static final int UNKNOWN = -1;
+
+	private int _program;
+	private int _activeTexture;
+	private int[] _textures = new int[MAX_TEXTURE_UNITS];
+	private int _arrayBuffer, _elementBuffer;
+
+	// per attribute location: enabled (1/0), pointer (buffer, size, type, normalized, stride, offset)
+	private int[] _attribEnabled = new int[MAX_ATTRIBUTES];
+	private int[] _attribPointers = new int[MAX_ATTRIBUTES * 6];
+	private float[] _attribValues = new float[MAX_ATTRIBUTES * 4];	// glVertexAttrib4f
+
+	// capabilities (1/0) and depth/cull settings
+	private int _depthTest, _cullFace, _blend;
+	private int _depthFunc, _depthMask, _cullMode;
+
+	// Calls passed on / dropped
+	private int _issued, _elided;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public GLState() {
+		invalidate();
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Forgets everything - call in a new GL context
+	 */
+	public void invalidate() {
+		_program = UNKNOWN;
+		_depthTest = _cullFace = _blend = UNKNOWN;
+		_depthFunc = _depthMask = _cullMode = UNKNOWN;
+		for (int i = 0; i < MAX_ATTRIBUTES; i++) {
+			_attribEnabled[i] = UNKNOWN;
+			_attribValues[i * 4] = Float.NaN;
+		}
+		invalidateBindings();
+	}
+
+	/**
+	 * Forgets the bound textures and buffers and the attribute pointers -
+	 * call after GL calls past the cache (uploads, deleted buffers)
+	 */
+	public void invalidateBindings() {
+		_activeTexture = UNKNOWN;
+		for (int i = 0; i < MAX_TEXTURE_UNITS; i++)
+			_textures[i] = UNKNOWN;
+		_arrayBuffer = _elementBuffer = UNKNOWN;
+		for (int i = 0; i < MAX_ATTRIBUTES; i++)
+			_attribPointers[i * 6] = UNKNOWN;
+	}
+
+	public void useProgram(int program) {
+		if (program == _program) {
+			_elided++;
+			return;
+		}
+		_program = program;
+		GLES20.glUseProgram(program);
+		_issued++;
+	}
+
+	/**
+	 * Binds a 2D texture to a texture unit
+	 * @param unit 0, 1, ... (not GL_TEXTURE0 + unit)
+	 */
+	public void bindTexture(int unit, int texture) {
+		if (unit < MAX_TEXTURE_UNITS && _textures[unit] == texture) {
+			_elided++;
+			return;
+		}
+		activeTexture(unit);
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+		_issued++;
+		if (unit < MAX_TEXTURE_UNITS)
+			_textures[unit] = texture;
+	}
+
+	private void activeTexture(int unit) {
+		if (unit == _activeTexture) {
+			_elided++;
+			return;
+		}
+		_activeTexture = unit;
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+		_issued++;
+	}
+
+	/**
+	 * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER
+	 */
+	public void bindBuffer(int target, int buffer) {
+		boolean array = target == GLES20.GL_ARRAY_BUFFER;
+		if ((array ? _arrayBuffer : _elementBuffer) == buffer) {
+			_elided++;
+			return;
+		}
+		if (array)
+			_arrayBuffer = buffer;
+		else
+			_elementBuffer = buffer;
+		GLES20.glBindBuffer(target, buffer);
+		_issued++;
+	}
+
+	public void enableVertexAttribArray(int location) {
+		if (location < MAX_ATTRIBUTES && _attribEnabled[location] == 1) {
+			_elided++;
+			return;
+		}
+		GLES20.glEnableVertexAttribArray(location);
+		_issued++;
+		if (location < MAX_ATTRIBUTES)
+			_attribEnabled[location] = 1;
+	}
+
+	public void disableVertexAttribArray(int location) {
+		if (location < MAX_ATTRIBUTES && _attribEnabled[location] == 0) {
+			_elided++;
+			return;
+		}
+		GLES20.glDisableVertexAttribArray(location);
+		_issued++;
+		if (location < MAX_ATTRIBUTES)
+			_attribEnabled[location] = 0;
+	}
+
+	/**
+	 * Points an attribute into the bound array buffer
+	 */
+	public void vertexAttribPointer(int location, int size, int type, boolean normalized, int stride, int offset) {
+		int n = normalized ? 1 : 0;
+		if (location < MAX_ATTRIBUTES) {
+			int a = location * 6;
+			int[] p = _attribPointers;
+			if (p[a] == _arrayBuffer && _arrayBuffer != UNKNOWN && p[a + 1] == size && p[a + 2] == type
+					&& p[a + 3] == n && p[a + 4] == stride && p[a + 5] == offset) {
+				_elided++;
+				return;
+			}
+			p[a] = _arrayBuffer;
+			p[a + 1] = size;
+			p[a + 2] = type;
+			p[a + 3] = n;
+			p[a + 4] = stride;
+			p[a + 5] = offset;
+		}
+		GLES20.glVertexAttribPointer(location, size, type, normalized, stride, offset);
+		_issued++;
+	}
+
+	/**
+	 * Points an attribute at client memory - always sent, the memory may have changed
+	 */
+	public void vertexAttribPointer(int location, int size, int type, boolean normalized, int stride, Buffer data) {
+		if (location < MAX_ATTRIBUTES)
+			_attribPointers[location * 6] = UNKNOWN;
+		GLES20.glVertexAttribPointer(location, size, type, normalized, stride, data);
+		_issued++;
+	}
+
+	/**
+	 * Sets the value a disabled attribute array reads
+	 */
+	public void vertexAttrib4f(int location, float x, float y, float z, float w) {
+		if (location < MAX_ATTRIBUTES) {
+			int a = location * 4;
+			float[] v = _attribValues;
+			if (v[a] == x && v[a + 1] == y && v[a + 2] == z && v[a + 3] == w) {
+				_elided++;
+				return;
+			}
+			v[a] = x;
+			v[a + 1] = y;
+			v[a + 2] = z;
+			v[a + 3] = w;
+		}
+		GLES20.glVertexAttrib4f(location, x, y, z, w);
+		_issued++;
+	}
+
+	/**
+	 * glEnable/glDisable for GL_DEPTH_TEST, GL_CULL_FACE and GL_BLEND
+	 */
+	public void setEnabled(int cap, boolean enabled) {
+		int value = enabled ? 1 : 0;
+		int current = cap == GLES20.GL_DEPTH_TEST ? _depthTest
+				: cap == GLES20.GL_CULL_FACE ? _cullFace
+				: cap == GLES20.GL_BLEND ? _blend : UNKNOWN;
+		if (current == value) {
+			_elided++;
+			return;
+		}
+
+		if (cap == GLES20.GL_DEPTH_TEST)
+			_depthTest = value;
+		else if (cap == GLES20.GL_CULL_FACE)
+			_cullFace = value;
+		else if (cap == GLES20.GL_BLEND)
+			_blend = value;
+
+		if (enabled)
+			GLES20.glEnable(cap);
+		else
+			GLES20.glDisable(cap);
+		_issued++;
+	}
+
+	public void depthFunc(int func) {
+		if (func == _depthFunc) {
+			_elided++;
+			return;
+		}
+		_depthFunc = func;
+		GLES20.glDepthFunc(func);
+		_issued++;
+	}
+
+	public void depthMask(boolean mask) {
+		int value = mask ? 1 : 0;
+		if (value == _depthMask) {
+			_elided++;
+			return;
+		}
+		_depthMask = value;
+		GLES20.glDepthMask(mask);
+		_issued++;
+	}
+
+	public void cullFace(int mode) {
+		if (mode == _cullMode) {
+			_elided++;
+			return;
+		}
+		_cullMode = mode;
+		GLES20.glCullFace(mode);
+		_issued++;
+	}
+
+	/*
+	 * Uniforms - set on the program in use (useProgram() the shader first).
+	 * handle is the one from Shader.bindUniforms(); inactive uniforms are skipped.
+	 */
+
+	public void uniform1i(Shader shader, int handle, int x) {
+		int location = shader.getUniform(handle);
+		if (location < 0)
+			return;
+		float[] last = shader.getUniformValues(handle, 1);
+		if (last[0] == x) {
+			_elided++;
+			return;
+		}
+		last[0] = x;
+		GLES20.glUniform1i(location, x);
+		_issued++;
+	}
+
+	public void uniform1f(Shader shader, int handle, float x) {
+		int location = shader.getUniform(handle);
+		if (location < 0)
+			return;
+		float[] last = shader.getUniformValues(handle, 1);
+		if (last[0] == x) {
+			_elided++;
+			return;
+		}
+		last[0] = x;
+		GLES20.glUniform1f(location, x);
+		_issued++;
+	}
+
+	public void uniform3fv(Shader shader, int handle, float[] v, int offset) {
+		int location = shader.getUniform(handle);
+		if (location < 0)
+			return;
+		if (unchanged(shader, handle, v, offset, 3)) {
+			_elided++;
+			return;
+		}
+		GLES20.glUniform3fv(location, 1, v, offset);
+		_issued++;
+	}
+
+	public void uniform4fv(Shader shader, int handle, int count, float[] v, int offset) {
+		int location = shader.getUniform(handle);
+		if (location < 0)
+			return;
+		if (unchanged(shader, handle, v, offset, count * 4)) {
+			_elided++;
+			return;
+		}
+		GLES20.glUniform4fv(location, count, v, offset);
+		_issued++;
+	}
+
+	public void uniformMatrix4fv(Shader shader, int handle, float[] m, int offset) {
+		int location = shader.getUniform(handle);
+		if (location < 0)
+			return;
+		if (unchanged(shader, handle, m, offset, 16)) {
+			_elided++;
+			return;
+		}
+		GLES20.glUniformMatrix4fv(location, 1, false, m, offset);
+		_issued++;
+	}
+
+	/*
+	 * Compares with the last value of a uniform and keeps the new one.
+	 * Arrays too big to shadow always count as changed.
+	 */
+	private static boolean unchanged(Shader shader, int handle, float[] v, int offset, int n) {
+		if (n > MAX_SHADOWED_FLOATS) {
+			shader.getUniformValues(handle, 1)[0] = Float.NaN;
+			return false;
+		}
+
+		float[] last = shader.getUniformValues(handle, n);
+		boolean same = true;
+		for (int i = 0; i < n; i++) {
+			if (last[i] != v[offset + i]) {
+				same = false;
+				last[i] = v[offset + i];
+			}
+		}
+		return same;
+	}
+
+	/**
+	 * Starts counting again
+	 */
+	public void resetCounters() {
+		_issued = 0;
+		_elided = 0;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return calls passed on to GL since resetCounters()
+	 */
+	public int getIssued() {
+		return _issued;
+	}
+
+	/**
+	 * @return calls dropped because they would not change anything since resetCounters()
+	 */
+	public int getElided() {
+		return _elided;
+	}
+
+	public int getProgram() {
+		return _program;
+	}
+
+	public int getTexture(int unit) {
+		return _textures[unit];
+	}
+
+	public int getArrayBuffer() {
+		return _arrayBuffer;
+	}
+
+	public int getElementBuffer() {
+		return _elementBuffer;
+	}
+}
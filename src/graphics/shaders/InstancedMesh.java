@@ -0,0 +1,329 @@
+/**
+ * A mesh repeated for pseudo-instancing - GLES 2.0 has no instanced draws.
+ *
+ * The vertices and indices of every piece are copied up to getMaxInstances()
+ * times into one vertex and one index buffer. A second vertex buffer holds
+ * the number of the copy for each vertex (the aInstance attribute). The
+ * vertex shader, built with INSTANCED, moves each copy by its own entry of
+ * the uInstanceOffset uniform array, so one glDrawElements draws a whole
+ * run of instances. More instances than copies take one draw per run.
+ *
+ * The copies are made from the CPU copy of the mesh, which has to be kept
+ * (MeshOptions.setKeepCpuCopy). They are uploaded and dropped - after a lost
+ * context they are made again.
+ *
+ * The instances themselves are filled in every frame with addInstance().
+ */
+
+package graphics.shaders;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import android.opengl.GLES20;
+
+public class InstancedMesh {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private static final int FLOAT_SIZE_BYTES = 4;
+	private static final int SHORT_SIZE_BYTES = 2;
+	private static final int INT_SIZE_BYTES = 4;
+
+	/*
+	 * The copies of one piece
+	 */
+	private static class Part {
+		SubMesh source;
+		int copies;			// instances one draw can take
+		int indexType;
+		int vbo, ibo, instanceVbo;
+	}
+
+	private Mesh _mesh;
+	private int _maxInstances;
+	private Part[] _parts;
+	private boolean _uploaded;
+
+	// This frame's instances: {x, y, z, 0} offset and {r, g, b, a} tint each
+	private float[] _offsets;
+	private float[] _tints;
+	private int _numInstances;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+
+	/**
+	 * @param mesh the mesh to repeat - see canInstance()
+	 * @param maxInstances copies per draw (size of the uniform arrays in the shader)
+	 */
+	public InstancedMesh(Mesh mesh, int maxInstances) {
+		_mesh = mesh;
+		_maxInstances = maxInstances;
+		_offsets = new float[maxInstances * 4];
+		_tints = new float[maxInstances * 4];
+
+		SubMesh[] parts = mesh.getParts();
+		_parts = new Part[parts.length];
+		for (int p = 0; p < parts.length; p++) {
+			Part part = new Part();
+			part.source = parts[p];
+
+			// the copies have to fit 16 bit indices, unless the piece alone doesn't
+			int numVertices = parts[p].getNumVertices();
+			part.copies = Math.max(1, Math.min(maxInstances, SubMesh.MAX_SHORT_VERTICES / numVertices));
+			part.indexType = part.copies * numVertices <= SubMesh.MAX_SHORT_VERTICES
+					? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
+			_parts[p] = part;
+		}
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * @return true if the mesh still has the CPU copy the copies are made from
+	 */
+	public static boolean canInstance(Mesh mesh) {
+		SubMesh[] parts = mesh.getParts();
+		for (int p = 0; p < parts.length; p++) {
+			if (!parts[p].hasCpuCopy())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the copies and uploads them (GL thread)
+	 * @return false if the mesh has no CPU copy any more
+	 */
+	public boolean upload() {
+		if (_uploaded)
+			return true;
+		if (!canInstance(_mesh))
+			return false;
+
+		int[] buffers = new int[3];
+		for (int p = 0; p < _parts.length; p++) {
+			Part part = _parts[p];
+			SubMesh sm = part.source;
+			int numVertices = sm.getNumVertices();
+			int vertexBytes = numVertices * sm.getFormat().getStride();
+
+			GLES20.glGenBuffers(3, buffers, 0);
+			part.vbo = buffers[0];
+			part.ibo = buffers[1];
+			part.instanceVbo = buffers[2];
+
+			// vertices - the same bytes for every copy
+			ByteBuffer source = sm.getVertexData();
+			ByteBuffer vertices = ByteBuffer.allocateDirect(vertexBytes * part.copies).order(ByteOrder.nativeOrder());
+			for (int c = 0; c < part.copies; c++) {
+				source.limit(vertexBytes).position(0);
+				vertices.put(source);
+			}
+			source.clear();
+			vertices.position(0);
+
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, part.vbo);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertices.capacity(), vertices, GLES20.GL_STATIC_DRAW);
+
+			// the copy each vertex belongs to
+			FloatBuffer ids = ByteBuffer.allocateDirect(numVertices * part.copies
+					* FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+			for (int c = 0; c < part.copies; c++) {
+				for (int v = 0; v < numVertices; v++)
+					ids.put(c);
+			}
+			ids.position(0);
+
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, part.instanceVbo);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, ids.capacity() * FLOAT_SIZE_BYTES, ids, GLES20.GL_STATIC_DRAW);
+
+			// indices - each copy points at its own vertices
+			Buffer indices = copyIndices(sm, part.copies, part.indexType);
+			int indexBytes = sm.getNumIndices() * part.copies
+					* (part.indexType == GLES20.GL_UNSIGNED_INT ? INT_SIZE_BYTES : SHORT_SIZE_BYTES);
+
+			GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, part.ibo);
+			GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBytes, indices, GLES20.GL_STATIC_DRAW);
+		}
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		_uploaded = true;
+		return true;
+	}
+
+	/*
+	 * The indices of a piece, copies times - copy c adds c * numVertices
+	 */
+	private static Buffer copyIndices(SubMesh sm, int copies, int indexType) {
+		int numIndices = sm.getNumIndices();
+		int numVertices = sm.getNumVertices();
+		Buffer source = sm.get_ib();
+		int[] ix = new int[numIndices];
+		if (source instanceof ShortBuffer) {
+			ShortBuffer sb = (ShortBuffer)source;
+			for (int i = 0; i < numIndices; i++)
+				ix[i] = sb.get(i) & 0xFFFF;
+		}
+		else {
+			IntBuffer ib = (IntBuffer)source;
+			for (int i = 0; i < numIndices; i++)
+				ix[i] = ib.get(i);
+		}
+
+		if (indexType == GLES20.GL_UNSIGNED_INT) {
+			IntBuffer ib = ByteBuffer.allocateDirect(numIndices * copies
+					* INT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+			for (int c = 0; c < copies; c++) {
+				for (int i = 0; i < numIndices; i++)
+					ib.put(ix[i] + c * numVertices);
+			}
+			ib.position(0);
+			return ib;
+		}
+
+		ShortBuffer sb = ByteBuffer.allocateDirect(numIndices * copies
+				* SHORT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asShortBuffer();
+		for (int c = 0; c < copies; c++) {
+			for (int i = 0; i < numIndices; i++)
+				sb.put((short)(ix[i] + c * numVertices));
+		}
+		sb.position(0);
+		return sb;
+	}
+
+	/**
+	 * Deletes the buffers (GL thread)
+	 */
+	public void deleteBuffers() {
+		if (!_uploaded)
+			return;
+		for (int p = 0; p < _parts.length; p++) {
+			Part part = _parts[p];
+			GLES20.glDeleteBuffers(3, new int[] {part.vbo, part.ibo, part.instanceVbo}, 0);
+		}
+		forgetBuffers();
+	}
+
+	/**
+	 * Forgets the buffers after the GL context was lost
+	 */
+	public void forgetBuffers() {
+		for (int p = 0; p < _parts.length; p++)
+			_parts[p].vbo = _parts[p].ibo = _parts[p].instanceVbo = 0;
+		_uploaded = false;
+	}
+
+	/**
+	 * Removes all instances - call at the start of a frame
+	 */
+	public void clearInstances() {
+		_numInstances = 0;
+	}
+
+	/**
+	 * Adds an instance for this frame
+	 * @param pos where it is (the mesh is only translated)
+	 * @param tint rgba the color is multiplied with
+	 */
+	public void addInstance(float[] pos, float[] tint) {
+		if (_numInstances * 4 == _offsets.length) {
+			float[] offsets = new float[_offsets.length * 2];
+			float[] tints = new float[_tints.length * 2];
+			System.arraycopy(_offsets, 0, offsets, 0, _offsets.length);
+			System.arraycopy(_tints, 0, tints, 0, _tints.length);
+			_offsets = offsets;
+			_tints = tints;
+		}
+
+		int o = _numInstances++ * 4;
+		_offsets[o] = pos[0];
+		_offsets[o + 1] = pos[1];
+		_offsets[o + 2] = pos[2];
+		_offsets[o + 3] = 0.0f;
+		System.arraycopy(tint, 0, _tints, o, 4);
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return the mesh that is repeated
+	 */
+	public Mesh getMesh() {
+		return _mesh;
+	}
+
+	public int getMaxInstances() {
+		return _maxInstances;
+	}
+
+	public boolean isUploaded() {
+		return _uploaded;
+	}
+
+	public int getNumParts() {
+		return _parts.length;
+	}
+
+	/**
+	 * @return the piece of the mesh that part p repeats - format, position scale/bias
+	 */
+	public SubMesh getSource(int p) {
+		return _parts[p].source;
+	}
+
+	/**
+	 * @return instances one draw of part p can take
+	 */
+	public int getCopies(int p) {
+		return _parts[p].copies;
+	}
+
+	public int getIndexType(int p) {
+		return _parts[p].indexType;
+	}
+
+	public int getVbo(int p) {
+		return _parts[p].vbo;
+	}
+
+	public int getIbo(int p) {
+		return _parts[p].ibo;
+	}
+
+	/**
+	 * @return the buffer with the aInstance attribute (one float per vertex)
+	 */
+	public int getInstanceVbo(int p) {
+		return _parts[p].instanceVbo;
+	}
+
+	/**
+	 * @return {x, y, z, 0} per instance
+	 */
+	public float[] getOffsets() {
+		return _offsets;
+	}
+
+	/**
+	 * @return {r, g, b, a} per instance
+	 */
+	public float[] getTints() {
+		return _tints;
+	}
+
+	public int getNumInstances() {
+		return _numInstances;
+	}
+}
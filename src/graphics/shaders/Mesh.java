@@ -1,523 +1,999 @@
-/**
- * Defines a mesh for a 3D Object.
- * Mesh consists of triangular faces with normals
- */
-
-package graphics.shaders;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
-import java.util.ArrayList;
-import java.util.StringTokenizer;
-
-import android.content.Context;
-import android.util.Log;
-
-public class Mesh {
-	/*************************
-	 * PROPERTIES
-	 ************************/
-	int meshID; // The id of the stored mesh file (raw resource)
-
-	// Constants
-	private static final int FLOAT_SIZE_BYTES = 4;
-	private static final int SHORT_SIZE_BYTES = 2;
-	// the number of elements for each vertex
-	// [coordx, coordy, coordz, normalx, normaly, normalz....]
-	private final int VERTEX_ARRAY_SIZE = 8;
-	
-	// if tex coords exist
-	private final int VERTEX_TC_ARRAY_SIZE = 8;
-
-	// Vertices
-	private float _vertices[];
-
-	// Normals
-	private float _normals[];
-	
-	// Texture coordinates
-	private float _texCoords[];
-	
-	// Indices
-	private short _indices[];	
-	
-	// Buffers - index, vertex, normals and texcoords
-	private FloatBuffer _vb;
-	private FloatBuffer _nb;
-	private ShortBuffer _ib;
-	private FloatBuffer _tcb;
-
-	// Normals
-	private float[] _faceNormals;
-	private int[]   _surroundingFaces; // # of surrounding faces for each vertex
-
-	// Store the context
-	Context activity; 
-
-
-	/***************************
-	 * CONSTRUCTOR(S)
-	 **************************/
-	public Mesh() {
-
-	}
-
-	public Mesh(int meshID) {
-		this(meshID, null);
-	}
-
-	public Mesh(int meshID, Context activity) {
-		this.meshID = meshID;
-		this.activity = activity;
-
-		loadFile();
-	}
-
-	/**************************
-	 * OTHER METHODS
-	 *************************/
-
-	/**
-	 * Tries to load a file - either a .OBJ or a .OFF
-	 * @return 1 if file was loaded properly, 0 if not 
-	 */
-	private int loadFile() {
-		//Log.d("Start-loadFile", "Starting loadFile");
-		try {
-			// Read the file from the resource
-			//Log.d("loadFile", "Trying to buffer read");
-			InputStream inputStream = activity.getResources().openRawResource(meshID);
-
-			// setup Bufferedreader
-			BufferedReader in = new BufferedReader(new InputStreamReader(inputStream));
-
-			// Try to parse the file
-			//Log.d("loadFile", "Trying to buffer read2");
-			String str = in.readLine();
-
-			// Make sure it's a .OFF file
-			if (str.equals("OFF"))
-				loadOFF(in);
-			else if (str.equals("OBJ"))
-				loadOBJ(in);
-			
-			// Generate your vertex, normal and index buffers
-			// vertex buffer
-			_vb = ByteBuffer.allocateDirect(_vertices.length
-					* FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
-			_vb.put(_vertices);
-			_vb.position(0);
-
-			// index buffer
-			_ib = ByteBuffer.allocateDirect(_indices.length
-					* SHORT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asShortBuffer();
-			_ib.put(_indices);
-			_ib.position(0);
-
-			//Log.d("loadFile - size", _indices.length/3 + "," + _vertices.length);
-			// close the reader
-			in.close();
-			return 1;
-		} catch (Exception e) {
-			//Log.d("Error-LoadFile", "FOUND ERROR: " + e.toString());
-			return 0;
-		}
-	}
-
-	/**
-	 * Loads the .off file
-	 * 
-	 * OFF FORMAT:
-	 * ------------
-	 * Line 1
-		OFF
-	   Line 2
-		vertex_count face_count edge_count
-	   One line for each vertex:
-		x y z 
-		for vertex 0, 1, ..., vertex_count-1
-	   One line for each polygonal face:
-		n v1 v2 ... vn, 
-		the number of vertices, and the vertex indices for each face.
-	 * 
-	 * 
-	 * @return 1 if file was loaded properly, 0 if not 
-	 */
-	private int loadOFF(BufferedReader in) throws Exception {
-		try {
-			/* read # of vertices, faces, edges */
-			String str = in.readLine();
-			//Log.d("STR", str);
-
-			// tokenizer based on space
-			StringTokenizer tokenizer = new StringTokenizer(str);
-			int _numVertices = Integer.parseInt(tokenizer.nextToken());
-			int _numFaces = Integer.parseInt(tokenizer.nextToken());
-			//int _numEdges = Integer.parseInt(tokenizer.nextToken());
-
-			// read vertices - going to store vertex coordinates + normals
-			_vertices = new float[_numVertices * this.VERTEX_ARRAY_SIZE]; 
-			int i = 0;
-			for (i = 0; i < _numVertices; i++) {
-				str = in.readLine();
-
-				// tokenizer based on space
-				tokenizer = new StringTokenizer(str);
-				_vertices[i * this.VERTEX_ARRAY_SIZE]     = Float.parseFloat(tokenizer.nextToken());
-				_vertices[i * this.VERTEX_ARRAY_SIZE + 1] = Float.parseFloat(tokenizer.nextToken());
-				_vertices[i * this.VERTEX_ARRAY_SIZE + 2] = Float.parseFloat(tokenizer.nextToken());
-				//Log.d("Str vertices:", _vertices[i * this.VERTEX_ARRAY_SIZE + 0] + "," + _vertices[i * this.VERTEX_ARRAY_SIZE + 1] + "," + _vertices[i * this.VERTEX_ARRAY_SIZE + 2]);
-			}
-
-			//Log.d("ReadFile", "Read vertices");
-
-			// read faces and setup the index buffer
-			// array size
-			int arraySize = _numFaces * 3;
-			_indices = new short[arraySize];
-
-			// setup the normals
-			_normals = new float[_numVertices * this.VERTEX_ARRAY_SIZE]; 
-			_faceNormals = new float[arraySize]; // NEEDED?
-			_surroundingFaces = new int[_numVertices]; // # of surrounding faces for each vertex
-
-			// initialize to 0
-			for(int x = 0; x < _numVertices; x++) {
-				_vertices[x * this.VERTEX_ARRAY_SIZE + 3] = 0;
-				_vertices[x * this.VERTEX_ARRAY_SIZE + 4] = 0;
-				_vertices[x * this.VERTEX_ARRAY_SIZE + 5] = 0;
-				_surroundingFaces[x] = 0;
-			}
-
-			for (i = 0; i < _numFaces; i++) {
-				str = in.readLine();
-				// tokenizer based on space
-				tokenizer = new StringTokenizer(str);
-				// number of vertices for the face - make sure it's 3! [Might add support for 4 later]
-				short numV = Byte.parseByte(tokenizer.nextToken());
-				if (numV != 3)
-					throw new IOException("TEST!!");
-
-				short firstV = Short.parseShort(tokenizer.nextToken());
-				short secondV = Short.parseShort(tokenizer.nextToken());
-				short thirdV = Short.parseShort(tokenizer.nextToken());
-
-				// Store in the index buffer
-				_indices[i * 3 + 0] = firstV;
-				_indices[i * 3 + 1] = secondV;
-				_indices[i * 3 + 2] = thirdV;
-
-				// Calculate the face normal
-				setFaceNormal(i, firstV, secondV, thirdV);
-				
-			}
-
-			// finally calculate the exact vertex normals
-			for(int x = 0; x < _numVertices; x++) {
-				_vertices[x * this.VERTEX_ARRAY_SIZE + 3] /= _surroundingFaces[x];
-				_vertices[x * this.VERTEX_ARRAY_SIZE + 4] /= _surroundingFaces[x];
-				_vertices[x * this.VERTEX_ARRAY_SIZE + 5] /= _surroundingFaces[x];
-			}
-			
-			return 1;
-			
-		} catch (Exception e) {
-			throw e;
-		}
-	}
-
-	
-	/**
-	 * Loads an OBJ file
-	 * OBJ FORMAT:
-	 * ----------
-	   list of vertices:
-	     v x y z
-	   list of tex coords:
-	     vt u v
-	   list of normals:
-	     vn x y z
-	   list of faces
-	     f pos1/tc1/n1 pos2/tc2/n2 pos3/tc3/n3
-	 * 
-	 * @param in The BufferedReader object
-	 * @return true = file properly parsed
-	 * @throws Exception
-	 */
-	private int loadOBJ(BufferedReader in) throws Exception {
-		try {
-			//Log.d("In OBJ:", "First");
-			/* read vertices first */
-			String str = in.readLine();
-			StringTokenizer t = new StringTokenizer(str);
-			
-			String type = t.nextToken();
-			
-			// keep reading vertices
-			int numVertices = 0;
-			ArrayList<Float> vs = new ArrayList<Float>(100); // vertices
-			ArrayList<Float> tc = new ArrayList<Float>(100); // texture coords
-			ArrayList<Float> ns = new ArrayList<Float>(100); // normals
-			
-			while(type.equals("v")) {
-				//Log.d("In OBJ:", "V: " + str);
-				
-				vs.add(Float.parseFloat(t.nextToken())); 	// x
-				vs.add(Float.parseFloat(t.nextToken()));	// y
-				vs.add(Float.parseFloat(t.nextToken()));	// z
-			
-				// next vertex
-				str = in.readLine();
-				t = new StringTokenizer(str);
-				
-				type = t.nextToken();
-				numVertices++;
-			}
-			
-			// read tex coords
-			int numTexCoords = 0;
-			if (type.equals("vt")) {
-				while(type.equals("vt")) {
-					tc.add(Float.parseFloat(t.nextToken())); 	// u
-					tc.add(Float.parseFloat(t.nextToken()));	// v
-				
-					// next texture coord
-					str = in.readLine();
-					t = new StringTokenizer(str);
-					
-					type = t.nextToken();
-					numTexCoords++;
-				}
-			}
-			
-			// read vertex normals
-			if (type.equals("vn")) {
-				while(type.equals("vn")) {
-					ns.add(Float.parseFloat(t.nextToken())); 	// x
-					ns.add(Float.parseFloat(t.nextToken()));	// y
-					ns.add(Float.parseFloat(t.nextToken()));	// y
-					
-					// next texture coord
-					str = in.readLine();
-					t = new StringTokenizer(str);
-					
-					type = t.nextToken();
-				}
-			}
-			
-			
-			// create the vertex buffer
-			float[] _v = new float[numVertices * 3];
-			// create the normal buffer
-			float[] _n = new float[numVertices * 3];
-			// texcoord
-			_texCoords = new float[numTexCoords * 2];
-			
-			// copy over data - INEFFICIENT [SHOULD BE A BETTER WAY]
-			for(int i = 0; i < numVertices; i++) {
-				_v[i * 3] 	 = vs.get(i * 3);
-				_v[i * 3 + 1] = vs.get(i * 3 + 1);
-				_v[i * 3 + 2] = vs.get(i * 3 + 2);
-				
-				_n[i * 3 ] 	= -ns.get(i * 3);
-				_n[i * 3 + 1] = -ns.get(i * 3 + 1);
-				_n[i * 3 + 2] = -ns.get(i * 3 + 2);
-				
-				// transfer tex coordinates
-				if (i < numTexCoords) {
-					_texCoords[i * 2] 	  = tc.get(i * 2);
-					_texCoords[i * 2 + 1] = tc.get(i * 2 + 1);
-				}
-			}
-			
-			// now read all the faces
-			String fFace, sFace, tFace;
-			ArrayList<Float> mainBuffer = new ArrayList<Float>(numVertices * 6);
-			ArrayList<Short> indicesB = new ArrayList<Short>(numVertices * 3);
-			StringTokenizer lt, ft; // the face tokenizer
-			int numFaces = 0;
-			short index = 0;
-			if (type.equals("f")) {
-				while (type.equals("f")) {
-					// Each line: f v1/vt1/vn1 v2/vt2/vn2 
-					// Figure out all the vertices
-					for (int j = 0; j < 3; j++) {
-						fFace = t.nextToken();
-						// another tokenizer - based on /
-						ft = new StringTokenizer(fFace, "/");
-						int vert = Integer.parseInt(ft.nextToken()) - 1;
-						int texc = Integer.parseInt(ft.nextToken()) - 1;
-						int vertN = Integer.parseInt(ft.nextToken()) - 1;
-						
-						// Add to the index buffer
-						indicesB.add(index++);
-						
-						// Add all the vertex info
-						mainBuffer.add(_v[vert * 3]); 	 // x
-						mainBuffer.add(_v[vert * 3 + 1]);// y
-						mainBuffer.add(_v[vert * 3 + 2]);// z
-					
-						// add the normal info
-						mainBuffer.add(_n[vertN * 3]); 	  // x
-						mainBuffer.add(_n[vertN * 3 + 1]); // y
-						mainBuffer.add(_n[vertN * 3 + 2]); // z
-						
-						// add the tex coord info
-						mainBuffer.add(_texCoords[texc * 2]); 	  // u
-						mainBuffer.add(_texCoords[texc * 2 + 1]); // v
-						
-					}
-					
-					// next face
-					str = in.readLine();
-					if (str != null) {
-						t = new StringTokenizer(str);
-						numFaces++;
-						type = t.nextToken();
-					}
-					else
-						break;
-				}
-			}
-			
-			mainBuffer.trimToSize();
-			//Log.d("COMPLETED MAINBUFFER:", "" + mainBuffer.size());
-			
-			_vertices = new float[mainBuffer.size()];
-			
-			// copy over the mainbuffer to the vertex + normal array
-			for(int i = 0; i < mainBuffer.size(); i++)
-				_vertices[i] = mainBuffer.get(i);
-			
-			//Log.d("COMPLETED TRANSFER:", "VERTICES: " + _vertices.length);
-			
-			// copy over indices buffer
-			indicesB.trimToSize();
-			_indices = new short[indicesB.size()];
-			for(int i = 0; i < indicesB.size(); i++) {
-				_indices[i] = indicesB.get(i);
-			}
-			
-			return 1;
-			
-		} catch(Exception e) {
-			throw e;
-		}
-	}
-	/**
-	 * Sets the face normal of the i'th face
-	 * @param i the index of the face
-	 * @param firstV first vertex of the triangle
-	 * @param secondV second vertex of the triangle
-	 * @param thirdV third vertex of the triangle
-	 */
-	private void setFaceNormal(int i, int firstV, int secondV, int thirdV) {
-		// get coordinates of all the vertices
-		float v1[] = {_vertices[firstV * VERTEX_ARRAY_SIZE], _vertices[firstV * VERTEX_ARRAY_SIZE + 1], _vertices[firstV * VERTEX_ARRAY_SIZE + 2]};
-		float v2[] = {_vertices[secondV * VERTEX_ARRAY_SIZE], _vertices[secondV * VERTEX_ARRAY_SIZE + 1], _vertices[secondV * VERTEX_ARRAY_SIZE + 2]};
-		float v3[] = {_vertices[thirdV * VERTEX_ARRAY_SIZE], _vertices[thirdV * VERTEX_ARRAY_SIZE + 1], _vertices[thirdV * VERTEX_ARRAY_SIZE + 2]};
-
-		// calculate the cross product of v1-v2 and v2-v3
-		float v1v2[] = {v1[0]-v2[0], v1[1]-v2[1], v1[2]-v2[2]};
-		float v3v2[] = {v3[0]-v2[0], v3[1]-v2[1], v3[2]-v2[2]};
-		
-		float cp[] = crossProduct(v1v2, v3v2);
-
-		// try normalizing here
-		float sqrt = (float)Math.sqrt(cp[0] * cp[0] +
-				cp[1] * cp[1] +
-				cp[2] * cp[2]);
-
-		cp[0] /= sqrt;
-		cp[1] /= sqrt;
-		cp[2] /= sqrt;
-		
-		if (cp[0] == -0.0f)
-			cp[0] = 0.0f;
-		if (cp[1] == -0.0f)
-			cp[1] = 0.0f;
-		if (cp[2] == -0.0f)
-			cp[2] = 0.0f;
-		// end normalizing
-
-		// set the normal
-		_faceNormals[i * 3]     = cp[0];
-		_faceNormals[i * 3 + 1] = cp[1];
-		_faceNormals[i * 3 + 2] = cp[2];
-
-		_vertices[firstV * this.VERTEX_ARRAY_SIZE + 3] += _faceNormals[i * 3];
-		_vertices[firstV * this.VERTEX_ARRAY_SIZE + 4] += _faceNormals[i * 3 + 1];
-		_vertices[firstV * this.VERTEX_ARRAY_SIZE + 5] += _faceNormals[i * 3 + 2];
-		
-		_vertices[secondV * this.VERTEX_ARRAY_SIZE + 3] += _faceNormals[i * 3];
-		_vertices[secondV * this.VERTEX_ARRAY_SIZE + 4] += _faceNormals[i * 3 + 1];
-		_vertices[secondV * this.VERTEX_ARRAY_SIZE + 5] += _faceNormals[i * 3 + 2];
-
-		_vertices[thirdV * this.VERTEX_ARRAY_SIZE + 3] += _faceNormals[i * 3];
-		_vertices[thirdV * this.VERTEX_ARRAY_SIZE + 4] += _faceNormals[i * 3 + 1];
-		_vertices[thirdV * this.VERTEX_ARRAY_SIZE + 5] += _faceNormals[i * 3 + 2];
-
-		// increment # of faces around the vertex
-		_surroundingFaces[firstV]++;
-		_surroundingFaces[secondV]++;
-		_surroundingFaces[thirdV]++;
-	}
-
-	/**
-	 * Calculates the cross product of two 3d vectors
-	 */
-	public float[] crossProduct(float[] v0, float[] v1)
-	{
-		float crossProduct[] = new float[3];
-
-		crossProduct[0] = v0[1] * v1[2] - v0[2] * v1[1];
-		crossProduct[1] = v0[2] * v1[0] - v0[0] * v1[2];
-		crossProduct[2] = v0[0] * v1[1] - v0[1] * v1[0];
-
-		return crossProduct;
-	}
-
-
-
-	/***************************
-	 * GET/SET
-	 *************************/
-
-	public int getMeshID() {
-		return meshID;
-	}
-
-	public void setMeshID(int meshID) {
-		this.meshID = meshID;
-	}
-
-	public float[] get_vertices() {
-		return _vertices;
-	}
-
-	public void set_vertices(float[] _vertices) {
-		this._vertices = _vertices;
-	}
-	public short[] get_indices() {
-		return _indices;
-	}
-
-	public FloatBuffer get_vb() {
-		return this._vb;
-	}
-	
-	public FloatBuffer get_nb() {
-		return this._nb;
-	}
-	
-	public ShortBuffer get_ib() {
-		return this._ib;
-	}
-
-}
+/**
+ * Defines a mesh for a 3D Object.
+ * Mesh consists of triangular faces with normals
+ */
+
+package graphics.shaders;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.opengl.GLES20;
+import android.util.Log;
+
+public class Mesh {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	int meshID; // The id of the stored mesh file (raw resource)
+
+	// Constants
+	private static final int FLOAT_SIZE_BYTES = 4;
+	private static final int SHORT_SIZE_BYTES = 2;
+	// the number of elements for each vertex
+	// [coordx, coordy, coordz, normalx, normaly, normalz....]
+	private final int VERTEX_ARRAY_SIZE = 8;
+	
+	// if tex coords exist
+	private final int VERTEX_TC_ARRAY_SIZE = 8;
+
+	// [tx, ty, tz, w] per vertex
+	private static final int TANGENT_SIZE = 4;
+
+	// Vertices
+	private float _vertices[];
+
+	// Normals
+	private float _normals[];
+	
+	// Texture coordinates
+	private float _texCoords[];
+
+	// Tangents for normal mapping - {x, y, z, handedness} per vertex, null without tex coords
+	private float _tangents[];
+	
+	// Indices
+	private int _indices[];	
+	
+	// Buffers - index, vertex, normals and texcoords
+	private FloatBuffer _vb;
+	private FloatBuffer _nb;
+	private ShortBuffer _ib;
+	private FloatBuffer _tcb;
+
+	// Materials (OBJ usemtl) - the triangles of material m are the indices
+	// _materialStarts[m] .. _materialStarts[m + 1]. null = one material
+	private String[] _materials;
+	private int[] _materialStarts;
+
+	// The drawable pieces - one per material, more if the mesh is too big for 16 bit indices
+	private SubMesh[] _parts;
+	private boolean _uintIndices;	// GL_UNSIGNED_INT indices allowed?
+	private boolean _hasTexCoords;	// false for .OFF - left out of packed vertices
+	private boolean _uploaded;		// parts are in GL buffers
+	private int _vertexCount;		// getNumVertices() while there are no arrays
+	private MeshFile _meshFile;		// binary mesh the arrays are read from when asked for
+
+	// Normals
+	private float[] _faceNormals;	// one per face
+
+	// Bounding volumes in model space
+	private float[] _bounds = new float[6];	// {minx, miny, minz, maxx, maxy, maxz}
+	private float[] _sphere = new float[4];	// {x, y, z, radius}
+
+	// Import options
+	private MeshOptions _options;
+
+	// Vertex cache statistics (ACMR before/after the optimisation, 0 if not run)
+	private float _acmrBefore, _acmrAfter;
+	private int _verticesBeforeWeld;
+
+	// Store the context
+	Context activity; 
+
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public Mesh() {
+
+	}
+
+	public Mesh(int meshID) {
+		this(meshID, null);
+	}
+
+	public Mesh(int meshID, Context activity) {
+		this(meshID, activity, new MeshOptions());
+	}
+
+	public Mesh(int meshID, Context activity, MeshOptions options) {
+		this.meshID = meshID;
+		this.activity = activity;
+		this._options = options;
+
+		loadFile();
+	}
+
+	// Loads from a stream directly - used by the offline MeshConverter
+	public Mesh(InputStream inputStream) throws IOException {
+		this(inputStream, new MeshOptions());
+	}
+
+	public Mesh(InputStream inputStream, MeshOptions options) throws IOException {
+		this._options = options;
+		load(inputStream);
+	}
+
+	// Builds a mesh from generated vertex/index arrays (e.g. a simplified level of detail)
+	public Mesh(float[] vertices, int[] indices, boolean hasTexCoords, MeshOptions options) {
+		this(vertices, indices, hasTexCoords, options, null, null);
+	}
+
+	// Same with materials - see getMaterialStarts()
+	public Mesh(float[] vertices, int[] indices, boolean hasTexCoords, MeshOptions options,
+			String[] materials, int[] materialStarts) {
+		this._options = options;
+		this._vertices = vertices;
+		this._indices = indices;
+		this._hasTexCoords = hasTexCoords;
+		this._materials = materials;
+		this._materialStarts = materialStarts;
+
+		if (_options.isOptimizeVertexCache())
+			optimizeVertexCache();
+		buildParts();
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Loads a mesh from a raw resource. Unlike the constructors this reports
+	 * errors instead of leaving the mesh empty.
+	 * @param meshID the raw resource
+	 * @param activity the context to read it from
+	 * @param options import options
+	 */
+	public static Mesh fromResource(int meshID, Context activity, MeshOptions options) throws IOException {
+		Mesh mesh = new Mesh();
+		mesh.meshID = meshID;
+		mesh.activity = activity;
+		mesh._options = options;
+		mesh.loadResource();
+		return mesh;
+	}
+
+	/**
+	 * Tries to load a file - either a .OBJ, a .OFF or a binary mesh
+	 * @return 1 if file was loaded properly, 0 if not 
+	 */
+	private int loadFile() {
+		//Log.d("Start-loadFile", "Starting loadFile");
+		try {
+			loadResource();
+			return 1;
+		} catch (Exception e) {
+			//Log.d("Error-LoadFile", "FOUND ERROR: " + e.toString());
+			return 0;
+		}
+	}
+
+	/**
+	 * Loads the raw resource meshID
+	 */
+	private void loadResource() throws IOException {
+		// binary meshes stored uncompressed can be mapped without any copying
+		if (loadMapped())
+			return;
+
+		// Read the file from the resource
+		//Log.d("loadFile", "Trying to buffer read");
+		InputStream inputStream = activity.getResources().openRawResource(meshID);
+		load(inputStream);
+
+		if (_verticesBeforeWeld > 0)
+			Log.d("Mesh", "Welded " + _verticesBeforeWeld + " -> " + getNumVertices() + " vertices");
+		if (_acmrBefore > 0)
+			Log.d("Mesh", "Vertex cache ACMR " + _acmrBefore + " -> " + _acmrAfter);
+	}
+
+	/**
+	 * Tries to memory map the resource as a binary mesh
+	 * @return true if the mesh was mapped
+	 */
+	private boolean loadMapped() throws IOException {
+		AssetFileDescriptor afd;
+		try {
+			afd = activity.getResources().openRawResourceFd(meshID);
+		} catch (Resources.NotFoundException e) {
+			// compressed in the apk - has to be streamed
+			return false;
+		}
+		if (afd == null)
+			return false;
+
+		try {
+			MeshFile mf = MeshFile.map(afd);
+			if (mf == null)
+				return false;
+			setMeshFile(mf);
+			return true;
+		} finally {
+			afd.close();
+		}
+	}
+
+	/**
+	 * Loads a mesh from a stream - either a .OBJ, a .OFF or a binary mesh
+	 * @param inputStream the file
+	 * @return 1 if file was loaded properly
+	 */
+	int load(InputStream inputStream) throws IOException {
+		BufferedInputStream bin = new BufferedInputStream(inputStream);
+		try {
+			// binary mesh? - check the magic number
+			byte[] magic = new byte[4];
+			bin.mark(magic.length);
+			int read = bin.read(magic);
+			bin.reset();
+
+			if (read == magic.length && MeshFile.isMeshFile(magic)) {
+				setMeshFile(MeshFile.read(bin));
+				return 1;
+			}
+
+			// setup the scanner
+			MeshScanner in = new MeshScanner(bin);
+
+			// Try to parse the file
+			//Log.d("loadFile", "Trying to buffer read2");
+			long type = in.nextKeyword();
+
+			// Make sure it's a .OFF file
+			if (type == MeshScanner.KW_OFF) {
+				in.skipLine();
+				loadOFF(in);
+			}
+			else if (type == MeshScanner.KW_OBJ) {
+				in.skipLine();
+				loadOBJ(in, in.nextKeyword());
+			}
+			else if (isOBJRecord(type))
+				loadOBJ(in, type);	// plain exporter output, no "OBJ" line
+			else
+				throw new IOException("Unknown mesh format");
+			
+			// Reorder for the vertex cache
+			if (_options.isOptimizeVertexCache())
+				optimizeVertexCache();
+
+			// Generate your vertex and index buffers
+			buildParts();
+
+			//Log.d("loadFile - size", _indices.length/3 + "," + _vertices.length);
+			return 1;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Could not parse mesh: " + e.toString());
+		} finally {
+			// close the reader
+			bin.close();
+		}
+	}
+
+	/**
+	 * Takes over the buffers of a binary mesh - no parsing, the data is
+	 * already laid out the way the Renderer wants it
+	 * @param mf the binary mesh
+	 */
+	private void setMeshFile(MeshFile mf) throws IOException {
+		_hasTexCoords = mf.hasAttribute(MeshFile.ATTRIB_TEXCOORD);
+		boolean hasTangents = mf.hasAttribute(MeshFile.ATTRIB_TANGENT);
+		VertexFormat format = hasTangents ? VertexFormat.FLOAT_TANGENT : VertexFormat.FLOAT;
+		if (mf.getStrideBytes() != format.getStride())
+			throw new IOException("Unsupported vertex layout: stride " + mf.getStrideBytes());
+
+		_materials = mf.getMaterials();
+		_materialStarts = mf.getMaterialStarts();
+		_vertexCount = mf.getVertexCount();
+		_meshFile = mf;
+
+		// 32 bit indices, packed vertices, tangents the file doesn't have or several
+		// materials - pieces have to be built from the arrays
+		ShortBuffer ib = mf.get_ib();
+		if (ib == null || _options.isPackVertices() || (wantsTangents() && !hasTangents)
+				|| (_materials != null && _materials.length > 1)) {
+			readArrays();
+			buildParts();
+			return;
+		}
+
+		// draw straight from the file's buffers - the arrays are only read if asked for
+		SubMesh sm = new SubMesh(mf.getVertexData(), format, ib, GLES20.GL_UNSIGNED_SHORT,
+				mf.getIndexCount(), _vertexCount);
+		sm.computeBounds(mf.get_vb(), _vertexCount, format.getStride() / FLOAT_SIZE_BYTES);
+		setParts(new SubMesh[] {sm});
+
+		if (_options.isKeepCpuCopy())
+			readArrays();
+	}
+
+	/**
+	 * Copies the vertices, tangents and indices of the binary mesh into
+	 * the arrays, if that hasn't happened yet
+	 */
+	private void readArrays() {
+		if (_vertices != null || _meshFile == null)
+			return;
+
+		MeshFile mf = _meshFile;
+		FloatBuffer vb = mf.get_vb();
+		int numVertices = mf.getVertexCount();
+		float[] vertices = new float[numVertices * VERTEX_ARRAY_SIZE];
+		if (mf.hasAttribute(MeshFile.ATTRIB_TANGENT)) {
+			_tangents = new float[numVertices * TANGENT_SIZE];
+			for (int i = 0; i < numVertices; i++) {
+				vb.get(vertices, i * VERTEX_ARRAY_SIZE, VERTEX_ARRAY_SIZE);
+				vb.get(_tangents, i * TANGENT_SIZE, TANGENT_SIZE);
+			}
+		}
+		else
+			vb.get(vertices);
+		vb.position(0);
+
+		_indices = new int[mf.getIndexCount()];
+		ShortBuffer ib = mf.get_ib();
+		if (ib == null) {
+			mf.get_ib32().get(_indices);
+			mf.get_ib32().position(0);
+		}
+		else {
+			for (int i = 0; i < _indices.length; i++)
+				_indices[i] = ib.get(i) & 0xFFFF;
+		}
+		_vertices = vertices;
+	}
+
+	/**
+	 * Reorders triangles and vertices for the post-transform vertex cache
+	 */
+	private void optimizeVertexCache() {
+		VertexCacheOptimizer vco = new VertexCacheOptimizer();
+		vco.optimize(_vertices, _indices, VERTEX_ARRAY_SIZE, _materialStarts);
+		_acmrBefore = vco.getAcmrBefore();
+		_acmrAfter = vco.getAcmrAfter();
+
+		// tiny meshes can't get any better - keep the file order then
+		if (_acmrAfter < _acmrBefore) {
+			_vertices = vco.get_vertices();
+			_indices = vco.get_indices();
+		}
+		else
+			_acmrAfter = _acmrBefore;
+	}
+
+	/**
+	 * Builds the drawable pieces from the vertex and index arrays
+	 */
+	private void buildParts() {
+		if (_tangents == null && wantsTangents())
+			generateTangents();
+		if (_materials == null || _materials.length <= 1) {
+			setParts(SubMesh.build(_vertices, _tangents, _indices, VERTEX_ARRAY_SIZE, _uintIndices, _options, _hasTexCoords));
+			return;
+		}
+
+		// one set of pieces per material
+		ArrayList<SubMesh> parts = new ArrayList<SubMesh>();
+		for (int m = 0; m < _materials.length; m++) {
+			if (_materialStarts[m] == _materialStarts[m + 1])
+				continue;	// all its triangles were dropped
+			SubMesh[] pieces = SubMesh.build(_vertices, _tangents, _indices, _materialStarts[m],
+					_materialStarts[m + 1], VERTEX_ARRAY_SIZE, _uintIndices, _options, _hasTexCoords);
+			for (int i = 0; i < pieces.length; i++) {
+				pieces[i].setMaterial(m);
+				parts.add(pieces[i]);
+			}
+		}
+		setParts(parts.toArray(new SubMesh[parts.size()]));
+	}
+
+	private boolean wantsTangents() {
+		return _hasTexCoords && _options.isGenerateTangents();
+	}
+
+	/**
+	 * Calculates the tangents from the tex coords. Vertices on mirrored
+	 * tex coord seams are split, so this can add vertices.
+	 */
+	private void generateTangents() {
+		TangentGenerator tg = new TangentGenerator();
+		tg.generate(_vertices, _indices, VERTEX_ARRAY_SIZE);
+		_vertices = tg.get_vertices();
+		_indices = tg.get_indices();
+		_tangents = tg.getTangents();
+	}
+
+	private void setParts(SubMesh[] parts) {
+		_parts = parts;
+
+		// single 16 bit float piece - also available through get_vb()/get_ib()
+		if (parts.length == 1 && parts[0].getIndexType() == GLES20.GL_UNSIGNED_SHORT
+				&& parts[0].getFormat() == VertexFormat.FLOAT) {
+			_vb = parts[0].get_vb();
+			_ib = (ShortBuffer)parts[0].get_ib();
+		}
+		else {
+			_vb = null;
+			_ib = null;
+		}
+
+		computeBounds();
+	}
+
+	/**
+	 * Box around all pieces, and a sphere around the box center that
+	 * holds every vertex (tighter than the box corners)
+	 */
+	private void computeBounds() {
+		_bounds[0] = _bounds[1] = _bounds[2] = Float.MAX_VALUE;
+		_bounds[3] = _bounds[4] = _bounds[5] = -Float.MAX_VALUE;
+		for (int p = 0; p < _parts.length; p++) {
+			float[] b = _parts[p].getBounds();
+			for (int k = 0; k < 3; k++) {
+				_bounds[k] = Math.min(_bounds[k], b[k]);
+				_bounds[k + 3] = Math.max(_bounds[k + 3], b[k + 3]);
+			}
+		}
+
+		float cx = (_bounds[0] + _bounds[3]) * 0.5f;
+		float cy = (_bounds[1] + _bounds[4]) * 0.5f;
+		float cz = (_bounds[2] + _bounds[5]) * 0.5f;
+		float r2 = 0.0f;
+		if (_vertices != null) {
+			for (int i = 0; i < _vertices.length; i += VERTEX_ARRAY_SIZE) {
+				float dx = _vertices[i] - cx, dy = _vertices[i + 1] - cy, dz = _vertices[i + 2] - cz;
+				r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+			}
+		}
+		else if (_meshFile != null) {
+			FloatBuffer vb = _meshFile.get_vb();
+			int stride = _meshFile.getStrideBytes() / FLOAT_SIZE_BYTES;
+			for (int i = 0; i < _vertexCount * stride; i += stride) {
+				float dx = vb.get(i) - cx, dy = vb.get(i + 1) - cy, dz = vb.get(i + 2) - cz;
+				r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+			}
+		}
+		else {
+			float dx = _bounds[3] - cx, dy = _bounds[4] - cy, dz = _bounds[5] - cz;
+			r2 = dx * dx + dy * dy + dz * dz;
+		}
+
+		_sphere[0] = cx;
+		_sphere[1] = cy;
+		_sphere[2] = cz;
+		_sphere[3] = (float)Math.sqrt(r2);
+	}
+
+	/**
+	 * Moves the pieces into GL buffer objects (GL thread). Unless the options
+	 * keep the CPU copy, the arrays are dropped afterwards - a mesh uploaded
+	 * like that has to be loaded again after the GL context is lost.
+	 * @return false if there is no data to upload
+	 */
+	public boolean upload() {
+		if (_uploaded)
+			return true;
+
+		boolean keep = _options != null && _options.isKeepCpuCopy();
+		for (int p = 0; p < _parts.length; p++) {
+			if (_parts[p].getVbo() == 0 && !_parts[p].upload(keep))
+				return false;
+		}
+		_uploaded = true;
+
+		if (!keep) {
+			_vertexCount = getNumVertices();
+			_vertices = null;
+			_indices = null;
+			_tangents = null;
+			_faceNormals = null;
+			_vb = null;
+			_ib = null;
+			_meshFile = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the GL buffers (GL thread)
+	 */
+	public void deleteBuffers() {
+		for (int p = 0; p < _parts.length; p++)
+			_parts[p].deleteBuffers();
+		_uploaded = false;
+	}
+
+	/**
+	 * Forgets the GL buffers after the context was lost - see canUpload()
+	 */
+	public void forgetBuffers() {
+		for (int p = 0; p < _parts.length; p++)
+			_parts[p].forgetBuffers();
+		_uploaded = false;
+	}
+
+	/**
+	 * @return true if the CPU copy is still there, so upload() can be called (again)
+	 */
+	public boolean canUpload() {
+		for (int p = 0; p < _parts.length; p++) {
+			if (_parts[p].getVbo() == 0 && !_parts[p].hasCpuCopy())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tells the mesh if the GPU supports 32 bit indices (OES_element_index_uint).
+	 * Meshes too big for 16 bit indices are drawn in one piece if it does,
+	 * split into pieces if it doesn't.
+	 * @param uintIndices true if GL_UNSIGNED_INT indices can be used
+	 */
+	public void setUintIndices(boolean uintIndices) {
+		if (_uintIndices == uintIndices)
+			return;
+		_uintIndices = uintIndices;
+
+		// only big meshes care
+		if (getNumVertices() > SubMesh.MAX_SHORT_VERTICES && get_vertices() != null)
+			buildParts();
+	}
+
+	/**
+	 * Loads the .off file
+	 * 
+	 * OFF FORMAT:
+	 * ------------
+	 * Line 1
+		OFF
+	   Line 2
+		vertex_count face_count edge_count
+	   One line for each vertex:
+		x y z 
+		for vertex 0, 1, ..., vertex_count-1
+	   One line for each polygonal face:
+		n v1 v2 ... vn, 
+		the number of vertices, and the vertex indices for each face.
+	 * 
+	 * 
+	 * @return 1 if file was loaded properly, 0 if not 
+	 */
+	private int loadOFF(MeshScanner in) throws Exception {
+		try {
+			/* read # of vertices, faces, edges */
+			int _numVertices = in.nextInt();
+			int _numFaces = in.nextInt();
+			//int _numEdges = in.nextInt();
+			in.skipLine();
+
+			// read vertices - going to store vertex coordinates + normals
+			_vertices = new float[_numVertices * this.VERTEX_ARRAY_SIZE]; 
+			int i = 0;
+			for (i = 0; i < _numVertices; i++) {
+				_vertices[i * this.VERTEX_ARRAY_SIZE]     = in.nextFloat();
+				_vertices[i * this.VERTEX_ARRAY_SIZE + 1] = in.nextFloat();
+				_vertices[i * this.VERTEX_ARRAY_SIZE + 2] = in.nextFloat();
+				in.skipLine();
+				//Log.d("Str vertices:", _vertices[i * this.VERTEX_ARRAY_SIZE + 0] + "," + _vertices[i * this.VERTEX_ARRAY_SIZE + 1] + "," + _vertices[i * this.VERTEX_ARRAY_SIZE + 2]);
+			}
+
+			//Log.d("ReadFile", "Read vertices");
+
+			// read faces and setup the index buffer
+			// array size
+			int arraySize = _numFaces * 3;
+			_indices = new int[arraySize];
+
+			for (i = 0; i < _numFaces; i++) {
+				// number of vertices for the face - make sure it's 3! [Might add support for 4 later]
+				int numV = in.nextInt();
+				if (numV != 3)
+					throw new IOException("line " + in.getLine() + ": only triangles are supported");
+
+				int firstV = in.nextInt();
+				int secondV = in.nextInt();
+				int thirdV = in.nextInt();
+				in.skipLine();
+
+				// Store in the index buffer
+				_indices[i * 3 + 0] = firstV;
+				_indices[i * 3 + 1] = secondV;
+				_indices[i * 3 + 2] = thirdV;
+			}
+
+			// finally calculate the face and vertex normals
+			NormalGenerator normals = new NormalGenerator(_options.isAngleWeightedNormals(),
+					_options.getNormalThreads());
+			normals.generate(_vertices, VERTEX_ARRAY_SIZE, 3, _indices);
+			_faceNormals = normals.getFaceNormals();
+			
+			return 1;
+			
+		} catch (Exception e) {
+			throw e;
+		}
+	}
+
+	
+	/**
+	 * Loads an OBJ file
+	 * OBJ FORMAT:
+	 * ----------
+	   list of vertices:
+	     v x y z
+	   list of tex coords:
+	     vt u v
+	   list of normals:
+	     vn x y z
+	   list of faces (3 or more corners)
+	     f pos1/tc1/n1 pos2/tc2/n2 pos3/tc3/n3 ...
+	   with corners as pos, pos/tc, pos//n or pos/tc/n (negative = relative)
+	   materials
+	     usemtl name
+	 * 
+	 * Records can come in any order - faces keep the corner ids and are
+	 * only resolved after the whole file is read. Polygons are split into
+	 * fans. Triangles are grouped by material, one group per usemtl name.
+	 * o/g groups, comments and anything else are skipped. Missing normals
+	 * are generated, missing tex coords are 0.
+	 * 
+	 * @param in the scanner
+	 * @param type the keyword of the first record
+	 * @return true = file properly parsed
+	 * @throws Exception
+	 */
+	private int loadOBJ(MeshScanner in, long type) throws Exception {
+		try {
+			FloatArray vs = new FloatArray(300); // vertices
+			FloatArray tc = new FloatArray(200); // texture coords
+			FloatArray ns = new FloatArray(300); // normals
+
+			// 3 corners per triangle, each {v, vt, vn} (-1 = not given), and its material
+			IntArray corners = new IntArray(100 * 9);
+			IntArray triMaterials = new IntArray(100);
+			IntArray face = new IntArray(4 * 3);	// corners of the current face
+
+			// materials in order of their first usemtl
+			ArrayList<String> materials = new ArrayList<String>();
+			HashMap<String, Integer> materialIds = new HashMap<String, Integer>();
+			int material = -1;
+
+			while (type != 0) {
+				if (type == MeshScanner.KW_V) {
+					vs.add(in.nextFloat()); 	// x
+					vs.add(in.nextFloat());	// y
+					vs.add(in.nextFloat());	// z
+				}
+				else if (type == MeshScanner.KW_VT) {
+					tc.add(in.nextFloat()); 	// u
+					tc.add(in.hasNext() ? in.nextFloat() : 0.0f);	// v
+				}
+				else if (type == MeshScanner.KW_VN) {
+					ns.add(-in.nextFloat()); 	// x
+					ns.add(-in.nextFloat());	// y
+					ns.add(-in.nextFloat());	// z
+				}
+				else if (type == MeshScanner.KW_F) {
+					face.clear();
+					while (in.hasNext()) {
+						int vert = objIndex(in.nextInt(), vs.size() / 3, in);
+						int texc = -1;
+						int vertN = -1;
+						if (in.skip('/')) {
+							if (!in.skip('/')) {
+								// pos/tc or pos/tc/n
+								texc = objIndex(in.nextInt(), tc.size() / 2, in);
+								if (in.skip('/'))
+									vertN = objIndex(in.nextInt(), ns.size() / 3, in);
+							}
+							else	// pos//n
+								vertN = objIndex(in.nextInt(), ns.size() / 3, in);
+						}
+						face.add(vert);
+						face.add(texc);
+						face.add(vertN);
+					}
+
+					if (face.size() >= 9) {
+						if (material == -1)
+							material = materialId("", materials, materialIds);
+
+						// fan around the first corner
+						int n = face.size() / 3;
+						for (int i = 1; i < n - 1; i++) {
+							for (int k = 0; k < 3; k++)
+								corners.add(face.get(k));
+							for (int k = 0; k < 3; k++)
+								corners.add(face.get(i * 3 + k));
+							for (int k = 0; k < 3; k++)
+								corners.add(face.get((i + 1) * 3 + k));
+							triMaterials.add(material);
+						}
+					}
+				}
+				else if (type == MeshScanner.KW_USEMTL) {
+					material = materialId(in.nextLine(), materials, materialIds);
+				}
+
+				// next record
+				in.skipLine();
+				type = in.nextKeyword();
+			}
+
+			int numTris = triMaterials.size();
+			if (numTris == 0)
+				throw new IOException("no faces");
+
+			// triangles sorted by material (counting sort - keeps the file order inside a material)
+			int numMaterials = materials.size();
+			int[] starts = new int[numMaterials + 1];
+			for (int t = 0; t < numTris; t++)
+				starts[triMaterials.get(t) + 1]++;
+			for (int m = 0; m < numMaterials; m++)
+				starts[m + 1] += starts[m];
+			int[] order = new int[numTris];
+			int[] fill = new int[numMaterials];
+			for (int t = 0; t < numTris; t++) {
+				int m = triMaterials.get(t);
+				order[starts[m] + fill[m]++] = t;
+			}
+			for (int m = 0; m <= numMaterials; m++)
+				starts[m] *= 3;		// triangles -> indices
+
+			// the expanded vertices [x, y, z, nx, ny, nz, u, v] and indices
+			int numVerts = vs.size() / 3, numTc = tc.size() / 2, numNs = ns.size() / 3;
+			float[] mainBuffer = new float[numTris * 3 * VERTEX_TC_ARRAY_SIZE];
+			int[] indicesB = new int[numTris * 3];
+			boolean missingNormals = false;
+			boolean anyTexCoords = false;
+			for (int i = 0; i < numTris * 3; i++) {
+				int c = (order[i / 3] * 3 + i % 3) * 3;
+				int vert = corners.get(c), texc = corners.get(c + 1), vertN = corners.get(c + 2);
+				if (vert >= numVerts || texc >= numTc || vertN >= numNs)
+					throw new IOException("face refers to a missing vertex, tex coord or normal");
+
+				int o = i * VERTEX_TC_ARRAY_SIZE;
+				indicesB[i] = i;
+
+				// Add all the vertex info
+				mainBuffer[o]     = vs.get(vert * 3); 	  // x
+				mainBuffer[o + 1] = vs.get(vert * 3 + 1); // y
+				mainBuffer[o + 2] = vs.get(vert * 3 + 2); // z
+
+				// add the normal info
+				if (vertN >= 0) {
+					mainBuffer[o + 3] = ns.get(vertN * 3); 	   // x
+					mainBuffer[o + 4] = ns.get(vertN * 3 + 1); // y
+					mainBuffer[o + 5] = ns.get(vertN * 3 + 2); // z
+				}
+				else
+					missingNormals = true;
+
+				// add the tex coord info
+				if (texc >= 0) {
+					mainBuffer[o + 6] = tc.get(texc * 2); 	  // u
+					mainBuffer[o + 7] = tc.get(texc * 2 + 1); // v
+					anyTexCoords = true;
+				}
+			}
+
+			//Log.d("COMPLETED MAINBUFFER:", "" + mainBuffer.size());
+			// every face corner is its own vertex so far - share the identical ones
+			MeshWelder welder = new MeshWelder(_options.getWeldEpsilon());
+			welder.weld(mainBuffer, indicesB, VERTEX_TC_ARRAY_SIZE, 0, starts);
+
+			_verticesBeforeWeld = welder.getVerticesBefore();
+			_vertices = welder.get_vertices();
+			_indices = welder.get_indices();
+			_texCoords = tc.toArray();
+			_hasTexCoords = anyTexCoords;
+			_materials = materials.toArray(new String[numMaterials]);
+			_materialStarts = welder.getGroupStarts();
+
+			// faces without normals - generate all of them
+			if (missingNormals) {
+				NormalGenerator normals = new NormalGenerator(_options.isAngleWeightedNormals(),
+						_options.getNormalThreads());
+				normals.generate(_vertices, VERTEX_ARRAY_SIZE, 3, _indices);
+				_faceNormals = normals.getFaceNormals();
+			}
+			
+			return 1;
+			
+		} catch(Exception e) {
+			throw e;
+		}
+	}
+
+	/*
+	 * OBJ index (1 based, or negative = relative to the end) -> 0 based
+	 */
+	private static int objIndex(int index, int count, MeshScanner in) throws IOException {
+		if (index > 0)
+			return index - 1;
+		if (index < 0 && count + index >= 0)
+			return count + index;
+		throw new IOException("line " + in.getLine() + ": bad index " + index);
+	}
+
+	private static int materialId(String name, ArrayList<String> materials, HashMap<String, Integer> ids) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = materials.size();
+			materials.add(name);
+			ids.put(name, id);
+		}
+		return id;
+	}
+
+	/*
+	 * First keywords of an OBJ file without the "OBJ" line
+	 */
+	private static boolean isOBJRecord(long type) {
+		return type == MeshScanner.KW_V || type == MeshScanner.KW_VT || type == MeshScanner.KW_VN
+				|| type == MeshScanner.KW_F || type == MeshScanner.KW_O || type == MeshScanner.KW_G
+				|| type == MeshScanner.KW_USEMTL || type == MeshScanner.KW_MTLLIB
+				|| (type & 0xFF) == '#';
+	}
+	/**
+	 * Calculates the cross product of two 3d vectors
+	 */
+	public float[] crossProduct(float[] v0, float[] v1)
+	{
+		float crossProduct[] = new float[3];
+
+		crossProduct[0] = v0[1] * v1[2] - v0[2] * v1[1];
+		crossProduct[1] = v0[2] * v1[0] - v0[0] * v1[2];
+		crossProduct[2] = v0[0] * v1[1] - v0[1] * v1[0];
+
+		return crossProduct;
+	}
+
+
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	public int getMeshID() {
+		return meshID;
+	}
+
+	public void setMeshID(int meshID) {
+		this.meshID = meshID;
+	}
+
+	/**
+	 * @return the vertex array, null once uploaded unless the options keep the CPU copy.
+	 * A mapped binary mesh copies it out of the file the first time.
+	 */
+	public float[] get_vertices() {
+		readArrays();
+		return _vertices;
+	}
+
+	public void set_vertices(float[] _vertices) {
+		this._vertices = _vertices;
+	}
+	public int[] get_indices() {
+		readArrays();
+		return _indices;
+	}
+
+	public FloatBuffer get_vb() {
+		return this._vb;
+	}
+	
+	public FloatBuffer get_nb() {
+		return this._nb;
+	}
+	
+	public ShortBuffer get_ib() {
+		return this._ib;
+	}
+
+	/**
+	 * @return material names (OBJ usemtl, "" for faces before the first one),
+	 * null if the mesh has no materials
+	 */
+	public String[] getMaterials() {
+		return _materials;
+	}
+
+	/**
+	 * @return where the triangles of each material start in get_indices(),
+	 * plus the end - null if the mesh has no materials
+	 */
+	public int[] getMaterialStarts() {
+		return _materialStarts;
+	}
+
+	/**
+	 * @return {x, y, z, handedness} per vertex, null if the mesh has no tangents
+	 */
+	public float[] getTangents() {
+		readArrays();
+		return _tangents;
+	}
+
+	/**
+	 * @return true if the pieces are in GL buffers
+	 */
+	public boolean isUploaded() {
+		return _uploaded;
+	}
+
+	/**
+	 * @return the drawable pieces of the mesh
+	 */
+	public SubMesh[] getParts() {
+		return _parts;
+	}
+
+	/**
+	 * @return axis aligned bounding box {minx, miny, minz, maxx, maxy, maxz}
+	 */
+	public float[] getBounds() {
+		return _bounds;
+	}
+
+	/**
+	 * @return bounding sphere {x, y, z, radius}
+	 */
+	public float[] getSphere() {
+		return _sphere;
+	}
+
+	/**
+	 * @return average cache miss ratio before the vertex cache optimisation, 0 if it didn't run
+	 */
+	public float getAcmrBefore() {
+		return _acmrBefore;
+	}
+
+	/**
+	 * @return average cache miss ratio after the vertex cache optimisation, 0 if it didn't run
+	 */
+	public float getAcmrAfter() {
+		return _acmrAfter;
+	}
+
+	public int getNumVertices() {
+		return _vertices != null ? _vertices.length / VERTEX_ARRAY_SIZE : _vertexCount;
+	}
+
+	/**
+	 * @return number of floats per vertex in get_vertices()
+	 */
+	public int getVertexArraySize() {
+		return VERTEX_ARRAY_SIZE;
+	}
+
+	public boolean hasTexCoords() {
+		return _hasTexCoords;
+	}
+
+	public MeshOptions getOptions() {
+		return _options;
+	}
+
+	/**
+	 * @return number of vertices before the OBJ import welded them, 0 if not welded
+	 */
+	public int getNumVerticesBeforeWeld() {
+		return _verticesBeforeWeld;
+	}
+
+}
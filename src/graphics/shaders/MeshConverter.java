@@ -0,0 +1,99 @@
+/**
+ * Offline converter from the text mesh formats (.OFF/.OBJ) to the binary
+ * MeshFile format. Runs on a desktop JVM with android.jar on the classpath:
+ *
+ *   java -cp bin/classes:android.jar graphics.shaders.MeshConverter res/raw/road.txt road.mesh
+ *
+ * Drop the output into res/raw in place of the text file - Mesh detects the
+ * format from the magic number, so no code has to change.
+ *
+ * With -lods <n> in front of the files, n - 1 simplified levels of detail
+ * are written next to each target (road.mesh -> road_lod1.mesh, ...), each
+ * with half the triangles of the one before. Load them with their own
+ * Meshes and hand them to Object3D.setLods().
+ */
+
+package graphics.shaders;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+public class MeshConverter {
+
+	// triangle ratio between two levels of detail
+	private static final float LOD_RATIO = 0.5f;
+
+	public static void main(String[] args) {
+		int first = 0;
+		int lods = 1;
+		if (args.length >= 2 && args[0].equals("-lods")) {
+			lods = Integer.parseInt(args[1]);
+			first = 2;
+		}
+
+		if (args.length - first < 2 || (args.length - first) % 2 != 0 || lods < 1) {
+			System.err.println("Usage: MeshConverter [-lods <n>] <source.txt> <target> [<source.txt> <target> ...]");
+			System.exit(1);
+		}
+
+		for (int i = first; i < args.length; i += 2) {
+			try {
+				convert(args[i], args[i + 1], lods);
+			} catch (Exception e) {
+				System.err.println("Could not convert " + args[i] + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Converts one text mesh to a binary mesh
+	 * @param source the .OFF/.OBJ file
+	 * @param target the binary file to write
+	 */
+	public static void convert(String source, String target) throws Exception {
+		convert(source, target, 1);
+	}
+
+	/**
+	 * Converts one text mesh to a binary mesh and its levels of detail
+	 * @param source the .OFF/.OBJ file
+	 * @param target the binary file to write
+	 * @param lods number of levels including the full mesh
+	 */
+	public static void convert(String source, String target, int lods) throws Exception {
+		Mesh mesh = new Mesh(new FileInputStream(source));
+		write(mesh, target);
+
+		String welded = mesh.getNumVerticesBeforeWeld() > 0
+				? " (welded from " + mesh.getNumVerticesBeforeWeld() + ")" : "";
+		System.out.println(source + " -> " + target + ": "
+				+ mesh.getNumVertices() + " vertices" + welded + ", "
+				+ mesh.get_indices().length / 3 + " triangles, ACMR "
+				+ mesh.getAcmrBefore() + " -> " + mesh.getAcmrAfter());
+
+		if (lods > 1) {
+			Mesh[] levels = MeshSimplifier.buildLods(mesh, lods, LOD_RATIO);
+			int dot = target.lastIndexOf('.');
+			String base = dot > 0 ? target.substring(0, dot) : target;
+			String ext = dot > 0 ? target.substring(dot) : "";
+			for (int i = 1; i < levels.length; i++) {
+				String name = base + "_lod" + i + ext;
+				write(levels[i], name);
+				System.out.println("  " + name + ": " + levels[i].get_indices().length / 3 + " triangles");
+			}
+		}
+	}
+
+	private static void write(Mesh mesh, String target) throws Exception {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+		try {
+			MeshFile.write(out, mesh.get_vertices(), mesh.getTangents(), mesh.get_indices(), mesh.hasTexCoords(),
+					mesh.getMaterials(), mesh.getMaterialStarts());
+		} finally {
+			out.close();
+		}
+	}
+}
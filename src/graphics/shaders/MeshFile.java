@@ -0,0 +1,484 @@
+/**
+ * Binary mesh container.
+ * Stores a mesh exactly the way the Renderer consumes it, so loading is a
+ * bulk copy (or a memory map) instead of text parsing.
+ */
+
+package graphics.shaders;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import android.content.res.AssetFileDescriptor;
+import android.opengl.GLES20;
+
+public class MeshFile {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	/*
+	 * FILE FORMAT (little endian):
+	 * ----------------------------
+	 * header (40 bytes)
+	 *   int magic           'MESH'
+	 *   int version
+	 *   int flags
+	 *   int vertexCount
+	 *   int indexCount
+	 *   int strideBytes     size of one interleaved vertex
+	 *   int attributeCount
+	 *   int groupCount      material groups, 0 = one material
+	 *   int groupBytes      size of the group table
+	 *   int reserved
+	 * vertex layout (8 bytes per attribute)
+	 *   byte  semantic      ATTRIB_*
+	 *   byte  size          number of components
+	 *   short type          GL type of a component (GL_FLOAT, ...)
+	 *   int   offset        byte offset inside the vertex
+	 * material groups (one per group, in index order)
+	 *   int   start         first index of the group - it ends where the next starts
+	 *   short nameLength
+	 *   bytes name          UTF-8, padded to 4 bytes
+	 * vertex blob
+	 *   vertexCount * strideBytes bytes
+	 * index blob
+	 *   indexCount unsigned shorts (unsigned ints with FLAG_INDEX_UINT),
+	 *   padded to 4 bytes
+	 */
+	public static final int MAGIC = 0x4853454D; // "MESH"
+	public static final int VERSION = 2;
+
+	// flags
+	public static final int FLAG_INDEX_UINT = 1;	// 32 bit indices
+
+	private static final int HEADER_SIZE_BYTES = 40;
+	private static final int ATTRIBUTE_SIZE_BYTES = 8;
+
+	// attribute semantics
+	public static final int ATTRIB_POSITION = 0;
+	public static final int ATTRIB_NORMAL = 1;
+	public static final int ATTRIB_TEXCOORD = 2;
+	public static final int ATTRIB_TANGENT = 3;		// w = handedness
+
+	// Layout of the meshes Mesh builds: [x, y, z, nx, ny, nz, u, v(, tx, ty, tz, tw)] -
+	// the same as VertexFormat.FLOAT/FLOAT_TANGENT, so the blob can be drawn as it is
+	// semantic, size, type, offset
+	private static final int[] POSITION_ATTRIBUTE = {ATTRIB_POSITION, 3, GLES20.GL_FLOAT, 0};
+	private static final int[] NORMAL_ATTRIBUTE = {ATTRIB_NORMAL, 3, GLES20.GL_FLOAT, 12};
+	private static final int[] TEXCOORD_ATTRIBUTE = {ATTRIB_TEXCOORD, 2, GLES20.GL_FLOAT, 24};
+	private static final int[] TANGENT_ATTRIBUTE = {ATTRIB_TANGENT, 4, GLES20.GL_FLOAT, 32};
+	private static final int VERTEX_FLOATS = 8;
+	private static final int TANGENT_FLOATS = 4;
+
+	// Contents
+	private int _flags;
+	private int _vertexCount;
+	private int _indexCount;
+	private int _strideBytes;
+	private int[][] _layout;
+	private String[] _materials;		// null = one material
+	private int[] _materialStarts;		// groupCount + 1 entries, the last is indexCount
+
+	// The buffers - views into one direct block of memory
+	private ByteBuffer _data;
+	private ByteBuffer _vertexData;	// vertex blob in native order
+	private FloatBuffer _vb;
+	private ShortBuffer _ib;		// 16 bit indices
+	private IntBuffer _ib32;		// 32 bit indices (FLAG_INDEX_UINT)
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	private MeshFile() {
+
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Checks the first 4 bytes of a stream for the magic number
+	 * @param header at least 4 bytes read from the start of the file
+	 * @return true if this is a binary mesh
+	 */
+	public static boolean isMeshFile(byte[] header) {
+		if (header.length < 4)
+			return false;
+		int magic = (header[0] & 0xFF) | (header[1] & 0xFF) << 8
+				| (header[2] & 0xFF) << 16 | (header[3] & 0xFF) << 24;
+		return magic == MAGIC;
+	}
+
+	/**
+	 * Maps a raw resource straight into memory. Only works when the resource
+	 * is stored uncompressed in the apk (openRawResourceFd fails otherwise).
+	 * @param afd the descriptor from Resources.openRawResourceFd()
+	 * @return the mesh file, null if the resource isn't a binary mesh
+	 */
+	public static MeshFile map(AssetFileDescriptor afd) throws IOException {
+		FileInputStream fis = afd.createInputStream();
+		try {
+			FileChannel channel = fis.getChannel();
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+					afd.getStartOffset(), afd.getLength());
+			if (data.capacity() < HEADER_SIZE_BYTES
+					|| data.order(ByteOrder.LITTLE_ENDIAN).getInt(0) != MAGIC)
+				return null;
+			return parse(data);
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Reads a binary mesh of unknown length
+	 * @param in stream positioned at the start of the file
+	 * @return the mesh file
+	 */
+	public static MeshFile read(InputStream in) throws IOException {
+		// read the header first to find out how big the rest is
+		byte[] header = new byte[HEADER_SIZE_BYTES];
+		readFully(in, header, 0, header.length);
+		ByteBuffer hb = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+
+		int length = fileSize(hb.getInt(8), hb.getInt(12), hb.getInt(16), hb.getInt(20), hb.getInt(24), hb.getInt(32));
+		ByteBuffer data = ByteBuffer.allocateDirect(length);
+		data.put(header);
+
+		ReadableByteChannel channel = Channels.newChannel(in);
+		while (data.hasRemaining()) {
+			if (channel.read(data) < 0)
+				throw new IOException("Unexpected end of mesh file");
+		}
+		data.position(0);
+		return parse(data);
+	}
+
+	/**
+	 * Sets up the views over the raw data
+	 */
+	private static MeshFile parse(ByteBuffer data) throws IOException {
+		data.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (data.getInt(0) != MAGIC)
+			throw new IOException("Not a mesh file");
+		if (data.getInt(4) != VERSION)
+			throw new IOException("Unsupported mesh file version " + data.getInt(4));
+
+		MeshFile mf = new MeshFile();
+		mf._flags = data.getInt(8);
+		mf._vertexCount = data.getInt(12);
+		mf._indexCount = data.getInt(16);
+		mf._strideBytes = data.getInt(20);
+		int attributeCount = data.getInt(24);
+		int groupCount = data.getInt(28);
+		int groupBytes = data.getInt(32);
+
+		if (data.capacity() < fileSize(mf._flags, mf._vertexCount, mf._indexCount, mf._strideBytes,
+				attributeCount, groupBytes))
+			throw new IOException("Truncated mesh file");
+
+		// vertex layout
+		mf._layout = new int[attributeCount][4];
+		int pos = HEADER_SIZE_BYTES;
+		for (int i = 0; i < attributeCount; i++) {
+			mf._layout[i][0] = data.get(pos);
+			mf._layout[i][1] = data.get(pos + 1);
+			mf._layout[i][2] = data.getShort(pos + 2) & 0xFFFF;
+			mf._layout[i][3] = data.getInt(pos + 4);
+			pos += ATTRIBUTE_SIZE_BYTES;
+		}
+
+		// material groups
+		if (groupCount > 0) {
+			mf._materials = new String[groupCount];
+			mf._materialStarts = new int[groupCount + 1];
+			int groupPos = pos;
+			for (int i = 0; i < groupCount; i++) {
+				int start = data.getInt(groupPos);
+				if (start < (i > 0 ? mf._materialStarts[i - 1] : 0) || start > mf._indexCount)
+					throw new IOException("Bad material group " + i + " start " + start);
+				mf._materialStarts[i] = start;
+				byte[] name = new byte[data.getShort(groupPos + 4) & 0xFFFF];
+				for (int k = 0; k < name.length; k++)
+					name[k] = data.get(groupPos + 6 + k);
+				mf._materials[i] = new String(name, "UTF-8");
+				groupPos += groupSize(name.length);
+			}
+			mf._materialStarts[groupCount] = mf._indexCount;
+		}
+		pos += groupBytes;
+
+		mf._data = data;
+
+		// vertex blob
+		int vertexBytes = mf._vertexCount * mf._strideBytes;
+		data.position(pos);
+		data.limit(pos + vertexBytes);
+		mf._vertexData = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		mf._vb = mf._vertexData.asFloatBuffer();
+		pos += vertexBytes;
+
+		// index blob
+		boolean uint = (mf._flags & FLAG_INDEX_UINT) != 0;
+		data.limit(data.capacity());
+		data.position(pos);
+		data.limit(pos + mf._indexCount * (uint ? 4 : 2));
+		if (uint)
+			mf._ib32 = data.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		else
+			mf._ib = data.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+
+		// GL reads the raw memory in native order - every device we ship on is
+		// little endian, but swap into fresh buffers if that ever changes
+		if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+			ByteBuffer vd = ByteBuffer.allocateDirect(vertexBytes).order(ByteOrder.nativeOrder());
+			vd.asFloatBuffer().put(mf._vb);
+			mf._vertexData = vd;
+			mf._vb = vd.asFloatBuffer();
+
+			if (uint) {
+				IntBuffer ib = ByteBuffer.allocateDirect(mf._indexCount * 4)
+						.order(ByteOrder.nativeOrder()).asIntBuffer();
+				ib.put(mf._ib32);
+				ib.position(0);
+				mf._ib32 = ib;
+			} else {
+				ShortBuffer ib = ByteBuffer.allocateDirect(mf._indexCount * 2)
+						.order(ByteOrder.nativeOrder()).asShortBuffer();
+				ib.put(mf._ib);
+				ib.position(0);
+				mf._ib = ib;
+			}
+		}
+
+		data.clear();
+		return mf;
+	}
+
+	/**
+	 * Total size of a file with the given contents
+	 */
+	private static int fileSize(int flags, int vertexCount, int indexCount, int strideBytes,
+			int attributeCount, int groupBytes) {
+		int indexSize = (flags & FLAG_INDEX_UINT) != 0 ? 4 : 2;
+		int indexBytes = (indexCount * indexSize + 3) & ~3;
+		return HEADER_SIZE_BYTES + attributeCount * ATTRIBUTE_SIZE_BYTES + groupBytes
+				+ vertexCount * strideBytes + indexBytes;
+	}
+
+	/**
+	 * Size of one entry of the group table with a name of nameLength bytes
+	 */
+	private static int groupSize(int nameLength) {
+		return (4 + 2 + nameLength + 3) & ~3;
+	}
+
+	private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = in.read(b, off, len);
+			if (n < 0)
+				throw new IOException("Unexpected end of mesh file");
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes interleaved vertex + index data out as a binary mesh with one material
+	 * @param out where to write
+	 * @param vertices interleaved [x, y, z, nx, ny, nz, u, v] vertices
+	 * @param indices triangle indices - stored as shorts if the mesh is small enough
+	 */
+	public static void write(OutputStream out, float[] vertices, int[] indices) throws IOException {
+		write(out, vertices, null, indices, true, null, null);
+	}
+
+	/**
+	 * Writes interleaved vertex + index data out as a binary mesh
+	 * @param out where to write
+	 * @param vertices interleaved [x, y, z, nx, ny, nz, u, v] vertices
+	 * @param tangents [tx, ty, tz, tw] per vertex, stored after each vertex - null for none
+	 * @param indices triangle indices - stored as shorts if the mesh is small enough
+	 * @param hasTexCoords false leaves the tex coords out of the layout (the floats stay, as padding)
+	 * @param materials material names, null = one material
+	 * @param materialStarts first index of each material, indices.length at the end
+	 */
+	public static void write(OutputStream out, float[] vertices, float[] tangents, int[] indices,
+			boolean hasTexCoords, String[] materials, int[] materialStarts) throws IOException {
+		int[][] layout = layout(hasTexCoords, tangents != null);
+		int vertexFloats = VERTEX_FLOATS + (tangents != null ? TANGENT_FLOATS : 0);
+		int strideBytes = vertexFloats * 4;
+		int vertexCount = vertices.length / VERTEX_FLOATS;
+		int flags = vertexCount > SubMesh.MAX_SHORT_VERTICES ? FLAG_INDEX_UINT : 0;
+
+		// material names
+		int groupCount = materials != null ? materials.length : 0;
+		byte[][] names = new byte[groupCount][];
+		int groupBytes = 0;
+		for (int i = 0; i < groupCount; i++) {
+			names[i] = (materials[i] != null ? materials[i] : "").getBytes("UTF-8");
+			groupBytes += groupSize(names[i].length);
+		}
+
+		ByteBuffer bb = ByteBuffer.allocate(fileSize(flags, vertexCount, indices.length,
+				strideBytes, layout.length, groupBytes)).order(ByteOrder.LITTLE_ENDIAN);
+
+		// header
+		bb.putInt(MAGIC);
+		bb.putInt(VERSION);
+		bb.putInt(flags);
+		bb.putInt(vertexCount);
+		bb.putInt(indices.length);
+		bb.putInt(strideBytes);
+		bb.putInt(layout.length);
+		bb.putInt(groupCount);
+		bb.putInt(groupBytes);
+		bb.putInt(0);
+
+		// layout
+		for (int i = 0; i < layout.length; i++) {
+			bb.put((byte)layout[i][0]);
+			bb.put((byte)layout[i][1]);
+			bb.putShort((short)layout[i][2]);
+			bb.putInt(layout[i][3]);
+		}
+
+		// material groups
+		for (int i = 0; i < groupCount; i++) {
+			int entry = bb.position();
+			bb.putInt(materialStarts[i]);
+			bb.putShort((short)names[i].length);
+			bb.put(names[i]);
+			bb.position(entry + groupSize(names[i].length));
+		}
+
+		// data
+		FloatBuffer fb = bb.asFloatBuffer();
+		if (tangents == null)
+			fb.put(vertices, 0, vertexCount * VERTEX_FLOATS);
+		else {
+			for (int i = 0; i < vertexCount; i++) {
+				fb.put(vertices, i * VERTEX_FLOATS, VERTEX_FLOATS);
+				fb.put(tangents, i * TANGENT_FLOATS, TANGENT_FLOATS);
+			}
+		}
+		bb.position(bb.position() + vertexCount * strideBytes);
+		if ((flags & FLAG_INDEX_UINT) != 0)
+			bb.asIntBuffer().put(indices);
+		else {
+			ShortBuffer sb = bb.asShortBuffer();
+			for (int i = 0; i < indices.length; i++)
+				sb.put((short)indices[i]);
+		}
+
+		out.write(bb.array());
+		out.flush();
+	}
+
+	/**
+	 * The attributes written for a mesh
+	 */
+	private static int[][] layout(boolean hasTexCoords, boolean hasTangents) {
+		int[][] layout = new int[2 + (hasTexCoords ? 1 : 0) + (hasTangents ? 1 : 0)][];
+		int n = 0;
+		layout[n++] = POSITION_ATTRIBUTE;
+		layout[n++] = NORMAL_ATTRIBUTE;
+		if (hasTexCoords)
+			layout[n++] = TEXCOORD_ATTRIBUTE;
+		if (hasTangents)
+			layout[n++] = TANGENT_ATTRIBUTE;
+		return layout;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public int getFlags() {
+		return _flags;
+	}
+
+	public int getVertexCount() {
+		return _vertexCount;
+	}
+
+	public int getIndexCount() {
+		return _indexCount;
+	}
+
+	public int getStrideBytes() {
+		return _strideBytes;
+	}
+
+	/**
+	 * @return one {semantic, size, type, offset} entry per attribute
+	 */
+	public int[][] getLayout() {
+		return _layout;
+	}
+
+	/**
+	 * @return true if the layout has the given ATTRIB_* semantic
+	 */
+	public boolean hasAttribute(int semantic) {
+		for (int i = 0; i < _layout.length; i++) {
+			if (_layout[i][0] == semantic)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the material names in index order, null if the mesh has one material
+	 */
+	public String[] getMaterials() {
+		return _materials;
+	}
+
+	/**
+	 * @return first index of each material plus getIndexCount() at the end, null for one material
+	 */
+	public int[] getMaterialStarts() {
+		return _materialStarts;
+	}
+
+	public ByteBuffer getData() {
+		return _data;
+	}
+
+	public FloatBuffer get_vb() {
+		return _vb;
+	}
+
+	/**
+	 * @return the vertex blob as bytes, in native order
+	 */
+	public ByteBuffer getVertexData() {
+		return _vertexData;
+	}
+
+	/**
+	 * @return the 16 bit indices, null if the file has 32 bit indices
+	 */
+	public ShortBuffer get_ib() {
+		return _ib;
+	}
+
+	/**
+	 * @return the 32 bit indices, null if the file has 16 bit indices
+	 */
+	public IntBuffer get_ib32() {
+		return _ib32;
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Options that control how a Mesh is imported.
+ */
+
+package graphics.shaders;
+
+public class MeshOptions {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Vertex welding (OBJ) - grid size, 0 = weld only exact duplicates
+	private float weldEpsilon = 0.0f;
+
+	// Reorder triangles/vertices for the post-transform vertex cache
+	private boolean optimizeVertexCache = true;
+
+	// Normal generation (OFF)
+	private boolean angleWeightedNormals = false;	// weight face normals by the corner angle
+	private int normalThreads = 0;					// 0 = one per core, 1 = serial
+
+	// Compact vertex format (see VertexFormat) - normals as bytes, tex coords as shorts
+	private boolean packVertices = false;
+	private boolean packPositions = true;			// positions as shorts too, floats if false
+
+	// Tangents for normal mapping (meshes with tex coords only)
+	private boolean generateTangents = true;
+
+	// Keep the vertex/index arrays after the upload to GL buffers - needed to
+	// read them back (get_vertices() etc.) or to upload again without reloading
+	private boolean keepCpuCopy = false;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public MeshOptions() {
+
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/*
+	 * Options are compared by value - meshes loaded with equal options are
+	 * shared by the AssetRegistry
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof MeshOptions))
+			return false;
+		MeshOptions m = (MeshOptions)o;
+		return Float.floatToIntBits(weldEpsilon) == Float.floatToIntBits(m.weldEpsilon)
+				&& optimizeVertexCache == m.optimizeVertexCache
+				&& angleWeightedNormals == m.angleWeightedNormals
+				&& normalThreads == m.normalThreads
+				&& packVertices == m.packVertices
+				&& packPositions == m.packPositions
+				&& generateTangents == m.generateTangents
+				&& keepCpuCopy == m.keepCpuCopy;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = Float.floatToIntBits(weldEpsilon);
+		h = h * 31 + (optimizeVertexCache ? 1 : 0);
+		h = h * 31 + (angleWeightedNormals ? 1 : 0);
+		h = h * 31 + normalThreads;
+		h = h * 31 + (packVertices ? 1 : 0);
+		h = h * 31 + (packPositions ? 1 : 0);
+		h = h * 31 + (generateTangents ? 1 : 0);
+		h = h * 31 + (keepCpuCopy ? 1 : 0);
+		return h;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public float getWeldEpsilon() {
+		return weldEpsilon;
+	}
+
+	public void setWeldEpsilon(float weldEpsilon) {
+		this.weldEpsilon = weldEpsilon;
+	}
+
+	public boolean isOptimizeVertexCache() {
+		return optimizeVertexCache;
+	}
+
+	public void setOptimizeVertexCache(boolean optimizeVertexCache) {
+		this.optimizeVertexCache = optimizeVertexCache;
+	}
+
+	public boolean isAngleWeightedNormals() {
+		return angleWeightedNormals;
+	}
+
+	public void setAngleWeightedNormals(boolean angleWeightedNormals) {
+		this.angleWeightedNormals = angleWeightedNormals;
+	}
+
+	public int getNormalThreads() {
+		return normalThreads;
+	}
+
+	public void setNormalThreads(int normalThreads) {
+		this.normalThreads = normalThreads;
+	}
+
+	public boolean isPackVertices() {
+		return packVertices;
+	}
+
+	public void setPackVertices(boolean packVertices) {
+		this.packVertices = packVertices;
+	}
+
+	public boolean isPackPositions() {
+		return packPositions;
+	}
+
+	public void setPackPositions(boolean packPositions) {
+		this.packPositions = packPositions;
+	}
+
+	public boolean isGenerateTangents() {
+		return generateTangents;
+	}
+
+	public void setGenerateTangents(boolean generateTangents) {
+		this.generateTangents = generateTangents;
+	}
+
+	public boolean isKeepCpuCopy() {
+		return keepCpuCopy;
+	}
+
+	public void setKeepCpuCopy(boolean keepCpuCopy) {
+		this.keepCpuCopy = keepCpuCopy;
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Byte level scanner for the text mesh formats.
+ * Reads straight from the stream into its own buffer and parses numbers by
+ * hand, so scanning a line allocates nothing (unlike BufferedReader +
+ * StringTokenizer + Float.parseFloat, which create several objects per token).
+ */
+
+package graphics.shaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class MeshScanner {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private static final int BUFFER_SIZE = 16 * 1024;
+	private static final int EOF = -1;
+
+	// exact powers of ten representable as doubles
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	// Keywords packed into longs - see keyword()
+	public static final long KW_OFF    = keyword("OFF");
+	public static final long KW_OBJ    = keyword("OBJ");
+	public static final long KW_V      = keyword("v");
+	public static final long KW_VT     = keyword("vt");
+	public static final long KW_VN     = keyword("vn");
+	public static final long KW_F      = keyword("f");
+	public static final long KW_O      = keyword("o");
+	public static final long KW_G      = keyword("g");
+	public static final long KW_USEMTL = keyword("usemtl");
+	public static final long KW_MTLLIB = keyword("mtllib");
+
+	private InputStream _in;
+	private byte[] _buffer;
+	private int _pos;		// next byte to read
+	private int _limit;		// number of valid bytes in the buffer
+	private int _line;		// current line number (for errors)
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public MeshScanner(InputStream in) {
+		_in = in;
+		_buffer = new byte[BUFFER_SIZE];
+		_line = 1;
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Packs a keyword of up to 8 ASCII characters into a long, so keywords
+	 * can be compared without creating Strings
+	 */
+	public static long keyword(String word) {
+		long kw = 0;
+		for (int i = 0; i < word.length() && i < 8; i++)
+			kw |= (long)(word.charAt(i) & 0xFF) << (i * 8);
+		return kw;
+	}
+
+	/**
+	 * Reads the first word of the next non-empty line
+	 * @return the packed keyword (see keyword()), 0 if there are no more lines,
+	 * -1 for a word longer than 8 characters (just '#' if it starts a comment)
+	 */
+	public long nextKeyword() throws IOException {
+		int c = skipBlankLines();
+		if (c == EOF)
+			return 0;
+
+		long kw = 0;
+		int n = 0;
+		while (c != EOF && !isSpace(c) && !isEndOfLine(c)) {
+			if (n < 8)
+				kw |= (long)(c & 0xFF) << (n * 8);
+			n++;
+			_pos++;
+			c = peek();
+		}
+		if (n <= 8)
+			return kw;
+		// longer words never match a keyword, but a comment is still a comment
+		// ("#Exported_by_tool")
+		return (kw & 0xFF) == '#' ? '#' : -1;
+	}
+
+	/**
+	 * Reads the rest of the current line (names - allocates a String)
+	 * @return the text without leading/trailing spaces, "" if there is none
+	 */
+	public String nextLine() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c = skipSpaces();
+		while (c != EOF && !isEndOfLine(c)) {
+			sb.append((char)(c & 0xFF));
+			_pos++;
+			c = peek();
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Skips whatever is left of the current line
+	 */
+	public void skipLine() throws IOException {
+		int c = peek();
+		while (c != EOF && c != '\n') {
+			_pos++;
+			c = peek();
+		}
+		if (c == '\n') {
+			_pos++;
+			_line++;
+		}
+	}
+
+	/**
+	 * @return true if there is another token on the current line - a '#'
+	 * starts a comment that runs to the end of it ("f 1 2 3 # top")
+	 */
+	public boolean hasNext() throws IOException {
+		int c = skipSpaces();
+		return c != EOF && !isEndOfLine(c) && c != '#';
+	}
+
+	/**
+	 * Skips the given character if it's next
+	 * @return true if it was skipped
+	 */
+	public boolean skip(char ch) throws IOException {
+		if (peek() == ch) {
+			_pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parses the next integer on the current line
+	 */
+	public int nextInt() throws IOException {
+		int c = skipSpaces();
+		boolean negative = false;
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			_pos++;
+			c = peek();
+		}
+		if (!isDigit(c))
+			throw error("expected an integer");
+
+		int value = 0;
+		while (isDigit(c)) {
+			value = value * 10 + (c - '0');
+			_pos++;
+			c = peek();
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses the next floating point number on the current line.
+	 * Handles [+-]digits[.digits][(e|E)[+-]digits]
+	 */
+	public float nextFloat() throws IOException {
+		int c = skipSpaces();
+		boolean negative = false;
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			_pos++;
+			c = peek();
+		}
+
+		long mantissa = 0;
+		int digits = 0;		// significant digits in the mantissa
+		int exponent = 0;
+		boolean any = false;
+
+		// integer part
+		while (isDigit(c)) {
+			any = true;
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa != 0)
+					digits++;
+			} else
+				exponent++;
+			_pos++;
+			c = peek();
+		}
+
+		// fraction
+		if (c == '.') {
+			_pos++;
+			c = peek();
+			while (isDigit(c)) {
+				any = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0)
+						digits++;
+					exponent--;
+				}
+				_pos++;
+				c = peek();
+			}
+		}
+		if (!any)
+			throw error("expected a number");
+
+		// exponent
+		if (c == 'e' || c == 'E') {
+			_pos++;
+			c = peek();
+			boolean negExp = false;
+			if (c == '-' || c == '+') {
+				negExp = c == '-';
+				_pos++;
+				c = peek();
+			}
+			if (!isDigit(c))
+				throw error("bad exponent");
+			int e = 0;
+			while (isDigit(c)) {
+				if (e < 1000)
+					e = e * 10 + (c - '0');
+				_pos++;
+				c = peek();
+			}
+			exponent += negExp ? -e : e;
+		}
+
+		double value = mantissa;
+		if (exponent < 0)
+			value = -exponent < POW10.length ? value / POW10[-exponent] : value / Math.pow(10, -exponent);
+		else if (exponent > 0)
+			value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+
+		return (float)(negative ? -value : value);
+	}
+
+	/**
+	 * @return the current line number
+	 */
+	public int getLine() {
+		return _line;
+	}
+
+	/*
+	 * Skips spaces and tabs on the current line
+	 */
+	private int skipSpaces() throws IOException {
+		int c = peek();
+		while (isSpace(c)) {
+			_pos++;
+			c = peek();
+		}
+		return c;
+	}
+
+	/*
+	 * Skips to the first character of the next line with content
+	 */
+	private int skipBlankLines() throws IOException {
+		int c = skipSpaces();
+		while (isEndOfLine(c)) {
+			if (c == '\n')
+				_line++;
+			_pos++;
+			c = skipSpaces();
+		}
+		return c;
+	}
+
+	/*
+	 * Next byte without consuming it (0-255), refilling the buffer if needed -
+	 * only the end of the stream is EOF, not a 0xFF byte
+	 */
+	private int peek() throws IOException {
+		if (_pos < _limit)
+			return _buffer[_pos] & 0xFF;
+		_limit = _in.read(_buffer, 0, _buffer.length);
+		_pos = 0;
+		if (_limit <= 0) {
+			_limit = 0;
+			return EOF;
+		}
+		return _buffer[0] & 0xFF;
+	}
+
+	private IOException error(String message) {
+		return new IOException("line " + _line + ": " + message);
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static boolean isEndOfLine(int c) {
+		return c == '\n' || c == '\r';
+	}
+}
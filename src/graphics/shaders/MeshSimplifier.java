@@ -0,0 +1,627 @@
+/**
+ * Reduces the triangle count of a mesh with quadric error metrics
+ * (Garland & Heckbert, "Surface Simplification Using Quadric Error Metrics").
+ *
+ * Every vertex gets the sum of the (area weighted) planes of its triangles.
+ * Edges are collapsed cheapest first: one end vertex is merged into the
+ * other, so the surviving vertex keeps its own normal and tex coords -
+ * nothing is interpolated and the result only uses vertices of the source.
+ * The cost of a collapse is the quadric error plus how much the attributes
+ * of the two vertices differ, so edges across creases and texture
+ * gradients go last. Vertices on a border, on a non-manifold or folded
+ * edge (e.g. both sides of a double sided quad) or on an attribute seam
+ * (same position, different normal/tex coord) are never moved, which keeps
+ * outlines and UV seams where they are.
+ *
+ * Collapses that would flip a triangle (or turn it too far) are skipped.
+ */
+
+package graphics.shaders;
+
+public class MeshSimplifier {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private static final int EMPTY = -1;
+
+	// a collapse may turn a triangle by at most ~75 degrees (cosine)
+	private static final float MIN_NORMAL_COS = 0.25f;
+
+	// Settings
+	private float _attributeWeight = 1.0f;		// attribute difference vs. geometric error
+	private float _maxError = Float.MAX_VALUE;	// stop before a collapse costs more than this
+
+	// Input
+	private float[] _source;
+	private int _stride;
+
+	// Work data
+	private int[] _tris;				// triangle list, vertices get replaced as they collapse
+	private boolean[] _deadTri;
+	private int _liveTris;
+	private double[] _quadrics;			// 10 per vertex - symmetric 4x4
+	private boolean[] _locked;
+	private boolean[] _removed;
+	private int[] _version;				// bumped whenever a vertex's quadric/neighbourhood changes
+	private int[] _cornerHead;			// linked list of the corners (tri * 3 + k) around each vertex
+	private int[] _cornerTail;
+	private int[] _cornerNext;
+
+	// Collapse candidates - a min heap of entry ids
+	private FloatArray _entryCost;
+	private IntArray _entryFrom, _entryTo, _entryFromVersion, _entryToVersion;
+	private IntArray _heap;
+	private int _heapSize;
+
+	// Results
+	private float[] _vertices;
+	private int[] _indices;
+	private float _error;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public MeshSimplifier() {
+
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Builds a chain of levels of detail, each one with ratio times the
+	 * triangles of the previous one. Level 0 is the source mesh itself.
+	 * @param source the full detail mesh
+	 * @param levels number of meshes to return (including the source)
+	 * @param ratio triangle ratio between two levels, e.g. 0.5
+	 */
+	public static Mesh[] buildLods(Mesh source, int levels, float ratio) {
+		Mesh[] lods = new Mesh[levels];
+		lods[0] = source;
+
+		MeshSimplifier simplifier = new MeshSimplifier();
+		float[] vertices = source.get_vertices();
+		int[] indices = source.get_indices();
+		int[] starts = source.getMaterialStarts();
+		int stride = source.getVertexArraySize();
+
+		for (int i = 1; i < levels; i++) {
+			int target = (int)(indices.length / 3 * ratio);
+			simplifier.simplify(vertices, indices, stride, target);
+
+			// can't get any simpler - repeat the last level
+			if (simplifier.get_indices().length >= indices.length) {
+				lods[i] = lods[i - 1];
+				continue;
+			}
+
+			vertices = simplifier.get_vertices();
+			indices = simplifier.get_indices();
+			starts = simplifier.getGroupStarts(starts);
+			lods[i] = new Mesh(vertices, indices, source.hasTexCoords(), source.getOptions(),
+					source.getMaterials(), starts);
+		}
+		return lods;
+	}
+
+	/**
+	 * Simplifies a mesh. Results are available from get_vertices()/get_indices().
+	 * @param vertices interleaved vertex data, position at offset 0
+	 * @param indices triangle list
+	 * @param stride floats per vertex
+	 * @param targetTriangles stop at this many triangles
+	 */
+	public void simplify(float[] vertices, int[] indices, int stride, int targetTriangles) {
+		int numVertices = vertices.length / stride;
+		int numTris = indices.length / 3;
+
+		_source = vertices;
+		_stride = stride;
+		_tris = indices.clone();
+		_deadTri = new boolean[numTris];
+		_liveTris = numTris;
+		_removed = new boolean[numVertices];
+		_version = new int[numVertices];
+		_error = 0.0f;
+
+		buildCorners(numVertices);
+		buildQuadrics(numVertices);
+		lockSeams(numVertices);
+
+		_entryCost = new FloatArray(indices.length * 2);
+		_entryFrom = new IntArray(indices.length * 2);
+		_entryTo = new IntArray(indices.length * 2);
+		_entryFromVersion = new IntArray(indices.length * 2);
+		_entryToVersion = new IntArray(indices.length * 2);
+		_heap = new IntArray(indices.length * 2);
+		_heapSize = 0;
+
+		// every edge, both ways (each edge is seen twice - once per triangle)
+		for (int t = 0; t < numTris; t++) {
+			for (int k = 0; k < 3; k++) {
+				int a = _tris[t * 3 + k];
+				int b = _tris[t * 3 + (k + 1) % 3];
+				pushCollapse(a, b);
+				pushCollapse(b, a);
+			}
+		}
+
+		while (_liveTris > targetTriangles && _heapSize > 0) {
+			int e = popHeap();
+			int from = _entryFrom.get(e);
+			int to = _entryTo.get(e);
+
+			// stale?
+			if (_removed[from] || _removed[to]
+					|| _version[from] != _entryFromVersion.get(e)
+					|| _version[to] != _entryToVersion.get(e))
+				continue;
+
+			float cost = _entryCost.get(e);
+			if (cost > _maxError)
+				break;
+			if (flips(from, to))
+				continue;
+
+			collapse(from, to);
+			_error = Math.max(_error, cost);
+		}
+
+		compact(numVertices);
+
+		_source = null;
+		_tris = null;
+		_quadrics = null;
+		_cornerNext = null;
+		_heap = null;
+		_entryCost = null;
+		_entryFrom = _entryTo = _entryFromVersion = _entryToVersion = null;
+	}
+
+	/*
+	 * Corner lists - corners of vertex v: _cornerHead[v], _cornerNext[...], ... until EMPTY
+	 */
+	private void buildCorners(int numVertices) {
+		_cornerHead = new int[numVertices];
+		_cornerTail = new int[numVertices];
+		_cornerNext = new int[_tris.length];
+		for (int v = 0; v < numVertices; v++)
+			_cornerHead[v] = _cornerTail[v] = EMPTY;
+
+		for (int c = 0; c < _tris.length; c++) {
+			int v = _tris[c];
+			_cornerNext[c] = EMPTY;
+			if (_cornerHead[v] == EMPTY)
+				_cornerHead[v] = c;
+			else
+				_cornerNext[_cornerTail[v]] = c;
+			_cornerTail[v] = c;
+		}
+	}
+
+	/*
+	 * Sum of the planes of the triangles around each vertex, weighted by area
+	 */
+	private void buildQuadrics(int numVertices) {
+		_quadrics = new double[numVertices * 10];
+		float[] v = _source;
+
+		for (int t = 0; t < _tris.length / 3; t++) {
+			int p1 = _tris[t * 3] * _stride;
+			int p2 = _tris[t * 3 + 1] * _stride;
+			int p3 = _tris[t * 3 + 2] * _stride;
+
+			double ax = v[p2] - v[p1], ay = v[p2 + 1] - v[p1 + 1], az = v[p2 + 2] - v[p1 + 2];
+			double bx = v[p3] - v[p1], by = v[p3 + 1] - v[p1 + 1], bz = v[p3 + 2] - v[p1 + 2];
+			double nx = ay * bz - az * by;
+			double ny = az * bx - ax * bz;
+			double nz = ax * by - ay * bx;
+
+			// |n| is twice the area
+			double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (len == 0.0)
+				continue;
+			double area = len * 0.5;
+			nx /= len;
+			ny /= len;
+			nz /= len;
+			double d = -(nx * v[p1] + ny * v[p1 + 1] + nz * v[p1 + 2]);
+
+			for (int k = 0; k < 3; k++) {
+				int q = _tris[t * 3 + k] * 10;
+				_quadrics[q]     += area * nx * nx;
+				_quadrics[q + 1] += area * nx * ny;
+				_quadrics[q + 2] += area * nx * nz;
+				_quadrics[q + 3] += area * nx * d;
+				_quadrics[q + 4] += area * ny * ny;
+				_quadrics[q + 5] += area * ny * nz;
+				_quadrics[q + 6] += area * ny * d;
+				_quadrics[q + 7] += area * nz * nz;
+				_quadrics[q + 8] += area * nz * d;
+				_quadrics[q + 9] += area * d * d;
+			}
+		}
+	}
+
+	/*
+	 * Locks the vertices on open borders, folds and attribute seams
+	 */
+	private void lockSeams(int numVertices) {
+		_locked = new boolean[numVertices];
+
+		/** Seams - more than one vertex at the same position **/
+		int[] table = newTable(numVertices);
+		int mask = table.length - 1;
+		for (int v = 0; v < numVertices; v++) {
+			int slot = hashPosition(v) & mask;
+			while (true) {
+				int w = table[slot];
+				if (w == EMPTY) {
+					table[slot] = v;
+					break;
+				}
+				if (samePosition(v, w)) {
+					_locked[v] = true;
+					_locked[w] = true;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		/** Borders - edges without exactly two triangles, or with two back to back ones **/
+		int numEdges = _tris.length;
+		table = newTable(numEdges);
+		mask = table.length - 1;
+		long[] keys = new long[numEdges];
+		int[] counts = new int[numEdges];
+		int[] opposite = new int[numEdges];		// third vertex of the first triangle
+		boolean[] folded = new boolean[numEdges];
+		int used = 0;
+
+		for (int t = 0; t < _tris.length / 3; t++) {
+			for (int k = 0; k < 3; k++) {
+				int a = _tris[t * 3 + k];
+				int b = _tris[t * 3 + (k + 1) % 3];
+				long key = a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+
+				int slot = (int)(key ^ (key >>> 29)) * 0x9E3779B1 & mask;
+				while (table[slot] != EMPTY && keys[table[slot]] != key)
+					slot = (slot + 1) & mask;
+				int c = _tris[t * 3 + (k + 2) % 3];
+				if (table[slot] == EMPTY) {
+					table[slot] = used;
+					keys[used] = key;
+					opposite[used++] = c;
+				}
+				else if (opposite[table[slot]] == c)
+					folded[table[slot]] = true;
+				counts[table[slot]]++;
+			}
+		}
+
+		for (int i = 0; i < used; i++) {
+			if (counts[i] != 2 || folded[i]) {
+				_locked[(int)(keys[i] >>> 32)] = true;
+				_locked[(int)keys[i]] = true;
+			}
+		}
+	}
+
+	/*
+	 * Queues moving vertex from onto vertex to
+	 */
+	private void pushCollapse(int from, int to) {
+		if (_locked[from])
+			return;
+
+		int e = _entryCost.size();
+		_entryCost.add(collapseCost(from, to));
+		_entryFrom.add(from);
+		_entryTo.add(to);
+		_entryFromVersion.add(_version[from]);
+		_entryToVersion.add(_version[to]);
+		pushHeap(e);
+	}
+
+	/*
+	 * Quadric error of both vertices at the position of to, plus the
+	 * attribute difference scaled by the squared edge length
+	 */
+	private float collapseCost(int from, int to) {
+		float[] v = _source;
+		int pf = from * _stride;
+		int pt = to * _stride;
+		double x = v[pt], y = v[pt + 1], z = v[pt + 2];
+
+		int qa = from * 10;
+		int qb = to * 10;
+		double[] q = _quadrics;
+		double error =
+				  (q[qa]     + q[qb])     * x * x
+				+ (q[qa + 1] + q[qb + 1]) * 2 * x * y
+				+ (q[qa + 2] + q[qb + 2]) * 2 * x * z
+				+ (q[qa + 3] + q[qb + 3]) * 2 * x
+				+ (q[qa + 4] + q[qb + 4]) * y * y
+				+ (q[qa + 5] + q[qb + 5]) * 2 * y * z
+				+ (q[qa + 6] + q[qb + 6]) * 2 * y
+				+ (q[qa + 7] + q[qb + 7]) * z * z
+				+ (q[qa + 8] + q[qb + 8]) * 2 * z
+				+ (q[qa + 9] + q[qb + 9]);
+
+		// attributes are everything after the position
+		double attr = 0.0;
+		for (int k = 3; k < _stride; k++) {
+			double d = v[pf + k] - v[pt + k];
+			attr += d * d;
+		}
+		double ex = v[pf] - x, ey = v[pf + 1] - y, ez = v[pf + 2] - z;
+		double edge = ex * ex + ey * ey + ez * ez;
+
+		return (float)(Math.max(error, 0.0) + _attributeWeight * attr * edge);
+	}
+
+	/*
+	 * Checks if moving from onto to turns any remaining triangle of from over
+	 */
+	private boolean flips(int from, int to) {
+		float[] v = _source;
+		for (int c = _cornerHead[from]; c != EMPTY; c = _cornerNext[c]) {
+			int t = c / 3;
+			if (_deadTri[t])
+				continue;
+
+			int k = c % 3;
+			int a = _tris[t * 3 + (k + 1) % 3];
+			int b = _tris[t * 3 + (k + 2) % 3];
+			if (a == to || b == to)
+				continue;	// collapses away
+
+			int pf = from * _stride, pt = to * _stride;
+			int pa = a * _stride, pb = b * _stride;
+
+			// normal before and after
+			float n1x, n1y, n1z, n2x, n2y, n2z;
+			{
+				float ux = v[pa] - v[pf], uy = v[pa + 1] - v[pf + 1], uz = v[pa + 2] - v[pf + 2];
+				float wx = v[pb] - v[pf], wy = v[pb + 1] - v[pf + 1], wz = v[pb + 2] - v[pf + 2];
+				n1x = uy * wz - uz * wy;
+				n1y = uz * wx - ux * wz;
+				n1z = ux * wy - uy * wx;
+			}
+			{
+				float ux = v[pa] - v[pt], uy = v[pa + 1] - v[pt + 1], uz = v[pa + 2] - v[pt + 2];
+				float wx = v[pb] - v[pt], wy = v[pb + 1] - v[pt + 1], wz = v[pb + 2] - v[pt + 2];
+				n2x = uy * wz - uz * wy;
+				n2y = uz * wx - ux * wz;
+				n2z = ux * wy - uy * wx;
+			}
+
+			// flipped, turned too far or collapsed to nothing
+			float dot = n1x * n2x + n1y * n2y + n1z * n2z;
+			float len2 = (n1x * n1x + n1y * n1y + n1z * n1z) * (n2x * n2x + n2y * n2y + n2z * n2z);
+			if (dot <= 0.0f || dot * dot < MIN_NORMAL_COS * MIN_NORMAL_COS * len2)
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Merges vertex from into vertex to
+	 */
+	private void collapse(int from, int to) {
+		// triangles of from now belong to to - the ones with both die
+		for (int c = _cornerHead[from]; c != EMPTY; c = _cornerNext[c]) {
+			int t = c / 3;
+			if (_deadTri[t])
+				continue;
+			if (_tris[t * 3] == to || _tris[t * 3 + 1] == to || _tris[t * 3 + 2] == to) {
+				_deadTri[t] = true;
+				_liveTris--;
+			}
+			_tris[c] = to;
+		}
+
+		// splice the corner lists
+		if (_cornerHead[from] != EMPTY) {
+			if (_cornerHead[to] == EMPTY)
+				_cornerHead[to] = _cornerHead[from];
+			else
+				_cornerNext[_cornerTail[to]] = _cornerHead[from];
+			_cornerTail[to] = _cornerTail[from];
+		}
+		_cornerHead[from] = _cornerTail[from] = EMPTY;
+
+		for (int i = 0; i < 10; i++)
+			_quadrics[to * 10 + i] += _quadrics[from * 10 + i];
+		_removed[from] = true;
+		_version[to]++;
+
+		// new costs for the edges around to
+		for (int c = _cornerHead[to]; c != EMPTY; c = _cornerNext[c]) {
+			int t = c / 3;
+			if (_deadTri[t])
+				continue;
+			int k = c % 3;
+			int a = _tris[t * 3 + (k + 1) % 3];
+			int b = _tris[t * 3 + (k + 2) % 3];
+			pushCollapse(to, a);
+			pushCollapse(a, to);
+			pushCollapse(to, b);
+			pushCollapse(b, to);
+		}
+	}
+
+	/*
+	 * Keeps the live triangles and the vertices they use, in their old order
+	 */
+	private void compact(int numVertices) {
+		int[] remap = new int[numVertices];
+		for (int v = 0; v < numVertices; v++)
+			remap[v] = EMPTY;
+
+		int numTris = _tris.length / 3;
+		for (int t = 0; t < numTris; t++) {
+			if (!_deadTri[t]) {
+				for (int k = 0; k < 3; k++)
+					remap[_tris[t * 3 + k]] = 0;
+			}
+		}
+
+		int count = 0;
+		for (int v = 0; v < numVertices; v++) {
+			if (remap[v] != EMPTY)
+				remap[v] = count++;
+		}
+
+		_vertices = new float[count * _stride];
+		for (int v = 0; v < numVertices; v++) {
+			if (remap[v] != EMPTY)
+				System.arraycopy(_source, v * _stride, _vertices, remap[v] * _stride, _stride);
+		}
+
+		_indices = new int[_liveTris * 3];
+		int n = 0;
+		for (int t = 0; t < numTris; t++) {
+			if (!_deadTri[t]) {
+				_indices[n++] = remap[_tris[t * 3]];
+				_indices[n++] = remap[_tris[t * 3 + 1]];
+				_indices[n++] = remap[_tris[t * 3 + 2]];
+			}
+		}
+	}
+
+	/**
+	 * Triangles that survive keep their order, so groups of them (materials)
+	 * stay together
+	 * @param groupStarts index offsets where the groups started in the input (+ the end)
+	 * @return where they start in get_indices(), null if groupStarts is
+	 */
+	public int[] getGroupStarts(int[] groupStarts) {
+		if (groupStarts == null)
+			return null;
+
+		int[] starts = new int[groupStarts.length];
+		int group = 0;
+		int live = 0;
+		for (int t = 0; t < _deadTri.length; t++) {
+			while (group < groupStarts.length && groupStarts[group] <= t * 3)
+				starts[group++] = live * 3;
+			if (!_deadTri[t])
+				live++;
+		}
+		while (group < groupStarts.length)
+			starts[group++] = live * 3;
+		return starts;
+	}
+
+	/** Heap **/
+	private void pushHeap(int e) {
+		if (_heapSize < _heap.size())
+			_heap.set(_heapSize, e);
+		else
+			_heap.add(e);
+		int i = _heapSize++;
+
+		float cost = _entryCost.get(e);
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			int p = _heap.get(parent);
+			if (_entryCost.get(p) <= cost)
+				break;
+			_heap.set(i, p);
+			i = parent;
+		}
+		_heap.set(i, e);
+	}
+
+	private int popHeap() {
+		int top = _heap.get(0);
+		int e = _heap.get(--_heapSize);
+		float cost = _entryCost.get(e);
+
+		int i = 0;
+		while (true) {
+			int child = i * 2 + 1;
+			if (child >= _heapSize)
+				break;
+			if (child + 1 < _heapSize && _entryCost.get(_heap.get(child + 1)) < _entryCost.get(_heap.get(child)))
+				child++;
+			if (cost <= _entryCost.get(_heap.get(child)))
+				break;
+			_heap.set(i, _heap.get(child));
+			i = child;
+		}
+		if (_heapSize > 0)
+			_heap.set(i, e);
+		return top;
+	}
+
+	/*
+	 * Power of two table with at most 50% load
+	 */
+	private static int[] newTable(int entries) {
+		int size = 16;
+		while (size < entries * 2)
+			size <<= 1;
+		int[] table = new int[size];
+		for (int i = 0; i < size; i++)
+			table[i] = EMPTY;
+		return table;
+	}
+
+	private int hashPosition(int v) {
+		int h = 0;
+		for (int k = 0; k < 3; k++) {
+			float f = _source[v * _stride + k];
+			h = h * 31 + (f == 0.0f ? 0 : Float.floatToIntBits(f));
+		}
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private boolean samePosition(int v, int w) {
+		for (int k = 0; k < 3; k++) {
+			if (_source[v * _stride + k] != _source[w * _stride + k])
+				return false;
+		}
+		return true;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public float[] get_vertices() {
+		return _vertices;
+	}
+
+	public int[] get_indices() {
+		return _indices;
+	}
+
+	/**
+	 * @return cost of the most expensive collapse of the last run
+	 */
+	public float getError() {
+		return _error;
+	}
+
+	public float getAttributeWeight() {
+		return _attributeWeight;
+	}
+
+	public void setAttributeWeight(float attributeWeight) {
+		_attributeWeight = attributeWeight;
+	}
+
+	public float getMaxError() {
+		return _maxError;
+	}
+
+	public void setMaxError(float maxError) {
+		_maxError = maxError;
+	}
+}
@@ -0,0 +1,274 @@
+/**
+ * Welds identical vertices of an indexed triangle mesh together and drops
+ * degenerate and duplicate triangles.
+ * Vertices are compared on all their attributes (position, normal, tex coords),
+ * either exactly or snapped to a grid of size epsilon.
+ */
+
+package graphics.shaders;
+
+public class MeshWelder {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private static final int EMPTY = -1;
+
+	// grid size vertices are snapped to before comparing - 0 = exact match
+	private float _epsilon;
+
+	// Results
+	private float[] _vertices;
+	private int[] _indices;
+	private int[] _groupStarts;
+
+	// Statistics
+	private int _verticesBefore;
+	private int _verticesAfter;
+	private int _degenerateTriangles;
+	private int _duplicateTriangles;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public MeshWelder() {
+		this(0.0f);
+	}
+
+	public MeshWelder(float epsilon) {
+		_epsilon = epsilon;
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Welds the mesh. Results are available from get_vertices()/get_indices().
+	 * @param vertices interleaved vertex data
+	 * @param indices triangle list
+	 * @param stride number of floats per vertex
+	 * @param posOffset offset of the position inside a vertex (for the area test)
+	 */
+	public void weld(float[] vertices, int[] indices, int stride, int posOffset) {
+		weld(vertices, indices, stride, posOffset, null);
+	}
+
+	/**
+	 * Welds a mesh whose triangles are in groups (materials). Triangles keep
+	 * their order, so the groups stay together - getGroupStarts() says where
+	 * they start once triangles were dropped.
+	 * @param groupStarts index offsets where the groups start (+ the end), null = no groups
+	 */
+	public void weld(float[] vertices, int[] indices, int stride, int posOffset, int[] groupStarts) {
+		int numVertices = vertices.length / stride;
+		_verticesBefore = numVertices;
+		_degenerateTriangles = 0;
+		_duplicateTriangles = 0;
+
+		/** Vertices **/
+		// open addressing hash table: slot -> new vertex index
+		int[] table = newTable(numVertices);
+		int mask = table.length - 1;
+
+		int[] remap = new int[numVertices];
+		float[] welded = new float[vertices.length];
+		int count = 0;
+
+		for (int v = 0; v < numVertices; v++) {
+			int slot = hashVertex(vertices, v * stride, stride) & mask;
+			while (true) {
+				int w = table[slot];
+				if (w == EMPTY) {
+					// first time we see this vertex
+					System.arraycopy(vertices, v * stride, welded, count * stride, stride);
+					table[slot] = count;
+					remap[v] = count++;
+					break;
+				}
+				if (sameVertex(vertices, v * stride, welded, w * stride, stride)) {
+					remap[v] = w;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		_verticesAfter = count;
+		_vertices = new float[count * stride];
+		System.arraycopy(welded, 0, _vertices, 0, _vertices.length);
+
+		/** Triangles **/
+		int numTriangles = indices.length / 3;
+		table = newTable(numTriangles);
+		mask = table.length - 1;
+
+		int[] tris = new int[numTriangles * 3];
+		int numTris = 0;
+		_groupStarts = groupStarts != null ? new int[groupStarts.length] : null;
+		int group = 0;
+
+		for (int t = 0; t < numTriangles; t++) {
+			// groups starting here start at the next kept triangle
+			while (_groupStarts != null && group < groupStarts.length && groupStarts[group] <= t * 3)
+				_groupStarts[group++] = numTris * 3;
+
+			int a = remap[indices[t * 3]];
+			int b = remap[indices[t * 3 + 1]];
+			int c = remap[indices[t * 3 + 2]];
+
+			// collapsed by the weld or zero area
+			if (a == b || b == c || a == c || zeroArea(a, b, c, stride, posOffset)) {
+				_degenerateTriangles++;
+				continue;
+			}
+
+			// rotate so the smallest index comes first - keeps the winding,
+			// so a back to back pair of triangles is not a duplicate
+			if (b < a && b < c) {
+				int tmp = a; a = b; b = c; c = tmp;
+			}
+			else if (c < a && c < b) {
+				int tmp = c; c = b; b = a; a = tmp;
+			}
+
+			int slot = hashTriangle(a, b, c) & mask;
+			boolean duplicate = false;
+			while (table[slot] != EMPTY) {
+				int o = table[slot] * 3;
+				if (tris[o] == a && tris[o + 1] == b && tris[o + 2] == c) {
+					duplicate = true;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if (duplicate) {
+				_duplicateTriangles++;
+				continue;
+			}
+
+			table[slot] = numTris;
+			tris[numTris * 3]     = a;
+			tris[numTris * 3 + 1] = b;
+			tris[numTris * 3 + 2] = c;
+			numTris++;
+		}
+
+		_indices = new int[numTris * 3];
+		System.arraycopy(tris, 0, _indices, 0, _indices.length);
+
+		while (_groupStarts != null && group < groupStarts.length)
+			_groupStarts[group++] = numTris * 3;
+	}
+
+	/*
+	 * Power of two table with at most 50% load
+	 */
+	private static int[] newTable(int entries) {
+		int size = 16;
+		while (size < entries * 2)
+			size <<= 1;
+		int[] table = new int[size];
+		for (int i = 0; i < size; i++)
+			table[i] = EMPTY;
+		return table;
+	}
+
+	/*
+	 * Key of one vertex component - snapped to the grid if there is one
+	 */
+	private int key(float f) {
+		if (_epsilon > 0.0f)
+			return Math.round(f / _epsilon);
+		// +0 and -0 are the same vertex
+		return f == 0.0f ? 0 : Float.floatToIntBits(f);
+	}
+
+	private int hashVertex(float[] v, int offset, int stride) {
+		int h = 0;
+		for (int i = 0; i < stride; i++)
+			h = h * 31 + key(v[offset + i]);
+		// spread the bits - the table index uses the low ones
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private boolean sameVertex(float[] v, int offset, float[] w, int wOffset, int stride) {
+		for (int i = 0; i < stride; i++) {
+			if (key(v[offset + i]) != key(w[wOffset + i]))
+				return false;
+		}
+		return true;
+	}
+
+	private static int hashTriangle(int a, int b, int c) {
+		int h = (a * 73856093) ^ (b * 19349663) ^ (c * 83492791);
+		h ^= (h >>> 16);
+		return h;
+	}
+
+	/*
+	 * Checks if the triangle has no area (all three positions on a line)
+	 */
+	private boolean zeroArea(int a, int b, int c, int stride, int posOffset) {
+		int pa = a * stride + posOffset;
+		int pb = b * stride + posOffset;
+		int pc = c * stride + posOffset;
+
+		float e1x = _vertices[pb] - _vertices[pa];
+		float e1y = _vertices[pb + 1] - _vertices[pa + 1];
+		float e1z = _vertices[pb + 2] - _vertices[pa + 2];
+		float e2x = _vertices[pc] - _vertices[pa];
+		float e2y = _vertices[pc + 1] - _vertices[pa + 1];
+		float e2z = _vertices[pc + 2] - _vertices[pa + 2];
+
+		float cx = e1y * e2z - e1z * e2y;
+		float cy = e1z * e2x - e1x * e2z;
+		float cz = e1x * e2y - e1y * e2x;
+
+		return cx * cx + cy * cy + cz * cz == 0.0f;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public float[] get_vertices() {
+		return _vertices;
+	}
+
+	public int[] get_indices() {
+		return _indices;
+	}
+
+	/**
+	 * @return where the groups start in get_indices() (+ the end), null without groups
+	 */
+	public int[] getGroupStarts() {
+		return _groupStarts;
+	}
+
+	public int getVerticesBefore() {
+		return _verticesBefore;
+	}
+
+	public int getVerticesAfter() {
+		return _verticesAfter;
+	}
+
+	public int getDegenerateTriangles() {
+		return _degenerateTriangles;
+	}
+
+	public int getDuplicateTriangles() {
+		return _duplicateTriangles;
+	}
+
+	public float getEpsilon() {
+		return _epsilon;
+	}
+
+	public void setEpsilon(float epsilon) {
+		_epsilon = epsilon;
+	}
+}
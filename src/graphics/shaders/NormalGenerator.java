@@ -0,0 +1,303 @@
+/**
+ * Generates smooth vertex normals for meshes that don't come with any (.OFF).
+ *
+ * Works in two passes that can both be spread over several threads:
+ *   1) face normals, one per triangle
+ *   2) a gather per vertex over the faces around it
+ * Each vertex adds up its faces in face order, exactly like a serial loop
+ * over the faces would, so the result is the same bit for bit no matter
+ * how many threads are used. Nothing is allocated per triangle.
+ */
+
+package graphics.shaders;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class NormalGenerator {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// below this many triangles threads cost more than they save
+	private static final int MIN_PARALLEL_FACES = 8192;
+
+	// shared by every mesh load, one thread per core - made once, never shut down
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService sPool;
+
+	private boolean _angleWeighted;
+	private int _threads;
+
+	// Input
+	private float[] _vertices;
+	private int _stride;
+	private int _normalOffset;
+	private int[] _indices;
+
+	// Results/work data
+	private float[] _faceNormals;		// 3 per face
+	private float[] _cornerAngles;		// 3 per face (angle weighted only)
+	private int[] _vertexFaceStart;		// CSR: faces around vertex v are
+	private int[] _vertexFaces;			// _vertexFaces[_vertexFaceStart[v] .. _vertexFaceStart[v + 1])
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public NormalGenerator() {
+		this(false, 0);
+	}
+
+	/**
+	 * @param angleWeighted weight each face normal by the angle of the corner
+	 * @param threads number of threads, 0 = one per core, 1 = serial - at most one per core
+	 */
+	public NormalGenerator(boolean angleWeighted, int threads) {
+		_angleWeighted = angleWeighted;
+		_threads = threads > 0 ? Math.min(threads, POOL_SIZE) : POOL_SIZE;
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Calculates the vertex normals and writes them into the vertex array
+	 * @param vertices interleaved vertices, position at offset 0
+	 * @param stride floats per vertex
+	 * @param normalOffset offset of the normal inside a vertex
+	 * @param indices triangle list
+	 */
+	public void generate(float[] vertices, int stride, int normalOffset, int[] indices) {
+		_vertices = vertices;
+		_stride = stride;
+		_normalOffset = normalOffset;
+		_indices = indices;
+
+		int numFaces = indices.length / 3;
+		int numVertices = vertices.length / stride;
+
+		_faceNormals = new float[numFaces * 3];
+		_cornerAngles = _angleWeighted ? new float[numFaces * 3] : null;
+
+		int threads = numFaces < MIN_PARALLEL_FACES ? 1 : _threads;
+
+		// pass 1 - face normals
+		run(threads, numFaces, new Range() {
+			public void run(int from, int to) {
+				faceNormals(from, to);
+			}
+		});
+
+		// vertex -> faces adjacency (cheap, stays serial so the order is fixed)
+		buildAdjacency(numVertices);
+
+		// pass 2 - gather per vertex
+		run(threads, numVertices, new Range() {
+			public void run(int from, int to) {
+				vertexNormals(from, to);
+			}
+		});
+
+		_vertexFaces = null;
+		_vertexFaceStart = null;
+		_cornerAngles = null;
+	}
+
+	/*
+	 * Face normal = normalized (v1 - v2) x (v3 - v2)
+	 */
+	private void faceNormals(int from, int to) {
+		float[] v = _vertices;
+		for (int i = from; i < to; i++) {
+			int p1 = _indices[i * 3] * _stride;
+			int p2 = _indices[i * 3 + 1] * _stride;
+			int p3 = _indices[i * 3 + 2] * _stride;
+
+			// v1 - v2 and v3 - v2
+			float ax = v[p1] - v[p2], ay = v[p1 + 1] - v[p2 + 1], az = v[p1 + 2] - v[p2 + 2];
+			float bx = v[p3] - v[p2], by = v[p3 + 1] - v[p2 + 1], bz = v[p3 + 2] - v[p2 + 2];
+
+			float cx = ay * bz - az * by;
+			float cy = az * bx - ax * bz;
+			float cz = ax * by - ay * bx;
+
+			// normalize
+			float len = (float)Math.sqrt(cx * cx + cy * cy + cz * cz);
+			cx /= len;
+			cy /= len;
+			cz /= len;
+
+			// no negative zeros
+			if (cx == -0.0f)
+				cx = 0.0f;
+			if (cy == -0.0f)
+				cy = 0.0f;
+			if (cz == -0.0f)
+				cz = 0.0f;
+
+			_faceNormals[i * 3]     = cx;
+			_faceNormals[i * 3 + 1] = cy;
+			_faceNormals[i * 3 + 2] = cz;
+
+			if (_angleWeighted) {
+				_cornerAngles[i * 3]     = angle(p1, p2, p3);
+				_cornerAngles[i * 3 + 1] = angle(p2, p3, p1);
+				_cornerAngles[i * 3 + 2] = angle(p3, p1, p2);
+			}
+		}
+	}
+
+	/*
+	 * Angle at corner a of the triangle a, b, c
+	 */
+	private float angle(int a, int b, int c) {
+		float[] v = _vertices;
+		float ux = v[b] - v[a], uy = v[b + 1] - v[a + 1], uz = v[b + 2] - v[a + 2];
+		float wx = v[c] - v[a], wy = v[c + 1] - v[a + 1], wz = v[c + 2] - v[a + 2];
+		float lu = (float)Math.sqrt(ux * ux + uy * uy + uz * uz);
+		float lw = (float)Math.sqrt(wx * wx + wy * wy + wz * wz);
+		if (lu == 0.0f || lw == 0.0f)
+			return 0.0f;
+		float cos = (ux * wx + uy * wy + uz * wz) / (lu * lw);
+		return (float)Math.acos(Math.max(-1.0f, Math.min(1.0f, cos)));
+	}
+
+	/*
+	 * Lists the corners around every vertex, in face order
+	 */
+	private void buildAdjacency(int numVertices) {
+		_vertexFaceStart = new int[numVertices + 1];
+		for (int i = 0; i < _indices.length; i++)
+			_vertexFaceStart[_indices[i] + 1]++;
+		for (int v = 0; v < numVertices; v++)
+			_vertexFaceStart[v + 1] += _vertexFaceStart[v];
+
+		// stores corner ids (face * 3 + corner) so the angle can be looked up
+		_vertexFaces = new int[_indices.length];
+		int[] fill = new int[numVertices];
+		for (int i = 0; i < _indices.length; i++) {
+			int v = _indices[i];
+			_vertexFaces[_vertexFaceStart[v] + fill[v]++] = i;
+		}
+	}
+
+	/*
+	 * Average (or angle weighted sum) of the face normals around each vertex
+	 */
+	private void vertexNormals(int from, int to) {
+		for (int v = from; v < to; v++) {
+			float nx = 0, ny = 0, nz = 0;
+			int start = _vertexFaceStart[v];
+			int end = _vertexFaceStart[v + 1];
+
+			for (int k = start; k < end; k++) {
+				int corner = _vertexFaces[k];
+				int f = corner / 3;
+				if (_angleWeighted) {
+					float w = _cornerAngles[corner];
+					nx += _faceNormals[f * 3] * w;
+					ny += _faceNormals[f * 3 + 1] * w;
+					nz += _faceNormals[f * 3 + 2] * w;
+				}
+				else {
+					nx += _faceNormals[f * 3];
+					ny += _faceNormals[f * 3 + 1];
+					nz += _faceNormals[f * 3 + 2];
+				}
+			}
+
+			int count = end - start;
+			if (_angleWeighted) {
+				float len = (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+				if (len > 0.0f) {
+					nx /= len;
+					ny /= len;
+					nz /= len;
+				}
+			}
+			else {
+				nx /= count;
+				ny /= count;
+				nz /= count;
+			}
+
+			int o = v * _stride + _normalOffset;
+			_vertices[o]     = nx;
+			_vertices[o + 1] = ny;
+			_vertices[o + 2] = nz;
+		}
+	}
+
+	/*
+	 * A slice of work
+	 */
+	private interface Range {
+		void run(int from, int to);
+	}
+
+	/*
+	 * Splits [0, count) into one slice per thread and waits for all of them
+	 */
+	private static void run(int threads, int count, final Range range) {
+		if (threads <= 1) {
+			range.run(0, count);
+			return;
+		}
+
+		ExecutorService pool = getPool();
+		final CountDownLatch done = new CountDownLatch(threads);
+		final Throwable[] error = new Throwable[1];
+		int chunk = (count + threads - 1) / threads;
+
+		for (int t = 0; t < threads; t++) {
+			final int from = Math.min(count, t * chunk);
+			final int to = Math.min(count, from + chunk);
+			pool.execute(new Runnable() {
+				public void run() {
+					try {
+						range.run(from, to);
+					} catch (Throwable e) {
+						error[0] = e;
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while generating normals");
+		}
+		if (error[0] != null)
+			throw new RuntimeException("Normal generation failed", error[0]);
+	}
+
+	private static synchronized ExecutorService getPool() {
+		if (sPool == null) {
+			sPool = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "NormalGenerator");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return sPool;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return the normal of every face (3 floats per face)
+	 */
+	public float[] getFaceNormals() {
+		return _faceNormals;
+	}
+}
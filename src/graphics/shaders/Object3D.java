@@ -1,96 +1,231 @@
-/**
- * Class represents a 3D object. 
- * Consists of a mesh of triangles, any textures, lighting properties, etc. 
- */
-
-package graphics.shaders;
-
-import android.content.Context;
-import android.opengl.GLES20;
-
-public class Object3D {
-	/*************************
-	 * PROPERTIES
-	 ************************/
-	// Context
-	Context context;
-
-	// Mesh
-	Mesh mesh; 						// The mesh of triangles
-	int meshID;						// Mesh file (.OFF or .OBJ) from resources
-
-	// texture
-	private boolean hasTexture;
-	private int[] texFiles;
-	private int[] _texIDs;
-
-	/***************************
-	 * CONSTRUCTOR(S)
-	 **************************/
-	public Object3D(int meshID, boolean hasTexture, Context context) {
-		this(new int[0], meshID, hasTexture, context);
-	}
-
-	public Object3D(int[] texFile, int meshID, boolean hasTexture, Context context) {
-		this.texFiles = texFile;
-		this.meshID = meshID;
-		this.hasTexture = hasTexture;
-
-		// the mesh
-		mesh = new Mesh(meshID, context);
-
-		// texture
-		_texIDs = new int[texFiles.length];
-	} 
-
-	/**************************
-	 * OTHER METHODS
-	 *************************/
-	
-	// ...
-
-
-	/***************************
-	 * GET/SET
-	 *************************/
-	public Mesh getMesh() {
-		return mesh;
-	}
-
-	public void setMesh(Mesh mesh) {
-		this.mesh = mesh;
-	}
-
-	public int getMeshID() {
-		return meshID;
-	}
-
-	public void setMeshID(int meshID) {
-		this.meshID = meshID;
-	}
-
-	public boolean hasTexture() {
-		return hasTexture;
-	}
-
-	public void setHasTexture(boolean hasTexture) {
-		this.hasTexture = hasTexture;
-	}
-
-	public int[] getTexFile() {
-		return texFiles;
-	}
-
-	public void setTexFile(int[] texFile) {
-		this.texFiles = texFile;
-	}
-
-	public int[] get_texID() {
-		return _texIDs;
-	}
-
-	public void set_texID(int[] _texid) {
-		_texIDs = _texid;
-	}
-
-}
+/**
+ * Class represents a 3D object. 
+ * Consists of a mesh of triangles, any textures, lighting properties, etc. 
+ */
+
+package graphics.shaders;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+public class Object3D {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Context
+	Context context;
+
+	// Mesh
+	Mesh mesh; 						// The mesh of triangles
+	int meshID;						// Mesh file (.OFF or .OBJ) from resources
+
+	// levels of detail - _lods[0] is the mesh itself
+	private Mesh[] _lods;
+	private float[] _lodSizes;		// smallest screen size (pixels) for each level but the last
+	private float _lodHysteresis = 0.1f;
+	private float _radius;			// bounding sphere around the origin
+	private boolean _meshResident = true;	// false while the AssetLoader still works on it
+
+	// texture
+	private boolean hasTexture;
+	private int[] texFiles;
+	private Texture[] _textures;	// one per texture file - shared through the AssetRegistry
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public Object3D(int meshID, boolean hasTexture, Context context) {
+		this(new int[0], meshID, hasTexture, context);
+	}
+
+	public Object3D(int[] texFile, int meshID, boolean hasTexture, Context context) {
+		this.texFiles = texFile;
+		this.meshID = meshID;
+		this.hasTexture = hasTexture;
+
+		// the mesh
+		mesh = new Mesh(meshID, context);
+		setLods(new Mesh[] {mesh});
+
+		// texture
+		setTexFile(texFile);
+	} 
+
+	/**
+	 * Creates the object without loading anything - it draws a placeholder
+	 * until the AssetRegistry has loaded the mesh and textures
+	 */
+	public Object3D(int[] texFile, int meshID, boolean hasTexture) {
+		this.texFiles = texFile;
+		this.meshID = meshID;
+		this.hasTexture = hasTexture;
+
+		setLods(new Mesh[] {AssetLoader.getPlaceholderMesh()});
+		_meshResident = false;
+
+		// texture
+		setTexFile(texFile);
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Generates levels of detail from the mesh
+	 * @param levels number of levels including the full mesh
+	 * @param ratio triangle ratio between two levels, e.g. 0.5
+	 */
+	public void buildLods(int levels, float ratio) {
+		setLods(MeshSimplifier.buildLods(mesh, levels, ratio));
+	}
+
+	/**
+	 * Picks the level of detail for the size of the object on screen.
+	 * A level only changes once the size is past the threshold by the
+	 * hysteresis, so objects near a threshold don't flicker between levels.
+	 * @param screenSize projected diameter in pixels
+	 * @param current the level used last time
+	 * @return the level to draw
+	 */
+	public int selectLod(float screenSize, int current) {
+		int last = _lods.length - 1;
+		int level = 0;
+		while (level < last && screenSize < _lodSizes[level])
+			level++;
+
+		if (level > current) {
+			// coarser - has to be clearly smaller
+			while (level > current && screenSize >= _lodSizes[level - 1] * (1.0f - _lodHysteresis))
+				level--;
+		}
+		else if (level < current) {
+			// finer - has to be clearly bigger
+			while (level < current && screenSize < _lodSizes[level] * (1.0f + _lodHysteresis))
+				level++;
+		}
+		return level;
+	}
+
+	/*
+	 * Radius of the sphere around the origin that holds the mesh's box
+	 */
+	private static float boundingRadius(Mesh mesh) {
+		float[] b = mesh.getBounds();
+		float x = Math.max(Math.abs(b[0]), Math.abs(b[3]));
+		float y = Math.max(Math.abs(b[1]), Math.abs(b[4]));
+		float z = Math.max(Math.abs(b[2]), Math.abs(b[5]));
+		return (float)Math.sqrt(x * x + y * y + z * z);
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public Mesh getMesh() {
+		return mesh;
+	}
+
+	public void setMesh(Mesh mesh) {
+		this.mesh = mesh;
+		setLods(new Mesh[] {mesh});
+	}
+
+	/**
+	 * @param level 0 = full detail, getNumLods() - 1 = coarsest
+	 */
+	public Mesh getLod(int level) {
+		return _lods[level];
+	}
+
+	public int getNumLods() {
+		return _lods.length;
+	}
+
+	/**
+	 * Sets the levels of detail (e.g. converted offline with MeshConverter -lods).
+	 * The screen sizes default to 256 pixels for level 0, halving per level.
+	 * @param lods lods[0] is the full detail mesh
+	 */
+	public void setLods(Mesh[] lods) {
+		_lods = lods;
+		mesh = lods[0];
+		_radius = mesh.getParts() != null ? boundingRadius(mesh) : 0.0f;
+
+		_lodSizes = new float[lods.length - 1];
+		for (int i = 0; i < _lodSizes.length; i++)
+			_lodSizes[i] = 256.0f / (1 << i);
+	}
+
+	/**
+	 * @return smallest screen size (pixels) of every level but the last
+	 */
+	public float[] getLodSizes() {
+		return _lodSizes;
+	}
+
+	public void setLodSizes(float[] lodSizes) {
+		_lodSizes = lodSizes;
+	}
+
+	public float getLodHysteresis() {
+		return _lodHysteresis;
+	}
+
+	public void setLodHysteresis(float lodHysteresis) {
+		_lodHysteresis = lodHysteresis;
+	}
+
+	public float getRadius() {
+		return _radius;
+	}
+
+	/**
+	 * @return false while the placeholder is drawn instead of the mesh
+	 */
+	public boolean isMeshResident() {
+		return _meshResident;
+	}
+
+	public void setMeshResident(boolean meshResident) {
+		_meshResident = meshResident;
+	}
+
+	public int getMeshID() {
+		return meshID;
+	}
+
+	public void setMeshID(int meshID) {
+		this.meshID = meshID;
+	}
+
+	public boolean hasTexture() {
+		return hasTexture;
+	}
+
+	public void setHasTexture(boolean hasTexture) {
+		this.hasTexture = hasTexture;
+	}
+
+	public int[] getTexFile() {
+		return texFiles;
+	}
+
+	public void setTexFile(int[] texFile) {
+		this.texFiles = texFile;
+		_textures = new Texture[texFile.length];
+		for (int i = 0; i < texFile.length; i++)
+			_textures[i] = new Texture(texFile[i]);
+	}
+
+	/**
+	 * @return one texture per texture file
+	 */
+	public Texture[] getTextures() {
+		return _textures;
+	}
+
+	public void setTextures(Texture[] textures) {
+		_textures = textures;
+	}
+
+}
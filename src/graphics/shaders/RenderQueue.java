@@ -0,0 +1,296 @@
+/**
+ * The draws of one frame, sorted so state changes only when it has to.
+ *
+ * Every draw item (mesh or instanced batch, shader, textures, model matrix)
+ * gets a 64 bit key:
+ *   bits 60..63  pass         (opaque first)
+ *   bits 52..59  shader
+ *   bits 32..51  texture set
+ *   bits  0..31  depth        (front to back, back to front for transparent)
+ * Sorting by the key groups the items by shader, then by textures, so the
+ * Renderer switches program and textures once per group while walking the
+ * queue. The sort is an LSD radix sort on 8 bit digits - linear in the
+ * number of items, and digits all items share (e.g. the pass) are skipped.
+ *
+ * Items are kept as parallel arrays that grow but are never freed, so
+ * filling the queue every frame does not allocate.
+ */
+
+package graphics.shaders;
+
+import java.util.ArrayList;
+
+public class RenderQueue {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Passes
+	public static final int PASS_OPAQUE = 0;
+	public static final int PASS_TRANSPARENT = 1;
+
+	// Key layout
+	private static final int PASS_SHIFT = 60;
+	private static final int SHADER_SHIFT = 52;
+	private static final int TEXTURES_SHIFT = 32;
+	private static final long SHADER_MASK = 0xFFL;
+	private static final long TEXTURES_MASK = 0xFFFFFL;
+	private static final long DEPTH_MASK = 0xFFFFFFFFL;
+
+	private static final float[] IDENTITY = {
+		1.0f, 0.0f, 0.0f, 0.0f,
+		0.0f, 1.0f, 0.0f, 0.0f,
+		0.0f, 0.0f, 1.0f, 0.0f,
+		0.0f, 0.0f, 0.0f, 1.0f
+	};
+
+	// Items
+	private long[] _keys;
+	private Mesh[] _meshes;
+	private InstancedMesh[] _batches;	// set instead of the mesh for instanced items
+	private Shader[] _shaders;
+	private Texture[][] _textures;
+	private float[] _transforms;		// 16 per item
+	private int _count;
+
+	// Sorted order - item indices
+	private int[] _order;
+	private int[] _scratchOrder;
+	private long[] _sortKeys, _scratchKeys;
+	private int[] _histogram = new int[256];
+
+	// Texture sets seen so far - the id of a set is its index + 1 (0 = none)
+	private ArrayList<Texture[]> _textureSets = new ArrayList<Texture[]>();
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public RenderQueue() {
+		this(16);
+	}
+
+	public RenderQueue(int capacity) {
+		allocate(capacity);
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Empties the queue - call at the start of a frame
+	 */
+	public void clear() {
+		_count = 0;
+	}
+
+	/**
+	 * Adds a draw
+	 * @param pass PASS_OPAQUE or PASS_TRANSPARENT
+	 * @param shader the shader to draw with
+	 * @param shaderId small number (0..255) that identifies the shader
+	 * @param textures textures to bind (to units 0, 1, ...), null for none
+	 * @param mesh the mesh
+	 * @param model model matrix, 16 floats at offset
+	 * @param depth distance to the camera (anything growing with it, >= 0)
+	 * @return the item index
+	 */
+	public int add(int pass, Shader shader, int shaderId, Texture[] textures, Mesh mesh,
+			float[] model, int offset, float depth) {
+		if (_count == _keys.length)
+			grow(_count * 2);
+
+		int i = _count++;
+		_meshes[i] = mesh;
+		_batches[i] = null;
+		_shaders[i] = shader;
+		_textures[i] = textures;
+		System.arraycopy(model, offset, _transforms, i * 16, 16);
+
+		// positive floats sort like their bits - flipped for back to front
+		long d = Float.floatToIntBits(Math.max(depth, 0.0f)) & DEPTH_MASK;
+		if (pass == PASS_TRANSPARENT)
+			d = ~d & DEPTH_MASK;
+
+		_keys[i] = ((long)pass << PASS_SHIFT)
+				| ((shaderId & SHADER_MASK) << SHADER_SHIFT)
+				| ((textureSetId(textures) & TEXTURES_MASK) << TEXTURES_SHIFT)
+				| d;
+		return i;
+	}
+
+	/**
+	 * Adds the instances of a batch as one item - drawn with the identity as model matrix
+	 * @param shader the instanced variant of the shader
+	 * @param depth distance of the nearest instance
+	 * @return the item index
+	 */
+	public int addBatch(int pass, Shader shader, int shaderId, Texture[] textures, InstancedMesh batch, float depth) {
+		int i = add(pass, shader, shaderId, textures, null, IDENTITY, 0, depth);
+		_batches[i] = batch;
+		return i;
+	}
+
+	/**
+	 * Sorts the items by key - read them back with getItem()
+	 */
+	public void sort() {
+		int n = _count;
+		int[] src = _order, dst = _scratchOrder;
+		long[] ksrc = _sortKeys, kdst = _scratchKeys;
+		for (int i = 0; i < n; i++) {
+			src[i] = i;
+			ksrc[i] = _keys[i];
+		}
+
+		int[] count = _histogram;
+		for (int shift = 0; shift < 64 && n > 1; shift += 8) {
+			for (int d = 0; d < 256; d++)
+				count[d] = 0;
+			for (int i = 0; i < n; i++)
+				count[(int)(ksrc[i] >>> shift) & 0xFF]++;
+
+			// every key has the same digit - nothing to move
+			if (count[(int)(ksrc[0] >>> shift) & 0xFF] == n)
+				continue;
+
+			int sum = 0;
+			for (int d = 0; d < 256; d++) {
+				int c = count[d];
+				count[d] = sum;
+				sum += c;
+			}
+
+			for (int i = 0; i < n; i++) {
+				int pos = count[(int)(ksrc[i] >>> shift) & 0xFF]++;
+				kdst[pos] = ksrc[i];
+				dst[pos] = src[i];
+			}
+
+			int[] t = src; src = dst; dst = t;
+			long[] tk = ksrc; ksrc = kdst; kdst = tk;
+		}
+
+		// the result ends up in either buffer
+		_order = src;
+		_scratchOrder = dst;
+		_sortKeys = ksrc;
+		_scratchKeys = kdst;
+	}
+
+	/*
+	 * Id of a texture set - sets holding the same textures share it
+	 */
+	private int textureSetId(Texture[] textures) {
+		if (textures == null || textures.length == 0)
+			return 0;
+
+		for (int s = 0; s < _textureSets.size(); s++) {
+			Texture[] set = _textureSets.get(s);
+			if (set == textures)
+				return s + 1;
+			if (set.length != textures.length)
+				continue;
+			boolean same = true;
+			for (int t = 0; t < set.length && same; t++)
+				same = set[t] == textures[t];
+			if (same)
+				return s + 1;
+		}
+		_textureSets.add(textures);
+		return _textureSets.size();
+	}
+
+	private void allocate(int capacity) {
+		_keys = new long[capacity];
+		_meshes = new Mesh[capacity];
+		_batches = new InstancedMesh[capacity];
+		_shaders = new Shader[capacity];
+		_textures = new Texture[capacity][];
+		_transforms = new float[capacity * 16];
+		_order = new int[capacity];
+		_scratchOrder = new int[capacity];
+		_sortKeys = new long[capacity];
+		_scratchKeys = new long[capacity];
+	}
+
+	private void grow(int capacity) {
+		long[] keys = _keys;
+		Mesh[] meshes = _meshes;
+		InstancedMesh[] batches = _batches;
+		Shader[] shaders = _shaders;
+		Texture[][] textures = _textures;
+		float[] transforms = _transforms;
+
+		allocate(capacity);
+		System.arraycopy(keys, 0, _keys, 0, _count);
+		System.arraycopy(meshes, 0, _meshes, 0, _count);
+		System.arraycopy(batches, 0, _batches, 0, _count);
+		System.arraycopy(shaders, 0, _shaders, 0, _count);
+		System.arraycopy(textures, 0, _textures, 0, _count);
+		System.arraycopy(transforms, 0, _transforms, 0, _count * 16);
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public int getCount() {
+		return _count;
+	}
+
+	/**
+	 * @return the item at position i of the sorted queue
+	 */
+	public int getItem(int i) {
+		return _order[i];
+	}
+
+	public long getKey(int item) {
+		return _keys[item];
+	}
+
+	/**
+	 * @return the part of a key that says which shader to use
+	 */
+	public static long shaderBits(long key) {
+		return key >>> SHADER_SHIFT;
+	}
+
+	/**
+	 * @return the part of a key that says which shader and textures to use
+	 */
+	public static long textureBits(long key) {
+		return key >>> TEXTURES_SHIFT;
+	}
+
+	/**
+	 * @return the mesh of an item, null for an instanced batch
+	 */
+	public Mesh getMesh(int item) {
+		return _meshes[item];
+	}
+
+	/**
+	 * @return the instanced batch of an item, null for a single mesh
+	 */
+	public InstancedMesh getBatch(int item) {
+		return _batches[item];
+	}
+
+	public Shader getShader(int item) {
+		return _shaders[item];
+	}
+
+	/**
+	 * @return the textures of an item, null if it has none
+	 */
+	public Texture[] getTextures(int item) {
+		return _textures[item];
+	}
+
+	/**
+	 * @return the model matrices - item i at offset i * 16
+	 */
+	public float[] getTransforms() {
+		return _transforms;
+	}
+}
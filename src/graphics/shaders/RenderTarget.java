@@ -0,0 +1,230 @@
+/**
+ * An offscreen framebuffer to draw the scene into at a lower resolution,
+ * and the blit that stretches it over the screen.
+ *
+ * The framebuffer is as big as the surface and made the first time it is
+ * needed. A lower resolution only uses its lower left part - begin() sets
+ * the viewport to it - so changing the scale costs nothing. blit() draws
+ * one quad over the screen that samples that part with bilinear
+ * filtering, clamped half a texel inside so nothing from outside it
+ * bleeds in.
+ */
+
+package graphics.shaders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+public class RenderTarget {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private static final String VERTEX_SHADER =
+		"attribute vec2 aPosition;\n" +
+		"uniform vec4 uTexScale;	// xy: part of the texture drawn to, zw: where to clamp\n" +
+		"varying vec2 vTexCoord;\n" +
+		"void main() {\n" +
+		"	vTexCoord = (aPosition * 0.5 + 0.5) * uTexScale.xy;\n" +
+		"	gl_Position = vec4(aPosition, 0.0, 1.0);\n" +
+		"}\n";
+
+	private static final String FRAGMENT_SHADER =
+		"precision mediump float;\n" +
+		"uniform sampler2D uTexture;\n" +
+		"uniform vec4 uTexScale;\n" +
+		"varying vec2 vTexCoord;\n" +
+		"void main() {\n" +
+		"	gl_FragColor = texture2D(uTexture, min(vTexCoord, uTexScale.zw));\n" +
+		"}\n";
+
+	private static final String[] UNIFORMS = {"uTexScale", "uTexture"};
+	private static final int U_TEX_SCALE = 0;
+	private static final int U_TEXTURE = 1;
+	private static final String[] ATTRIBUTES = {"aPosition"};
+	private static final int A_POSITION = 0;
+
+	// attribute locations the scene may have left enabled
+	private static final int MAX_ATTRIBUTES = 8;
+
+	private static final String TAG = "RenderTarget";
+
+	// the quad over the screen - a triangle strip
+	private FloatBuffer _quad;
+	private Shader _shader;
+	private float[] _texScale = new float[4];
+
+	// the framebuffer (0 = not made yet)
+	private int _framebuffer, _texture, _depth;
+	private int _width, _height;	// of the surface
+	private boolean _failed;		// no framebuffer or blit program on this GPU - not tried again
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public RenderTarget() {
+		float[] quad = {-1.0f, -1.0f, 1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 1.0f};
+		_quad = ByteBuffer.allocateDirect(quad.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		_quad.put(quad).position(0);
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Builds the blit program in a new GL context - the old framebuffer is gone with the old context
+	 */
+	public void onSurfaceCreated(GLState gl) {
+		_framebuffer = _texture = _depth = 0;
+		_failed = false;
+
+		_shader = new Shader(VERTEX_SHADER, FRAGMENT_SHADER, true, 1);
+		_shader.bindUniforms(UNIFORMS);
+		_shader.bindAttributes(ATTRIBUTES);
+		if (_shader.get_program() == 0 || _shader.getAttribute(A_POSITION) < 0) {
+			Log.e(TAG, "Could not build the blit program");
+			_failed = true;
+			return;
+		}
+		gl.useProgram(_shader.get_program());
+		gl.uniform1i(_shader, U_TEXTURE, 0);
+	}
+
+	/**
+	 * The surface changed size - the framebuffer is made again at the new size (GL thread)
+	 */
+	public void resize(int width, int height) {
+		delete();
+		_width = width;
+		_height = height;
+	}
+
+	/**
+	 * Draws into the framebuffer from now on (GL thread)
+	 * @param width, height the part of it to use - at most the surface size
+	 * @return false if there is no framebuffer to draw into - draw to the screen then
+	 */
+	public boolean begin(GLState gl, int width, int height) {
+		if (_framebuffer == 0 && !create(gl))
+			return false;
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, _framebuffer);
+		GLES20.glViewport(0, 0, width, height);
+		return true;
+	}
+
+	/**
+	 * Stretches the part drawn to since begin() over the screen
+	 * @param width, height as given to begin()
+	 */
+	public void blit(GLState gl, int width, int height) {
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+		GLES20.glViewport(0, 0, _width, _height);
+
+		// nothing to keep from the last frame - cheaper on tiled GPUs than loading it
+		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+
+		gl.useProgram(_shader.get_program());
+		_texScale[0] = (float)width / _width;
+		_texScale[1] = (float)height / _height;
+		_texScale[2] = (width - 0.5f) / _width;
+		_texScale[3] = (height - 0.5f) / _height;
+		gl.uniform4fv(_shader, U_TEX_SCALE, 1, _texScale, 0);
+		gl.bindTexture(0, _texture);
+
+		// 4 vertices could read past arrays the scene left enabled
+		int position = _shader.getAttribute(A_POSITION);
+		for (int i = 0; i < MAX_ATTRIBUTES; i++) {
+			if (i != position)
+				gl.disableVertexAttribArray(i);
+		}
+		gl.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		gl.vertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, 0, _quad);
+		gl.enableVertexAttribArray(position);
+
+		gl.setEnabled(GLES20.GL_DEPTH_TEST, false);
+		GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+		gl.setEnabled(GLES20.GL_DEPTH_TEST, true);
+	}
+
+	/*
+	 * Makes the framebuffer: a color texture and a depth renderbuffer
+	 */
+	private boolean create(GLState gl) {
+		if (_failed || _width == 0 || _height == 0)
+			return false;
+
+		int[] ids = new int[1];
+		GLES20.glGenTextures(1, ids, 0);
+		_texture = ids[0];
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, _texture);
+		GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, _width, _height, 0,
+				GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+		GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+		GLES20.glGenRenderbuffers(1, ids, 0);
+		_depth = ids[0];
+		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, _depth);
+		GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, _width, _height);
+
+		GLES20.glGenFramebuffers(1, ids, 0);
+		_framebuffer = ids[0];
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, _framebuffer);
+		GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+				GLES20.GL_TEXTURE_2D, _texture, 0);
+		GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+				GLES20.GL_RENDERBUFFER, _depth);
+		int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+		// the texture was bound behind the cache's back
+		gl.invalidateBindings();
+
+		if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+			Log.e(TAG, "Framebuffer " + _width + "x" + _height + " incomplete: " + status);
+			delete();
+			_failed = true;
+			return false;
+		}
+		Log.d(TAG, "Framebuffer " + _width + "x" + _height);
+		return true;
+	}
+
+	/**
+	 * Deletes the framebuffer (GL thread)
+	 */
+	public void delete() {
+		if (_framebuffer != 0)
+			GLES20.glDeleteFramebuffers(1, new int[] {_framebuffer}, 0);
+		if (_depth != 0)
+			GLES20.glDeleteRenderbuffers(1, new int[] {_depth}, 0);
+		if (_texture != 0)
+			GLES20.glDeleteTextures(1, new int[] {_texture}, 0);
+		_framebuffer = _texture = _depth = 0;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return false if the GPU could not make the framebuffer - the scene is drawn at full resolution then
+	 */
+	public boolean isSupported() {
+		return !_failed;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+}
@@ -1,715 +1,1390 @@
-/** 
- * The OpenGL renderer
- */
-
-package graphics.shaders;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
-
-import javax.microedition.khronos.egl.EGLConfig;
-import javax.microedition.khronos.opengles.GL10;
-
-import android.annotation.SuppressLint;
-import android.annotation.TargetApi;
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.opengl.GLES20;
-import android.opengl.GLSurfaceView;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
-import android.util.Log;
-import android.widget.Toast;
-
-@SuppressLint({ "FloatMath", "FloatMath" })
-@TargetApi(8)
-class Renderer implements GLSurfaceView.Renderer {
-	/******************************
-	 * PROPERTIES
-	 ******************************/
-	// rotation 
-	public float mDX;
-	public float mDY;
-	float time = 0.0f;
-	float distanceY = 0.0f;
-	float accelY = 0.0f;
-
-	private static final int FLOAT_SIZE_BYTES = 4;
-	private static final int TRIANGLE_VERTICES_DATA_STRIDE_BYTES = 8 * FLOAT_SIZE_BYTES;
-	private static final int TRIANGLE_VERTICES_DATA_POS_OFFSET = 0;
-	private static final int TRIANGLE_VERTICES_DATA_NOR_OFFSET = 3;
-	private static final int TRIANGLE_VERTICES_DATA_TEX_OFFSET = 6;
-
-	// shader constants
-	private final int GOURAUD_SHADER = 0;
-	private final int PHONG_SHADER = 1;
-	private final int NORMALMAP_SHADER = 2;
-
-	// array of shaders
-	Shader _shaders[] = new Shader[3];
-	private int _currentShader;
-
-	/** Shader code **/
-	private int[] vShaders;
-	private int[] fShaders;
-
-	// object constants
-	private final int ROAD = 0;
-	private final int CUBE = 1;
-
-	// The objects
-	Object3D[] _objects = new Object3D[2];
-
-	// current object
-	private int _currentObject;
-
-	// Modelview/Projection matrices
-	private float[] mMVPMatrix = new float[16];
-	private float[] mProjMatrix = new float[16];
-	private float[] mTransMatrix = new float[16];
-	private float[] mMMatrix = new float[16];		// rotation
-	private float[] mVMatrix = new float[16]; 		// modelview
-	private float[] normalMatrix = new float[16]; 	// modelview normal
-
-	// textures enabled?
-	private boolean enableTexture = true;
-	private int[] _texIDs;
-
-	// light parameters
-	private float[] lightPos;
-	private float[] lightColor;
-	private float[] lightAmbient;
-	private float[] lightDiffuse;
-	// angle rotation for light
-	float angle = 0.0f;
-	boolean lightRotate = false; 
-
-
-	// material properties
-	private float[] matAmbient;
-	private float[] matDiffuse;
-	private float[] matSpecular;
-	private float matShininess;
-
-	// eye pos
-	private float[] eyePos = {0.0f, 10.0f, 25.0f};
-	private float[] lookAt = {0.0f, 0.0f, 0.0f};
-	private float[] lookDir = {
-			lookAt[0] - eyePos[0],
-			lookAt[1] - eyePos[1],
-			lookAt[2] - eyePos[2]
-	};
-	//private float m_u = (float) Math.atan(lookDir[2] / lookDir[0]); 
-
-	// scaling
-	float scaleX = 1.0f;
-	float scaleY = 1.0f;
-	float scaleZ = 1.0f;
-
-
-
-	private Context mContext;
-	private static String TAG = "Renderer";
-
-	/***************************
-	 * CONSTRUCTOR(S)
-	 **************************/
-	public Renderer(Context context) {
-
-		mContext = context;
-
-		// setup all the shaders
-		vShaders = new int[3];
-		fShaders = new int[3];
-
-		// basic - just gouraud shading
-		vShaders[GOURAUD_SHADER] = R.raw.gouraud_vs;
-		fShaders[GOURAUD_SHADER] = R.raw.gouraud_ps;
-
-		// phong shading
-		vShaders[PHONG_SHADER] = R.raw.phong_vs;
-		fShaders[PHONG_SHADER] = R.raw.phong_ps;
-
-		// normal mapping
-		vShaders[NORMALMAP_SHADER] = R.raw.normalmap_vs;
-		fShaders[NORMALMAP_SHADER] = R.raw.normalmap_ps;
-
-		// Create some objects - pass in the textures, the meshes
-		try {
-			int[] normalMapTextures = {R.raw.diffuse_old, R.raw.diffusenormalmap_deepbig};
-			_objects[0] = new Object3D(R.raw.road, false, context);
-			_objects[1] = new Object3D(normalMapTextures, R.raw.texturedcube, true, context);
-		} catch (Exception e) {
-			//showAlert("" + e.getMessage());
-		}
-
-		// set current object and shader
-		_currentObject = this.CUBE;
-		_currentShader = this.GOURAUD_SHADER;
-	}
-
-	/*****************************
-	 * GL FUNCTIONS
-	 ****************************/
-	
-	
-	@TargetApi(8)
-	private void setLight(int _program){
-		// rotate the light?
-		if (lightRotate) {
-			angle += 0.000005f;
-			if (angle >= 6.2)
-				angle = 0.0f;
-
-			// rotate light about y-axis
-			float newPosX = (float)(Math.cos(angle) * lightPos[0] - Math.sin(angle) * lightPos[2]);
-			float newPosZ = (float)(Math.sin(angle) * lightPos[0] + Math.cos(angle) * lightPos[2]);
-			lightPos[0] = newPosX; lightPos[2] = newPosZ;
-		}
-		
-		// lighting variables
-		// send to shaders
-		GLES20.glUniform4fv(GLES20.glGetUniformLocation(_program, "lightPos"), 1, lightPos, 0);
-		GLES20.glUniform4fv(GLES20.glGetUniformLocation(_program, "lightColor"), 1, lightColor, 0);
-
-		// material 
-		GLES20.glUniform4fv(GLES20.glGetUniformLocation(_program, "matAmbient"), 1, matAmbient, 0);
-		GLES20.glUniform4fv(GLES20.glGetUniformLocation(_program, "matDiffuse"), 1, matDiffuse, 0);
-		GLES20.glUniform4fv(GLES20.glGetUniformLocation(_program, "matSpecular"), 1, matSpecular, 0);
-		GLES20.glUniform1f(GLES20.glGetUniformLocation(_program, "matShininess"), matShininess);
-	}
-	
-	
-	private void drawCar(int program, float[] startPos){
-		Matrix.setIdentityM(mMMatrix, 0);
-		Matrix.setIdentityM(mTransMatrix, 0);
-		
-		//Kperny Y tengely
-		if(Math.abs(mDY) < 2)
-			mDY = 0;
-		
-		if(Math.abs(mDY) <= 250){
-			accelY = -1 * mDY * 2;
-		}
-		else{
-			if(mDY < 0)
-				mDY = -250f;
-			if(mDY > 0)
-				mDY = 250f;
-		}
-			distanceY += accelY;
-			Log.d("mDY:", String.valueOf(mDY));
-			
-			
-		//Kperny X tengely
-		if(Math.abs(mDX) < 2)
-			mDX = 0;
-		float[] forward = {
-				(float) Math.cos(mDX / 50),
-				0.0f,
-				(float) Math.sin(mDX / 50)
-				};
-		
-		//lookAt			
-		lookAt[0] = eyePos[0] + 25 * forward[0];
-		lookAt[1] = eyePos[1] + 25 * forward[1];
-		lookAt[2] = eyePos[2] + 25 * forward[2];
-		
-		
-		//eyePos
-		eyePos[0] = 0.0f + distanceY / 1000 * forward[0];
-		eyePos[2] = 25.0f + distanceY / 1000 * forward[2];
-		
-		Matrix.setLookAtM(
-				mVMatrix,
-				0, 
-				eyePos[0], eyePos[1], eyePos[2], 
-				lookAt[0], lookAt[1], lookAt[2],
-				0.0f, 1.0f, 0.0f);
-			
-		
-		//Kormnyzs
-		startPos[0] = eyePos[0] + 5 * forward[0];
-		startPos[2] = eyePos[2] + 5 * forward[2];
-		
-		Matrix.translateM(mTransMatrix, 0, startPos[0], startPos[1], startPos[2]);
-		
-		Matrix.multiplyMM(mMMatrix, 0, mMMatrix, 0, mTransMatrix, 0);    //Translate
-		Matrix.multiplyMM(mMVPMatrix, 0, mVMatrix, 0, mMMatrix, 0);      //View
-		Matrix.multiplyMM(mMVPMatrix, 0, mProjMatrix, 0, mMVPMatrix, 0); //Proj
-
-		// send to the shader
-		GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "uMVPMatrix"), 1, false, mMVPMatrix, 0);
-
-		// Create the normal modelview matrix
-		// Invert + transpose of mvpmatrix
-		Matrix.invertM(normalMatrix, 0, mMVPMatrix, 0);
-		Matrix.transposeM(normalMatrix, 0, normalMatrix, 0);
-
-		// send to the shader
-		GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "normalMatrix"), 1, false, mMVPMatrix, 0);
-		
-		
-		/*** DRAWING OBJECT **/
-		// Get buffers from mesh
-		Object3D ob = this._objects[this.CUBE];
-		Mesh mesh = ob.getMesh();
-		FloatBuffer _vb = mesh.get_vb();
-		ShortBuffer _ib = mesh.get_ib();
-
-		short[] _indices = mesh.get_indices();
-
-		// Vertex buffer
-
-		// the vertex coordinates
-		_vb.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "aPosition"), 3, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "aPosition"));
-
-		// the normal info
-		_vb.position(TRIANGLE_VERTICES_DATA_NOR_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "aNormal"), 3, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "aNormal"));
-
-		// Texture info
-
-		// bind textures
-		if (ob.hasTexture()) {// && enableTexture) {
-			// number of textures
-			int[] texIDs = ob.get_texID(); 
-			
-			for(int i = 0; i < _texIDs.length; i++) {
-				GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
-				//Log.d("TEXTURE BIND: ", i + " " + texIDs[i]);
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texIDs[i]);
-				GLES20.glUniform1i(GLES20.glGetUniformLocation(program, "texture" + (i+1)), i);
-			}
-		}
-
-		// enable texturing? [fix - sending float is waste]
-		GLES20.glUniform1f(GLES20.glGetUniformLocation(program, "hasTexture")/*shader.hasTextureHandle*/, ob.hasTexture() && enableTexture ? 2.0f : 0.0f);
-
-		// texture coordinates
-		_vb.position(TRIANGLE_VERTICES_DATA_TEX_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "textureCoord")/*shader.maTextureHandle*/, 2, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "textureCoord"));//GLES20.glEnableVertexAttribArray(shader.maTextureHandle);
-
-		// Draw with indices
-		GLES20.glDrawElements(GLES20.GL_TRIANGLES, _indices.length, GLES20.GL_UNSIGNED_SHORT, _ib);
-		checkGlError("glDrawElements");
-
-		/** END DRAWING OBJECT ***/
-		
-	}
-	
-	
-	private void drawCar2(int program, float[] startPos){
-		Matrix.setIdentityM(mMMatrix, 0);
-		Matrix.setIdentityM(mTransMatrix, 0);
-
-		Matrix.translateM(mTransMatrix, 0, startPos[0], startPos[1], startPos[2]);
-		
-		Matrix.multiplyMM(mMMatrix, 0, mMMatrix, 0, mTransMatrix, 0);    //Translate
-		Matrix.multiplyMM(mMVPMatrix, 0, mVMatrix, 0, mMMatrix, 0);      //View
-		Matrix.multiplyMM(mMVPMatrix, 0, mProjMatrix, 0, mMVPMatrix, 0); //Proj
-
-		// send to the shader
-		GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "uMVPMatrix"), 1, false, mMVPMatrix, 0);
-
-		// Create the normal modelview matrix
-		// Invert + transpose of mvpmatrix
-		Matrix.invertM(normalMatrix, 0, mMVPMatrix, 0);
-		Matrix.transposeM(normalMatrix, 0, normalMatrix, 0);
-
-		// send to the shader
-		GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "normalMatrix"), 1, false, mMVPMatrix, 0);
-		
-		
-		/*** DRAWING OBJECT **/
-		// Get buffers from mesh
-		Object3D ob = this._objects[this.CUBE];
-		Mesh mesh = ob.getMesh();
-		FloatBuffer _vb = mesh.get_vb();
-		ShortBuffer _ib = mesh.get_ib();
-
-		short[] _indices = mesh.get_indices();
-
-		// Vertex buffer
-
-		// the vertex coordinates
-		_vb.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "aPosition"), 3, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "aPosition"));
-
-		// the normal info
-		_vb.position(TRIANGLE_VERTICES_DATA_NOR_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "aNormal"), 3, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "aNormal"));
-
-		// Texture info
-
-		// bind textures
-		if (ob.hasTexture()) {// && enableTexture) {
-			// number of textures
-			int[] texIDs = ob.get_texID(); 
-			
-			for(int i = 0; i < _texIDs.length; i++) {
-				GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
-				//Log.d("TEXTURE BIND: ", i + " " + texIDs[i]);
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texIDs[i]);
-				GLES20.glUniform1i(GLES20.glGetUniformLocation(program, "texture" + (i+1)), i);
-			}
-		}
-
-		// enable texturing? [fix - sending float is waste]
-		GLES20.glUniform1f(GLES20.glGetUniformLocation(program, "hasTexture")/*shader.hasTextureHandle*/, ob.hasTexture() && enableTexture ? 2.0f : 0.0f);
-
-		// texture coordinates
-		_vb.position(TRIANGLE_VERTICES_DATA_TEX_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "textureCoord")/*shader.maTextureHandle*/, 2, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "textureCoord"));//GLES20.glEnableVertexAttribArray(shader.maTextureHandle);
-
-		// Draw with indices
-		GLES20.glDrawElements(GLES20.GL_TRIANGLES, _indices.length, GLES20.GL_UNSIGNED_SHORT, _ib);
-		checkGlError("glDrawElements");
-
-		/** END DRAWING OBJECT ***/
-		
-	}
-	
-	
-	
-	
-	private void drawRoad(int program){
-		Matrix.setIdentityM(mMMatrix, 0);
-		
-		Matrix.multiplyMM(mMVPMatrix, 0, mVMatrix, 0, mMMatrix, 0);      //View
-		Matrix.multiplyMM(mMVPMatrix, 0, mProjMatrix, 0, mMVPMatrix, 0); //Proj
-		
-		// send to the shader
-		GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "uMVPMatrix"), 1, false, mMVPMatrix, 0);
-
-		// Create the normal modelview matrix
-		// Invert + transpose of mvpmatrix
-		Matrix.invertM(normalMatrix, 0, mMVPMatrix, 0);
-		Matrix.transposeM(normalMatrix, 0, normalMatrix, 0);
-
-		// send to the shader
-		GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "normalMatrix"), 1, false, mMVPMatrix, 0);
-		
-		/*** DRAWING OBJECT **/
-		// Get buffers from mesh
-		Object3D ob = this._objects[this.ROAD];
-		Mesh mesh = ob.getMesh();
-		FloatBuffer _vb = mesh.get_vb();
-		ShortBuffer _ib = mesh.get_ib();
-
-		short[] _indices = mesh.get_indices();
-		
-		/*float[] myVertices = {
-			-20, 0, -20,
-			-20f, 0, 20,
-			20, 0, -20,
-			20, 0, 20
-		};
-		
-		_vb = ByteBuffer.allocateDirect(myVertices.length
-				* FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
-		_vb.put(myVertices);*/
-
-		// Vertex buffer
-
-		// the vertex coordinates
-		_vb.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "aPosition"), 3, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "aPosition"));
-
-		// the normal info
-		_vb.position(TRIANGLE_VERTICES_DATA_NOR_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "aNormal"), 3, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "aNormal"));
-
-		// Texture info
-
-		// bind textures
-		if (ob.hasTexture()) {// && enableTexture) {
-			// number of textures
-			int[] texIDs = ob.get_texID(); 
-			
-			for(int i = 0; i < _texIDs.length; i++) {
-				GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
-				//Log.d("TEXTURE BIND: ", i + " " + texIDs[i]);
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texIDs[i]);
-				GLES20.glUniform1i(GLES20.glGetUniformLocation(program, "texture" + (i+1)), i);
-			}
-		}
-
-		// enable texturing? [fix - sending float is waste]
-		GLES20.glUniform1f(GLES20.glGetUniformLocation(program, "hasTexture")/*shader.hasTextureHandle*/, ob.hasTexture() && enableTexture ? 2.0f : 0.0f);
-
-		// texture coordinates
-		_vb.position(TRIANGLE_VERTICES_DATA_TEX_OFFSET);
-		GLES20.glVertexAttribPointer(GLES20.glGetAttribLocation(program, "textureCoord")/*shader.maTextureHandle*/, 2, GLES20.GL_FLOAT, false,
-				TRIANGLE_VERTICES_DATA_STRIDE_BYTES, _vb);
-		GLES20.glEnableVertexAttribArray(GLES20.glGetAttribLocation(program, "textureCoord"));//GLES20.glEnableVertexAttribArray(shader.maTextureHandle);
-
-		// Draw with indices
-		GLES20.glDrawElements(GLES20.GL_TRIANGLES, _indices.length, GLES20.GL_UNSIGNED_SHORT, _ib);
-		checkGlError("glDrawElements");
-
-		/** END DRAWING OBJECT ***/
-		
-	}
-	
-	
-	/*
-	 * Draw function - called for every frame
-	 */
-	public void onDrawFrame(GL10 glUnused) {
-		// Ignore the passed-in GL10 interface, and use the GLES20
-		// class's static methods instead.
-		GLES20.glClearColor(.0f, .0f, .0f, 1.0f);
-		GLES20.glClear( GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
-
-		GLES20.glUseProgram(0);
-		// the current shader
-		Shader shader = _shaders[this._currentShader]; // PROBLEM!
-		int program = shader.get_program();
-		
-		// Start using the shader
-		GLES20.glUseProgram(program);
-		checkGlError("glUseProgram");
-		
-		setLight(program);		
-		drawCar(program, new float[] {0.0f, 5.0f, 20.0f});
-		drawCar2(program, new float[] {-10.0f, 5.0f, 10.0f});
-		drawCar2(program, new float[] {-5.0f, 5.0f, -10.0f});
-		drawCar2(program, new float[] {10.0f, 5.0f, 0.0f});
-		drawCar2(program, new float[] {50.0f, 5.0f, 15.0f});
-		drawRoad(program);
-		
-		
-		// eye position
-		GLES20.glUniform3fv(GLES20.glGetUniformLocation(program, "eyePos")/*shader.eyeHandle*/, 1, eyePos, 0);
-	}
-
-	/*
-	 * Called when viewport is changed
-	 * @see android.opengl.GLSurfaceView$Renderer#onSurfaceChanged(javax.microedition.khronos.opengles.GL10, int, int)
-	 */
-	public void onSurfaceChanged(GL10 glUnused, int width, int height) {
-		GLES20.glViewport(0, 0, width, height);
-		float ratio = (float) width / height;
-		Matrix.frustumM(mProjMatrix, 0, -ratio, ratio, -1, 1, 0.5f, 40);
-		//Matrix.frustumM(m, offset, left, right, bottom, top, near, far)
-	}
-
-	/**
-	 * Initialization function
-	 */
-	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
-		// initialize shaders
-		try {
-			_shaders[GOURAUD_SHADER] = new Shader(vShaders[GOURAUD_SHADER], fShaders[GOURAUD_SHADER], mContext, false, 0); // gouraud
-			_shaders[PHONG_SHADER] = new Shader(vShaders[PHONG_SHADER], fShaders[PHONG_SHADER], mContext, false, 0); // phong
-			_shaders[NORMALMAP_SHADER] = new Shader(vShaders[NORMALMAP_SHADER], fShaders[NORMALMAP_SHADER], mContext, false, 0); // normal map
-		} catch (Exception e) {
-			Log.d("SHADER 0 SETUP", e.getLocalizedMessage());
-		}
-
-		GLES20.glEnable( GLES20.GL_DEPTH_TEST );
-		GLES20.glClearDepthf(1.0f);
-		GLES20.glDepthFunc( GLES20.GL_LEQUAL );
-		GLES20.glDepthMask( true );
-
-		// cull backface
-		GLES20.glEnable( GLES20.GL_CULL_FACE );
-		GLES20.glCullFace(GLES20.GL_BACK); 
-
-		// light variables
-		float[] lightP = {30.0f, 0.0f, 10.0f, 1};
-		this.lightPos = lightP;
-
-		float[] lightC = {0.5f, 0.5f, 0.5f};
-		this.lightColor = lightC;
-
-		// material properties
-		float[] mA = {0.45f, 0.45f, 0.45f, 1.0f};
-		matAmbient = mA;
-
-		float[] mD = {0.6f, 0.6f, 0.6f, 1.0f};
-		matDiffuse = mD;
-
-		float[] mS =  {0.9f, 0.9f, 0.9f, 1.0f};
-		matSpecular = mS;
-
-		matShininess = 5.0f;
-
-		// setup textures for all objects
-		for(int i = 0; i < _objects.length; i++)
-			setupTextures(_objects[i]);
-
-		// set the view matrix
-		
-		Matrix.setLookAtM(
-				mVMatrix,
-				0, 
-				eyePos[0], eyePos[1], eyePos[2], 
-				0.0f, 0.0f, 0.0f, 
-				0.0f, 1.0f, 0.0f);
-		/*Matrix.setLookAtM(
-			rm, 
-			rmOffset, 
-			eyeX, eyeY, eyeZ, 
-			centerX, centerY, centerZ, 
-			upX, upY, upZ)*/
-	}
-
-	/**************************
-	 * OTHER METHODS
-	 *************************/
-
-	/**
-	 * Changes the shader based on menu selection
-	 * @param represents the other shader 
-	 */
-	public void setShader(int shader) {
-		_currentShader = shader;
-	}
-
-	/**
-	 * Changes the object based on menu selection
-	 * @param represents the other object 
-	 */
-	public void setObject(int object) {
-		_currentObject = object;
-	}
-	
-	
-	
-
-	/**
-	 * Show texture or not?
-	 */
-	public void flipTexturing() {
-		enableTexture = !enableTexture;
-		Object3D ob = _objects[this._currentObject];
-
-		if (enableTexture && !ob.hasTexture()) {
-			// Create a toast notification signifying that there is no texture associated with this object
-			CharSequence text = "Object does not have associated texture";
-			int duration = Toast.LENGTH_SHORT;
-
-			Toast toast = Toast.makeText(mContext, text, duration);
-			toast.show();
-		}
-		//this.toggleTexturing();
-	}
-
-	/**
-	 * Rotate light or not?
-	 */
-	public void toggleLight() {
-		this.lightRotate = !lightRotate;
-		CharSequence text;
-		if (lightRotate)
-			text = "Light rotation resumed";
-		else
-			text = "Light rotation paused";
-		int duration = Toast.LENGTH_SHORT;
-
-		Toast toast = Toast.makeText(mContext, text, duration);
-		toast.show();
-	}
-
-	/**
-	 * Sets up texturing for the object
-	 */
-	private void setupTextures(Object3D ob) {
-		// create new texture ids if object has them
-		if (ob.hasTexture()) {
-			// number of textures
-			int[] texIDs = ob.get_texID();
-			int[] textures = new int[texIDs.length];
-			_texIDs = new int[texIDs.length];
-			// texture file ids
-			int[] texFiles = ob.getTexFile();
-
-			Log.d("TEXFILES LENGTH: ", texFiles.length + "");
-			GLES20.glGenTextures(texIDs.length, textures, 0);
-
-			for(int i = 0; i < texIDs.length; i++) {
-				texIDs[i] = textures[i];
-
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texIDs[i]);
-
-				// parameters
-				GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
-						GLES20.GL_NEAREST);
-				GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-						GLES20.GL_TEXTURE_MAG_FILTER,
-						GLES20.GL_LINEAR);
-
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
-						GLES20.GL_REPEAT);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
-						GLES20.GL_REPEAT);
-
-				InputStream is = mContext.getResources()
-				.openRawResource(texFiles[i]);
-				Bitmap bitmap;
-				try {
-					bitmap = BitmapFactory.decodeStream(is);
-				} finally {
-					try {
-						is.close();
-					} catch(IOException e) {
-						// Ignore.
-					}
-				}
-
-				// create it 
-				GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
-				bitmap.recycle();
-
-				Log.d("ATTACHING TEXTURES: ", "Attached " + i);
-			}
-		}
-	}
-
-	/**
-	 * Scaling
-	 */
-	public void changeScale(float scale) {
-		if (scaleX * scale > 1.4f)
-			return;
-		scaleX *= scale;scaleY *= scale;scaleZ *= scale;
-
-		Log.d("SCALE: ", scaleX + "");
-	}
-
-	// debugging opengl
-	private void checkGlError(String op) {
-		int error;
-		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
-			Log.e(TAG, op + ": glError " + error);
-			throw new RuntimeException(op + ": glError " + error);
-		}
-	}
-
-} 
-
+/** 
+ * The OpenGL renderer
+ */
+
+package graphics.shaders;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.opengl.Matrix;
+import android.os.Debug;
+import android.util.Log;
+import android.widget.Toast;
+
+@SuppressLint({ "FloatMath", "FloatMath" })
+@TargetApi(8)
+class Renderer implements GLSurfaceView.Renderer {
+	/******************************
+	 * PROPERTIES
+	 ******************************/
+	// rotation 
+	public float mDX;
+	public float mDY;
+	float time = 0.0f;
+
+	// the car moves at a fixed rate, not once per frame
+	private Simulation _sim = new Simulation();
+	private int _simSteps;		// last frame
+
+	private static final int FLOAT_SIZE_BYTES = 4;
+
+	// shader constants
+	private final int GOURAUD_SHADER = 0;
+	private final int PHONG_SHADER = 1;
+	private final int NORMALMAP_SHADER = 2;
+
+	// array of shaders
+	Shader _shaders[] = new Shader[3];
+	private int _currentShader;
+
+	// the same shaders built with INSTANCED - see InstancedMesh
+	private Shader _instancedShaders[] = new Shader[3];
+
+	/** Shader code **/
+	private int[] vShaders;
+	private int[] fShaders;
+
+	// uniforms set while drawing - bound to handles once per shader, never looked up by name per frame
+	private static final String[] UNIFORMS = {
+		"uMVPMatrix", "normalMatrix", "eyePos", "lightPos", "lightColor",
+		"matAmbient", "matDiffuse", "matSpecular", "matShininess",
+		"hasTexture", "texture1", "texture2", "posScale", "posBias",
+		"uInstanceOffset", "uInstanceTint"
+	};
+	private static final int U_MVP_MATRIX = 0;
+	private static final int U_NORMAL_MATRIX = 1;
+	private static final int U_EYE_POS = 2;
+	private static final int U_LIGHT_POS = 3;
+	private static final int U_LIGHT_COLOR = 4;
+	private static final int U_MAT_AMBIENT = 5;
+	private static final int U_MAT_DIFFUSE = 6;
+	private static final int U_MAT_SPECULAR = 7;
+	private static final int U_MAT_SHININESS = 8;
+	private static final int U_HAS_TEXTURE = 9;
+	private static final int U_TEXTURE1 = 10;	// texture2 follows
+	private static final int U_POS_SCALE = 12;
+	private static final int U_POS_BIAS = 13;
+	private static final int U_INSTANCE_OFFSET = 14;	// instanced shaders only
+	private static final int U_INSTANCE_TINT = 15;
+
+	// attributes - the handle is the VertexFormat semantic, then the instance number
+	private static final int A_INSTANCE = 4;
+	private static final String[] ATTRIBUTES = new String[5];
+	static {
+		ATTRIBUTES[VertexFormat.POSITION] = "aPosition";
+		ATTRIBUTES[VertexFormat.NORMAL] = "aNormal";
+		ATTRIBUTES[VertexFormat.TEXCOORD] = "textureCoord";
+		ATTRIBUTES[VertexFormat.TANGENT] = "aTangent";	// normal map shader only
+		ATTRIBUTES[A_INSTANCE] = "aInstance";			// instanced shaders only
+	}
+
+	// uniform/attribute lookups by name during the last frame (0 when steady)
+	private int _frameNameLookups;
+
+	// object constants
+	private final int ROAD = 0;
+	private final int CUBE = 1;
+
+	// The objects
+	Object3D[] _objects = new Object3D[2];
+
+	// current object
+	private int _currentObject;
+
+	// levels of detail for the car - 3 levels, half the triangles each
+	private static final int CAR_LODS = 3;
+	private int[] _carLods = new int[5];	// level each car was drawn with last frame
+
+	// where the cars are - the player's car (0) follows the camera, the others are opponents
+	private float[][] _carPos = {
+			{0.0f, 5.0f, 20.0f},
+			{-10.0f, 5.0f, 10.0f},
+			{-5.0f, 5.0f, -10.0f},
+			{10.0f, 5.0f, 0.0f},
+			{50.0f, 5.0f, 15.0f}
+	};
+
+	// pseudo-instancing of the opponents - one batch per car level of detail.
+	// Each instance takes 2 uniform vectors (offset, tint); the rest of the
+	// uniforms fit in RESERVED_UNIFORM_VECTORS
+	private static final int MAX_INSTANCES = 64;
+	private static final float OPPONENT_SPACING = 4.0f;
+	private static final int RESERVED_UNIFORM_VECTORS = 32;
+	private boolean _instancing = true;
+	private int _maxInstances = 1;		// uniform array size of the instanced shaders
+	private InstancedMesh[] _carBatches = new InstancedMesh[CAR_LODS];
+	private float[] _batchDepth = new float[CAR_LODS];
+	private volatile int _requestedOpponents = -1;	// applied on the GL thread
+	private int _drawCalls;		// last frame
+
+	// opponents are told apart by color
+	private static final float[][] TINTS = {
+			{1.0f, 1.0f, 1.0f, 1.0f},
+			{1.0f, 0.6f, 0.6f, 1.0f},
+			{0.6f, 1.0f, 0.6f, 1.0f},
+			{0.6f, 0.6f, 1.0f, 1.0f},
+			{1.0f, 1.0f, 0.6f, 1.0f},
+			{1.0f, 0.6f, 1.0f, 1.0f},
+			{0.6f, 1.0f, 1.0f, 1.0f}
+	};
+
+	// view frustum culling - one sphere per car, then the road
+	private FrustumCuller _culler = new FrustumCuller();
+	private int _roadSlot;
+	private int _objectsDrawn, _objectsCulled;	// last frame
+
+	// static geometry (the road) merged into cells of STATIC_CELL_SIZE once it
+	// is loaded - drawn as one item per visible cell and material after that
+	private static final float STATIC_CELL_SIZE = 50.0f;
+	private StaticBatch _static = new StaticBatch(STATIC_CELL_SIZE, new MeshOptions());
+	private boolean _uintIndices;
+	private int _staticCellsDrawn;	// last frame
+	private int _viewportHeight = 1;
+
+	// loads meshes/textures in the background - uploads get 2 ms per frame
+	private static final long UPLOAD_BUDGET_NS = 2000000L;
+	private AssetLoader _loader;
+	private AssetRegistry _registry;	// shares meshes/textures between objects
+
+	// Modelview/Projection matrices
+	private float[] mMVPMatrix = new float[16];
+	private float[] mProjMatrix = new float[16];
+	private float[] mMMatrix = new float[16];		// model
+	private float[] mVMatrix = new float[16]; 		// modelview
+	private float[] mViewProjMatrix = new float[16];	// projection * view - frustum planes and every draw
+
+	// the draws of a frame, sorted by shader/textures/depth
+	private RenderQueue _queue = new RenderQueue();
+	private int _programChanges, _textureChanges;	// last frame
+
+	// GL state changes go through here - calls that change nothing are dropped
+	private GLState _gl = new GLState();
+	private int _glCallsIssued, _glCallsElided;	// last frame
+	private int _uploads;		// GL uploads/deletes past the cache this frame - see drawFrame()
+
+	// a frame allocates nothing once everything is loaded - scratch arrays live here
+	private float[] _forward = new float[3];	// camera direction
+
+	// allocation tracking (debug) - Debug's thread counters around each frame
+	private volatile boolean _trackAllocations;
+	private int _frameAllocations, _frameAllocatedBytes;	// last frame
+
+	// timing of the frame phases for the HUD - swap is the time between two
+	// frames (eglSwapBuffers and the wait for vsync), frame the whole interval
+	public static final int PHASE_CLEAR = 0;
+	public static final int PHASE_UPLOADS = 1;
+	public static final int PHASE_SIMULATION = 2;	// the fixed steps due this frame
+	public static final int PHASE_SETUP = 3;	// camera, culling, light
+	public static final int PHASE_QUEUE = 4;
+	public static final int PHASE_DRAW = 5;		// sort, state changes, draw calls
+	public static final int PHASE_GPU = 6;		// glFinish after the draws - sampled, see GPU_SAMPLE_FRAMES
+	public static final int PHASE_SWAP = 7;
+	public static final int PHASE_PACE = 8;		// waiting for the frame to be due
+	public static final int PHASE_FRAME = 9;
+	private static final String[] PHASES = {"clear", "uploads", "sim", "setup", "queue", "draw", "gpu", "swap", "pace", "total"};
+	private static final int TIMED_FRAMES = 300;
+	private FrameTimer _timer = new FrameTimer(PHASES, TIMED_FRAMES);
+	private float[] _timerStats = new float[PHASES.length * FrameTimer.NUM_STATS];	// UI thread
+	private long _frameStart, _frameEnd;
+	private boolean _timerQueries;	// GL_EXT_disjoint_timer_query there (no Java binding)
+
+	// paces the frames and stops drawing when nothing moves - none by default
+	private FramePacer _pacer;
+	private volatile boolean _resumed;	// from onResume(), applied on the GL thread
+	private float _lastDX;
+	private static final float[] ORIGIN = {0.0f, 0.0f, 0.0f};
+
+	// dynamic resolution (off until turned on from the menu) - the scene
+	// goes into an offscreen target at a scale picked from the GPU time,
+	// sampled every few frames (glFinish() twice - before the draws and
+	// after the blit). The GPU phase of the timer is sampled on the same
+	// frames, the frames in between stay pipelined.
+	private static final int GPU_SAMPLE_FRAMES = 4;
+	private static final float DEFAULT_BUDGET_MS = 1000.0f / 60;
+	private ResolutionScaler _scaler = new ResolutionScaler();
+	private RenderTarget _target = new RenderTarget();
+	private int _surfaceWidth = 1, _surfaceHeight = 1;
+	private int _renderWidth = 1, _renderHeight = 1;	// last frame
+	private int _gpuFrames;
+	private boolean _sampleGpu;		// this frame
+	private long _drawStart;
+
+	// textures enabled?
+	private boolean enableTexture = true;
+
+	// light parameters
+	private float[] lightPos;
+	private float[] lightColor;
+	private float[] lightAmbient;
+	private float[] lightDiffuse;
+	// angle rotation for light
+	float angle = 0.0f;
+	boolean lightRotate = false; 
+
+
+	// material properties
+	private float[] matAmbient;
+	private float[] matDiffuse;
+	private float[] matSpecular;
+	private float matShininess;
+
+	// eye pos
+	private float[] eyePos = {0.0f, 10.0f, 25.0f};
+	private float[] lookAt = {0.0f, 0.0f, 0.0f};
+	private float[] lookDir = {
+			lookAt[0] - eyePos[0],
+			lookAt[1] - eyePos[1],
+			lookAt[2] - eyePos[2]
+	};
+	//private float m_u = (float) Math.atan(lookDir[2] / lookDir[0]); 
+
+	// scaling
+	float scaleX = 1.0f;
+	float scaleY = 1.0f;
+	float scaleZ = 1.0f;
+
+
+
+	private Context mContext;
+	private static String TAG = "Renderer";
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public Renderer(Context context) {
+
+		mContext = context;
+
+		// setup all the shaders
+		vShaders = new int[3];
+		fShaders = new int[3];
+
+		// basic - just gouraud shading
+		vShaders[GOURAUD_SHADER] = R.raw.gouraud_vs;
+		fShaders[GOURAUD_SHADER] = R.raw.gouraud_ps;
+
+		// phong shading
+		vShaders[PHONG_SHADER] = R.raw.phong_vs;
+		fShaders[PHONG_SHADER] = R.raw.phong_ps;
+
+		// normal mapping
+		vShaders[NORMALMAP_SHADER] = R.raw.normalmap_vs;
+		fShaders[NORMALMAP_SHADER] = R.raw.normalmap_ps;
+
+		// Create some objects - pass in the textures, the meshes
+		// (they are loaded in the background, placeholders are drawn until then)
+		_loader = new AssetLoader(context);
+		_loader.setListener(new AssetLoader.Listener() {
+			public void onProgress(int done, int total) {
+				Log.d(TAG, "Loaded " + done + "/" + total + " assets");
+			}
+		});
+
+		int[] normalMapTextures = {R.raw.diffuse_old, R.raw.diffusenormalmap_deepbig};
+		// binary meshes made from road.txt/texturedcube.txt with MeshConverter - run it again after editing those
+		_objects[0] = new Object3D(new int[0], R.raw.road_bin, false);
+		_objects[1] = new Object3D(normalMapTextures, R.raw.texturedcube_bin, true);
+		for(int i = 0; i < _carPos.length; i++)
+			_culler.add(0.0f, 0.0f, 0.0f, 0.0f);
+		_roadSlot = _culler.add(0.0f, 0.0f, 0.0f, 0.0f);
+
+		_registry = new AssetRegistry(_loader);
+		MeshOptions staticOptions = new MeshOptions();
+		staticOptions.setKeepCpuCopy(true);	// merged into the static batch from it
+		_registry.acquireMesh(_objects[0], 1, staticOptions);
+		float[] identity = new float[16];
+		Matrix.setIdentityM(identity, 0);
+		_static.add(_objects[ROAD], identity);
+		MeshOptions carOptions = new MeshOptions();
+		carOptions.setKeepCpuCopy(true);	// the instanced copies of the opponents are made from it
+		_registry.acquireMesh(_objects[1], CAR_LODS, carOptions);
+		for(int i = 0; i < _objects.length; i++)
+			_registry.acquireTextures(_objects[i]);
+
+		// set current object and shader
+		_currentObject = this.CUBE;
+		_currentShader = this.GOURAUD_SHADER;
+	}
+
+	/*****************************
+	 * GL FUNCTIONS
+	 ****************************/
+	
+	
+	/**
+	 * Moves the light - once per frame
+	 */
+	private void updateLight() {
+		// rotate the light?
+		if (lightRotate) {
+			angle += 0.000005f;
+			if (angle >= 6.2)
+				angle = 0.0f;
+
+			// rotate light about y-axis
+			float newPosX = (float)(Math.cos(angle) * lightPos[0] - Math.sin(angle) * lightPos[2]);
+			float newPosZ = (float)(Math.sin(angle) * lightPos[0] + Math.cos(angle) * lightPos[2]);
+			lightPos[0] = newPosX; lightPos[2] = newPosZ;
+		}
+	}
+
+	@TargetApi(8)
+	private void setLight(Shader shader){
+		// lighting variables
+		// send to shaders
+		_gl.uniform4fv(shader, U_LIGHT_POS, 1, lightPos, 0);
+		_gl.uniform4fv(shader, U_LIGHT_COLOR, 1, lightColor, 0);
+
+		// material 
+		_gl.uniform4fv(shader, U_MAT_AMBIENT, 1, matAmbient, 0);
+		_gl.uniform4fv(shader, U_MAT_DIFFUSE, 1, matDiffuse, 0);
+		_gl.uniform4fv(shader, U_MAT_SPECULAR, 1, matSpecular, 0);
+		_gl.uniform1f(shader, U_MAT_SHININESS, matShininess);
+	}
+	
+	
+	/**
+	 * Hands the touch input to the simulation and takes the steps that are due
+	 */
+	private void updateSimulation() {
+		//Kperny Y tengely
+		if(Math.abs(mDY) < 2)
+			mDY = 0;
+		if(mDY < -250f)
+			mDY = -250f;
+		if(mDY > 250f)
+			mDY = 250f;
+
+		//Kperny X tengely
+		if(Math.abs(mDX) < 2)
+			mDX = 0;
+
+		_sim.setInput(mDY, mDX);
+		_simSteps = _sim.update();
+	}
+
+
+	/**
+	 * Moves the camera to where the simulation is - between its last two
+	 * steps - and puts the player's car in front of it
+	 */
+	private void updateCamera(float[] startPos){
+		float alpha = _sim.getAlpha();
+		float heading = _sim.getHeading(alpha);
+		float distance = _sim.getDistance(alpha);
+
+		float[] forward = _forward;
+		forward[0] = (float) Math.cos(heading);
+		forward[1] = 0.0f;
+		forward[2] = (float) Math.sin(heading);
+		
+		//lookAt			
+		lookAt[0] = eyePos[0] + 25 * forward[0];
+		lookAt[1] = eyePos[1] + 25 * forward[1];
+		lookAt[2] = eyePos[2] + 25 * forward[2];
+		
+		
+		//eyePos
+		eyePos[0] = 0.0f + distance / 1000 * forward[0];
+		eyePos[2] = 25.0f + distance / 1000 * forward[2];
+		
+		Matrix.setLookAtM(
+				mVMatrix,
+				0, 
+				eyePos[0], eyePos[1], eyePos[2], 
+				lookAt[0], lookAt[1], lookAt[2],
+				0.0f, 1.0f, 0.0f);
+			
+		
+		//Kormnyzs
+		startPos[0] = eyePos[0] + 5 * forward[0];
+		startPos[2] = eyePos[2] + 5 * forward[2];
+	}
+	
+	
+	/**
+	 * Puts an object into the render queue
+	 * @param mesh the level of detail to draw
+	 * @param pos where it is - objects are only translated
+	 */
+	private void queueObject(Object3D ob, Mesh mesh, float[] pos) {
+		queueMesh(ob.hasTexture() ? ob.getTextures() : null, mesh, pos, pos);
+	}
+
+	/**
+	 * Puts a mesh into the render queue
+	 * @param textures textures to draw with, null for none
+	 * @param pos where it is - meshes are only translated
+	 * @param center point the depth is measured to
+	 */
+	private void queueMesh(Texture[] textures, Mesh mesh, float[] pos, float[] center) {
+		Matrix.setIdentityM(mMMatrix, 0);
+		Matrix.translateM(mMMatrix, 0, pos[0], pos[1], pos[2]);
+
+		float dx = center[0] - eyePos[0];
+		float dy = center[1] - eyePos[1];
+		float dz = center[2] - eyePos[2];
+
+		_queue.add(RenderQueue.PASS_OPAQUE, _shaders[_currentShader], _currentShader,
+				textures, mesh, mMMatrix, 0, dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Puts the static cells that passed culling into the queue - they are
+	 * already in world space
+	 */
+	private void queueStatic() {
+		for(int i = 0; i < _static.getNumCells(); i++) {
+			if (_static.isVisible(i)) {
+				Mesh cell = _static.getCellMesh(i);
+				queueMesh(_static.getCellTextures(i), cell, ORIGIN, cell.getSphere());
+			}
+		}
+	}
+
+	/**
+	 * Merges the static objects once all of them are loaded (GL thread).
+	 * Their own meshes are not needed after that - their textures are.
+	 */
+	private void buildStatic() {
+		long start = System.nanoTime();
+		_static.build();
+		_static.setUintIndices(_uintIndices);
+		_static.upload();
+		for(int i = 0; i < _static.getNumObjects(); i++)
+			_registry.releaseMesh(_static.getObject(i));
+		// the cells went up, the buffers of the merged meshes were deleted
+		_uploads += _static.getNumCells() + _static.getNumObjects();
+		Log.d(TAG, "Merged " + _static.getNumObjects() + " static objects into "
+				+ _static.getNumCells() + " cells in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	/**
+	 * Puts the opponents into the queue - an instanced batch per level of
+	 * detail, or one item per car if their mesh can't be instanced
+	 */
+	private void queueOpponents() {
+		Object3D car = _objects[CUBE];
+		for(int l = 0; l < CAR_LODS; l++) {
+			if (_carBatches[l] != null)
+				_carBatches[l].clearInstances();
+			_batchDepth[l] = Float.MAX_VALUE;
+		}
+
+		for(int i = 1; i < _carPos.length; i++) {
+			if (!_culler.isVisible(i))
+				continue;
+			_carLods[i] = selectLod(car, _carPos[i], _carLods[i]);
+			InstancedMesh batch = _instancing && _instancedShaders[_currentShader] != null
+					? carBatch(_carLods[i]) : null;
+			if (batch == null) {
+				queueObject(car, car.getLod(_carLods[i]), _carPos[i]);
+				continue;
+			}
+
+			batch.addInstance(_carPos[i], TINTS[i % TINTS.length]);
+			float dx = _carPos[i][0] - eyePos[0];
+			float dy = _carPos[i][1] - eyePos[1];
+			float dz = _carPos[i][2] - eyePos[2];
+			_batchDepth[_carLods[i]] = Math.min(_batchDepth[_carLods[i]], dx * dx + dy * dy + dz * dz);
+		}
+
+		for(int l = 0; l < CAR_LODS; l++) {
+			InstancedMesh batch = _carBatches[l];
+			if (batch != null && batch.getNumInstances() > 0) {
+				_queue.addBatch(RenderQueue.PASS_OPAQUE, _instancedShaders[_currentShader],
+						_shaders.length + _currentShader, car.hasTexture() ? car.getTextures() : null,
+						batch, _batchDepth[l]);
+			}
+		}
+	}
+
+	/**
+	 * The instanced copies of a level of detail of the car - made again
+	 * when the car's mesh changes (e.g. from the placeholder to the real one)
+	 * @return null if the level can't be instanced
+	 */
+	private InstancedMesh carBatch(int lod) {
+		Mesh mesh = _objects[CUBE].getLod(lod);
+		InstancedMesh batch = _carBatches[lod];
+		if (batch != null && batch.getMesh() == mesh)
+			return batch;
+
+		if (batch != null) {
+			batch.deleteBuffers();
+			_uploads++;
+		}
+		batch = null;
+		if (InstancedMesh.canInstance(mesh)) {
+			batch = new InstancedMesh(mesh, _maxInstances);
+			batch.upload();
+			_uploads++;
+		}
+		_carBatches[lod] = batch;
+		return batch;
+	}
+
+	/**
+	 * Lines the opponents up on a grid behind the start (GL thread)
+	 */
+	private void placeOpponents(int count) {
+		float[] player = _carPos[0];
+		_carPos = new float[count + 1][];
+		_carPos[0] = player;
+
+		int columns = (int)Math.ceil(Math.sqrt(count));
+		for(int i = 0; i < count; i++) {
+			float x = (i % columns - (columns - 1) * 0.5f) * OPPONENT_SPACING;
+			float z = -(i / columns) * OPPONENT_SPACING;
+			_carPos[i + 1] = new float[] {x, 5.0f, z};
+		}
+
+		_carLods = new int[count + 1];
+		_culler.clear();
+		for(int i = 0; i < _carPos.length; i++)
+			_culler.add(0.0f, 0.0f, 0.0f, 0.0f);
+		_roadSlot = _culler.add(0.0f, 0.0f, 0.0f, 0.0f);
+	}
+
+	/**
+	 * Draws the sorted queue. The program (with the light) and the textures
+	 * are only changed where the key says they change.
+	 */
+	private void drawQueue() {
+		_queue.sort();
+
+		float[] transforms = _queue.getTransforms();
+		Shader shader = null;
+		long shaderBits = -1, textureBits = -1;
+		_programChanges = 0;
+		_textureChanges = 0;
+
+		for (int i = 0; i < _queue.getCount(); i++) {
+			int item = _queue.getItem(i);
+			long key = _queue.getKey(item);
+
+			if (RenderQueue.shaderBits(key) != shaderBits) {
+				shaderBits = RenderQueue.shaderBits(key);
+				shader = _queue.getShader(item);
+				_gl.useProgram(shader.get_program());
+				checkGlError("glUseProgram");
+				setLight(shader);
+				_gl.uniform3fv(shader, U_EYE_POS, eyePos, 0);
+				textureBits = -1;
+				_programChanges++;
+			}
+
+			if (RenderQueue.textureBits(key) != textureBits) {
+				textureBits = RenderQueue.textureBits(key);
+				Texture[] textures = _queue.getTextures(item);
+				if (textures != null) {
+					for(int t = 0; t < textures.length; t++)
+						_gl.bindTexture(t, textures[t].getId());
+				}
+
+				// enable texturing? [fix - sending float is waste]
+				_gl.uniform1f(shader, U_HAS_TEXTURE, textures != null && enableTexture ? 2.0f : 0.0f);
+				_textureChanges++;
+			}
+
+			// model-view-projection - the view-projection is shared by the whole frame
+			Matrix.multiplyMM(mMVPMatrix, 0, mViewProjMatrix, 0, transforms, item * 16);
+			_gl.uniformMatrix4fv(shader, U_MVP_MATRIX, mMVPMatrix, 0);
+			_gl.uniformMatrix4fv(shader, U_NORMAL_MATRIX, mMVPMatrix, 0);
+
+			// Draw with indices - one call per piece of the mesh
+			Mesh mesh = _queue.getMesh(item);
+			if (mesh != null)
+				drawMesh(shader, mesh);
+			else
+				drawInstances(shader, _queue.getBatch(item));
+		}
+	}
+
+
+	/**
+	 * Tests the bounding spheres of all objects against the view frustum
+	 */
+	private void cullObjects() {
+		Matrix.multiplyMM(mViewProjMatrix, 0, mProjMatrix, 0, mVMatrix, 0);
+		_culler.setPlanes(mViewProjMatrix);
+
+		// objects are only translated - world sphere = model sphere + position
+		float[] car = _objects[CUBE].getMesh().getSphere();
+		for(int i = 0; i < _carPos.length; i++)
+			_culler.set(i, _carPos[i][0] + car[0], _carPos[i][1] + car[1], _carPos[i][2] + car[2], car[3]);
+		float[] road = _objects[ROAD].getMesh().getSphere();
+		_culler.set(_roadSlot, road[0], road[1], road[2], road[3]);
+
+		_culler.cull();
+		_objectsDrawn = _culler.getNumVisible();
+		_objectsCulled = _culler.getNumCulled();
+
+		// the merged static cells replace the road
+		_staticCellsDrawn = 0;
+		if (_static.isBuilt()) {
+			if (_culler.isVisible(_roadSlot)) {
+				_objectsDrawn--;
+				_objectsCulled++;
+			}
+			_staticCellsDrawn = _static.cull(mViewProjMatrix);
+		}
+	}
+
+	/**
+	 * Picks the level of detail of an object from its projected size
+	 * @param pos world position of the object
+	 * @param lod the level it was drawn with last frame
+	 */
+	private int selectLod(Object3D ob, float[] pos, int lod) {
+		float dx = pos[0] - eyePos[0];
+		float dy = pos[1] - eyePos[1];
+		float dz = pos[2] - eyePos[2];
+		float dist = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (dist <= ob.getRadius())
+			return 0;
+
+		// diameter in pixels - mProjMatrix[5] is cot(fov / 2)
+		float size = ob.getRadius() * mProjMatrix[5] * _viewportHeight / dist;
+		return ob.selectLod(size, lod);
+	}
+
+	/**
+	 * Draws every piece of a mesh with the uniforms that are currently set.
+	 * Pieces in GL buffers are drawn from them, others from the client arrays.
+	 */
+	private void drawMesh(Shader shader, Mesh mesh) {
+		SubMesh[] parts = mesh.getParts();
+		for (int p = 0; p < parts.length; p++) {
+			SubMesh part = parts[p];
+			VertexFormat format = part.getFormat();
+			_gl.bindBuffer(GLES20.GL_ARRAY_BUFFER, part.getVbo());
+			_gl.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, part.getIbo());
+
+			// packed positions are relative to the bounds of the piece
+			_gl.uniform4fv(shader, U_POS_SCALE, 1, part.getPosScale(), 0);
+			_gl.uniform4fv(shader, U_POS_BIAS, 1, part.getPosBias(), 0);
+
+			setAttributes(shader, format, part.getVbo() != 0 ? null : part.getVertexData());
+
+			// Draw with indices
+			if (part.getIbo() != 0)
+				GLES20.glDrawElements(GLES20.GL_TRIANGLES, part.getNumIndices(), part.getIndexType(), 0);
+			else
+				GLES20.glDrawElements(GLES20.GL_TRIANGLES, part.getNumIndices(), part.getIndexType(), part.get_ib());
+			checkGlError("glDrawElements");
+			_drawCalls++;
+		}
+	}
+
+	/**
+	 * Draws the instances of a batch - as many per draw call as the copies
+	 * in its buffers, the offsets and tints go into the uniform arrays
+	 */
+	private void drawInstances(Shader shader, InstancedMesh batch) {
+		float[] offsets = batch.getOffsets();
+		float[] tints = batch.getTints();
+		int count = batch.getNumInstances();
+		int instanceLocation = shader.getAttribute(A_INSTANCE);
+
+		for (int p = 0; p < batch.getNumParts(); p++) {
+			SubMesh part = batch.getSource(p);
+			int copies = batch.getCopies(p);
+
+			_gl.uniform4fv(shader, U_POS_SCALE, 1, part.getPosScale(), 0);
+			_gl.uniform4fv(shader, U_POS_BIAS, 1, part.getPosBias(), 0);
+
+			_gl.bindBuffer(GLES20.GL_ARRAY_BUFFER, batch.getVbo(p));
+			setAttributes(shader, part.getFormat(), null);
+
+			// which copy each vertex belongs to
+			_gl.bindBuffer(GLES20.GL_ARRAY_BUFFER, batch.getInstanceVbo(p));
+			if (instanceLocation >= 0) {
+				_gl.vertexAttribPointer(instanceLocation, 1, GLES20.GL_FLOAT, false, FLOAT_SIZE_BYTES, 0);
+				_gl.enableVertexAttribArray(instanceLocation);
+			}
+
+			_gl.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, batch.getIbo(p));
+			for (int first = 0; first < count; first += copies) {
+				int n = Math.min(copies, count - first);
+				_gl.uniform4fv(shader, U_INSTANCE_OFFSET, n, offsets, first * 4);
+				_gl.uniform4fv(shader, U_INSTANCE_TINT, n, tints, first * 4);
+				GLES20.glDrawElements(GLES20.GL_TRIANGLES, n * part.getNumIndices(), batch.getIndexType(p), 0);
+				checkGlError("glDrawElements");
+				_drawCalls++;
+			}
+
+			if (instanceLocation >= 0)
+				_gl.disableVertexAttribArray(instanceLocation);
+		}
+	}
+
+	/**
+	 * Points the attributes of the shader at the vertices
+	 * @param clientData the vertices, null to use the bound buffer object
+	 */
+	private void setAttributes(Shader shader, VertexFormat format, ByteBuffer clientData) {
+		// the vertex coordinates
+		setAttribute(shader.getAttribute(VertexFormat.POSITION), format, VertexFormat.POSITION, clientData);
+
+		// the normal info
+		setAttribute(shader.getAttribute(VertexFormat.NORMAL), format, VertexFormat.NORMAL, clientData);
+
+		// texture coordinates
+		setAttribute(shader.getAttribute(VertexFormat.TEXCOORD), format, VertexFormat.TEXCOORD, clientData);
+
+		// tangents - only the normal map shader has aTangent
+		setAttribute(shader.getAttribute(VertexFormat.TANGENT), format, VertexFormat.TANGENT, clientData);
+	}
+
+	/**
+	 * Points an attribute at the vertices (the bound buffer object if
+	 * clientData is null), with the type/normalization of the vertex
+	 * format. Attributes that aren't in the buffer read 0 (a missing tangent
+	 * reads the x axis).
+	 */
+	private void setAttribute(int location, VertexFormat format, int semantic, ByteBuffer clientData) {
+		if (location < 0)
+			return;
+
+		if (format.getSize(semantic) == 0) {
+			_gl.disableVertexAttribArray(location);
+			float x = semantic == VertexFormat.TANGENT ? 1.0f : 0.0f;
+			_gl.vertexAttrib4f(location, x, 0.0f, 0.0f, 1.0f);
+			return;
+		}
+
+		if (clientData == null) {
+			_gl.vertexAttribPointer(location, format.getSize(semantic), format.getType(semantic),
+					format.isNormalized(semantic), format.getStride(), format.getOffset(semantic));
+		}
+		else {
+			clientData.position(format.getOffset(semantic));
+			_gl.vertexAttribPointer(location, format.getSize(semantic), format.getType(semantic),
+					format.isNormalized(semantic), format.getStride(), clientData);
+		}
+		_gl.enableVertexAttribArray(location);
+	}
+	
+	
+	/*
+	 * Draw function - called for every frame
+	 */
+	public void onDrawFrame(GL10 glUnused) {
+		long swapped = System.nanoTime();
+		boolean restart = _resumed;
+		_resumed = false;
+		if (_pacer != null && _pacer.waitForFrame())
+			restart = true;
+
+		// the time drawing was stopped or the app paused is not driven
+		if (restart)
+			_sim.resetClock();
+
+		// the last frame is complete once the next one starts - with the swap
+		long now = System.nanoTime();
+		if (_timer.isEnabled()) {
+			if (_frameStart != 0) {
+				_timer.set(PHASE_SWAP, swapped - _frameEnd);
+				_timer.set(PHASE_PACE, now - swapped);
+				_timer.set(PHASE_FRAME, now - _frameStart);
+				_timer.endFrame();
+			}
+			_frameStart = now;
+		}
+		else
+			_frameStart = 0;
+		_sampleGpu = (_scaler.isEnabled() || _timer.isEnabled()) && ++_gpuFrames % GPU_SAMPLE_FRAMES == 0;
+
+		if (!_trackAllocations)
+			drawFrame();
+		else {
+			Debug.resetThreadAllocCount();
+			Debug.resetThreadAllocSize();
+			drawFrame();
+			_frameAllocations = Debug.getThreadAllocCount();
+			_frameAllocatedBytes = Debug.getThreadAllocSize();
+		}
+
+		// how long the GPU still needs after the draws were submitted
+		long submitted = System.nanoTime();
+		if (_sampleGpu) {
+			GLES20.glFinish();
+			_frameEnd = System.nanoTime();
+			_timer.set(PHASE_GPU, _frameEnd - submitted);
+			if (_scaler.isEnabled())
+				_scaler.addSample((_frameEnd - _drawStart) / 1000000.0f,
+						_pacer != null ? 1000.0f / _pacer.getRate() : DEFAULT_BUDGET_MS);
+		}
+		else {
+			// nothing measured - left out of the GPU statistics
+			_frameEnd = submitted;
+			_timer.skip(PHASE_GPU);
+		}
+
+		if (_pacer != null)
+			_pacer.endFrame(isAnimating());
+	}
+
+	/*
+	 * Will the next frame look different from this one? If not, drawing can stop.
+	 */
+	private boolean isAnimating() {
+		boolean steering = mDX != _lastDX;
+		_lastDX = mDX;
+		return mDY != 0 || steering || lightRotate
+				|| !_loader.isDone() || !_static.isBuilt() || _requestedOpponents >= 0
+				|| _timer.isEnabled();
+	}
+
+	/*
+	 * One frame - must not allocate once the assets are loaded
+	 */
+	private void drawFrame() {
+		// Ignore the passed-in GL10 interface, and use the GLES20
+		// class's static methods instead.
+		_timer.begin(PHASE_CLEAR);
+		boolean offscreen = beginScene();
+		GLES20.glClearColor(.0f, .0f, .0f, 1.0f);
+		GLES20.glClear( GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+		_timer.end(PHASE_CLEAR);
+
+		int lookups = Shader.getNameLookups();
+
+		// move finished assets to the GPU
+		_timer.begin(PHASE_UPLOADS);
+		_uploads = _loader.processUploads(UPLOAD_BUDGET_NS);
+		if (!_static.isBuilt() && _static.isReady())
+			buildStatic();
+		_timer.end(PHASE_UPLOADS);
+
+		// opponents asked for from the UI
+		int opponents = _requestedOpponents;
+		if (opponents >= 0) {
+			_requestedOpponents = -1;
+			placeOpponents(opponents);
+		}
+		_drawCalls = 0;
+		_gl.resetCounters();
+
+		// the simulation runs at its own rate
+		_timer.begin(PHASE_SIMULATION);
+		updateSimulation();
+		_timer.end(PHASE_SIMULATION);
+
+		// camera first - the frustum depends on it
+		_timer.begin(PHASE_SETUP);
+		updateCamera(_carPos[0]);
+		cullObjects();
+		updateLight();
+		_timer.end(PHASE_SETUP);
+
+		// what to draw
+		_timer.begin(PHASE_QUEUE);
+		_queue.clear();
+		Object3D car = _objects[CUBE];
+		if (_culler.isVisible(0)) {
+			_carLods[0] = selectLod(car, _carPos[0], _carLods[0]);
+			queueObject(car, car.getLod(_carLods[0]), _carPos[0]);
+		}
+		queueOpponents();
+		if (_static.isBuilt())
+			queueStatic();
+		else if (_culler.isVisible(_roadSlot))
+			queueObject(_objects[ROAD], _objects[ROAD].getMesh(), ORIGIN);
+		_timer.end(PHASE_QUEUE);
+
+		// the GPU time is measured from here - on an idle GPU
+		if (_sampleGpu)
+			GLES20.glFinish();
+		_drawStart = System.nanoTime();
+
+		// uploads bound buffers/textures behind the cache's back - once everything
+		// is loaded there are none and the bindings carry over from the last frame
+		_timer.begin(PHASE_DRAW);
+		if (_uploads > 0)
+			_gl.invalidateBindings();
+		drawQueue();
+		if (offscreen)
+			_target.blit(_gl, _renderWidth, _renderHeight);
+		_timer.end(PHASE_DRAW);
+		_glCallsIssued = _gl.getIssued();
+		_glCallsElided = _gl.getElided();
+
+		_frameNameLookups = Shader.getNameLookups() - lookups;
+	}
+
+	/*
+	 * Points the scene at the offscreen target if it is drawn below the
+	 * surface's resolution - at the screen otherwise
+	 * @return true if it goes into the target (blit it afterwards)
+	 */
+	private boolean beginScene() {
+		float scale = _scaler.getScale();
+		if (scale < 1.0f) {
+			int width = Math.max(1, Math.round(_surfaceWidth * scale));
+			int height = Math.max(1, Math.round(_surfaceHeight * scale));
+			if (_target.begin(_gl, width, height)) {
+				_renderWidth = width;
+				_renderHeight = height;
+				return true;
+			}
+		}
+		_renderWidth = _surfaceWidth;
+		_renderHeight = _surfaceHeight;
+		return false;
+	}
+
+	/*
+	 * Called when viewport is changed
+	 * @see android.opengl.GLSurfaceView$Renderer#onSurfaceChanged(javax.microedition.khronos.opengles.GL10, int, int)
+	 */
+	public void onSurfaceChanged(GL10 glUnused, int width, int height) {
+		GLES20.glViewport(0, 0, width, height);
+		_viewportHeight = height;
+		_surfaceWidth = width;
+		_surfaceHeight = height;
+		_target.resize(width, height);
+		float ratio = (float) width / height;
+		Matrix.frustumM(mProjMatrix, 0, -ratio, ratio, -1, 1, 0.5f, 40);
+		//Matrix.frustumM(m, offset, left, right, bottom, top, near, far)
+	}
+
+	/**
+	 * Initialization function
+	 */
+	public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
+		// initialize shaders
+		try {
+			_shaders[GOURAUD_SHADER] = new Shader(vShaders[GOURAUD_SHADER], fShaders[GOURAUD_SHADER], mContext, false, 0); // gouraud
+			_shaders[PHONG_SHADER] = new Shader(vShaders[PHONG_SHADER], fShaders[PHONG_SHADER], mContext, false, 0); // phong
+			_shaders[NORMALMAP_SHADER] = new Shader(vShaders[NORMALMAP_SHADER], fShaders[NORMALMAP_SHADER], mContext, false, 0); // normal map
+		} catch (Exception e) {
+			Log.d("SHADER 0 SETUP", e.getLocalizedMessage());
+		}
+
+		// instanced variants - as many instances per draw as the uniform vectors allow
+		int[] maxVectors = new int[1];
+		GLES20.glGetIntegerv(GLES20.GL_MAX_VERTEX_UNIFORM_VECTORS, maxVectors, 0);
+		_maxInstances = Math.max(1, Math.min(MAX_INSTANCES, (maxVectors[0] - RESERVED_UNIFORM_VECTORS) / 2));
+		String defines = "#define INSTANCED\n#define MAX_INSTANCES " + _maxInstances + "\n";
+		try {
+			for(int i = 0; i < _shaders.length; i++)
+				_instancedShaders[i] = new Shader(vShaders[i], fShaders[i], mContext, false, 0, defines);
+		} catch (Exception e) {
+			Log.d("SHADER INSTANCED SETUP", e.getLocalizedMessage());
+		}
+
+		// the copies are made again in this context
+		for(int l = 0; l < CAR_LODS; l++)
+			_carBatches[l] = null;
+
+		// a new context - nothing is known about its state
+		_gl.invalidate();
+		_target.onSurfaceCreated(_gl);
+
+		// look up the locations once - the samplers never change either
+		for(int i = 0; i < _shaders.length * 2; i++) {
+			Shader shader = i < _shaders.length ? _shaders[i] : _instancedShaders[i - _shaders.length];
+			if (shader == null)
+				continue;
+			shader.bindUniforms(UNIFORMS);
+			shader.bindAttributes(ATTRIBUTES);
+
+			_gl.useProgram(shader.get_program());
+			_gl.uniform1i(shader, U_TEXTURE1, 0);
+			_gl.uniform1i(shader, U_TEXTURE1 + 1, 1);
+		}
+
+		// 32 bit indices for big meshes?
+		String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+		boolean uintIndices = extensions != null && extensions.contains("GL_OES_element_index_uint");
+		_loader.setUintIndices(uintIndices);
+		_uintIndices = uintIndices;
+
+		// GPU timer queries have no GLES20 binding - the GPU phase is timed with glFinish
+		_timerQueries = extensions != null && extensions.contains("GL_EXT_disjoint_timer_query");
+		Log.d(TAG, "GL_EXT_disjoint_timer_query: " + _timerQueries);
+		for(int i = 0; i < _objects.length; i++) {
+			for(int l = 0; l < _objects[i].getNumLods(); l++)
+				_objects[i].getLod(l).setUintIndices(uintIndices);
+		}
+
+		_gl.setEnabled(GLES20.GL_DEPTH_TEST, true);
+		GLES20.glClearDepthf(1.0f);
+		_gl.depthFunc(GLES20.GL_LEQUAL);
+		_gl.depthMask(true);
+
+		// cull backface
+		_gl.setEnabled(GLES20.GL_CULL_FACE, true);
+		_gl.cullFace(GLES20.GL_BACK);
+
+		// light variables
+		float[] lightP = {30.0f, 0.0f, 10.0f, 1};
+		this.lightPos = lightP;
+
+		float[] lightC = {0.5f, 0.5f, 0.5f, 1.0f};	// vec4 in the shaders
+		this.lightColor = lightC;
+
+		// material properties
+		float[] mA = {0.45f, 0.45f, 0.45f, 1.0f};
+		matAmbient = mA;
+
+		float[] mD = {0.6f, 0.6f, 0.6f, 1.0f};
+		matDiffuse = mD;
+
+		float[] mS =  {0.9f, 0.9f, 0.9f, 1.0f};
+		matSpecular = mS;
+
+		matShininess = 5.0f;
+
+		// placeholders - textures are loaded again if the context was lost
+		_loader.onSurfaceCreated();
+		_registry.onSurfaceCreated();
+		_static.setUintIndices(uintIndices);
+		_static.onSurfaceCreated();
+
+		// set the view matrix
+		
+		Matrix.setLookAtM(
+				mVMatrix,
+				0, 
+				eyePos[0], eyePos[1], eyePos[2], 
+				0.0f, 0.0f, 0.0f, 
+				0.0f, 1.0f, 0.0f);
+		/*Matrix.setLookAtM(
+			rm, 
+			rmOffset, 
+			eyeX, eyeY, eyeZ, 
+			centerX, centerY, centerZ, 
+			upX, upY, upZ)*/
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Changes the shader based on menu selection
+	 * @param represents the other shader 
+	 */
+	public void setShader(int shader) {
+		_currentShader = shader;
+	}
+
+	/**
+	 * Changes the object based on menu selection
+	 * @param represents the other object 
+	 */
+	public void setObject(int object) {
+		_currentObject = object;
+	}
+	
+	
+	
+
+	/**
+	 * Show texture or not?
+	 */
+	public void flipTexturing() {
+		enableTexture = !enableTexture;
+		Object3D ob = _objects[this._currentObject];
+
+		if (enableTexture && !ob.hasTexture()) {
+			// Create a toast notification signifying that there is no texture associated with this object
+			CharSequence text = "Object does not have associated texture";
+			int duration = Toast.LENGTH_SHORT;
+
+			Toast toast = Toast.makeText(mContext, text, duration);
+			toast.show();
+		}
+		//this.toggleTexturing();
+	}
+
+	/**
+	 * Rotate light or not?
+	 */
+	public void toggleLight() {
+		this.lightRotate = !lightRotate;
+		CharSequence text;
+		if (lightRotate)
+			text = "Light rotation resumed";
+		else
+			text = "Light rotation paused";
+		int duration = Toast.LENGTH_SHORT;
+
+		Toast toast = Toast.makeText(mContext, text, duration);
+		toast.show();
+	}
+
+	/**
+	 * @return uniform/attribute lookups by name in the last frame - 0 once everything is set up
+	 */
+	public int getFrameNameLookups() {
+		return _frameNameLookups;
+	}
+
+	/**
+	 * Replaces the opponents with a grid of count cars - takes effect next frame
+	 */
+	public void setNumOpponents(int count) {
+		_requestedOpponents = Math.max(0, count);
+	}
+
+	public int getNumOpponents() {
+		return _carPos.length - 1;
+	}
+
+	/**
+	 * Draw the opponents instanced (default) or one by one
+	 */
+	public void setInstancing(boolean instancing) {
+		_instancing = instancing;
+	}
+
+	public boolean isInstancing() {
+		return _instancing;
+	}
+
+	/**
+	 * @return number of cells (per material) the static geometry was merged into, 0 until it is
+	 */
+	public int getStaticCells() {
+		return _static.getNumCells();
+	}
+
+	/**
+	 * @return number of static cells drawn in the last frame
+	 */
+	public int getStaticCellsDrawn() {
+		return _staticCellsDrawn;
+	}
+
+	/**
+	 * @return true once every asset is uploaded and the static geometry merged (GL thread)
+	 */
+	public boolean isLoaded() {
+		return _loader.isDone() && _static.isBuilt();
+	}
+
+	/**
+	 * Paces the frames with pacer - it also stops drawing while nothing moves
+	 */
+	public void setPacer(FramePacer pacer) {
+		_pacer = pacer;
+	}
+
+	public FramePacer getPacer() {
+		return _pacer;
+	}
+
+	/**
+	 * The activity was resumed - the simulation starts again from the next
+	 * frame instead of catching up on the pause
+	 */
+	public void onResume() {
+		_resumed = true;
+	}
+
+	/**
+	 * Draws the scene below the surface's resolution when the GPU can't keep
+	 * up, stretched to the screen - off by default (game menu). While on,
+	 * every GPU_SAMPLE_FRAMES-th frame stalls on glFinish() twice to
+	 * measure the GPU.
+	 */
+	public void setDynamicResolution(boolean dynamic) {
+		_scaler.setEnabled(dynamic);
+	}
+
+	public boolean isDynamicResolution() {
+		return _scaler.isEnabled();
+	}
+
+	/**
+	 * @return size the scene was drawn at in the last frame
+	 */
+	public int getRenderWidth() {
+		return _renderWidth;
+	}
+
+	public int getRenderHeight() {
+		return _renderHeight;
+	}
+
+	/**
+	 * @return number of simulation steps taken in the last frame
+	 */
+	public int getSimulationSteps() {
+		return _simSteps;
+	}
+
+	/**
+	 * Times the phases of every frame. While on, every GPU_SAMPLE_FRAMES-th
+	 * frame ends with glFinish() to time the GPU - those frames cost some
+	 * frame rate, the GPU statistics are over them only.
+	 */
+	public void setTiming(boolean timing) {
+		if (timing == _timer.isEnabled())
+			return;
+		_timer.clear();
+		_timer.setEnabled(timing);
+	}
+
+	public boolean isTiming() {
+		return _timer.isEnabled();
+	}
+
+	/**
+	 * @return the timing statistics as text for the HUD (call from the UI thread)
+	 */
+	public String getTimingReport() {
+		int frames = _timer.getStats(_timerStats);
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-8s %6s %6s %6s %6s\n", frames + "f ms", "min", "avg", "p95", "p99"));
+		for(int p = 0; p < PHASES.length; p++) {
+			int o = p * FrameTimer.NUM_STATS;
+			sb.append(String.format("%-8s %6.2f %6.2f %6.2f %6.2f\n", PHASES[p],
+					_timerStats[o + FrameTimer.MIN], _timerStats[o + FrameTimer.AVG],
+					_timerStats[o + FrameTimer.P95], _timerStats[o + FrameTimer.P99]));
+		}
+		sb.append("draws " + _drawCalls + "  programs " + _programChanges
+				+ "  gl " + _glCallsIssued + " (" + _glCallsElided + " elided)");
+		if (_pacer != null) {
+			sb.append(String.format("\npace %d Hz  interval %.2f  jitter %.2f ms  missed %d",
+					_pacer.getRate(), _pacer.getAverageInterval(), _pacer.getJitter(), _pacer.getMissed()));
+		}
+		sb.append(String.format("\nres %dx%d (%d%%)%s", _renderWidth, _renderHeight,
+				Math.round(100.0f * _renderHeight / _surfaceHeight), _scaler.isEnabled() ? " auto" : ""));
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the timed frames as CSV - one line per frame, ms per phase
+	 */
+	public void writeTimings(Writer out) throws IOException {
+		_timer.writeCsv(out);
+	}
+
+	/**
+	 * @return true if the GPU has GL_EXT_disjoint_timer_query (it is not used - no Java binding)
+	 */
+	public boolean hasTimerQueries() {
+		return _timerQueries;
+	}
+
+	/**
+	 * Counts the allocations of every frame (debug - slows the VM down)
+	 */
+	public void setTrackAllocations(boolean track) {
+		if (track == _trackAllocations)
+			return;
+		if (track)
+			Debug.startAllocCounting();
+		else
+			Debug.stopAllocCounting();
+		_frameAllocations = 0;
+		_frameAllocatedBytes = 0;
+		_trackAllocations = track;
+	}
+
+	public boolean isTrackAllocations() {
+		return _trackAllocations;
+	}
+
+	/**
+	 * @return objects allocated by the last frame, 0 unless tracking
+	 */
+	public int getFrameAllocations() {
+		return _frameAllocations;
+	}
+
+	/**
+	 * @return bytes allocated by the last frame, 0 unless tracking
+	 */
+	public int getFrameAllocatedBytes() {
+		return _frameAllocatedBytes;
+	}
+
+	/**
+	 * @return number of GL state calls the last frame passed on
+	 */
+	public int getGlCallsIssued() {
+		return _glCallsIssued;
+	}
+
+	/**
+	 * @return number of GL state calls the last frame dropped because they changed nothing
+	 */
+	public int getGlCallsElided() {
+		return _glCallsElided;
+	}
+
+	/**
+	 * @return number of glDrawElements calls in the last frame
+	 */
+	public int getDrawCalls() {
+		return _drawCalls;
+	}
+
+	/**
+	 * @return number of times the last frame switched the program
+	 */
+	public int getProgramChanges() {
+		return _programChanges;
+	}
+
+	/**
+	 * @return number of times the last frame bound a set of textures
+	 */
+	public int getTextureChanges() {
+		return _textureChanges;
+	}
+
+	/**
+	 * @return number of objects drawn in the last frame
+	 */
+	public int getObjectsDrawn() {
+		return _objectsDrawn;
+	}
+
+	/**
+	 * @return number of objects skipped by frustum culling in the last frame
+	 */
+	public int getObjectsCulled() {
+		return _objectsCulled;
+	}
+
+	/**
+	 * Scaling
+	 */
+	public void changeScale(float scale) {
+		if (scaleX * scale > 1.4f)
+			return;
+		scaleX *= scale;scaleY *= scale;scaleZ *= scale;
+
+		Log.d("SCALE: ", scaleX + "");
+	}
+
+	// debugging opengl
+	private void checkGlError(String op) {
+		int error;
+		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+			Log.e(TAG, op + ": glError " + error);
+			throw new RuntimeException(op + ": glError " + error);
+		}
+	}
+
+} 
+
 // END CLASS
\ No newline at end of file
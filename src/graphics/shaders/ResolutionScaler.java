@@ -0,0 +1,149 @@
+/**
+ * Picks the resolution the scene is drawn at from how long the GPU takes
+ * for a frame.
+ *
+ * The scene is drawn at getScale() times the surface size on both axes -
+ * one of SCALES, from full down to half. addSample() is handed the GPU
+ * time of a frame and the time a frame may take (the budget). The scale
+ * steps down as soon as the average of the last few samples runs over
+ * the budget. It steps up only after a longer window whose average, grown
+ * by the extra pixels of the next level, would still fit with room to
+ * spare. Both windows start over after a step, so each level is measured
+ * on its own. The gap between the two thresholds keeps the scale from
+ * going back and forth between two levels.
+ */
+
+package graphics.shaders;
+
+public class ResolutionScaler {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	public static final float[] SCALES = {1.0f, 0.875f, 0.75f, 0.625f, 0.5f};
+
+	// samples looked at before stepping down / up
+	private static final int DOWN_SAMPLES = 8;
+	private static final int UP_SAMPLES = 30;
+
+	// step down above this part of the budget, up if the next level
+	// is expected to take less than this part
+	private static final float DOWN_RATIO = 0.9f;
+	private static final float UP_RATIO = 0.7f;
+
+	private volatile boolean _enabled;		// off by default - see setEnabled()
+	private volatile boolean _reset;		// from setEnabled(), applied on the GL thread
+
+	private int _level;					// index into SCALES
+
+	// samples since the last step (ms)
+	private float[] _recent = new float[DOWN_SAMPLES];
+	private int _samples;
+	private float _sum;					// for the up window
+	private int _sumCount;
+
+	private int _steps;					// taken so far
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public ResolutionScaler() {
+
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Takes the GPU time of a frame (GL thread)
+	 * @param gpuMs how long the GPU took to draw the frame
+	 * @param budgetMs how long a frame may take at the target rate
+	 * @return true if the scale changed
+	 */
+	public boolean addSample(float gpuMs, float budgetMs) {
+		applyReset();
+
+		_recent[_samples % DOWN_SAMPLES] = gpuMs;
+		_samples++;
+		_sum += gpuMs;
+		_sumCount++;
+
+		// too slow - step down at once
+		if (_samples >= DOWN_SAMPLES && _level < SCALES.length - 1) {
+			float recent = 0.0f;
+			for (int i = 0; i < DOWN_SAMPLES; i++)
+				recent += _recent[i];
+			if (recent / DOWN_SAMPLES > budgetMs * DOWN_RATIO) {
+				setLevel(_level + 1);
+				return true;
+			}
+		}
+
+		// fast enough for the next level up, even with its extra pixels?
+		if (_sumCount >= UP_SAMPLES) {
+			float average = _sum / _sumCount;
+			_sum = 0.0f;
+			_sumCount = 0;
+			if (_level > 0) {
+				float grow = SCALES[_level - 1] / SCALES[_level];
+				if (average * grow * grow < budgetMs * UP_RATIO) {
+					setLevel(_level - 1);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void setLevel(int level) {
+		_level = level;
+		_samples = 0;
+		_sum = 0.0f;
+		_sumCount = 0;
+		_steps++;
+	}
+
+	/*
+	 * Back to full resolution after setEnabled()
+	 */
+	private void applyReset() {
+		if (_reset) {
+			_reset = false;
+			setLevel(0);
+			_steps = 0;
+		}
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return the part of the surface size to draw at (GL thread) - 1 while disabled
+	 */
+	public float getScale() {
+		applyReset();
+		return _enabled ? SCALES[_level] : 1.0f;
+	}
+
+	/**
+	 * Turns the scaling on/off - it starts again from full resolution.
+	 * Off by default: the GPU time it needs costs two glFinish() stalls
+	 * on every sampled frame.
+	 */
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+		_reset = true;
+	}
+
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * @return number of times the scale changed since it was enabled
+	 */
+	public int getSteps() {
+		return _steps;
+	}
+}
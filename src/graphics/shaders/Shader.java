@@ -1,227 +1,377 @@
-/**
- * Represents a shader object
- */
-
-package graphics.shaders;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-
-import android.content.Context;
-import android.opengl.GLES20;
-import android.util.Log;
-
-public class Shader {
-	/************************
-	 * PROPERTIES
-	 **********************/
-
-	// program/vertex/fragment handles
-	private int _program, _vertexShader, _pixelShader;
-
-	// The shaders
-	private String _vertexS, _fragmentS;
-
-	// does it have textures?
-	private boolean hasTextures;
-	private int numTextures;
-
-	/************************
-	 * CONSTRUCTOR(S)
-	 *************************/
-	public Shader() {
-
-	}
-
-	// Takes in Strings directly
-	public Shader(String vertexS, String fragmentS, boolean hasTextures, int numTextures) {
-		setup(vertexS, fragmentS, hasTextures, numTextures);
-	}
-
-	// Takes in ids for files to be read
-	public Shader(int vID, int fID, Context context, boolean hasTextures, int numTextures) {
-		StringBuffer vs = new StringBuffer();
-		StringBuffer fs = new StringBuffer();
-
-		// read the files
-		try {
-			// Read the file from the resource
-			//Log.d("loadFile", "Trying to read vs");
-			// Read VS first
-			InputStream inputStream = context.getResources().openRawResource(vID);
-			// setup Bufferedreader
-			BufferedReader in = new BufferedReader(new InputStreamReader(inputStream));
-
-			String read = in.readLine();
-			while (read != null) {
-				vs.append(read + "\n");
-				read = in.readLine();
-			}
-
-			vs.deleteCharAt(vs.length() - 1);
-
-			// Now read FS
-			inputStream = context.getResources().openRawResource(fID);
-			// setup Bufferedreader
-			in = new BufferedReader(new InputStreamReader(inputStream));
-
-			read = in.readLine();
-			while (read != null) {
-				fs.append(read + "\n");
-				read = in.readLine();
-			}
-
-			fs.deleteCharAt(fs.length() - 1);
-		} catch (Exception e) {
-			Log.d("ERROR-readingShader", "Could not read shader: " + e.getLocalizedMessage());
-		}
-
-
-		// Setup everything
-		setup(vs.toString(), fs.toString(), hasTextures, numTextures);
-	}
-
-
-	/**************************
-	 * OTHER METHODS
-	 *************************/
-
-	/** 
-	 * Sets up everything
-	 * @param vs the vertex shader
-	 * @param fs the fragment shader 
-	 */
-	private void setup(String vs, String fs, boolean hasTextures, int numTextures) {
-		this._vertexS = vs;
-		this._fragmentS = fs;
-
-		// create the program
-		int create = createProgram();
-
-		// texture variables
-		this.hasTextures = hasTextures;
-		this.numTextures = numTextures;
-	}
-
-	/**
-	 * Creates a shader program.
-	 * @param vertexSource
-	 * @param fragmentSource
-	 * @return returns 1 if creation successful, 0 if not
-	 */
-	private int createProgram() {
-		// Vertex shader
-		_vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, _vertexS);
-		if (_vertexShader == 0) {
-			return 0;
-		}
-
-		// pixel shader
-		_pixelShader = loadShader(GLES20.GL_FRAGMENT_SHADER, _fragmentS);
-		if (_pixelShader == 0) {
-			return 0;
-		}
-
-		// Create the program
-		_program = GLES20.glCreateProgram();
-		if (_program != 0) {
-			GLES20.glAttachShader(_program, _vertexShader);
-			//checkGlError("glAttachShader VS " + this.toString());
-			GLES20.glAttachShader(_program, _pixelShader);
-			//checkGlError("glAttachShader PS");
-			GLES20.glLinkProgram(_program);
-			int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(_program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-			if (linkStatus[0] != GLES20.GL_TRUE) {
-				Log.e("Shader", "Could not link _program: ");
-				Log.e("Shader", GLES20.glGetProgramInfoLog(_program));
-				GLES20.glDeleteProgram(_program);
-				_program = 0;
-				return 0;
-			}
-		}
-		else
-			Log.d("CreateProgram", "Could not create program");
-
-		return 1;
-	}
-
-	/**
-	 * Loads a shader (either vertex or pixel) given the source
-	 * @param shaderType VERTEX or PIXEL
-	 * @param source The string data representing the shader code
-	 * @return handle for shader
-	 */
-	private int loadShader(int shaderType, String source) {
-		int shader = GLES20.glCreateShader(shaderType);
-		if (shader != 0) {
-			GLES20.glShaderSource(shader, source);
-			GLES20.glCompileShader(shader);
-			int[] compiled = new int[1];
-			GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-			if (compiled[0] == 0) {
-				Log.e("Shader", "Could not compile shader " + shaderType + ":");
-				Log.e("Shader", GLES20.glGetShaderInfoLog(shader));
-				GLES20.glDeleteShader(shader);
-				shader = 0;
-			}
-		}
-		return shader;
-	}
-
-	/**
-	 * Error for OpenGL
-	 * @param op
-	 */
-	private void checkGlError(String op) {
-		int error;
-		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
-			Log.e("Shader", op + ": glError " + error);
-			throw new RuntimeException(op + ": glError " + error);
-		}
-	}
-
-	/***************************
-	 * GET/SET
-	 *************************/
-	public int get_program() {
-		return _program;
-	}
-
-	public void set_program(int _program) {
-		this._program = _program;
-	}
-
-	public int get_vertexShader() {
-		return _vertexShader;
-	}
-
-	public void set_vertexShader(int shader) {
-		_vertexShader = shader;
-	}
-
-	public int get_pixelShader() {
-		return _pixelShader;
-	}
-
-	public void set_pixelShader(int shader) {
-		_pixelShader = shader;
-	}
-
-	public String get_vertexS() {
-		return _vertexS;
-	}
-
-	public void set_vertexS(String _vertexs) {
-		_vertexS = _vertexs;
-	}
-
-	public String get_fragmentS() {
-		return _fragmentS;
-	}
-
-	public void set_fragmentS(String _fragments) {
-		_fragmentS = _fragments;
-	}
-}
+/**
+ * Represents a shader object
+ *
+ * After linking, the active uniforms and attributes are listed once
+ * (GL_ACTIVE_UNIFORMS/GL_ACTIVE_ATTRIBUTES). Code that draws binds the
+ * names it uses to integer handles up front (bindUniforms/bindAttributes)
+ * and from then on only asks for getUniform(handle) - no string lookups
+ * while drawing. getNameLookups() counts the lookups by name to prove it.
+ */
+
+package graphics.shaders;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.util.Log;
+
+public class Shader {
+	/************************
+	 * PROPERTIES
+	 **********************/
+
+	// program/vertex/fragment handles
+	private int _program, _vertexShader, _pixelShader;
+
+	// The shaders
+	private String _vertexS, _fragmentS;
+
+	// does it have textures?
+	private boolean hasTextures;
+	private int numTextures;
+
+	// Active uniforms/attributes of the linked program: name -> location
+	private HashMap<String, Integer> _uniforms = new HashMap<String, Integer>();
+	private HashMap<String, Integer> _attributes = new HashMap<String, Integer>();
+
+	// Locations by handle - see bindUniforms()/bindAttributes()
+	private int[] _uniformHandles = new int[0];
+	private int[] _attributeHandles = new int[0];
+
+	// Last values set through GLState, by uniform handle (null = never set)
+	private float[][] _uniformValues = new float[0][];
+
+	// Lookups by name (all shaders) - should not grow while frames are drawn
+	private static int sNameLookups;
+
+	/************************
+	 * CONSTRUCTOR(S)
+	 *************************/
+	public Shader() {
+
+	}
+
+	// Takes in Strings directly
+	public Shader(String vertexS, String fragmentS, boolean hasTextures, int numTextures) {
+		setup(vertexS, fragmentS, hasTextures, numTextures);
+	}
+
+	// Takes in ids for files to be read
+	public Shader(int vID, int fID, Context context, boolean hasTextures, int numTextures) {
+		this(vID, fID, context, hasTextures, numTextures, "");
+	}
+
+	/**
+	 * Same, with #defines put in front of the vertex shader - e.g. to build
+	 * the variant behind an #ifdef
+	 * @param vertexDefines lines like "#define NAME value\n", "" for none
+	 */
+	public Shader(int vID, int fID, Context context, boolean hasTextures, int numTextures, String vertexDefines) {
+		StringBuffer vs = new StringBuffer(vertexDefines);
+		StringBuffer fs = new StringBuffer();
+
+		// read the files
+		try {
+			// Read the file from the resource
+			//Log.d("loadFile", "Trying to read vs");
+			// Read VS first
+			InputStream inputStream = context.getResources().openRawResource(vID);
+			// setup Bufferedreader
+			BufferedReader in = new BufferedReader(new InputStreamReader(inputStream));
+
+			String read = in.readLine();
+			while (read != null) {
+				vs.append(read + "\n");
+				read = in.readLine();
+			}
+
+			vs.deleteCharAt(vs.length() - 1);
+
+			// Now read FS
+			inputStream = context.getResources().openRawResource(fID);
+			// setup Bufferedreader
+			in = new BufferedReader(new InputStreamReader(inputStream));
+
+			read = in.readLine();
+			while (read != null) {
+				fs.append(read + "\n");
+				read = in.readLine();
+			}
+
+			fs.deleteCharAt(fs.length() - 1);
+		} catch (Exception e) {
+			Log.d("ERROR-readingShader", "Could not read shader: " + e.getLocalizedMessage());
+		}
+
+
+		// Setup everything
+		setup(vs.toString(), fs.toString(), hasTextures, numTextures);
+	}
+
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/** 
+	 * Sets up everything
+	 * @param vs the vertex shader
+	 * @param fs the fragment shader 
+	 */
+	private void setup(String vs, String fs, boolean hasTextures, int numTextures) {
+		this._vertexS = vs;
+		this._fragmentS = fs;
+
+		// create the program
+		int create = createProgram();
+
+		// texture variables
+		this.hasTextures = hasTextures;
+		this.numTextures = numTextures;
+	}
+
+	/**
+	 * Creates a shader program.
+	 * @param vertexSource
+	 * @param fragmentSource
+	 * @return returns 1 if creation successful, 0 if not
+	 */
+	private int createProgram() {
+		// Vertex shader
+		_vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, _vertexS);
+		if (_vertexShader == 0) {
+			return 0;
+		}
+
+		// pixel shader
+		_pixelShader = loadShader(GLES20.GL_FRAGMENT_SHADER, _fragmentS);
+		if (_pixelShader == 0) {
+			return 0;
+		}
+
+		// Create the program
+		_program = GLES20.glCreateProgram();
+		if (_program != 0) {
+			GLES20.glAttachShader(_program, _vertexShader);
+			//checkGlError("glAttachShader VS " + this.toString());
+			GLES20.glAttachShader(_program, _pixelShader);
+			//checkGlError("glAttachShader PS");
+			GLES20.glLinkProgram(_program);
+			int[] linkStatus = new int[1];
+			GLES20.glGetProgramiv(_program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+			if (linkStatus[0] != GLES20.GL_TRUE) {
+				Log.e("Shader", "Could not link _program: ");
+				Log.e("Shader", GLES20.glGetProgramInfoLog(_program));
+				GLES20.glDeleteProgram(_program);
+				_program = 0;
+				return 0;
+			}
+			reflect();
+		}
+		else
+			Log.d("CreateProgram", "Could not create program");
+
+		return 1;
+	}
+
+	/**
+	 * Lists the active uniforms and attributes of the linked program
+	 */
+	private void reflect() {
+		int[] count = new int[1];
+		int[] maxLength = new int[1];
+		int[] length = new int[1];
+		int[] size = new int[1];
+		int[] type = new int[1];
+
+		// uniforms
+		GLES20.glGetProgramiv(_program, GLES20.GL_ACTIVE_UNIFORMS, count, 0);
+		GLES20.glGetProgramiv(_program, GLES20.GL_ACTIVE_UNIFORM_MAX_LENGTH, maxLength, 0);
+		byte[] name = new byte[Math.max(maxLength[0], 1)];
+		for (int i = 0; i < count[0]; i++) {
+			GLES20.glGetActiveUniform(_program, i, name.length, length, 0, size, 0, type, 0, name, 0);
+			String n = activeName(name, length[0]);
+			_uniforms.put(n, GLES20.glGetUniformLocation(_program, n));
+		}
+
+		// attributes
+		GLES20.glGetProgramiv(_program, GLES20.GL_ACTIVE_ATTRIBUTES, count, 0);
+		GLES20.glGetProgramiv(_program, GLES20.GL_ACTIVE_ATTRIBUTE_MAX_LENGTH, maxLength, 0);
+		name = new byte[Math.max(maxLength[0], 1)];
+		for (int i = 0; i < count[0]; i++) {
+			GLES20.glGetActiveAttrib(_program, i, name.length, length, 0, size, 0, type, 0, name, 0);
+			String n = activeName(name, length[0]);
+			_attributes.put(n, GLES20.glGetAttribLocation(_program, n));
+		}
+	}
+
+	/*
+	 * Name of an active uniform/attribute - arrays are reported as "name[0]"
+	 */
+	private static String activeName(byte[] name, int length) {
+		String n = new String(name, 0, length);
+		if (n.endsWith("[0]"))
+			n = n.substring(0, n.length() - 3);
+		return n;
+	}
+
+	/**
+	 * Looks up uniforms by name once - getUniform(i) is the location of names[i] afterwards
+	 * @param names uniform names, in handle order
+	 */
+	public void bindUniforms(String[] names) {
+		_uniformHandles = new int[names.length];
+		_uniformValues = new float[names.length][];
+		for (int i = 0; i < names.length; i++)
+			_uniformHandles[i] = getUniformLocation(names[i]);
+	}
+
+	/**
+	 * Looks up attributes by name once - getAttribute(i) is the location of names[i] afterwards
+	 * @param names attribute names, in handle order
+	 */
+	public void bindAttributes(String[] names) {
+		_attributeHandles = new int[names.length];
+		for (int i = 0; i < names.length; i++)
+			_attributeHandles[i] = getAttribLocation(names[i]);
+	}
+
+	/**
+	 * Location of a uniform by name - a map lookup, keep it out of the frame loop
+	 * @return -1 if the program has no such active uniform
+	 */
+	public int getUniformLocation(String name) {
+		sNameLookups++;
+		Integer location = _uniforms.get(name);
+		return location != null ? location : -1;
+	}
+
+	/**
+	 * Location of an attribute by name - a map lookup, keep it out of the frame loop
+	 * @return -1 if the program has no such active attribute
+	 */
+	public int getAttribLocation(String name) {
+		sNameLookups++;
+		Integer location = _attributes.get(name);
+		return location != null ? location : -1;
+	}
+
+	/**
+	 * Loads a shader (either vertex or pixel) given the source
+	 * @param shaderType VERTEX or PIXEL
+	 * @param source The string data representing the shader code
+	 * @return handle for shader
+	 */
+	private int loadShader(int shaderType, String source) {
+		int shader = GLES20.glCreateShader(shaderType);
+		if (shader != 0) {
+			GLES20.glShaderSource(shader, source);
+			GLES20.glCompileShader(shader);
+			int[] compiled = new int[1];
+			GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+			if (compiled[0] == 0) {
+				Log.e("Shader", "Could not compile shader " + shaderType + ":");
+				Log.e("Shader", GLES20.glGetShaderInfoLog(shader));
+				GLES20.glDeleteShader(shader);
+				shader = 0;
+			}
+		}
+		return shader;
+	}
+
+	/**
+	 * Error for OpenGL
+	 * @param op
+	 */
+	private void checkGlError(String op) {
+		int error;
+		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+			Log.e("Shader", op + ": glError " + error);
+			throw new RuntimeException(op + ": glError " + error);
+		}
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return location of the uniform bound to handle by bindUniforms(), -1 if inactive
+	 */
+	public int getUniform(int handle) {
+		return _uniformHandles[handle];
+	}
+
+	/**
+	 * @return location of the attribute bound to handle by bindAttributes(), -1 if inactive
+	 */
+	public int getAttribute(int handle) {
+		return _attributeHandles[handle];
+	}
+
+	/**
+	 * @return the last value GLState set for a uniform, at least size floats -
+	 * NaN (never equal to anything) until it was set
+	 */
+	float[] getUniformValues(int handle, int size) {
+		float[] values = _uniformValues[handle];
+		if (values == null || values.length < size) {
+			values = new float[size];
+			Arrays.fill(values, Float.NaN);
+			_uniformValues[handle] = values;
+		}
+		return values;
+	}
+
+	/**
+	 * @return number of uniform/attribute lookups by name so far, all shaders
+	 */
+	public static int getNameLookups() {
+		return sNameLookups;
+	}
+
+	public int get_program() {
+		return _program;
+	}
+
+	public void set_program(int _program) {
+		this._program = _program;
+	}
+
+	public int get_vertexShader() {
+		return _vertexShader;
+	}
+
+	public void set_vertexShader(int shader) {
+		_vertexShader = shader;
+	}
+
+	public int get_pixelShader() {
+		return _pixelShader;
+	}
+
+	public void set_pixelShader(int shader) {
+		_pixelShader = shader;
+	}
+
+	public String get_vertexS() {
+		return _vertexS;
+	}
+
+	public void set_vertexS(String _vertexs) {
+		_vertexS = _vertexs;
+	}
+
+	public String get_fragmentS() {
+		return _fragmentS;
+	}
+
+	public void set_fragmentS(String _fragments) {
+		_fragmentS = _fragments;
+	}
+}
@@ -24,18 +24,29 @@
 package graphics.shaders;
 
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
 import android.app.Activity;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.ConfigurationInfo;
+import android.graphics.Color;
+import android.graphics.Typeface;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.FloatMath;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
 
 
 /**
@@ -57,13 +68,99 @@ public class ShaderActivity extends Activity {
 			mGLSurfaceView.setEGLContextClientVersion(2);
 			renderer = new Renderer(this);
 			mGLSurfaceView.setRenderer(renderer);
+
+			// even frames at a rate the device keeps up - none while nothing moves
+			float refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+			mPacer = new FramePacer(mGLSurfaceView, refreshRate);
+			renderer.setPacer(mPacer);
 		} 
 		else { // quit if no support - get a better phone! :P
 			this.finish();
 		}
 
+		// the performance HUD lies on top of the GL view, hidden until asked for
+		mHud = new TextView(this);
+		mHud.setTextColor(Color.GREEN);
+		mHud.setTextSize(10);
+		mHud.setTypeface(Typeface.MONOSPACE);
+		mHud.setVisibility(View.GONE);
+
 		// set the content view
-		setContentView(mGLSurfaceView);
+		FrameLayout layout = new FrameLayout(this);
+		layout.addView(mGLSurfaceView);
+		layout.addView(mHud);
+		setContentView(layout);
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		if (renderer != null)
+			renderer.onResume();
+	}
+
+	/*
+	 * Refreshes the HUD twice a second - the text is built here, not on the GL thread
+	 */
+	private Runnable mHudUpdate = new Runnable() {
+		public void run() {
+			mHud.setText(renderer.getTimingReport());
+			mHandler.postDelayed(this, HUD_INTERVAL_MS);
+		}
+	};
+
+	/**
+	 * Shows/hides the performance HUD - frames are only timed while it is shown
+	 */
+	private void toggleHud() {
+		boolean show = !renderer.isTiming();
+		renderer.setTiming(show);
+		mHandler.removeCallbacks(mHudUpdate);
+		if (show) {
+			mHud.setVisibility(View.VISIBLE);
+			mHandler.post(mHudUpdate);
+		}
+		else
+			mHud.setVisibility(View.GONE);
+	}
+
+	/**
+	 * Steps the frame rate through auto and FramePacer.RATES
+	 */
+	private void nextFrameRate() {
+		int[] rates = FramePacer.RATES;
+		int next = 0;
+		for (int i = 0; i < rates.length; i++) {
+			if (rates[i] == mFrameRate)
+				next = i + 1 < rates.length ? rates[i + 1] : 0;
+		}
+		if (mFrameRate == 0)
+			next = rates[0];
+		mFrameRate = next;
+		mPacer.setTargetRate(next);
+		Toast.makeText(this, "Frame rate: " + (next == 0 ? "auto" : next + " fps"), Toast.LENGTH_SHORT).show();
+	}
+
+	/**
+	 * Writes the timed frames to timings.csv in the app's files
+	 */
+	private void exportTimings() {
+		File dir = getExternalFilesDir(null);
+		if (dir == null)
+			dir = getFilesDir();
+		File file = new File(dir, "timings.csv");
+		try {
+			FileWriter out = new FileWriter(file);
+			try {
+				renderer.writeTimings(out);
+			} finally {
+				out.close();
+			}
+			Toast.makeText(this, "Timings written to " + file, Toast.LENGTH_SHORT).show();
+		} catch (IOException e) {
+			Log.e("ShaderActivity", "Could not write " + file + ": " + e.toString());
+			Toast.makeText(this, "Could not write the timings", Toast.LENGTH_SHORT).show();
+		}
 	}
 
 	/**
@@ -95,6 +192,9 @@ public class ShaderActivity extends Activity {
 	 * On selection of a menu item
 	 */
 	public boolean onOptionsItemSelected(MenuItem item) {
+		// show the change even if drawing stopped
+		mGLSurfaceView.requestRender();
+
 		// Handle item selection
 		switch (item.getItemId()) {
 		case R.id.toggleLight:
@@ -127,6 +227,19 @@ public class ShaderActivity extends Activity {
 		case R.id.road:
 			renderer.setObject(this.ROAD);
 			return true;
+		case R.id.hud:				// Performance HUD on/off
+			toggleHud();
+			return true;
+		case R.id.export_timings:	// Timings to CSV
+			exportTimings();
+			return true;
+		case R.id.frame_rate:		// Frame rate: auto, 30, 60, 90
+			nextFrameRate();
+			return true;
+		case R.id.dynamic_resolution:	// Lower resolution when the GPU can't keep up
+			renderer.setDynamicResolution(!renderer.isDynamicResolution());
+			Toast.makeText(this, "Dynamic resolution " + (renderer.isDynamicResolution() ? "on" : "off"), Toast.LENGTH_SHORT).show();
+			return true;
 		default:
 			return super.onOptionsItemSelected(item);
 		}
@@ -206,6 +319,15 @@ public class ShaderActivity extends Activity {
 
 	private GLSurfaceView mGLSurfaceView;
 
+	// frame pacing - mFrameRate 0 is adaptive
+	private FramePacer mPacer;
+	private int mFrameRate;
+
+	// performance HUD
+	private static final long HUD_INTERVAL_MS = 500;
+	private TextView mHud;
+	private Handler mHandler = new Handler();
+
 	// The Renderer
 	Renderer renderer;
 
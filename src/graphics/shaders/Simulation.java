@@ -0,0 +1,164 @@
+/**
+ * The game state, stepped at a fixed rate whatever the frame rate is.
+ *
+ * update() reads the clock, adds the time since the last call to an
+ * accumulator and takes as many fixed steps as fit into it - none on a
+ * fast frame, several after a hitch. The renderer draws between the last
+ * two states: getAlpha() says how far into the next step the clock is.
+ * Time lost in very long frames (e.g. the app was paused) is dropped
+ * instead of being caught up on.
+ *
+ * The clock is passed in, so the simulation runs on a plain JVM with a
+ * fake one.
+ */
+
+package graphics.shaders;
+
+public class Simulation {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Where the time comes from
+	public interface Clock {
+		long nanoTime();
+	}
+
+	public static final Clock SYSTEM_CLOCK = new Clock() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	public static final int DEFAULT_RATE = 120;		// steps per second
+
+	// the speeds were tuned as "per frame" at 60 fps
+	private static final float SPEED_SCALE = 60.0f;
+
+	// at most this much time is caught up on per update (ns)
+	private static final long MAX_FRAME_NANOS = 250000000L;
+
+	private Clock _clock;
+	private long _stepNanos;
+	private float _dt;			// seconds per step
+	private long _lastTime = -1;
+	private long _accumulator;
+	private long _steps;		// taken so far
+
+	// Input - set from the GL thread before update()
+	private float _throttle;	// drag along y, -250..250
+	private float _steering;	// drag along x
+
+	// State - this step and the one before
+	private float _distance, _prevDistance;		// along the heading
+	private float _heading, _prevHeading;		// radians, 0 = +x
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public Simulation() {
+		this(SYSTEM_CLOCK, DEFAULT_RATE);
+	}
+
+	/**
+	 * @param clock the time source
+	 * @param rate steps per second
+	 */
+	public Simulation(Clock clock, int rate) {
+		_clock = clock;
+		_stepNanos = 1000000000L / rate;
+		_dt = 1.0f / rate;
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Takes the steps that are due
+	 * @return number of steps taken
+	 */
+	public int update() {
+		long now = _clock.nanoTime();
+		if (_lastTime < 0) {
+			_lastTime = now;
+			return 0;
+		}
+		_accumulator += Math.min(now - _lastTime, MAX_FRAME_NANOS);
+		_lastTime = now;
+
+		int steps = 0;
+		while (_accumulator >= _stepNanos) {
+			step();
+			_accumulator -= _stepNanos;
+			steps++;
+		}
+		_steps += steps;
+		return steps;
+	}
+
+	/*
+	 * One fixed step - the car drives along the heading, faster the further
+	 * the screen was dragged
+	 */
+	private void step() {
+		_prevDistance = _distance;
+		_prevHeading = _heading;
+
+		float accel = -2.0f * _throttle;
+		_distance += accel * SPEED_SCALE * _dt;
+		_heading = _steering / 50;
+	}
+
+	/**
+	 * Starts again from the current time - e.g. after a pause
+	 */
+	public void resetClock() {
+		_lastTime = -1;
+		_accumulator = 0;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @param throttle drag along the screen's y axis (clamped to -250..250)
+	 * @param steering drag along the screen's x axis
+	 */
+	public void setInput(float throttle, float steering) {
+		_throttle = Math.max(-250.0f, Math.min(250.0f, throttle));
+		_steering = steering;
+	}
+
+	/**
+	 * @return 0..1 - how far the clock is between the last state and the next
+	 */
+	public float getAlpha() {
+		return (float)_accumulator / _stepNanos;
+	}
+
+	/**
+	 * @return distance driven, between the last two steps
+	 */
+	public float getDistance(float alpha) {
+		return _prevDistance + (_distance - _prevDistance) * alpha;
+	}
+
+	/**
+	 * @return heading in radians, between the last two steps
+	 */
+	public float getHeading(float alpha) {
+		return _prevHeading + (_heading - _prevHeading) * alpha;
+	}
+
+	public long getSteps() {
+		return _steps;
+	}
+
+	/**
+	 * @return seconds per step
+	 */
+	public float getStepTime() {
+		return _dt;
+	}
+}
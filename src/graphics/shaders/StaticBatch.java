@@ -0,0 +1,303 @@
+/**
+ * Merges static objects (road, scenery) into a few big meshes.
+ *
+ * build() moves the vertices of every object into world space and sorts
+ * their triangles into cells of a grid on the ground (x/z), by the center
+ * of the triangle. All triangles of one cell that share a material - the
+ * same set of textures - become one Mesh. Each cell is culled on its own,
+ * so static geometry costs one draw per visible cell and material instead
+ * of one per object. Triangles are not cut at cell borders - a cell's
+ * bounds cover its triangles, however far they reach.
+ *
+ * The objects have to keep their CPU copy (MeshOptions.setKeepCpuCopy)
+ * until the batch is built. The cells keep theirs, so they go straight
+ * back into new buffers after the GL context is lost.
+ */
+
+package graphics.shaders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class StaticBatch {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// floats per vertex [x, y, z, nx, ny, nz, u, v] - as in Mesh
+	private static final int STRIDE = 8;
+
+	/*
+	 * The triangles of one material in one cell
+	 */
+	private static class Cell {
+		int material;
+		FloatArray vertices = new FloatArray();
+		IntArray indices = new IntArray();
+		boolean hasTexCoords;
+		Mesh mesh;
+	}
+
+	private float _cellSize;
+	private MeshOptions _options;
+
+	// The objects to merge and their model matrices
+	private ArrayList<Object3D> _objects = new ArrayList<Object3D>();
+	private ArrayList<float[]> _transforms = new ArrayList<float[]>();
+
+	// Materials - the texture sets of the objects (null = untextured)
+	private ArrayList<Texture[]> _materials = new ArrayList<Texture[]>();
+
+	// Results
+	private Cell[] _cells;
+	private FrustumCuller _culler = new FrustumCuller();
+	private boolean _uintIndices;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+
+	/**
+	 * @param cellSize edge of a grid cell in world units
+	 * @param options how the merged meshes are built (the CPU copy is always kept)
+	 */
+	public StaticBatch(float cellSize, MeshOptions options) {
+		_cellSize = cellSize;
+		_options = options;
+		_options.setKeepCpuCopy(true);
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Adds a static object - before build()
+	 * @param model model matrix (column major), copied
+	 */
+	public void add(Object3D ob, float[] model) {
+		_objects.add(ob);
+		_transforms.add(model.clone());
+	}
+
+	/**
+	 * @return true once every object's mesh is loaded, so build() can run
+	 */
+	public boolean isReady() {
+		for (int i = 0; i < _objects.size(); i++) {
+			Object3D ob = _objects.get(i);
+			if (!ob.isMeshResident() || ob.getMesh().get_vertices() == null)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Merges the objects into the cells
+	 */
+	public void build() {
+		HashMap<Long, Cell> cells = new HashMap<Long, Cell>();
+		ArrayList<Cell> order = new ArrayList<Cell>();
+
+		for (int o = 0; o < _objects.size(); o++) {
+			Object3D ob = _objects.get(o);
+			Mesh mesh = ob.getMesh();
+			int material = materialId(ob.hasTexture() ? ob.getTextures() : null);
+			float[] world = toWorld(mesh.get_vertices(), mesh.getVertexArraySize(), _transforms.get(o));
+			int[] indices = mesh.get_indices();
+			int numVertices = world.length / STRIDE;
+
+			// object vertex -> vertex in the cell it was last put into
+			int[] local = new int[numVertices];
+			Cell[] owner = new Cell[numVertices];
+
+			for (int t = 0; t < indices.length; t += 3) {
+				int a = indices[t] * STRIDE, b = indices[t + 1] * STRIDE, c = indices[t + 2] * STRIDE;
+				int cx = (int)Math.floor((world[a] + world[b] + world[c]) / (3.0f * _cellSize));
+				int cz = (int)Math.floor((world[a + 2] + world[b + 2] + world[c + 2]) / (3.0f * _cellSize));
+				Long key = ((long)material << 40) | ((long)(cx & 0xFFFFF) << 20) | (cz & 0xFFFFF);
+
+				Cell cell = cells.get(key);
+				if (cell == null) {
+					cell = new Cell();
+					cell.material = material;
+					cells.put(key, cell);
+					order.add(cell);
+				}
+				cell.hasTexCoords |= mesh.hasTexCoords();
+
+				for (int k = 0; k < 3; k++) {
+					int v = indices[t + k];
+					if (owner[v] != cell) {
+						owner[v] = cell;
+						local[v] = cell.vertices.size() / STRIDE;
+						for (int f = 0; f < STRIDE; f++)
+							cell.vertices.add(world[v * STRIDE + f]);
+					}
+					cell.indices.add(local[v]);
+				}
+			}
+		}
+
+		_cells = order.toArray(new Cell[order.size()]);
+		_culler.clear();
+		for (int i = 0; i < _cells.length; i++) {
+			Cell cell = _cells[i];
+			cell.mesh = new Mesh(cell.vertices.toArray(), cell.indices.toArray(), cell.hasTexCoords, _options);
+			cell.vertices = null;
+			cell.indices = null;
+
+			float[] sphere = cell.mesh.getSphere();
+			_culler.add(sphere[0], sphere[1], sphere[2], sphere[3]);
+		}
+	}
+
+	/*
+	 * The vertices of an object in world space. Normals only get the
+	 * rotation/scale part, so the model matrix mustn't scale unevenly.
+	 */
+	private static float[] toWorld(float[] vertices, int stride, float[] m) {
+		int numVertices = vertices.length / stride;
+		float[] world = new float[numVertices * STRIDE];
+		for (int i = 0; i < numVertices; i++) {
+			int s = i * stride, d = i * STRIDE;
+			float x = vertices[s], y = vertices[s + 1], z = vertices[s + 2];
+			world[d]     = m[0] * x + m[4] * y + m[8] * z + m[12];
+			world[d + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+			world[d + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+
+			float nx = vertices[s + 3], ny = vertices[s + 4], nz = vertices[s + 5];
+			float wx = m[0] * nx + m[4] * ny + m[8] * nz;
+			float wy = m[1] * nx + m[5] * ny + m[9] * nz;
+			float wz = m[2] * nx + m[6] * ny + m[10] * nz;
+			float len = (float)Math.sqrt(wx * wx + wy * wy + wz * wz);
+			if (len > 0.0f) {
+				wx /= len;
+				wy /= len;
+				wz /= len;
+			}
+			world[d + 3] = wx;
+			world[d + 4] = wy;
+			world[d + 5] = wz;
+
+			world[d + 6] = vertices[s + 6];
+			world[d + 7] = vertices[s + 7];
+		}
+		return world;
+	}
+
+	/*
+	 * Material of a texture set - sets holding the same textures share it
+	 */
+	private int materialId(Texture[] textures) {
+		for (int m = 0; m < _materials.size(); m++) {
+			Texture[] set = _materials.get(m);
+			if (set == textures)
+				return m;
+			if (set == null || textures == null || set.length != textures.length)
+				continue;
+			boolean same = true;
+			for (int t = 0; t < set.length && same; t++)
+				same = set[t] == textures[t];
+			if (same)
+				return m;
+		}
+		_materials.add(textures);
+		return _materials.size() - 1;
+	}
+
+	/**
+	 * Uploads the cells (GL thread)
+	 */
+	public void upload() {
+		for (int i = 0; i < _cells.length; i++) {
+			_cells[i].mesh.setUintIndices(_uintIndices);
+			_cells[i].mesh.upload();
+		}
+	}
+
+	/**
+	 * Puts the cells into new buffers after the GL context was lost
+	 */
+	public void onSurfaceCreated() {
+		if (_cells == null)
+			return;
+		for (int i = 0; i < _cells.length; i++)
+			_cells[i].mesh.forgetBuffers();
+		upload();
+	}
+
+	/**
+	 * Deletes the buffers of the cells (GL thread)
+	 */
+	public void deleteBuffers() {
+		if (_cells == null)
+			return;
+		for (int i = 0; i < _cells.length; i++)
+			_cells[i].mesh.deleteBuffers();
+	}
+
+	/**
+	 * Culls the cells
+	 * @param viewProj projection * view
+	 * @return number of visible cells
+	 */
+	public int cull(float[] viewProj) {
+		_culler.setPlanes(viewProj);
+		return _culler.cull();
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public boolean isBuilt() {
+		return _cells != null;
+	}
+
+	public int getNumObjects() {
+		return _objects.size();
+	}
+
+	public Object3D getObject(int i) {
+		return _objects.get(i);
+	}
+
+	/**
+	 * @return number of cells (one per grid cell and material), 0 before build()
+	 */
+	public int getNumCells() {
+		return _cells != null ? _cells.length : 0;
+	}
+
+	public Mesh getCellMesh(int i) {
+		return _cells[i].mesh;
+	}
+
+	/**
+	 * @return the textures of the cell's material, null if untextured
+	 */
+	public Texture[] getCellTextures(int i) {
+		return _materials.get(_cells[i].material);
+	}
+
+	/**
+	 * @return true if cell i was visible at the last cull()
+	 */
+	public boolean isVisible(int i) {
+		return _culler.isVisible(i);
+	}
+
+	public int getNumVisible() {
+		return _culler.getNumVisible();
+	}
+
+	public float getCellSize() {
+		return _cellSize;
+	}
+
+	/**
+	 * Tells the cells if the GPU supports 32 bit indices - see Mesh.setUintIndices()
+	 */
+	public void setUintIndices(boolean uintIndices) {
+		_uintIndices = uintIndices;
+	}
+}
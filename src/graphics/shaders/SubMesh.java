@@ -0,0 +1,457 @@
+/**
+ * A drawable piece of a Mesh.
+ * Small meshes consist of one SubMesh. Meshes with more vertices than a
+ * 16 bit index can address are either drawn with 32 bit indices (when the
+ * GPU has OES_element_index_uint) or split into several SubMeshes.
+ * Meshes with several materials get (at least) one SubMesh per material.
+ * Every SubMesh has its own bounds so it can be culled on its own, and its
+ * own VertexFormat - packed positions are relative to those bounds.
+ *
+ * upload() copies the vertices and indices into GL buffer objects, so draws
+ * read from GPU memory instead of sending the client arrays every frame.
+ */
+
+package graphics.shaders;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+
+import android.opengl.GLES20;
+
+public class SubMesh {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Most vertices a 16 bit index buffer can address
+	public static final int MAX_SHORT_VERTICES = 65536;
+
+	private static final int FLOAT_SIZE_BYTES = 4;
+	private static final int SHORT_SIZE_BYTES = 2;
+	private static final int INT_SIZE_BYTES = 4;
+
+	// Buffers
+	private ByteBuffer _vertexData;
+	private VertexFormat _format;
+	private FloatBuffer _vb;		// float view of _vertexData, FLOAT format only
+	private Buffer _ib;
+	private int _indexType;		// GL_UNSIGNED_SHORT or GL_UNSIGNED_INT
+	private int _numIndices;
+	private int _numVertices;
+	private int _material;		// index into Mesh.getMaterials()
+
+	// GL buffer objects (0 = not uploaded) and their sizes in bytes
+	private int _vbo;
+	private int _ibo;
+	private int _vertexBytes;
+	private int _indexBytes;
+
+	// Axis aligned bounds {minx, miny, minz, maxx, maxy, maxz}
+	private float[] _bounds = new float[6];
+
+	// Position decoding for the shader: position = aPosition * posScale + posBias
+	private float[] _posScale = {1.0f, 1.0f, 1.0f, 0.0f};
+	private float[] _posBias = {0.0f, 0.0f, 0.0f, 0.0f};
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public SubMesh(ByteBuffer vertexData, VertexFormat format, Buffer ib, int indexType, int numIndices, int numVertices) {
+		this(ib, indexType, numIndices, numVertices);
+		setVertexData(vertexData, format);
+	}
+
+	private SubMesh(Buffer ib, int indexType, int numIndices, int numVertices) {
+		_ib = ib;
+		_indexType = indexType;
+		_numIndices = numIndices;
+		_numVertices = numVertices;
+		_indexBytes = numIndices * (indexType == GLES20.GL_UNSIGNED_INT ? INT_SIZE_BYTES : SHORT_SIZE_BYTES);
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Builds the SubMeshes for a mesh
+	 * @param vertices interleaved vertex data
+	 * @param tangents 4 floats per vertex (tangent + handedness), null if the mesh has none
+	 * @param indices triangle list
+	 * @param stride floats per vertex (position comes first)
+	 * @param uintIndices true if GL_UNSIGNED_INT indices can be used
+	 * @param options packed vertex format or not
+	 * @param hasTexCoords false if the mesh has no tex coords (they can be left out when packed)
+	 * @return one SubMesh if the mesh fits 16 bit indices or uint is allowed, several otherwise
+	 */
+	public static SubMesh[] build(float[] vertices, float[] tangents, int[] indices, int stride, boolean uintIndices,
+			MeshOptions options, boolean hasTexCoords) {
+		int numVertices = vertices.length / stride;
+
+		if (numVertices <= MAX_SHORT_VERTICES) {
+			SubMesh sm = new SubMesh(newShortBuffer(indices, indices.length), GLES20.GL_UNSIGNED_SHORT,
+					indices.length, numVertices);
+			sm.setVertices(vertices, tangents, stride, options, hasTexCoords);
+			return new SubMesh[] {sm};
+		}
+
+		if (uintIndices) {
+			IntBuffer ib = ByteBuffer.allocateDirect(indices.length
+					* INT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+			ib.put(indices);
+			ib.position(0);
+
+			SubMesh sm = new SubMesh(ib, GLES20.GL_UNSIGNED_INT, indices.length, numVertices);
+			sm.setVertices(vertices, tangents, stride, options, hasTexCoords);
+			return new SubMesh[] {sm};
+		}
+
+		return split(vertices, tangents, indices, stride, options, hasTexCoords);
+	}
+
+	/**
+	 * Builds the SubMeshes for a range of the triangles of a mesh (one
+	 * material) - only the vertices the range uses go into its buffers
+	 * @param from first index of the range
+	 * @param to end of the range (exclusive)
+	 */
+	public static SubMesh[] build(float[] vertices, float[] tangents, int[] indices, int from, int to,
+			int stride, boolean uintIndices, MeshOptions options, boolean hasTexCoords) {
+		int numVertices = vertices.length / stride;
+		int[] local = new int[numVertices];
+		for (int i = 0; i < numVertices; i++)
+			local[i] = -1;
+
+		// vertices in order of first use (keeps the cache order)
+		int[] rangeIndices = new int[to - from];
+		int[] used = new int[Math.min(numVertices, to - from)];
+		int numUsed = 0;
+		for (int i = from; i < to; i++) {
+			int v = indices[i];
+			if (local[v] == -1) {
+				local[v] = numUsed;
+				used[numUsed++] = v;
+			}
+			rangeIndices[i - from] = local[v];
+		}
+
+		float[] rv = new float[numUsed * stride];
+		float[] rt = tangents != null ? new float[numUsed * 4] : null;
+		for (int i = 0; i < numUsed; i++) {
+			System.arraycopy(vertices, used[i] * stride, rv, i * stride, stride);
+			if (rt != null)
+				System.arraycopy(tangents, used[i] * 4, rt, i * 4, 4);
+		}
+
+		return build(rv, rt, rangeIndices, stride, uintIndices, options, hasTexCoords);
+	}
+
+	/**
+	 * Splits a mesh into pieces that fit 16 bit indices. Triangles are taken
+	 * in order, so a piece covers a run of the (cache optimised) index buffer.
+	 */
+	private static SubMesh[] split(float[] vertices, float[] tangents, int[] indices, int stride,
+			MeshOptions options, boolean hasTexCoords) {
+		int numVertices = vertices.length / stride;
+
+		// global vertex -> vertex inside the current piece (-1 = not in it yet)
+		int[] local = new int[numVertices];
+		for (int i = 0; i < numVertices; i++)
+			local[i] = -1;
+
+		int[] used = new int[MAX_SHORT_VERTICES];	// global ids in the current piece
+		int[] pieceIndices = new int[indices.length];
+		ArrayList<SubMesh> parts = new ArrayList<SubMesh>();
+
+		int numUsed = 0;
+		int numPieceIndices = 0;
+		for (int t = 0; t < indices.length; t += 3) {
+			// count the vertices this triangle would add (at most 3)
+			int added = 0;
+			for (int k = 0; k < 3; k++) {
+				if (local[indices[t + k]] == -1)
+					added++;
+			}
+
+			// piece is full - flush it
+			if (numUsed + added > MAX_SHORT_VERTICES) {
+				parts.add(newPiece(vertices, tangents, stride, used, numUsed, pieceIndices, numPieceIndices, options, hasTexCoords));
+				for (int i = 0; i < numUsed; i++)
+					local[used[i]] = -1;
+				numUsed = 0;
+				numPieceIndices = 0;
+			}
+
+			for (int k = 0; k < 3; k++) {
+				int v = indices[t + k];
+				if (local[v] == -1) {
+					local[v] = numUsed;
+					used[numUsed++] = v;
+				}
+				pieceIndices[numPieceIndices++] = local[v];
+			}
+		}
+		if (numPieceIndices > 0)
+			parts.add(newPiece(vertices, tangents, stride, used, numUsed, pieceIndices, numPieceIndices, options, hasTexCoords));
+
+		return parts.toArray(new SubMesh[parts.size()]);
+	}
+
+	/*
+	 * Gathers the vertices of one piece and creates the SubMesh
+	 */
+	private static SubMesh newPiece(float[] vertices, float[] tangents, int stride, int[] used, int numUsed,
+			int[] pieceIndices, int numPieceIndices, MeshOptions options, boolean hasTexCoords) {
+		float[] pv = new float[numUsed * stride];
+		for (int i = 0; i < numUsed; i++)
+			System.arraycopy(vertices, used[i] * stride, pv, i * stride, stride);
+
+		float[] pt = null;
+		if (tangents != null) {
+			pt = new float[numUsed * 4];
+			for (int i = 0; i < numUsed; i++)
+				System.arraycopy(tangents, used[i] * 4, pt, i * 4, 4);
+		}
+
+		SubMesh sm = new SubMesh(newShortBuffer(pieceIndices, numPieceIndices), GLES20.GL_UNSIGNED_SHORT,
+				numPieceIndices, numUsed);
+		sm.setVertices(pv, pt, stride, options, hasTexCoords);
+		return sm;
+	}
+
+	/*
+	 * Computes the bounds and fills the vertex buffer - packed if the options ask for it
+	 */
+	private void setVertices(float[] vertices, float[] tangents, int stride, MeshOptions options, boolean hasTexCoords) {
+		computeBounds(vertices, _numVertices, stride);
+
+		// tangents are interleaved - floats as well unless packed
+		if (tangents != null && (options == null || !options.isPackVertices())) {
+			setVertexData(VertexFormat.FLOAT_TANGENT.pack(vertices, tangents, _numVertices, stride, _bounds,
+					_posScale, _posBias), VertexFormat.FLOAT_TANGENT);
+			return;
+		}
+
+		if (options == null || !options.isPackVertices()) {
+			ByteBuffer bb = ByteBuffer.allocateDirect(_numVertices * stride
+					* FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder());
+			bb.asFloatBuffer().put(vertices, 0, _numVertices * stride);
+			setVertexData(bb, VertexFormat.FLOAT);
+			return;
+		}
+
+		VertexFormat format = VertexFormat.packed(options.isPackPositions(),
+				VertexFormat.texCoordsFor(vertices, _numVertices, stride, hasTexCoords), tangents != null);
+		_vertexData = format.pack(vertices, tangents, _numVertices, stride, _bounds, _posScale, _posBias);
+		_format = format;
+		_vb = null;
+	}
+
+	private void setVertexData(ByteBuffer vertexData, VertexFormat format) {
+		_vertexData = vertexData;
+		_format = format;
+		_vb = format == VertexFormat.FLOAT ? vertexData.asFloatBuffer() : null;
+	}
+
+	/**
+	 * Copies the vertices and indices into buffer objects (GL thread)
+	 * @param keepCpuCopy false drops the client side buffers afterwards
+	 * @return false if there is nothing to upload (already resident, or the data was dropped)
+	 */
+	public boolean upload(boolean keepCpuCopy) {
+		if (_vbo != 0 || _vertexData == null)
+			return false;
+
+		int[] buffers = new int[2];
+		GLES20.glGenBuffers(2, buffers, 0);
+		_vbo = buffers[0];
+		_ibo = buffers[1];
+
+		_vertexBytes = _numVertices * _format.getStride();
+		_vertexData.position(0);
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, _vbo);
+		GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, _vertexBytes, _vertexData, GLES20.GL_STATIC_DRAW);
+
+		_ib.position(0);
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, _ibo);
+		GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, _indexBytes, _ib, GLES20.GL_STATIC_DRAW);
+
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		if (!keepCpuCopy) {
+			_vertexData = null;
+			_vb = null;
+			_ib = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the buffer objects (GL thread)
+	 */
+	public void deleteBuffers() {
+		if (_vbo == 0)
+			return;
+		GLES20.glDeleteBuffers(2, new int[] {_vbo, _ibo}, 0);
+		forgetBuffers();
+	}
+
+	/**
+	 * The GL context is gone and took the buffer objects with it - only
+	 * forgets the ids (deleting them could hit buffers of the new context)
+	 */
+	public void forgetBuffers() {
+		_vbo = 0;
+		_ibo = 0;
+	}
+
+	/**
+	 * Calculates the bounding box from the vertex positions
+	 */
+	void computeBounds(float[] vertices, int numVertices, int stride) {
+		_bounds[0] = _bounds[1] = _bounds[2] = Float.MAX_VALUE;
+		_bounds[3] = _bounds[4] = _bounds[5] = -Float.MAX_VALUE;
+
+		for (int i = 0; i < numVertices; i++) {
+			for (int k = 0; k < 3; k++) {
+				float p = vertices[i * stride + k];
+				if (p < _bounds[k])
+					_bounds[k] = p;
+				if (p > _bounds[k + 3])
+					_bounds[k + 3] = p;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the bounding box from vertex positions in a buffer
+	 */
+	void computeBounds(FloatBuffer vertices, int numVertices, int stride) {
+		_bounds[0] = _bounds[1] = _bounds[2] = Float.MAX_VALUE;
+		_bounds[3] = _bounds[4] = _bounds[5] = -Float.MAX_VALUE;
+
+		for (int i = 0; i < numVertices; i++) {
+			for (int k = 0; k < 3; k++) {
+				float p = vertices.get(i * stride + k);
+				if (p < _bounds[k])
+					_bounds[k] = p;
+				if (p > _bounds[k + 3])
+					_bounds[k + 3] = p;
+			}
+		}
+	}
+
+	private static ShortBuffer newShortBuffer(int[] data, int length) {
+		ShortBuffer sb = ByteBuffer.allocateDirect(length
+				* SHORT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asShortBuffer();
+		for (int i = 0; i < length; i++)
+			sb.put((short)data[i]);
+		sb.position(0);
+		return sb;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	/**
+	 * @return the vertices as floats, null if they are packed or were dropped after upload()
+	 */
+	public FloatBuffer get_vb() {
+		return _vb;
+	}
+
+	/**
+	 * @return the vertex buffer, laid out as getFormat() says - null if dropped after upload()
+	 */
+	public ByteBuffer getVertexData() {
+		return _vertexData;
+	}
+
+	public VertexFormat getFormat() {
+		return _format;
+	}
+
+	/**
+	 * @return xyz scale that turns aPosition into model space (w = 0)
+	 */
+	public float[] getPosScale() {
+		return _posScale;
+	}
+
+	/**
+	 * @return xyz bias that turns aPosition into model space (w = 0)
+	 */
+	public float[] getPosBias() {
+		return _posBias;
+	}
+
+	/**
+	 * @return the index buffer, null if dropped after upload()
+	 */
+	public Buffer get_ib() {
+		return _ib;
+	}
+
+	/**
+	 * @return the vertex buffer object, 0 if not uploaded
+	 */
+	public int getVbo() {
+		return _vbo;
+	}
+
+	/**
+	 * @return the index buffer object, 0 if not uploaded
+	 */
+	public int getIbo() {
+		return _ibo;
+	}
+
+	/**
+	 * @return true if the client side buffers are still there (to upload again)
+	 */
+	public boolean hasCpuCopy() {
+		return _vertexData != null;
+	}
+
+	/**
+	 * @return bytes of GPU memory used by the buffer objects, 0 if not uploaded
+	 */
+	public int getGpuBytes() {
+		return _vbo != 0 ? _vertexBytes + _indexBytes : 0;
+	}
+
+	public int getIndexType() {
+		return _indexType;
+	}
+
+	public int getNumIndices() {
+		return _numIndices;
+	}
+
+	public int getNumVertices() {
+		return _numVertices;
+	}
+
+	/**
+	 * @return the material of the piece - index into Mesh.getMaterials()
+	 */
+	public int getMaterial() {
+		return _material;
+	}
+
+	public void setMaterial(int material) {
+		_material = material;
+	}
+
+	/**
+	 * @return {minx, miny, minz, maxx, maxy, maxz}
+	 */
+	public float[] getBounds() {
+		return _bounds;
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * Generates per-vertex tangents with handedness for normal mapping.
+ *
+ * Follows the MikkTSpace recipe:
+ *   1) a tangent per triangle from its tex coords
+ *   2) per corner: projected onto the plane of the vertex normal and
+ *      weighted by the corner angle
+ *   3) summed per vertex and orthonormalized against the normal
+ * The handedness (w = +1/-1) says which way the bitangent points:
+ *   bitangent = cross(normal, tangent.xyz) * tangent.w
+ * Vertices where mirrored tex coords meet get corners of both handedness -
+ * those vertices are split so each side keeps its own tangent. The copies
+ * are appended to the vertex array, so the triangle order (and the vertex
+ * cache optimisation) stays as it was.
+ */
+
+package graphics.shaders;
+
+public class TangentGenerator {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// tex coord area below which a triangle gives no tangent
+	private static final float MIN_UV_AREA = 1e-12f;
+
+	// float offsets inside a vertex [x, y, z, nx, ny, nz, u, v]
+	private static final int NORMAL = 3;
+	private static final int TEXCOORD = 6;
+
+	// Results
+	private float[] _vertices;
+	private int[] _indices;
+	private float[] _tangents;		// 4 per vertex {x, y, z, w}
+	private int _numSplit;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public TangentGenerator() {
+
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Calculates the tangents
+	 * @param vertices interleaved vertices [x, y, z, nx, ny, nz, u, v, ...]
+	 * @param indices triangle list
+	 * @param stride floats per vertex
+	 */
+	public void generate(float[] vertices, int[] indices, int stride) {
+		int numVertices = vertices.length / stride;
+		int numFaces = indices.length / 3;
+
+		// per corner: tangent projected on the vertex normal and weighted, and its handedness
+		float[] corner = new float[indices.length * 3];
+		byte[] sign = new byte[indices.length];		// 0 = no tangent (degenerate uv)
+
+		for (int f = 0; f < numFaces; f++) {
+			int i0 = indices[f * 3] * stride;
+			int i1 = indices[f * 3 + 1] * stride;
+			int i2 = indices[f * 3 + 2] * stride;
+
+			float e1x = vertices[i1] - vertices[i0], e1y = vertices[i1 + 1] - vertices[i0 + 1], e1z = vertices[i1 + 2] - vertices[i0 + 2];
+			float e2x = vertices[i2] - vertices[i0], e2y = vertices[i2 + 1] - vertices[i0 + 1], e2z = vertices[i2 + 2] - vertices[i0 + 2];
+			float du1 = vertices[i1 + TEXCOORD] - vertices[i0 + TEXCOORD];
+			float dv1 = vertices[i1 + TEXCOORD + 1] - vertices[i0 + TEXCOORD + 1];
+			float du2 = vertices[i2 + TEXCOORD] - vertices[i0 + TEXCOORD];
+			float dv2 = vertices[i2 + TEXCOORD + 1] - vertices[i0 + TEXCOORD + 1];
+
+			float r = du1 * dv2 - du2 * dv1;
+			if (Math.abs(r) < MIN_UV_AREA)
+				continue;
+
+			// d(position)/du and d(position)/dv
+			float tx = (e1x * dv2 - e2x * dv1) / r, ty = (e1y * dv2 - e2y * dv1) / r, tz = (e1z * dv2 - e2z * dv1) / r;
+			float bx = (e2x * du1 - e1x * du2) / r, by = (e2y * du1 - e1y * du2) / r, bz = (e2z * du1 - e1z * du2) / r;
+
+			for (int k = 0; k < 3; k++) {
+				int c = f * 3 + k;
+				int v = indices[c] * stride;
+				float nx = vertices[v + NORMAL], ny = vertices[v + NORMAL + 1], nz = vertices[v + NORMAL + 2];
+
+				// onto the plane of the normal
+				float d = nx * tx + ny * ty + nz * tz;
+				float px = tx - nx * d, py = ty - ny * d, pz = tz - nz * d;
+				float len = (float)Math.sqrt(px * px + py * py + pz * pz);
+				if (len == 0.0f)
+					continue;
+
+				float w = angle(vertices, v, indices[f * 3 + (k + 1) % 3] * stride,
+						indices[f * 3 + (k + 2) % 3] * stride) / len;
+				corner[c * 3]     = px * w;
+				corner[c * 3 + 1] = py * w;
+				corner[c * 3 + 2] = pz * w;
+
+				// handedness - does cross(n, t) point along the bitangent?
+				float cx = ny * tz - nz * ty, cy = nz * tx - nx * tz, cz = nx * ty - ny * tx;
+				sign[c] = (byte)(cx * bx + cy * by + cz * bz < 0.0f ? -1 : 1);
+			}
+		}
+
+		// sum the corners per vertex and handedness
+		float[] sum = new float[numVertices * 3];
+		float[] mirrored = new float[numVertices * 3];
+		int[] handedness = new int[numVertices];	// 1 = right, 2 = left, 3 = both
+		for (int c = 0; c < indices.length; c++) {
+			if (sign[c] == 0)
+				continue;
+			int v = indices[c];
+			float[] acc = sign[c] > 0 ? sum : mirrored;
+			acc[v * 3]     += corner[c * 3];
+			acc[v * 3 + 1] += corner[c * 3 + 1];
+			acc[v * 3 + 2] += corner[c * 3 + 2];
+			handedness[v] |= sign[c] > 0 ? 1 : 2;
+		}
+
+		// split the vertices with both - the left handed corners get a copy
+		_numSplit = 0;
+		for (int v = 0; v < numVertices; v++) {
+			if (handedness[v] == 3)
+				_numSplit++;
+		}
+
+		_vertices = vertices;
+		_indices = indices;
+		int[] copy = null;
+		if (_numSplit > 0) {
+			_vertices = new float[(numVertices + _numSplit) * stride];
+			System.arraycopy(vertices, 0, _vertices, 0, vertices.length);
+			_indices = indices.clone();
+
+			copy = new int[numVertices];
+			int next = numVertices;
+			for (int v = 0; v < numVertices; v++) {
+				if (handedness[v] == 3) {
+					System.arraycopy(vertices, v * stride, _vertices, next * stride, stride);
+					copy[v] = next++;
+				}
+			}
+			for (int c = 0; c < indices.length; c++) {
+				if (sign[c] < 0 && handedness[indices[c]] == 3)
+					_indices[c] = copy[indices[c]];
+			}
+		}
+
+		// orthonormalize
+		_tangents = new float[(numVertices + _numSplit) * 4];
+		for (int v = 0; v < numVertices; v++) {
+			if (handedness[v] == 2)
+				setTangent(v, stride, mirrored, v, -1.0f);
+			else
+				setTangent(v, stride, sum, v, 1.0f);
+
+			if (handedness[v] == 3)
+				setTangent(copy[v], stride, mirrored, v, -1.0f);
+		}
+	}
+
+	/*
+	 * Tangent of vertex v from the sum acc[from] - made perpendicular to the
+	 * normal. Vertices without any uv gradient get some perpendicular axis.
+	 */
+	private void setTangent(int v, int stride, float[] acc, int from, float w) {
+		int o = v * stride + NORMAL;
+		float nx = _vertices[o], ny = _vertices[o + 1], nz = _vertices[o + 2];
+		float tx = acc[from * 3], ty = acc[from * 3 + 1], tz = acc[from * 3 + 2];
+
+		float d = nx * tx + ny * ty + nz * tz;
+		tx -= nx * d;
+		ty -= ny * d;
+		tz -= nz * d;
+		float len = (float)Math.sqrt(tx * tx + ty * ty + tz * tz);
+
+		if (len < 1e-6f) {
+			// n x (0, 0, 1) or n x (0, 1, 0), whichever is longer
+			if (nx * nx + ny * ny > nx * nx + nz * nz) {
+				tx = ny; ty = -nx; tz = 0.0f;
+			}
+			else {
+				tx = -nz; ty = 0.0f; tz = nx;
+			}
+			len = (float)Math.sqrt(tx * tx + ty * ty + tz * tz);
+			if (len == 0.0f) {
+				tx = 1.0f;
+				len = 1.0f;
+			}
+		}
+
+		_tangents[v * 4]     = tx / len;
+		_tangents[v * 4 + 1] = ty / len;
+		_tangents[v * 4 + 2] = tz / len;
+		_tangents[v * 4 + 3] = w;
+	}
+
+	/*
+	 * Angle at corner a of the triangle a, b, c
+	 */
+	private static float angle(float[] v, int a, int b, int c) {
+		float ux = v[b] - v[a], uy = v[b + 1] - v[a + 1], uz = v[b + 2] - v[a + 2];
+		float wx = v[c] - v[a], wy = v[c + 1] - v[a + 1], wz = v[c + 2] - v[a + 2];
+		float lu = (float)Math.sqrt(ux * ux + uy * uy + uz * uz);
+		float lw = (float)Math.sqrt(wx * wx + wy * wy + wz * wz);
+		if (lu == 0.0f || lw == 0.0f)
+			return 0.0f;
+		float cos = (ux * wx + uy * wy + uz * wz) / (lu * lw);
+		return (float)Math.acos(Math.max(-1.0f, Math.min(1.0f, cos)));
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return the vertices - the input array unless vertices were split
+	 */
+	public float[] get_vertices() {
+		return _vertices;
+	}
+
+	/**
+	 * @return the indices - the input array unless vertices were split
+	 */
+	public int[] get_indices() {
+		return _indices;
+	}
+
+	/**
+	 * @return 4 floats per vertex: tangent xyz and handedness (+1/-1)
+	 */
+	public float[] getTangents() {
+		return _tangents;
+	}
+
+	/**
+	 * @return number of vertices that were split because of mirrored tex coords
+	 */
+	public int getNumSplit() {
+		return _numSplit;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * A texture shared through the AssetRegistry.
+ * Objects keep the handle, not the GL name - the name changes when the
+ * texture becomes resident and again after the GL context was lost.
+ */
+
+package graphics.shaders;
+
+public class Texture {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	private int _resID;			// image resource
+	private int _id;			// GL texture name - the placeholder until resident
+	private boolean _resident;
+	private int _refs;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public Texture(int resID) {
+		_resID = resID;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public int getResID() {
+		return _resID;
+	}
+
+	/**
+	 * @return the GL texture to bind
+	 */
+	public int getId() {
+		return _id;
+	}
+
+	void setId(int id) {
+		_id = id;
+	}
+
+	public boolean isResident() {
+		return _resident;
+	}
+
+	void setResident(boolean resident) {
+		_resident = resident;
+	}
+
+	/**
+	 * @return number of objects using the texture
+	 */
+	public int getRefs() {
+		return _refs;
+	}
+
+	void setRefs(int refs) {
+		_refs = refs;
+	}
+}
@@ -0,0 +1,356 @@
+/**
+ * Reorders triangles for the GPU's post-transform vertex cache and then
+ * vertices for fetch locality.
+ *
+ * Triangle order follows Tom Forsyth's "Linear-Speed Vertex Cache
+ * Optimisation": vertices are scored by their position in a simulated LRU
+ * cache and by how many triangles still use them, and the best scoring
+ * triangle is emitted next. Afterwards vertices are renumbered in the order
+ * the index buffer first uses them.
+ *
+ * ACMR (average cache miss ratio, misses per triangle) and ATVR (misses per
+ * vertex, 1.0 is perfect) are measured with a FIFO cache simulation, so the
+ * gain can be checked without a GPU.
+ */
+
+package graphics.shaders;
+
+public class VertexCacheOptimizer {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// Size of the simulated cache used to score vertices
+	private static final int CACHE_SIZE = 32;
+
+	// Scoring constants from the paper
+	private static final float CACHE_DECAY_POWER = 1.5f;
+	private static final float LAST_TRI_SCORE = 0.75f;
+	private static final float VALENCE_BOOST_SCALE = 2.0f;
+	private static final float VALENCE_BOOST_POWER = 0.5f;
+
+	// FIFO size used to report ACMR/ATVR - typical for mobile GPUs
+	public static final int DEFAULT_FIFO_SIZE = 16;
+
+	// Precomputed scores
+	private static final float[] CACHE_SCORES = new float[CACHE_SIZE];
+	private static final float[] VALENCE_SCORES = new float[64];
+
+	static {
+		for (int i = 0; i < CACHE_SIZE; i++) {
+			if (i < 3)
+				CACHE_SCORES[i] = LAST_TRI_SCORE;
+			else {
+				float scaler = 1.0f / (CACHE_SIZE - 3);
+				CACHE_SCORES[i] = (float)Math.pow(1.0f - (i - 3) * scaler, CACHE_DECAY_POWER);
+			}
+		}
+		for (int i = 1; i < VALENCE_SCORES.length; i++)
+			VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float)Math.pow(i, -VALENCE_BOOST_POWER);
+	}
+
+	// Results
+	private float[] _vertices;
+	private int[] _indices;
+
+	// Statistics
+	private float _acmrBefore, _acmrAfter;
+	private float _atvrBefore, _atvrAfter;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	public VertexCacheOptimizer() {
+
+	}
+
+	/**************************
+	 * OTHER METHODS
+	 *************************/
+
+	/**
+	 * Optimises a mesh. Results are available from get_vertices()/get_indices().
+	 * @param vertices interleaved vertex data
+	 * @param indices triangle list
+	 * @param stride floats per vertex
+	 */
+	public void optimize(float[] vertices, int[] indices, int stride) {
+		optimize(vertices, indices, stride, null);
+	}
+
+	/**
+	 * Optimises a mesh whose triangles are in groups (materials) - triangles
+	 * are only reordered inside their group
+	 * @param groupStarts index offsets where the groups start (+ the end), null = no groups
+	 */
+	public void optimize(float[] vertices, int[] indices, int stride, int[] groupStarts) {
+		int numVertices = vertices.length / stride;
+
+		_acmrBefore = acmr(indices, DEFAULT_FIFO_SIZE);
+		_atvrBefore = atvr(indices, numVertices, DEFAULT_FIFO_SIZE);
+
+		int[] ordered;
+		if (groupStarts == null || groupStarts.length <= 2)
+			ordered = reorderTriangles(indices, numVertices);
+		else {
+			ordered = new int[indices.length];
+			for (int g = 0; g + 1 < groupStarts.length; g++) {
+				int from = groupStarts[g], to = groupStarts[g + 1];
+				int[] group = new int[to - from];
+				System.arraycopy(indices, from, group, 0, group.length);
+				System.arraycopy(reorderTriangles(group, numVertices), 0, ordered, from, group.length);
+			}
+		}
+
+		// vertices in order of first use
+		int[] remap = new int[numVertices];
+		for (int i = 0; i < numVertices; i++)
+			remap[i] = -1;
+
+		_vertices = new float[vertices.length];
+		_indices = new int[ordered.length];
+		int next = 0;
+		for (int i = 0; i < ordered.length; i++) {
+			int v = ordered[i];
+			if (remap[v] == -1) {
+				System.arraycopy(vertices, v * stride, _vertices, next * stride, stride);
+				remap[v] = next++;
+			}
+			_indices[i] = remap[v];
+		}
+
+		// unused vertices go at the end
+		for (int v = 0; v < numVertices; v++) {
+			if (remap[v] == -1) {
+				System.arraycopy(vertices, v * stride, _vertices, next * stride, stride);
+				remap[v] = next++;
+			}
+		}
+
+		_acmrAfter = acmr(_indices, DEFAULT_FIFO_SIZE);
+		_atvrAfter = atvr(_indices, numVertices, DEFAULT_FIFO_SIZE);
+	}
+
+	/**
+	 * Forsyth's triangle ordering
+	 * @return the reordered triangle list (same vertex ids)
+	 */
+	private static int[] reorderTriangles(int[] indices, int numVertices) {
+		int numTris = indices.length / 3;
+		int[] out = new int[indices.length];
+		if (numTris == 0)
+			return out;
+
+		// triangles around each vertex (CSR)
+		int[] triStart = new int[numVertices + 1];
+		for (int i = 0; i < indices.length; i++)
+			triStart[indices[i] + 1]++;
+		for (int v = 0; v < numVertices; v++)
+			triStart[v + 1] += triStart[v];
+		int[] vertTris = new int[indices.length];
+		int[] activeCount = new int[numVertices];	// triangles not emitted yet
+		for (int i = 0; i < indices.length; i++) {
+			int v = indices[i];
+			vertTris[triStart[v] + activeCount[v]++] = i / 3;
+		}
+
+		// vertex state
+		int[] cachePos = new int[numVertices];
+		float[] vertScore = new float[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			cachePos[v] = -1;
+			vertScore[v] = vertexScore(-1, activeCount[v]);
+		}
+
+		// triangle state
+		boolean[] emitted = new boolean[numTris];
+		float[] triScore = new float[numTris];
+		for (int t = 0; t < numTris; t++)
+			triScore[t] = vertScore[indices[t * 3]] + vertScore[indices[t * 3 + 1]] + vertScore[indices[t * 3 + 2]];
+
+		// LRU cache, with room for the 3 vertices being pushed in
+		int[] cache = new int[CACHE_SIZE + 3];
+		int[] newCache = new int[CACHE_SIZE + 3];
+		int cacheCount = 0;
+
+		int bestTri = bestTriangle(triScore, emitted, 0);
+		int scanCursor = 0;
+		int numOut = 0;
+
+		while (bestTri >= 0) {
+			// emit it
+			emitted[bestTri] = true;
+			for (int k = 0; k < 3; k++) {
+				int v = indices[bestTri * 3 + k];
+				out[numOut++] = v;
+
+				// drop the triangle from the vertex's active list
+				int start = triStart[v];
+				int end = start + activeCount[v];
+				for (int j = start; j < end; j++) {
+					if (vertTris[j] == bestTri) {
+						vertTris[j] = vertTris[end - 1];
+						vertTris[end - 1] = bestTri;
+						break;
+					}
+				}
+				activeCount[v]--;
+			}
+
+			// new cache: the triangle's vertices first, then the old contents
+			int newCount = 0;
+			for (int k = 0; k < 3; k++)
+				newCache[newCount++] = indices[bestTri * 3 + k];
+			for (int i = 0; i < cacheCount; i++) {
+				int v = cache[i];
+				if (v != indices[bestTri * 3] && v != indices[bestTri * 3 + 1] && v != indices[bestTri * 3 + 2])
+					newCache[newCount++] = v;
+			}
+
+			// rescore everything in the (oversized) cache
+			for (int i = 0; i < newCount; i++) {
+				int v = newCache[i];
+				cachePos[v] = i < CACHE_SIZE ? i : -1;
+				vertScore[v] = vertexScore(cachePos[v], activeCount[v]);
+			}
+
+			// pick the best triangle around the cached vertices
+			bestTri = -1;
+			float bestScore = -1.0f;
+			for (int i = 0; i < newCount; i++) {
+				int v = newCache[i];
+				int start = triStart[v];
+				int end = start + activeCount[v];
+				for (int j = start; j < end; j++) {
+					int t = vertTris[j];
+					float score = vertScore[indices[t * 3]] + vertScore[indices[t * 3 + 1]] + vertScore[indices[t * 3 + 2]];
+					triScore[t] = score;
+					if (score > bestScore) {
+						bestScore = score;
+						bestTri = t;
+					}
+				}
+			}
+
+			// swap caches and trim
+			int[] tmp = cache;
+			cache = newCache;
+			newCache = tmp;
+			cacheCount = Math.min(newCount, CACHE_SIZE);
+
+			// nothing connected - fall back to the best remaining triangle
+			if (bestTri < 0 && numOut < out.length) {
+				while (scanCursor < numTris && emitted[scanCursor])
+					scanCursor++;
+				bestTri = bestTriangle(triScore, emitted, scanCursor);
+			}
+		}
+
+		return out;
+	}
+
+	private static int bestTriangle(float[] triScore, boolean[] emitted, int from) {
+		int best = -1;
+		float bestScore = -1.0f;
+		for (int t = from; t < triScore.length; t++) {
+			if (!emitted[t] && triScore[t] > bestScore) {
+				bestScore = triScore[t];
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	private static float vertexScore(int cachePosition, int remainingTris) {
+		if (remainingTris == 0)
+			return -1.0f;	// no triangles left - never pick it
+
+		float score = cachePosition < 0 ? 0.0f : CACHE_SCORES[cachePosition];
+		score += VALENCE_SCORES[Math.min(remainingTris, VALENCE_SCORES.length - 1)];
+		return score;
+	}
+
+	/**
+	 * Average cache miss ratio - transformed vertices per triangle with a
+	 * FIFO cache (0.5 is the best possible for big regular meshes, 3 the worst)
+	 */
+	public static float acmr(int[] indices, int cacheSize) {
+		int numTris = indices.length / 3;
+		if (numTris == 0)
+			return 0.0f;
+		return (float)misses(indices, cacheSize) / numTris;
+	}
+
+	/**
+	 * Average transform to vertex ratio - transformed vertices per unique
+	 * vertex (1.0 is perfect)
+	 */
+	public static float atvr(int[] indices, int numVertices, int cacheSize) {
+		// only count vertices that are used
+		boolean[] used = new boolean[numVertices];
+		int unique = 0;
+		for (int i = 0; i < indices.length; i++) {
+			if (!used[indices[i]]) {
+				used[indices[i]] = true;
+				unique++;
+			}
+		}
+		if (unique == 0)
+			return 0.0f;
+		return (float)misses(indices, cacheSize) / unique;
+	}
+
+	/*
+	 * Simulates a FIFO post-transform cache
+	 */
+	private static int misses(int[] indices, int cacheSize) {
+		int[] fifo = new int[cacheSize];
+		for (int i = 0; i < cacheSize; i++)
+			fifo[i] = -1;
+		int head = 0;
+		int misses = 0;
+
+		for (int i = 0; i < indices.length; i++) {
+			int v = indices[i];
+			boolean hit = false;
+			for (int j = 0; j < cacheSize; j++) {
+				if (fifo[j] == v) {
+					hit = true;
+					break;
+				}
+			}
+			if (!hit) {
+				misses++;
+				fifo[head] = v;
+				head = (head + 1) % cacheSize;
+			}
+		}
+		return misses;
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+	public float[] get_vertices() {
+		return _vertices;
+	}
+
+	public int[] get_indices() {
+		return _indices;
+	}
+
+	public float getAcmrBefore() {
+		return _acmrBefore;
+	}
+
+	public float getAcmrAfter() {
+		return _acmrAfter;
+	}
+
+	public float getAtvrBefore() {
+		return _atvrBefore;
+	}
+
+	public float getAtvrAfter() {
+		return _atvrAfter;
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Describes how the attributes of one vertex are laid out in a vertex buffer
+ * and packs float vertices into that layout.
+ *
+ * FLOAT is the layout the importers produce (32 bytes):
+ *   [x, y, z, nx, ny, nz, u, v] as floats
+ * FLOAT_TANGENT adds the tangent and its handedness (48 bytes):
+ *   [x, y, z, nx, ny, nz, u, v, tx, ty, tz, tw] as floats
+ * The packed layouts use normalized integers that the GPU turns back into
+ * floats for free:
+ *   position   3 shorts (+ padding), relative to the bounds of the piece -
+ *              the shader undoes that with posScale/posBias - or 3 floats
+ *   normal     3 bytes (+ padding)
+ *   tex coords 2 shorts if they are all in [-1, 1], floats if not, left out
+ *              if the mesh has none (.OFF)
+ *   tangent    4 bytes, w = handedness (only if the mesh has tangents)
+ * which brings a vertex down to 12 - 28 bytes.
+ *
+ * Integers are written for the OpenGL ES 2.0 conversion rule
+ * f = (2c + 1) / (2^b - 1), so every value comes back within one step.
+ */
+
+package graphics.shaders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import android.opengl.GLES20;
+
+public class VertexFormat {
+	/*************************
+	 * PROPERTIES
+	 ************************/
+	// attribute semantics - same numbers as the mesh file
+	public static final int POSITION = MeshFile.ATTRIB_POSITION;
+	public static final int NORMAL = MeshFile.ATTRIB_NORMAL;
+	public static final int TEXCOORD = MeshFile.ATTRIB_TEXCOORD;
+	public static final int TANGENT = MeshFile.ATTRIB_TANGENT;
+	private static final int NUM_ATTRIBUTES = 4;
+
+	// tex coord storage for packed()
+	public static final int TEXCOORD_NONE = 0;
+	public static final int TEXCOORD_SHORT = 1;
+	public static final int TEXCOORD_FLOAT = 2;
+
+	// float offsets inside a vertex of the importers' float arrays
+	private static final int SRC_POSITION = 0;
+	private static final int SRC_NORMAL = 3;
+	private static final int SRC_TEXCOORD = 6;
+
+	// [x, y, z, nx, ny, nz, u, v] as floats
+	public static final VertexFormat FLOAT = new VertexFormat(
+			new int[] {3, 3, 2, 0},
+			new int[] {GLES20.GL_FLOAT, GLES20.GL_FLOAT, GLES20.GL_FLOAT, GLES20.GL_FLOAT},
+			new boolean[] {false, false, false, false},
+			new int[] {0, 12, 24, 0}, 32);
+
+	// [x, y, z, nx, ny, nz, u, v, tx, ty, tz, tw] as floats
+	public static final VertexFormat FLOAT_TANGENT = new VertexFormat(
+			new int[] {3, 3, 2, 4},
+			new int[] {GLES20.GL_FLOAT, GLES20.GL_FLOAT, GLES20.GL_FLOAT, GLES20.GL_FLOAT},
+			new boolean[] {false, false, false, false},
+			new int[] {0, 12, 24, 32}, 48);
+
+	// One entry per semantic - size 0 = not in the buffer
+	private int[] _size;
+	private int[] _type;
+	private boolean[] _normalized;
+	private int[] _offset;
+	private int _stride;
+
+	/***************************
+	 * CONSTRUCTOR(S)
+	 **************************/
+	private VertexFormat(int[] size, int[] type, boolean[] normalized, int[] offset, int stride) {
+		_size = size;
+		_type = type;
+		_normalized = normalized;
+		_offset = offset;
+		_stride = stride;
+	}
+
+	/**
+	 * Builds a packed layout
+	 * @param shortPositions true = normalized shorts, false = floats
+	 * @param texCoords TEXCOORD_NONE, TEXCOORD_SHORT or TEXCOORD_FLOAT
+	 * @param tangents true to store tangents
+	 */
+	public static VertexFormat packed(boolean shortPositions, int texCoords, boolean tangents) {
+		int[] size = new int[NUM_ATTRIBUTES];
+		int[] type = new int[NUM_ATTRIBUTES];
+		boolean[] normalized = new boolean[NUM_ATTRIBUTES];
+		int[] offset = new int[NUM_ATTRIBUTES];
+		int stride = 0;
+
+		// position - shorts are padded to 8 bytes to keep attributes 4 byte aligned
+		size[POSITION] = 3;
+		type[POSITION] = shortPositions ? GLES20.GL_SHORT : GLES20.GL_FLOAT;
+		normalized[POSITION] = shortPositions;
+		offset[POSITION] = stride;
+		stride += shortPositions ? 8 : 12;
+
+		// normal - padded to 4 bytes
+		size[NORMAL] = 3;
+		type[NORMAL] = GLES20.GL_BYTE;
+		normalized[NORMAL] = true;
+		offset[NORMAL] = stride;
+		stride += 4;
+
+		// tex coords
+		if (texCoords != TEXCOORD_NONE) {
+			size[TEXCOORD] = 2;
+			type[TEXCOORD] = texCoords == TEXCOORD_SHORT ? GLES20.GL_SHORT : GLES20.GL_FLOAT;
+			normalized[TEXCOORD] = texCoords == TEXCOORD_SHORT;
+			offset[TEXCOORD] = stride;
+			stride += texCoords == TEXCOORD_SHORT ? 4 : 8;
+		}
+
+		// tangent + handedness
+		if (tangents) {
+			size[TANGENT] = 4;
+			type[TANGENT] = GLES20.GL_BYTE;
+			normalized[TANGENT] = true;
+			offset[TANGENT] = stride;
+			stride += 4;
+		}
+
+		return new VertexFormat(size, type, normalized, offset, stride);
+	}
+
+	/**
+	 * Picks the tex coord storage for a range of float vertices
+	 * @param hasTexCoords false if the mesh has no tex coords at all
+	 */
+	public static int texCoordsFor(float[] vertices, int numVertices, int stride, boolean hasTexCoords) {
+		if (!hasTexCoords)
+			return TEXCOORD_NONE;
+		for (int i = 0; i < numVertices; i++) {
+			float u = vertices[i * stride + SRC_TEXCOORD];
+			float v = vertices[i * stride + SRC_TEXCOORD + 1];
+			// repeating textures - shorts can't hold them
+			if (u < -1.0f || u > 1.0f || v < -1.0f || v > 1.0f)
+				return TEXCOORD_FLOAT;
+		}
+		return TEXCOORD_SHORT;
+	}
+
+	/**
+	 * Writes float vertices [x, y, z, nx, ny, nz, u, v] into a new direct buffer
+	 * in this layout
+	 * @param vertices the float vertices
+	 * @param tangents 4 floats per vertex, null if the layout has no tangents
+	 * @param numVertices number of vertices to write
+	 * @param stride floats per source vertex
+	 * @param bounds {minx, miny, minz, maxx, maxy, maxz} of the vertices
+	 * @param posScale receives xyz scale for the shader (w = 0)
+	 * @param posBias receives xyz bias for the shader (w = 0)
+	 */
+	public ByteBuffer pack(float[] vertices, float[] tangents, int numVertices, int stride, float[] bounds,
+			float[] posScale, float[] posBias) {
+		ByteBuffer bb = ByteBuffer.allocateDirect(numVertices * _stride).order(ByteOrder.nativeOrder());
+
+		// positions map to [-1, 1] across the bounds
+		boolean shortPositions = _type[POSITION] == GLES20.GL_SHORT;
+		float[] center = new float[3];
+		float[] half = new float[3];
+		for (int k = 0; k < 3; k++) {
+			center[k] = (bounds[k] + bounds[k + 3]) * 0.5f;
+			half[k] = (bounds[k + 3] - bounds[k]) * 0.5f;
+			if (half[k] <= 0.0f)
+				half[k] = 1.0f;		// flat - any scale works
+
+			posScale[k] = shortPositions ? half[k] : 1.0f;
+			posBias[k] = shortPositions ? center[k] : 0.0f;
+		}
+		posScale[3] = 0.0f;
+		posBias[3] = 0.0f;
+
+		for (int i = 0; i < numVertices; i++) {
+			int src = i * stride;
+			int dst = i * _stride;
+
+			// position
+			int o = dst + _offset[POSITION];
+			for (int k = 0; k < 3; k++) {
+				float p = vertices[src + SRC_POSITION + k];
+				if (shortPositions)
+					bb.putShort(o + k * 2, toShort((p - center[k]) / half[k]));
+				else
+					bb.putFloat(o + k * 4, p);
+			}
+
+			// normal
+			o = dst + _offset[NORMAL];
+			for (int k = 0; k < 3; k++)
+				put(bb, o, _type[NORMAL], k, vertices[src + SRC_NORMAL + k]);
+
+			// tex coords
+			if (_size[TEXCOORD] > 0) {
+				o = dst + _offset[TEXCOORD];
+				for (int k = 0; k < 2; k++)
+					put(bb, o, _type[TEXCOORD], k, vertices[src + SRC_TEXCOORD + k]);
+			}
+
+			// tangent
+			if (_size[TANGENT] > 0) {
+				o = dst + _offset[TANGENT];
+				for (int k = 0; k < 4; k++)
+					put(bb, o, _type[TANGENT], k, tangents[i * 4 + k]);
+			}
+		}
+
+		bb.position(0);
+		return bb;
+	}
+
+	/*
+	 * Writes component k of an attribute as a float or a normalized integer
+	 */
+	private static void put(ByteBuffer bb, int offset, int type, int k, float f) {
+		if (type == GLES20.GL_FLOAT)
+			bb.putFloat(offset + k * 4, f);
+		else if (type == GLES20.GL_SHORT)
+			bb.putShort(offset + k * 2, toShort(f));
+		else
+			bb.put(offset + k, toByte(f));
+	}
+
+	/*
+	 * [-1, 1] -> normalized short (GLES 2.0 rule)
+	 */
+	private static short toShort(float f) {
+		int c = Math.round((f * 65535.0f - 1.0f) * 0.5f);
+		return (short)Math.max(-32768, Math.min(32767, c));
+	}
+
+	/*
+	 * [-1, 1] -> normalized byte (GLES 2.0 rule)
+	 */
+	private static byte toByte(float f) {
+		int c = Math.round((f * 255.0f - 1.0f) * 0.5f);
+		return (byte)Math.max(-128, Math.min(127, c));
+	}
+
+	/***************************
+	 * GET/SET
+	 *************************/
+
+	/**
+	 * @return number of components of the attribute, 0 if it isn't in the buffer
+	 */
+	public int getSize(int semantic) {
+		return _size[semantic];
+	}
+
+	public int getType(int semantic) {
+		return _type[semantic];
+	}
+
+	public boolean isNormalized(int semantic) {
+		return _normalized[semantic];
+	}
+
+	/**
+	 * @return byte offset of the attribute inside a vertex
+	 */
+	public int getOffset(int semantic) {
+		return _offset[semantic];
+	}
+
+	/**
+	 * @return size of one vertex in bytes
+	 */
+	public int getStride() {
+		return _stride;
+	}
+}